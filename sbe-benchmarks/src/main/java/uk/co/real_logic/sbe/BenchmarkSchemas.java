@@ -0,0 +1,146 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.sbe.benchmarks.CarEncoder;
+import uk.co.real_logic.sbe.benchmarks.MessageHeaderEncoder;
+import uk.co.real_logic.sbe.benchmarks.fix.MarketDataIncrementalRefreshTradesEncoder;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.json.JsonEncoder;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+import uk.co.real_logic.sbe.xml.XmlSchemaParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schemas, and a sample message for each, which the tooling benchmarks run over.
+ */
+public class BenchmarkSchemas
+{
+    public static final String CAR = "car.xml";
+    public static final String FIX = "fix-message-samples.xml";
+    public static final String FIX_BINARY = "FixBinary.xml";
+    public static final String SYNTHETIC = "synthetic";
+    public static final String SYNTHETIC_LARGE = "synthetic-large";
+
+    /**
+     * Load the XML for a schema from the class path, or generate it for {@link #SYNTHETIC} and
+     * {@link #SYNTHETIC_LARGE}.
+     *
+     * @param schema name of the schema.
+     * @return the XML for the schema.
+     * @throws IOException if the schema cannot be read.
+     */
+    public static byte[] xml(final String schema) throws IOException
+    {
+        if (SYNTHETIC.equals(schema))
+        {
+            return SyntheticSchema.xml(SyntheticSchema.MESSAGE_COUNT, SyntheticSchema.FIELDS_PER_MESSAGE)
+                .getBytes(StandardCharsets.UTF_8);
+        }
+
+        if (SYNTHETIC_LARGE.equals(schema))
+        {
+            final String xml = SyntheticSchema.xml(
+                SyntheticSchema.LARGE_MESSAGE_COUNT,
+                SyntheticSchema.FIELDS_PER_MESSAGE,
+                SyntheticSchema.LARGE_TYPE_COUNT);
+
+            return xml.getBytes(StandardCharsets.UTF_8);
+        }
+
+        try (InputStream in = BenchmarkSchemas.class.getResourceAsStream("/" + schema))
+        {
+            if (null == in)
+            {
+                throw new IllegalArgumentException("Schema not found on class path: " + schema);
+            }
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] bytes = new byte[4096];
+            int length;
+            while ((length = in.read(bytes)) > 0)
+            {
+                out.write(bytes, 0, length);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Parse the XML for a schema and generate its {@link Ir}.
+     *
+     * @param xml for the schema.
+     * @return the {@link Ir} for the schema.
+     * @throws Exception if the schema is not valid.
+     */
+    public static Ir ir(final byte[] xml) throws Exception
+    {
+        return new IrGenerator().generate(XmlSchemaParser.parse(new ByteArrayInputStream(xml), ParserOptions.DEFAULT));
+    }
+
+    /**
+     * Encode a sample message, preceded by its message header, for a schema.
+     *
+     * @param schema name of the schema.
+     * @param ir     for the schema.
+     * @param buffer to which the message is encoded from index 0.
+     * @return the length of the encoded message including the header.
+     */
+    public static int encodeMessage(final String schema, final Ir ir, final UnsafeBuffer buffer)
+    {
+        switch (schema)
+        {
+            case CAR:
+            {
+                final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+                final CarEncoder carEncoder = new CarEncoder();
+                CarBenchmark.encode(messageHeaderEncoder, carEncoder, buffer, 0);
+
+                return messageHeaderEncoder.encodedLength() + carEncoder.encodedLength();
+            }
+
+            case FIX:
+            {
+                final uk.co.real_logic.sbe.benchmarks.fix.MessageHeaderEncoder messageHeaderEncoder =
+                    new uk.co.real_logic.sbe.benchmarks.fix.MessageHeaderEncoder();
+                final MarketDataIncrementalRefreshTradesEncoder marketDataEncoder =
+                    new MarketDataIncrementalRefreshTradesEncoder();
+                MarketDataBenchmark.encode(messageHeaderEncoder, marketDataEncoder, buffer, 0);
+
+                return messageHeaderEncoder.encodedLength() + marketDataEncoder.encodedLength();
+            }
+
+            case SYNTHETIC:
+            case SYNTHETIC_LARGE:
+                return new JsonEncoder(ir).encode(
+                    SyntheticSchema.json(SyntheticSchema.FIELDS_PER_MESSAGE, SyntheticSchema.GROUP_ENTRIES),
+                    1,
+                    buffer,
+                    0);
+
+            default:
+                throw new IllegalArgumentException("Unknown schema: " + schema);
+        }
+    }
+}
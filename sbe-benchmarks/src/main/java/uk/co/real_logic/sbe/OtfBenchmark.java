@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.json.JsonPrinter;
+import uk.co.real_logic.sbe.otf.AbstractTokenListener;
+import uk.co.real_logic.sbe.otf.OtfHeaderDecoder;
+import uk.co.real_logic.sbe.otf.OtfMessageDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Benchmarks for on-the-fly decoding and JSON printing of a sample message for each benchmark schema.
+ */
+public class OtfBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class MyState
+    {
+        @Param({
+            BenchmarkSchemas.CAR,
+            BenchmarkSchemas.FIX,
+            BenchmarkSchemas.SYNTHETIC,
+            BenchmarkSchemas.SYNTHETIC_LARGE })
+        String schema;
+
+        final UnsafeBuffer decodeBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(64 * 1024));
+        final UnsafeBuffer jsonBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(256 * 1024));
+        final StringBuilder jsonBuilder = new StringBuilder(256 * 1024);
+        final CountingTokenListener listener = new CountingTokenListener();
+
+        Ir ir;
+        OtfHeaderDecoder headerDecoder;
+        JsonPrinter jsonPrinter;
+
+        @Setup
+        public void setup() throws Exception
+        {
+            ir = BenchmarkSchemas.ir(BenchmarkSchemas.xml(schema));
+            headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+            jsonPrinter = new JsonPrinter(ir);
+            BenchmarkSchemas.encodeMessage(schema, ir, decodeBuffer);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int testOtfDecode(final MyState state)
+    {
+        final OtfHeaderDecoder headerDecoder = state.headerDecoder;
+        final UnsafeBuffer buffer = state.decodeBuffer;
+
+        final int templateId = headerDecoder.getTemplateId(buffer, 0);
+        final int actingVersion = headerDecoder.getSchemaVersion(buffer, 0);
+        final int blockLength = headerDecoder.getBlockLength(buffer, 0);
+        final List<Token> msgTokens = state.ir.getMessage(templateId);
+
+        return OtfMessageDecoder.decode(
+            buffer, headerDecoder.encodedLength(), actingVersion, blockLength, msgTokens, state.listener);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int testJsonPrint(final MyState state)
+    {
+        final StringBuilder output = state.jsonBuilder;
+        output.setLength(0);
+
+        state.jsonPrinter.print(output, state.decodeBuffer, 0);
+
+        return output.length();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int testJsonPrintUtf8(final MyState state)
+    {
+        return state.jsonPrinter.print(state.decodeBuffer, 0, state.jsonBuffer, 0);
+    }
+
+    static final class CountingTokenListener extends AbstractTokenListener
+    {
+        long valueCount;
+
+        public void onEncoding(
+            final Token fieldToken,
+            final DirectBuffer buffer,
+            final int bufferIndex,
+            final Token typeToken,
+            final int actingVersion)
+        {
+            valueCount++;
+        }
+
+        public void onEnum(
+            final Token fieldToken,
+            final DirectBuffer buffer,
+            final int bufferIndex,
+            final List<Token> tokens,
+            final int fromIndex,
+            final int toIndex,
+            final int actingVersion)
+        {
+            valueCount++;
+        }
+
+        public void onBitSet(
+            final Token fieldToken,
+            final DirectBuffer buffer,
+            final int bufferIndex,
+            final List<Token> tokens,
+            final int fromIndex,
+            final int toIndex,
+            final int actingVersion)
+        {
+            valueCount++;
+        }
+
+        public void onVarData(
+            final Token fieldToken,
+            final DirectBuffer buffer,
+            final int bufferIndex,
+            final int length,
+            final Token typeToken)
+        {
+            valueCount++;
+        }
+    }
+
+    /*
+     * Run the benchmarks with the GC profiler to report allocation rates as well as timings.
+     */
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(OtfBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
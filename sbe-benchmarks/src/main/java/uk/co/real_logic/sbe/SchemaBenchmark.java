@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.IrDecoder;
+import uk.co.real_logic.sbe.ir.IrEncoder;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+import uk.co.real_logic.sbe.xml.StreamingXmlSchemaParser;
+import uk.co.real_logic.sbe.xml.XmlSchemaParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Benchmarks for loading schemas by parsing XML, with the DOM based {@link XmlSchemaParser} and the
+ * {@link StreamingXmlSchemaParser}, and by decoding serialised {@link Ir}.
+ */
+public class SchemaBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class MyState
+    {
+        @Param({
+            BenchmarkSchemas.CAR,
+            BenchmarkSchemas.FIX,
+            BenchmarkSchemas.FIX_BINARY,
+            BenchmarkSchemas.SYNTHETIC,
+            BenchmarkSchemas.SYNTHETIC_LARGE })
+        String schema;
+
+        byte[] xml;
+        ByteBuffer encodedIr;
+
+        @Setup
+        public void setup() throws Exception
+        {
+            xml = BenchmarkSchemas.xml(schema);
+
+            final Ir ir = BenchmarkSchemas.ir(xml);
+            encodedIr = ByteBuffer.allocateDirect(64 * 1024 * 1024);
+            try (IrEncoder irEncoder = new IrEncoder(encodedIr, ir))
+            {
+                encodedIr.limit(irEncoder.encode());
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public MessageSchema testXmlSchemaParse(final MyState state) throws Exception
+    {
+        return XmlSchemaParser.parse(new ByteArrayInputStream(state.xml), ParserOptions.DEFAULT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public MessageSchema testStreamingXmlSchemaParse(final MyState state) throws Exception
+    {
+        return StreamingXmlSchemaParser.parse(new ByteArrayInputStream(state.xml), ParserOptions.DEFAULT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Ir testIrDecode(final MyState state)
+    {
+        try (IrDecoder irDecoder = new IrDecoder(state.encodedIr.duplicate()))
+        {
+            return irDecoder.decode();
+        }
+    }
+
+    /*
+     * Run the benchmarks with the GC profiler to report allocation rates as well as timings.
+     */
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(SchemaBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe;
+
+/**
+ * Generates a large schema, and a JSON document for its first message, so tooling can be benchmarked on schemas of
+ * the size found in production rather than only the small samples.
+ * <p>
+ * Each message has fields cycling through primitive, char array, composite, enum, and set types followed by a
+ * repeating group and var data. Additional composite types, each referencing another type, can be generated to
+ * give a schema with thousands of types.
+ */
+public class SyntheticSchema
+{
+    public static final int MESSAGE_COUNT = 100;
+    public static final int FIELDS_PER_MESSAGE = 50;
+    public static final int GROUP_FIELDS = 8;
+    public static final int GROUP_ENTRIES = 10;
+    public static final int LARGE_MESSAGE_COUNT = 1000;
+    public static final int LARGE_TYPE_COUNT = 2000;
+
+    private static final String[] FIELD_TYPES =
+    {
+        "uint8", "int16", "uint32", "int64", "double", "Symbol", "Decimal", "Side", "Flags"
+    };
+
+    /**
+     * Generate the XML for a schema.
+     *
+     * @param messageCount      number of messages in the schema with template ids starting at 1.
+     * @param fieldsPerMessage  number of fields in the root block of each message.
+     * @return the XML for the schema.
+     */
+    public static String xml(final int messageCount, final int fieldsPerMessage)
+    {
+        return xml(messageCount, fieldsPerMessage, 0);
+    }
+
+    /**
+     * Generate the XML for a schema with additional composite types which are not used by the messages.
+     *
+     * @param messageCount      number of messages in the schema with template ids starting at 1.
+     * @param fieldsPerMessage  number of fields in the root block of each message.
+     * @param extraTypeCount    number of additional composite types, each with a ref to another type.
+     * @return the XML for the schema.
+     */
+    public static String xml(final int messageCount, final int fieldsPerMessage, final int extraTypeCount)
+    {
+        final StringBuilder sb = new StringBuilder(messageCount * fieldsPerMessage * 64);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+            .append("<sbe:messageSchema xmlns:sbe=\"http://fixprotocol.io/2016/sbe\"\n")
+            .append("                   package=\"uk.co.real_logic.sbe.benchmarks.synthetic\"\n")
+            .append("                   id=\"99\" version=\"0\" byteOrder=\"littleEndian\">\n")
+            .append("    <types>\n")
+            .append("        <composite name=\"messageHeader\">\n")
+            .append("            <type name=\"blockLength\" primitiveType=\"uint16\"/>\n")
+            .append("            <type name=\"templateId\" primitiveType=\"uint16\"/>\n")
+            .append("            <type name=\"schemaId\" primitiveType=\"uint16\"/>\n")
+            .append("            <type name=\"version\" primitiveType=\"uint16\"/>\n")
+            .append("        </composite>\n")
+            .append("        <composite name=\"groupSizeEncoding\">\n")
+            .append("            <type name=\"blockLength\" primitiveType=\"uint16\"/>\n")
+            .append("            <type name=\"numInGroup\" primitiveType=\"uint16\"/>\n")
+            .append("        </composite>\n")
+            .append("        <composite name=\"varStringEncoding\">\n")
+            .append("            <type name=\"length\" primitiveType=\"uint32\" maxValue=\"1073741824\"/>\n")
+            .append("            <type name=\"varData\" primitiveType=\"uint8\" length=\"0\"")
+            .append(" characterEncoding=\"UTF-8\"/>\n")
+            .append("        </composite>\n")
+            .append("        <type name=\"Symbol\" primitiveType=\"char\" length=\"8\"/>\n")
+            .append("        <composite name=\"Decimal\">\n")
+            .append("            <type name=\"mantissa\" primitiveType=\"int64\"/>\n")
+            .append("            <type name=\"exponent\" primitiveType=\"int8\"/>\n")
+            .append("        </composite>\n")
+            .append("        <enum name=\"Side\" encodingType=\"uint8\">\n")
+            .append("            <validValue name=\"BUY\">1</validValue>\n")
+            .append("            <validValue name=\"SELL\">2</validValue>\n")
+            .append("        </enum>\n")
+            .append("        <set name=\"Flags\" encodingType=\"uint16\">\n");
+
+        for (int i = 0; i < 8; i++)
+        {
+            sb.append("            <choice name=\"flag").append(i).append("\">").append(i).append("</choice>\n");
+        }
+
+        sb.append("        </set>\n");
+
+        for (int i = 0; i < extraTypeCount; i++)
+        {
+            sb.append("        <composite name=\"Composite").append(i).append("\">\n")
+                .append("            <ref name=\"price\" type=\"Decimal\"/>\n")
+                .append("            <type name=\"quantity\" primitiveType=\"uint32\"/>\n")
+                .append("        </composite>\n");
+        }
+
+        sb.append("    </types>\n");
+
+        for (int m = 1; m <= messageCount; m++)
+        {
+            sb.append("    <sbe:message name=\"Message").append(m).append("\" id=\"").append(m).append("\">\n");
+            for (int f = 0; f < fieldsPerMessage; f++)
+            {
+                appendField(sb, "        ", f, f + 1);
+            }
+
+            sb.append("        <group name=\"entries\" id=\"").append(fieldsPerMessage + 1)
+                .append("\" dimensionType=\"groupSizeEncoding\">\n");
+            for (int f = 0; f < GROUP_FIELDS; f++)
+            {
+                appendField(sb, "            ", f, fieldsPerMessage + f + 2);
+            }
+
+            sb.append("        </group>\n")
+                .append("        <data name=\"text\" id=\"").append(fieldsPerMessage + GROUP_FIELDS + 2)
+                .append("\" type=\"varStringEncoding\"/>\n")
+                .append("    </sbe:message>\n");
+        }
+
+        return sb.append("</sbe:messageSchema>\n").toString();
+    }
+
+    /**
+     * Generate a JSON document, in the form printed by {@link uk.co.real_logic.sbe.json.JsonPrinter}, for any
+     * message of a schema generated by {@link #xml(int, int)}.
+     *
+     * @param fieldsPerMessage number of fields in the root block of the message.
+     * @param groupEntries     number of entries in the repeating group.
+     * @return the JSON document for the message.
+     */
+    public static String json(final int fieldsPerMessage, final int groupEntries)
+    {
+        final StringBuilder sb = new StringBuilder("{\n");
+        appendValues(sb, "    ", fieldsPerMessage);
+
+        sb.append("    \"entries\": [");
+        for (int i = 0; i < groupEntries; i++)
+        {
+            sb.append(0 == i ? "\n    {\n" : ",\n    {\n");
+            appendValues(sb, "        ", GROUP_FIELDS);
+            sb.setLength(sb.length() - 2);
+            sb.append("\n    }");
+        }
+        sb.append("],\n");
+
+        return sb.append("    \"text\": \"Synthetic message text\"\n}").toString();
+    }
+
+    private static void appendField(final StringBuilder sb, final String indent, final int index, final int id)
+    {
+        sb.append(indent)
+            .append("<field name=\"field").append(index)
+            .append("\" id=\"").append(id)
+            .append("\" type=\"").append(FIELD_TYPES[index % FIELD_TYPES.length])
+            .append("\"/>\n");
+    }
+
+    private static void appendValues(final StringBuilder sb, final String indent, final int fieldCount)
+    {
+        for (int i = 0; i < fieldCount; i++)
+        {
+            sb.append(indent).append("\"field").append(i).append("\": ");
+            switch (FIELD_TYPES[i % FIELD_TYPES.length])
+            {
+                case "uint8":
+                    sb.append(i % 100);
+                    break;
+
+                case "int16":
+                    sb.append(-i);
+                    break;
+
+                case "uint32":
+                    sb.append(i * 1000);
+                    break;
+
+                case "int64":
+                    sb.append(i * 1_000_000L);
+                    break;
+
+                case "double":
+                    sb.append(i + 0.25);
+                    break;
+
+                case "Symbol":
+                    sb.append("\"SYM").append(i).append('"');
+                    break;
+
+                case "Decimal":
+                    sb.append("{ \"mantissa\": ").append(i * 100).append(", \"exponent\": -2 }");
+                    break;
+
+                case "Side":
+                    sb.append((i & 1) == 0 ? "\"BUY\"" : "\"SELL\"");
+                    break;
+
+                case "Flags":
+                    sb.append("{ \"flag0\": true, \"flag3\": true }");
+                    break;
+            }
+
+            sb.append(",\n");
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package uk.co.real_logic.sbe;
 
 import org.agrona.DirectBuffer;
+import org.agrona.LangUtil;
 import org.agrona.MutableDirectBuffer;
 import uk.co.real_logic.sbe.generation.CodeGenerator;
 import uk.co.real_logic.sbe.generation.TargetCodeGenerator;
@@ -23,9 +24,11 @@ import uk.co.real_logic.sbe.generation.TargetCodeGeneratorLoader;
 import uk.co.real_logic.sbe.ir.Ir;
 import uk.co.real_logic.sbe.ir.IrDecoder;
 import uk.co.real_logic.sbe.ir.IrEncoder;
+import uk.co.real_logic.sbe.xml.IrCache;
 import uk.co.real_logic.sbe.xml.IrGenerator;
 import uk.co.real_logic.sbe.xml.MessageSchema;
 import uk.co.real_logic.sbe.xml.ParserOptions;
+import uk.co.real_logic.sbe.xml.StreamingXmlSchemaParser;
 import uk.co.real_logic.sbe.xml.XmlSchemaParser;
 
 import java.io.BufferedInputStream;
@@ -34,6 +37,11 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 import org.xml.sax.InputSource;
 
 /**
@@ -57,8 +65,15 @@ import org.xml.sax.InputSource;
  * <li><b>sbe.generate.stubs</b>: Generate stubs or not. Defaults to true.</li>
  * <li><b>sbe.target.language</b>: Target language for code generation, defaults to Java.</li>
  * <li><b>sbe.generate.ir</b>: Generate IR or not. Defaults to false.</li>
+ * <li><b>sbe.generate.parallel</b>: Process input files, and Java or C++ messages, in parallel. Defaults to false.</li>
+ * <li>
+ * <b>sbe.generate.incremental</b>: Skip rewriting Java or C++ output files which would not change. Defaults to false.
+ * </li>
  * <li><b>sbe.output.dir</b>: Target directory for code generation, defaults to current directory.</li>
+ * <li><b>sbe.ir.cache.dir</b>: Directory in which to cache the IR generated from XML schemas. Defaults to none.</li>
  * <li><b>sbe.java.generate.interfaces</b>: Generate interface hierarchy or not. Defaults to false.</li>
+ * <li><b>sbe.java.generate.bulk.group.encoders</b>: Generate bulk group encode methods. Defaults to false.</li>
+ * <li><b>sbe.java.generate.dispatcher</b>: Generate a MessageDispatcher and MessageHandler. Defaults to false.</li>
  * <li><b>sbe.java.encoding.buffer.type</b>: Type of the Java interface for the encoding buffer to wrap.</li>
  * <li><b>sbe.java.decoding.buffer.type</b>: Type of the Java interface for the decoding buffer to wrap.</li>
  * <li><b>sbe.target.namespace</b>: Namespace for the generated code to override schema package.</li>
@@ -71,6 +86,7 @@ import org.xml.sax.InputSource;
  * <li><b>sbe.keyword.append.token</b>: Token to be appended to keywords.</li>
  * <li><b>sbe.decode.unknown.enum.values</b>: Support unknown decoded enum values.</li>
  * <li><b>sbe.xinclude.aware</b>: Is XInclude supported for the schema. Defaults to false.</li>
+ * <li><b>sbe.xml.streaming.parser</b>: Parse XML schemas in a single StAX pass without XPath. Defaults to false.</li>
  * </ul>
  */
 public class SbeTool
@@ -135,11 +151,38 @@ public class SbeTool
      */
     public static final String OUTPUT_DIR = "sbe.output.dir";
 
+    /**
+     * Boolean system property to parse XML schemas with the {@link StreamingXmlSchemaParser}, which builds the schema
+     * in a single StAX pass without XPath, rather than the {@link XmlSchemaParser}. Defaults to false.
+     */
+    public static final String XML_STREAMING_PARSER = "sbe.xml.streaming.parser";
+
+    /**
+     * Directory in which to cache the IR generated from XML schemas, keyed by a hash of the XML and parser options,
+     * so unchanged schemas are not parsed again. Defaults to no cache.
+     *
+     * @see uk.co.real_logic.sbe.xml.IrCache
+     */
+    public static final String IR_CACHE_DIR = "sbe.ir.cache.dir";
+
     /**
      * String system property of the namespace for generated code.
      */
     public static final String TARGET_NAMESPACE = "sbe.target.namespace";
 
+    /**
+     * Boolean system property to process input files in parallel, and the messages of each in parallel for the Java
+     * and C++ generators. Input files which generate into the same package are generated one after another as they
+     * share per-package output files. Defaults to false.
+     */
+    public static final String GENERATE_PARALLEL = "sbe.generate.parallel";
+
+    /**
+     * Boolean system property to skip rewriting Java and C++ output files which already hold the generated content, so
+     * downstream compilation is not invalidated for unchanged schemas. Defaults to false.
+     */
+    public static final String GENERATE_INCREMENTAL = "sbe.generate.incremental";
+
     /**
      * Boolean system property to toggle collapsing of nested namespaces in generated C++ stubs. Defaults to false.
      */
@@ -165,6 +208,18 @@ public class SbeTool
      */
     public static final String JAVA_GROUP_ORDER_ANNOTATION = "sbe.java.generate.group-order.annotation";
 
+    /**
+     * Boolean system property to turn on or off generation of bulk encode methods for repeating groups which write
+     * the remaining entries from arrays of field values or from pre-encoded blocks. Defaults to false.
+     */
+    public static final String JAVA_GENERATE_BULK_GROUP_ENCODERS = "sbe.java.generate.bulk.group.encoders";
+
+    /**
+     * Boolean system property to turn on or off generation of a MessageDispatcher which decodes the message header
+     * and calls back a MessageHandler with the decoder for the message. Defaults to false.
+     */
+    public static final String JAVA_GENERATE_MESSAGE_DISPATCHER = "sbe.java.generate.dispatcher";
+
     /**
      * Boolean system property to turn on or off generation of namespace directories during csharp code generation.
      * Defaults to true
@@ -203,48 +258,120 @@ public class SbeTool
 
         for (final String fileName : args)
         {
-            final Ir ir;
-            if (fileName.endsWith(".xml"))
-            {
-                final String xsdFilename = System.getProperty(SbeTool.VALIDATION_XSD);
-                if (xsdFilename != null)
-                {
-                    validateAgainstSchema(fileName, xsdFilename);
-                }
-
-                ir = new IrGenerator().generate(parseSchema(fileName), System.getProperty(TARGET_NAMESPACE));
-            }
-            else if (fileName.endsWith(".sbeir"))
-            {
-                ir = new IrDecoder(fileName).decode();
-            }
-            else
+            if (!fileName.endsWith(".xml") && !fileName.endsWith(".sbeir"))
             {
                 System.err.println("Input file format not supported: " + fileName);
                 System.exit(-1);
-                return;
             }
+        }
 
-            final String outputDirName = System.getProperty(OUTPUT_DIR, ".");
-            if (Boolean.parseBoolean(System.getProperty(GENERATE_STUBS, "true")))
+        if (Boolean.parseBoolean(System.getProperty(GENERATE_PARALLEL)))
+        {
+            processInParallel(args);
+        }
+        else
+        {
+            for (final String fileName : args)
             {
-                final String targetLanguage = System.getProperty(TARGET_LANGUAGE, "Java");
-
-                generate(ir, outputDirName, targetLanguage);
+                output(fileName, load(fileName));
             }
+        }
+    }
 
-            if (Boolean.parseBoolean(System.getProperty(GENERATE_IR, "false")))
+    /**
+     * Load the schemas in parallel then generate the output for the schemas of each package in parallel with other
+     * packages. The schemas of a package are generated one after another as they write the same per-package files,
+     * e.g. MetaAttribute and the message header codecs.
+     *
+     * @param fileNames of the schemas.
+     */
+    private static void processInParallel(final String[] fileNames)
+    {
+        final Ir[] irs = new Ir[fileNames.length];
+        IntStream.range(0, fileNames.length).parallel().forEach(
+            (i) ->
             {
-                final File inputFile = new File(fileName);
-                final String inputFilename = inputFile.getName();
-                final int nameEnd = inputFilename.lastIndexOf('.');
-                final String namePart = inputFilename.substring(0, nameEnd);
-                final File fullPath = new File(outputDirName, namePart + ".sbeir");
+                try
+                {
+                    irs[i] = load(fileNames[i]);
+                }
+                catch (final Exception ex)
+                {
+                    LangUtil.rethrowUnchecked(ex);
+                }
+            });
 
-                try (IrEncoder irEncoder = new IrEncoder(fullPath.getAbsolutePath(), ir))
+        final Map<String, List<Integer>> indexesByPackageMap = new LinkedHashMap<>();
+        for (int i = 0; i < irs.length; i++)
+        {
+            indexesByPackageMap.computeIfAbsent(irs[i].applicableNamespace(), (key) -> new ArrayList<>()).add(i);
+        }
+
+        indexesByPackageMap.values().parallelStream().forEach(
+            (indexes) ->
+            {
+                try
                 {
-                    irEncoder.encode();
+                    for (final int i : indexes)
+                    {
+                        output(fileNames[i], irs[i]);
+                    }
                 }
+                catch (final Exception ex)
+                {
+                    LangUtil.rethrowUnchecked(ex);
+                }
+            });
+    }
+
+    private static Ir load(final String fileName) throws Exception
+    {
+        final Ir ir;
+        final String irCacheDir = System.getProperty(IR_CACHE_DIR);
+        if (fileName.endsWith(".xml") && null != irCacheDir)
+        {
+            ir = new IrCache(new File(irCacheDir)).load(
+                fileName, parserOptions(), System.getProperty(TARGET_NAMESPACE));
+        }
+        else if (fileName.endsWith(".xml"))
+        {
+            final String xsdFilename = System.getProperty(SbeTool.VALIDATION_XSD);
+            if (xsdFilename != null)
+            {
+                validateAgainstSchema(fileName, xsdFilename);
+            }
+
+            ir = new IrGenerator().generate(parseSchema(fileName), System.getProperty(TARGET_NAMESPACE));
+        }
+        else
+        {
+            ir = new IrDecoder(fileName).decode();
+        }
+
+        return ir;
+    }
+
+    private static void output(final String fileName, final Ir ir) throws Exception
+    {
+        final String outputDirName = System.getProperty(OUTPUT_DIR, ".");
+        if (Boolean.parseBoolean(System.getProperty(GENERATE_STUBS, "true")))
+        {
+            final String targetLanguage = System.getProperty(TARGET_LANGUAGE, "Java");
+
+            generate(ir, outputDirName, targetLanguage);
+        }
+
+        if (Boolean.parseBoolean(System.getProperty(GENERATE_IR, "false")))
+        {
+            final File inputFile = new File(fileName);
+            final String inputFilename = inputFile.getName();
+            final int nameEnd = inputFilename.lastIndexOf('.');
+            final String namePart = inputFilename.substring(0, nameEnd);
+            final File fullPath = new File(outputDirName, namePart + ".sbeir");
+
+            try (IrEncoder irEncoder = new IrEncoder(fullPath.getAbsolutePath(), ir))
+            {
+                irEncoder.encode();
             }
         }
     }
@@ -259,23 +386,25 @@ public class SbeTool
     public static void validateAgainstSchema(final String sbeSchemaFilename, final String xsdFilename)
         throws Exception
     {
-        final ParserOptions.Builder optionsBuilder = ParserOptions.builder()
-            .xsdFilename(System.getProperty(VALIDATION_XSD))
-            .xIncludeAware(Boolean.parseBoolean(System.getProperty(XINCLUDE_AWARE)))
-            .stopOnError(Boolean.parseBoolean(System.getProperty(VALIDATION_STOP_ON_ERROR)))
-            .warningsFatal(Boolean.parseBoolean(System.getProperty(VALIDATION_WARNINGS_FATAL)))
-            .suppressOutput(Boolean.parseBoolean(System.getProperty(VALIDATION_SUPPRESS_OUTPUT)));
+        validateAgainstSchema(sbeSchemaFilename, xsdFilename, parserOptions());
+    }
 
+    /**
+     * Validate the SBE Schema against the XSD.
+     *
+     * @param sbeSchemaFilename to be validated.
+     * @param xsdFilename       XSD against which to validate.
+     * @param options           to be applied during validation.
+     * @throws Exception if an error occurs while validating.
+     */
+    public static void validateAgainstSchema(
+        final String sbeSchemaFilename, final String xsdFilename, final ParserOptions options)
+        throws Exception
+    {
         final Path path = Paths.get(sbeSchemaFilename);
         try (InputStream in = new BufferedInputStream(Files.newInputStream(path)))
         {
-            final InputSource inputSource = new InputSource(in);
-            if (path.toAbsolutePath().getParent() != null)
-            {
-                inputSource.setSystemId(path.toUri().toString());
-            }
-
-            XmlSchemaParser.validate(xsdFilename, inputSource, optionsBuilder.build());
+            XmlSchemaParser.validate(xsdFilename, inputSource(in, path), options);
         }
     }
 
@@ -289,23 +418,30 @@ public class SbeTool
     public static MessageSchema parseSchema(final String sbeSchemaFilename)
         throws Exception
     {
-        final ParserOptions.Builder optionsBuilder = ParserOptions.builder()
-            .xsdFilename(System.getProperty(VALIDATION_XSD))
-            .xIncludeAware(Boolean.parseBoolean(System.getProperty(XINCLUDE_AWARE)))
-            .stopOnError(Boolean.parseBoolean(System.getProperty(VALIDATION_STOP_ON_ERROR)))
-            .warningsFatal(Boolean.parseBoolean(System.getProperty(VALIDATION_WARNINGS_FATAL)))
-            .suppressOutput(Boolean.parseBoolean(System.getProperty(VALIDATION_SUPPRESS_OUTPUT)));
+        return parseSchema(sbeSchemaFilename, parserOptions());
+    }
 
+    /**
+     * Parse the message schema specification, with the parser selected by {@link #XML_STREAMING_PARSER}.
+     *
+     * @param sbeSchemaFilename file containing the SBE specification to be parsed.
+     * @param options           to be applied during parsing.
+     * @return the parsed {@link MessageSchema} for the specification found in the file.
+     * @throws Exception if an error occurs when parsing the specification.
+     */
+    public static MessageSchema parseSchema(final String sbeSchemaFilename, final ParserOptions options)
+        throws Exception
+    {
         final Path path = Paths.get(sbeSchemaFilename);
         try (InputStream in = new BufferedInputStream(Files.newInputStream(path)))
         {
-            final InputSource inputSource = new InputSource(in);
-            if (path.toAbsolutePath().getParent() != null)
+            final InputSource inputSource = inputSource(in, path);
+            if (Boolean.parseBoolean(System.getProperty(XML_STREAMING_PARSER)))
             {
-                inputSource.setSystemId(path.toUri().toString());
+                return StreamingXmlSchemaParser.parse(inputSource, options);
             }
 
-            return XmlSchemaParser.parse(inputSource, optionsBuilder.build());
+            return XmlSchemaParser.parse(inputSource, options);
         }
     }
 
@@ -325,4 +461,26 @@ public class SbeTool
 
         codeGenerator.generate();
     }
+
+    private static InputSource inputSource(final InputStream in, final Path path)
+    {
+        final InputSource inputSource = new InputSource(in);
+        if (path.toAbsolutePath().getParent() != null)
+        {
+            inputSource.setSystemId(path.toUri().toString());
+        }
+
+        return inputSource;
+    }
+
+    private static ParserOptions parserOptions()
+    {
+        return ParserOptions.builder()
+            .xsdFilename(System.getProperty(VALIDATION_XSD))
+            .xIncludeAware(Boolean.parseBoolean(System.getProperty(XINCLUDE_AWARE)))
+            .stopOnError(Boolean.parseBoolean(System.getProperty(VALIDATION_STOP_ON_ERROR)))
+            .warningsFatal(Boolean.parseBoolean(System.getProperty(VALIDATION_WARNINGS_FATAL)))
+            .suppressOutput(Boolean.parseBoolean(System.getProperty(VALIDATION_SUPPRESS_OUTPUT)))
+            .build();
+    }
 }
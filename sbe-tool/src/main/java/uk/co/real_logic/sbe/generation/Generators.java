@@ -15,14 +15,62 @@
  */
 package uk.co.real_logic.sbe.generation;
 
+import org.agrona.generation.ResourceConsumer;
+import uk.co.real_logic.sbe.ir.Ir;
 import uk.co.real_logic.sbe.ir.Signal;
 import uk.co.real_logic.sbe.ir.Token;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.function.BiConsumer;
 
 public class Generators
 {
+    /**
+     * For each message in an {@link Ir} pass the list of its {@link Token}s to a {@link ResourceConsumer}, optionally
+     * in parallel on the common {@link java.util.concurrent.ForkJoinPool} in which case the consumer, and the output
+     * it writes to, must be thread safe.
+     *
+     * @param ir         containing the messages.
+     * @param isParallel true if messages should be consumed in parallel.
+     * @param consumer   for the tokens of each message.
+     * @throws IOException if the consumer throws for any message.
+     */
+    public static void forEachMessage(
+        final Ir ir, final boolean isParallel, final ResourceConsumer<List<Token>> consumer) throws IOException
+    {
+        if (!isParallel)
+        {
+            for (final List<Token> tokens : ir.messages())
+            {
+                consumer.accept(tokens);
+            }
+
+            return;
+        }
+
+        try
+        {
+            ir.messages().parallelStream().forEach(
+                (tokens) ->
+                {
+                    try
+                    {
+                        consumer.accept(tokens);
+                    }
+                    catch (final IOException ex)
+                    {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+        }
+        catch (final UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+
     /**
      * For each field found in a list of field {@link Token}s take the field token and following type token to
      * a {@link BiConsumer}.
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.generation;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * {@link java.io.Writer} for generated source which buffers the content and on close only writes the target file
+ * when it does not already hold the same content, so unchanged output keeps its timestamp and does not invalidate
+ * downstream compilation. The character encoding is UTF-8.
+ */
+public class IncrementalFileWriter extends StringWriter
+{
+    private final Path path;
+    private boolean isClosed;
+
+    /**
+     * Create a writer for the generated source of a file.
+     *
+     * @param path of the file to be written.
+     */
+    public IncrementalFileWriter(final Path path)
+    {
+        this.path = path;
+    }
+
+    /**
+     * Write the buffered content to the file if it differs from the existing content of the file.
+     *
+     * @throws IOException if the file cannot be read or written.
+     */
+    public void close() throws IOException
+    {
+        if (isClosed)
+        {
+            return;
+        }
+
+        isClosed = true;
+
+        final byte[] content = toString().getBytes(StandardCharsets.UTF_8);
+        if (Files.exists(path) &&
+            Files.size(path) == content.length &&
+            Arrays.equals(Files.readAllBytes(path), content))
+        {
+            return;
+        }
+
+        Files.write(path, content);
+    }
+}
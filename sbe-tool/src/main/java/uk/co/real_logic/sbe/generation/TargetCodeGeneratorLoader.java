@@ -15,7 +15,6 @@
  */
 package uk.co.real_logic.sbe.generation;
 
-import org.agrona.generation.PackageOutputManager;
 import uk.co.real_logic.sbe.generation.c.CGenerator;
 import uk.co.real_logic.sbe.generation.c.COutputManager;
 import uk.co.real_logic.sbe.generation.cpp.CppGenerator;
@@ -23,6 +22,7 @@ import uk.co.real_logic.sbe.generation.cpp.NamespaceOutputManager;
 import uk.co.real_logic.sbe.generation.golang.GolangGenerator;
 import uk.co.real_logic.sbe.generation.golang.GolangOutputManager;
 import uk.co.real_logic.sbe.generation.java.JavaGenerator;
+import uk.co.real_logic.sbe.generation.java.JavaOutputManager;
 import uk.co.real_logic.sbe.ir.Ir;
 
 import static uk.co.real_logic.sbe.SbeTool.*;
@@ -40,7 +40,10 @@ public enum TargetCodeGeneratorLoader implements TargetCodeGenerator
                 Boolean.getBoolean(JAVA_GROUP_ORDER_ANNOTATION),
                 Boolean.getBoolean(JAVA_GENERATE_INTERFACES),
                 Boolean.getBoolean(DECODE_UNKNOWN_ENUM_VALUES),
-                new PackageOutputManager(outputDir, ir.applicableNamespace()));
+                Boolean.getBoolean(JAVA_GENERATE_BULK_GROUP_ENCODERS),
+                Boolean.getBoolean(GENERATE_PARALLEL),
+                Boolean.getBoolean(JAVA_GENERATE_MESSAGE_DISPATCHER),
+                new JavaOutputManager(outputDir, ir.applicableNamespace(), Boolean.getBoolean(GENERATE_INCREMENTAL)));
         }
     },
 
@@ -56,7 +59,11 @@ public enum TargetCodeGeneratorLoader implements TargetCodeGenerator
     {
         public CodeGenerator newInstance(final Ir ir, final String outputDir)
         {
-            return new CppGenerator(ir, new NamespaceOutputManager(outputDir, ir.applicableNamespace()));
+            return new CppGenerator(
+                ir,
+                Boolean.getBoolean(GENERATE_PARALLEL),
+                new NamespaceOutputManager(
+                    outputDir, ir.applicableNamespace(), Boolean.getBoolean(GENERATE_INCREMENTAL)));
         }
     },
 
@@ -47,9 +47,13 @@ public class COutputManager implements OutputManager
         final String packageDirName = dirName + namespaceName.replace('.', '_');
 
         outputDir = new File(packageDirName);
-        if (!outputDir.exists() && !outputDir.mkdirs())
+        try
         {
-            throw new IllegalStateException("Unable to create directory: " + packageDirName);
+            Files.createDirectories(outputDir.toPath());
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException("Unable to create directory: " + packageDirName, ex);
         }
     }
 
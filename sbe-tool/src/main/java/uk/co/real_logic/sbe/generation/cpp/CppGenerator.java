@@ -43,14 +43,21 @@ public class CppGenerator implements CodeGenerator
 
     private final Ir ir;
     private final OutputManager outputManager;
+    private final boolean shouldGenerateInParallel;
 
     public CppGenerator(final Ir ir, final OutputManager outputManager)
+    {
+        this(ir, false, outputManager);
+    }
+
+    public CppGenerator(final Ir ir, final boolean shouldGenerateInParallel, final OutputManager outputManager)
     {
         Verify.notNull(ir, "ir");
         Verify.notNull(outputManager, "outputManager");
 
         this.ir = ir;
         this.outputManager = outputManager;
+        this.shouldGenerateInParallel = shouldGenerateInParallel;
     }
 
     public void generateMessageHeaderStub() throws IOException
@@ -109,39 +116,42 @@ public class CppGenerator implements CodeGenerator
         generateMessageHeaderStub();
         final List<String> typesToInclude = generateTypeStubs();
 
-        for (final List<Token> tokens : ir.messages())
-        {
-            final Token msgToken = tokens.get(0);
-            final String className = formatClassName(msgToken.name());
-
-            try (Writer out = outputManager.createOutput(className))
+        Generators.forEachMessage(
+            ir,
+            shouldGenerateInParallel,
+            (tokens) ->
             {
-                out.append(generateFileHeader(ir.namespaces(), className, typesToInclude));
-                out.append(generateClassDeclaration(className));
-                out.append(generateMessageFlyweightCode(className, msgToken));
-
-                final List<Token> messageBody = tokens.subList(1, tokens.size() - 1);
-                int i = 0;
-
-                final List<Token> fields = new ArrayList<>();
-                i = collectFields(messageBody, i, fields);
-
-                final List<Token> groups = new ArrayList<>();
-                i = collectGroups(messageBody, i, groups);
-
-                final List<Token> varData = new ArrayList<>();
-                collectVarData(messageBody, i, varData);
-
-                final StringBuilder sb = new StringBuilder();
-                generateFields(sb, className, fields, BASE_INDENT, false);
-                generateGroups(sb, groups, BASE_INDENT);
-                generateVarData(sb, className, varData, BASE_INDENT);
-                generateDisplay(sb, msgToken.name(), fields, groups, varData, BASE_INDENT + INDENT);
-                sb.append("};\n");
-                sb.append(CppUtil.closingBraces(ir.namespaces().length)).append("#endif\n");
-                out.append(sb);
-            }
-        }
+                final Token msgToken = tokens.get(0);
+                final String className = formatClassName(msgToken.name());
+
+                try (Writer out = outputManager.createOutput(className))
+                {
+                    out.append(generateFileHeader(ir.namespaces(), className, typesToInclude));
+                    out.append(generateClassDeclaration(className));
+                    out.append(generateMessageFlyweightCode(className, msgToken));
+
+                    final List<Token> messageBody = tokens.subList(1, tokens.size() - 1);
+                    int i = 0;
+
+                    final List<Token> fields = new ArrayList<>();
+                    i = collectFields(messageBody, i, fields);
+
+                    final List<Token> groups = new ArrayList<>();
+                    i = collectGroups(messageBody, i, groups);
+
+                    final List<Token> varData = new ArrayList<>();
+                    collectVarData(messageBody, i, varData);
+
+                    final StringBuilder sb = new StringBuilder();
+                    generateFields(sb, className, fields, BASE_INDENT, false);
+                    generateGroups(sb, groups, BASE_INDENT);
+                    generateVarData(sb, className, varData, BASE_INDENT);
+                    generateDisplay(sb, msgToken.name(), fields, groups, varData, BASE_INDENT + INDENT);
+                    sb.append("};\n");
+                    sb.append(CppUtil.closingBraces(ir.namespaces().length)).append("#endif\n");
+                    out.append(sb);
+                }
+            });
     }
 
     private void generateGroups(final StringBuilder sb, final List<Token> tokens, final String indent)
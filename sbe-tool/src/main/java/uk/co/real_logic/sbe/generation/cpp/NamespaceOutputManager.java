@@ -17,6 +17,7 @@ package uk.co.real_logic.sbe.generation.cpp;
 
 import org.agrona.generation.OutputManager;
 import org.agrona.Verify;
+import uk.co.real_logic.sbe.generation.IncrementalFileWriter;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -31,6 +32,7 @@ import static java.io.File.separatorChar;
 public class NamespaceOutputManager implements OutputManager
 {
     private final File outputDir;
+    private final boolean isIncremental;
 
     /**
      * Create a new {@link OutputManager} for generating C++98 source files into a given package.
@@ -39,6 +41,18 @@ public class NamespaceOutputManager implements OutputManager
      * @param namespaceName for the generated source code relative to the baseDirName.
      */
     public NamespaceOutputManager(final String baseDirName, final String namespaceName)
+    {
+        this(baseDirName, namespaceName, false);
+    }
+
+    /**
+     * Create a new {@link OutputManager} for generating C++98 source files into a given package.
+     *
+     * @param baseDirName   for the generated source code.
+     * @param namespaceName for the generated source code relative to the baseDirName.
+     * @param isIncremental true if files which would not change should not be rewritten.
+     */
+    public NamespaceOutputManager(final String baseDirName, final String namespaceName, final boolean isIncremental)
     {
         Verify.notNull(baseDirName, "baseDirName");
         Verify.notNull(namespaceName, "applicableNamespace");
@@ -47,10 +61,16 @@ public class NamespaceOutputManager implements OutputManager
         final String packageDirName = dirName + namespaceName.replace('.', '_');
 
         outputDir = new File(packageDirName);
-        if (!outputDir.exists() && !outputDir.mkdirs())
+        try
+        {
+            Files.createDirectories(outputDir.toPath());
+        }
+        catch (final IOException ex)
         {
-            throw new IllegalStateException("Unable to create directory: " + packageDirName);
+            throw new IllegalStateException("Unable to create directory: " + packageDirName, ex);
         }
+
+        this.isIncremental = isIncremental;
     }
 
     /**
@@ -66,6 +86,11 @@ public class NamespaceOutputManager implements OutputManager
     public Writer createOutput(final String name) throws IOException
     {
         final File targetFile = new File(outputDir, name + ".h");
+        if (isIncremental)
+        {
+            return new IncrementalFileWriter(targetFile.toPath());
+        }
+
         return Files.newBufferedWriter(targetFile.toPath(), StandardCharsets.UTF_8);
     }
 }
@@ -54,9 +54,13 @@ public class CSharpNamespaceOutputManager implements OutputManager
         final String packageDirName = dirName + packageComponent;
 
         outputDir = new File(packageDirName);
-        if (!outputDir.exists() && !outputDir.mkdirs())
+        try
         {
-            throw new IllegalStateException("Unable to create directory: " + packageDirName);
+            Files.createDirectories(outputDir.toPath());
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException("Unable to create directory: " + packageDirName, ex);
         }
     }
 
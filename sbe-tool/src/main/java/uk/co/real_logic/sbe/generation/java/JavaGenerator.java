@@ -27,6 +27,7 @@ import uk.co.real_logic.sbe.ir.*;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Formatter;
 import java.util.List;
 import java.util.function.Function;
@@ -47,7 +48,11 @@ public class JavaGenerator implements CodeGenerator
     }
 
     private static final String META_ATTRIBUTE_ENUM = "MetaAttribute";
+    private static final String ASCII_SEQUENCE_VIEW = "org.agrona.AsciiSequenceView";
+    private static final String UTF8_SEQUENCE_VIEW = "Utf8SequenceView";
     private static final String PACKAGE_INFO = "package-info";
+    private static final String MESSAGE_HANDLER = "MessageHandler";
+    private static final String MESSAGE_DISPATCHER = "MessageDispatcher";
     private static final String BASE_INDENT = "";
     private static final String INDENT = "    ";
     private static final String FLYWEIGHT = "Flyweight";
@@ -65,6 +70,9 @@ public class JavaGenerator implements CodeGenerator
     private final boolean shouldGenerateGroupOrderAnnotation;
     private final boolean shouldGenerateInterfaces;
     private final boolean shouldDecodeUnknownEnumValues;
+    private final boolean shouldGenerateBulkGroupEncoders;
+    private final boolean shouldGenerateInParallel;
+    private final boolean shouldGenerateMessageDispatcher;
 
     public JavaGenerator(
         final Ir ir,
@@ -74,6 +82,54 @@ public class JavaGenerator implements CodeGenerator
         final boolean shouldGenerateInterfaces,
         final boolean shouldDecodeUnknownEnumValues,
         final OutputManager outputManager)
+    {
+        this(
+            ir,
+            mutableBuffer,
+            readOnlyBuffer,
+            shouldGenerateGroupOrderAnnotation,
+            shouldGenerateInterfaces,
+            shouldDecodeUnknownEnumValues,
+            false,
+            false,
+            outputManager);
+    }
+
+    public JavaGenerator(
+        final Ir ir,
+        final String mutableBuffer,
+        final String readOnlyBuffer,
+        final boolean shouldGenerateGroupOrderAnnotation,
+        final boolean shouldGenerateInterfaces,
+        final boolean shouldDecodeUnknownEnumValues,
+        final boolean shouldGenerateBulkGroupEncoders,
+        final boolean shouldGenerateInParallel,
+        final OutputManager outputManager)
+    {
+        this(
+            ir,
+            mutableBuffer,
+            readOnlyBuffer,
+            shouldGenerateGroupOrderAnnotation,
+            shouldGenerateInterfaces,
+            shouldDecodeUnknownEnumValues,
+            shouldGenerateBulkGroupEncoders,
+            shouldGenerateInParallel,
+            false,
+            outputManager);
+    }
+
+    public JavaGenerator(
+        final Ir ir,
+        final String mutableBuffer,
+        final String readOnlyBuffer,
+        final boolean shouldGenerateGroupOrderAnnotation,
+        final boolean shouldGenerateInterfaces,
+        final boolean shouldDecodeUnknownEnumValues,
+        final boolean shouldGenerateBulkGroupEncoders,
+        final boolean shouldGenerateInParallel,
+        final boolean shouldGenerateMessageDispatcher,
+        final OutputManager outputManager)
     {
         Verify.notNull(ir, "ir");
         Verify.notNull(outputManager, "outputManager");
@@ -90,6 +146,9 @@ public class JavaGenerator implements CodeGenerator
         this.shouldGenerateGroupOrderAnnotation = shouldGenerateGroupOrderAnnotation;
         this.shouldGenerateInterfaces = shouldGenerateInterfaces;
         this.shouldDecodeUnknownEnumValues = shouldDecodeUnknownEnumValues;
+        this.shouldGenerateBulkGroupEncoders = shouldGenerateBulkGroupEncoders;
+        this.shouldGenerateInParallel = shouldGenerateInParallel;
+        this.shouldGenerateMessageDispatcher = shouldGenerateMessageDispatcher;
     }
 
     private static String validateBufferImplementation(
@@ -146,6 +205,11 @@ public class JavaGenerator implements CodeGenerator
     {
         generateMetaAttributeEnum();
 
+        if (hasUtf8Encoding())
+        {
+            generateUtf8SequenceView();
+        }
+
         for (final List<Token> tokens : ir.types())
         {
             switch (tokens.get(0).signal())
@@ -171,23 +235,221 @@ public class JavaGenerator implements CodeGenerator
         generateTypeStubs();
         generateMessageHeaderStub();
 
+        Generators.forEachMessage(
+            ir,
+            shouldGenerateInParallel,
+            (tokens) ->
+            {
+                final Token msgToken = tokens.get(0);
+                final List<Token> messageBody = getMessageBody(tokens);
+
+                int i = 0;
+                final List<Token> fields = new ArrayList<>();
+                i = collectFields(messageBody, i, fields);
+
+                final List<Token> groups = new ArrayList<>();
+                i = collectGroups(messageBody, i, groups);
+
+                final List<Token> varData = new ArrayList<>();
+                collectVarData(messageBody, i, varData);
+
+                generateDecoder(fields, groups, varData, msgToken);
+                generateEncoder(fields, groups, varData, msgToken);
+            });
+
+        if (shouldGenerateMessageDispatcher)
+        {
+            generateMessageDispatcher();
+        }
+    }
+
+    /**
+     * Generate a handler interface with a callback for each message and a dispatcher which decodes the message
+     * header and calls back the handler with a reused decoder for the message.
+     *
+     * @throws IOException if an error is encountered when writing the output.
+     */
+    public void generateMessageDispatcher() throws IOException
+    {
+        final List<Token> msgTokens = new ArrayList<>();
         for (final List<Token> tokens : ir.messages())
         {
-            final Token msgToken = tokens.get(0);
-            final List<Token> messageBody = getMessageBody(tokens);
+            msgTokens.add(tokens.get(0));
+        }
 
-            int i = 0;
-            final List<Token> fields = new ArrayList<>();
-            i = collectFields(messageBody, i, fields);
+        if (msgTokens.isEmpty())
+        {
+            return;
+        }
 
-            final List<Token> groups = new ArrayList<>();
-            i = collectGroups(messageBody, i, groups);
+        msgTokens.sort(Comparator.comparingInt(Token::id));
+        final HeaderStructure headerStructure = ir.headerStructure();
+        final String headerDecoderName = formatClassName(decoderName(headerStructure.tokens().get(0).name()));
 
-            final List<Token> varData = new ArrayList<>();
-            collectVarData(messageBody, i, varData);
+        generateMessageHandler(msgTokens, headerDecoderName);
+
+        try (Writer out = outputManager.createOutput(MESSAGE_DISPATCHER))
+        {
+            out.append("/* Generated SBE (Simple Binary Encoding) message codec */\n")
+                .append("package ").append(ir.applicableNamespace()).append(";\n\n")
+                .append("import ").append(fqReadOnlyBuffer).append(";\n\n")
+                .append("/**\n")
+                .append(" * Dispatches messages to a {@link ").append(MESSAGE_HANDLER)
+                .append("} by template id with a decoder for each message\n")
+                .append(" * which is reused so dispatching does not allocate. Not thread safe.\n")
+                .append(" */\n")
+                .append("@SuppressWarnings(\"all\")\n")
+                .append("public final class ").append(MESSAGE_DISPATCHER).append("\n")
+                .append("{\n")
+                .append("    public static final int SCHEMA_ID = ").append(String.valueOf(ir.id())).append(";\n")
+                .append("    public static final int SCHEMA_VERSION = ").append(String.valueOf(ir.version()))
+                .append(";\n\n")
+                .append("    private final ").append(headerDecoderName).append(" header = new ")
+                .append(headerDecoderName).append("();\n");
+
+            for (final Token msgToken : msgTokens)
+            {
+                final String decoderName = formatClassName(decoderName(msgToken.name()));
+                out.append("    private final ").append(decoderName).append(" ")
+                    .append(dispatcherFieldName(msgToken)).append(" = new ").append(decoderName).append("();\n");
+            }
 
-            generateDecoder(fields, groups, varData, msgToken);
-            generateEncoder(fields, groups, varData, msgToken);
+            out.append("    private final ").append(MESSAGE_HANDLER).append(" handler;\n")
+                .append("    private final int maxVersion;\n\n")
+                .append("    /**\n")
+                .append("     * Construct a dispatcher for messages of versions up to the version of the generated ")
+                .append("codecs.\n")
+                .append("     *\n")
+                .append("     * @param handler to call back with the decoded messages.\n")
+                .append("     */\n")
+                .append("    public ").append(MESSAGE_DISPATCHER).append("(final ").append(MESSAGE_HANDLER)
+                .append(" handler)\n")
+                .append("    {\n")
+                .append("        this(handler, SCHEMA_VERSION);\n")
+                .append("    }\n\n")
+                .append("    /**\n")
+                .append("     * Construct a dispatcher for messages of versions up to a maximum, which may be later ")
+                .append("than the\n")
+                .append("     * version of the generated codecs as decoders skip fields added by later versions.\n")
+                .append("     *\n")
+                .append("     * @param handler    to call back with the decoded messages.\n")
+                .append("     * @param maxVersion of the messages to dispatch.\n")
+                .append("     */\n")
+                .append("    public ").append(MESSAGE_DISPATCHER).append("(final ").append(MESSAGE_HANDLER)
+                .append(" handler, final int maxVersion)\n")
+                .append("    {\n")
+                .append("        this.handler = handler;\n")
+                .append("        this.maxVersion = maxVersion;\n")
+                .append("    }\n\n")
+                .append("    /**\n")
+                .append("     * Decode the message header at an offset and dispatch the message which follows it to ")
+                .append("the handler.\n")
+                .append("     * Messages of another schema or a later version than supported, or with an unknown ")
+                .append("template id,\n")
+                .append("     * are passed to {@link ").append(MESSAGE_HANDLER).append("#onUnknownMessage(")
+                .append(headerDecoderName).append(")}.\n")
+                .append("     *\n")
+                .append("     * @param buffer containing the message header and message.\n")
+                .append("     * @param offset at which the message header begins.\n")
+                .append("     * @return true if the message was dispatched to the callback for its template id.\n")
+                .append("     */\n")
+                .append("    public boolean dispatch(final ").append(readOnlyBuffer)
+                .append(" buffer, final int offset)\n")
+                .append("    {\n")
+                .append("        header.wrap(buffer, offset);\n\n")
+                .append("        final int version = ")
+                .append(headerIntValue(HeaderStructure.SCHEMA_VERSION, headerStructure.schemaVersionType()))
+                .append(";\n")
+                .append("        if (SCHEMA_ID != header.").append(formatPropertyName(HeaderStructure.SCHEMA_ID))
+                .append("() || version > maxVersion)\n")
+                .append("        {\n")
+                .append("            handler.onUnknownMessage(header);\n")
+                .append("            return false;\n")
+                .append("        }\n\n")
+                .append("        final int messageOffset = offset + header.encodedLength();\n")
+                .append("        final int blockLength = ")
+                .append(headerIntValue(HeaderStructure.BLOCK_LENGTH, headerStructure.blockLengthType()))
+                .append(";\n\n")
+                .append("        switch (")
+                .append(headerIntValue(HeaderStructure.TEMPLATE_ID, headerStructure.templateIdType()))
+                .append(")\n")
+                .append("        {\n");
+
+            final String templateIdCast = intCast(headerStructure.templateIdType());
+            for (final Token msgToken : msgTokens)
+            {
+                final String decoderName = formatClassName(decoderName(msgToken.name()));
+                out.append("            case ").append(templateIdCast).append(decoderName).append(".TEMPLATE_ID:\n")
+                    .append("                handler.on").append(formatClassName(msgToken.name())).append("(")
+                    .append(dispatcherFieldName(msgToken))
+                    .append(".wrap(buffer, messageOffset, blockLength, version));\n")
+                    .append("                return true;\n\n");
+            }
+
+            out.append("            default:\n")
+                .append("                handler.onUnknownMessage(header);\n")
+                .append("                return false;\n")
+                .append("        }\n")
+                .append("    }\n")
+                .append("}\n");
+        }
+    }
+
+    private String dispatcherFieldName(final Token msgToken)
+    {
+        return formatPropertyName(decoderName(msgToken.name()));
+    }
+
+    private static String headerIntValue(final String name, final PrimitiveType type)
+    {
+        return intCast(type) + "header." + formatPropertyName(name) + "()";
+    }
+
+    private static String intCast(final PrimitiveType type)
+    {
+        return "long".equals(javaTypeName(type)) ? "(int)" : "";
+    }
+
+    private void generateMessageHandler(final List<Token> msgTokens, final String headerDecoderName)
+        throws IOException
+    {
+        try (Writer out = outputManager.createOutput(MESSAGE_HANDLER))
+        {
+            out.append("/* Generated SBE (Simple Binary Encoding) message codec */\n")
+                .append("package ").append(ir.applicableNamespace()).append(";\n\n")
+                .append("/**\n")
+                .append(" * Callbacks for the messages dispatched by a {@link ").append(MESSAGE_DISPATCHER)
+                .append("}. Each callback does nothing by default.\n")
+                .append(" */\n")
+                .append("@SuppressWarnings(\"all\")\n")
+                .append("public interface ").append(MESSAGE_HANDLER).append("\n")
+                .append("{\n");
+
+            for (final Token msgToken : msgTokens)
+            {
+                final String decoderName = formatClassName(decoderName(msgToken.name()));
+                out.append("    /**\n")
+                    .append("     * Called for a ").append(msgToken.name()).append(" message.\n")
+                    .append("     *\n")
+                    .append("     * @param decoder wrapping the message, which is reused for each message.\n")
+                    .append("     */\n")
+                    .append("    default void on").append(formatClassName(msgToken.name())).append("(final ")
+                    .append(decoderName).append(" decoder)\n")
+                    .append("    {\n")
+                    .append("    }\n\n");
+            }
+
+            out.append("    /**\n")
+                .append("     * Called for a message of another schema, an unsupported version, or an unknown ")
+                .append("template id.\n")
+                .append("     *\n")
+                .append("     * @param headerDecoder wrapping the message header.\n")
+                .append("     */\n")
+                .append("    default void onUnknownMessage(final ").append(headerDecoderName)
+                .append(" headerDecoder)\n")
+                .append("    {\n")
+                .append("    }\n")
+                .append("}\n");
         }
     }
 
@@ -234,6 +496,7 @@ public class JavaGenerator implements CodeGenerator
             out.append(generateDecoderFlyweightCode(className, msgToken));
 
             final StringBuilder sb = new StringBuilder();
+            generateDecodedLength(sb, groups, varData);
             generateDecoderFields(sb, fields, BASE_INDENT);
             generateDecoderGroups(sb, className, groups, BASE_INDENT, false);
             generateDecoderVarData(sb, varData, BASE_INDENT);
@@ -245,6 +508,126 @@ public class JavaGenerator implements CodeGenerator
         }
     }
 
+    private void generateDecodedLength(final StringBuilder sb, final List<Token> groups, final List<Token> varData)
+    {
+        sb.append("\n")
+            .append("    public static int sbeDecodedLength(\n")
+            .append("        final ").append(readOnlyBuffer).append(" buffer,\n")
+            .append("        final int offset,\n")
+            .append("        final int actingBlockLength,\n")
+            .append("        final int actingVersion)\n")
+            .append("    {\n")
+            .append("        int limit = offset + actingBlockLength;\n");
+
+        generateDecodedLengthSkips(sb, groups, varData, 0, INDENT + INDENT);
+
+        sb.append("\n")
+            .append("        return limit - offset;\n")
+            .append("    }\n");
+    }
+
+    private void generateDecodedLengthSkips(
+        final StringBuilder sb,
+        final List<Token> groups,
+        final List<Token> varData,
+        final int depth,
+        final String indent)
+    {
+        final String depthSuffix = 0 == depth ? "" : Integer.toString(depth);
+        for (int i = 0, size = groups.size(); i < size; i++)
+        {
+            final Token groupToken = groups.get(i);
+            final int groupIndex = i;
+            final String groupName = Generators.toLowerFirstChar(groupToken.name());
+            final String blockLengthVar = groupName + "BlockLength" + depthSuffix;
+            final String countVar = groupName + "Count" + depthSuffix;
+            final String indexVar = groupName + "Index" + depthSuffix;
+
+            ++i;
+            final int dimensionHeaderLength = groups.get(i).encodedLength();
+            i += groups.get(i).componentTokenCount();
+
+            final List<Token> fields = new ArrayList<>();
+            i = collectFields(groups, i, fields);
+
+            final List<Token> subGroups = new ArrayList<>();
+            i = collectGroups(groups, i, subGroups);
+
+            final List<Token> subVarData = new ArrayList<>();
+            i = collectVarData(groups, i, subVarData);
+
+            final Token blockLengthToken = Generators.findFirst("blockLength", groups, groupIndex);
+            final Token numInGroupToken = Generators.findFirst("numInGroup", groups, groupIndex);
+            final String blockLengthGet = generateGet(
+                blockLengthToken.encoding().primitiveType(),
+                "limit + " + blockLengthToken.offset(),
+                byteOrderString(blockLengthToken.encoding()));
+            final String numInGroupGet = generateGet(
+                numInGroupToken.encoding().primitiveType(),
+                "limit + " + numInGroupToken.offset(),
+                byteOrderString(numInGroupToken.encoding()));
+
+            final String groupIndent = generateDecodedLengthVersionCondition(sb, groupToken.version(), indent);
+            sb.append(groupIndent).append("final int ").append(blockLengthVar).append(" = (int)")
+                .append(blockLengthGet).append(";\n")
+                .append(groupIndent).append("final int ").append(countVar).append(" = (int)")
+                .append(numInGroupGet).append(";\n")
+                .append(groupIndent).append("limit += ").append(dimensionHeaderLength).append(";\n");
+
+            if (subGroups.isEmpty() && subVarData.isEmpty())
+            {
+                sb.append(groupIndent).append("limit += ").append(blockLengthVar).append(" * ")
+                    .append(countVar).append(";\n");
+            }
+            else
+            {
+                sb.append(groupIndent).append("for (int ").append(indexVar).append(" = 0; ")
+                    .append(indexVar).append(" < ").append(countVar).append("; ")
+                    .append(indexVar).append("++)\n")
+                    .append(groupIndent).append("{\n")
+                    .append(groupIndent).append(INDENT).append("limit += ").append(blockLengthVar).append(";\n");
+                generateDecodedLengthSkips(sb, subGroups, subVarData, depth + 1, groupIndent + INDENT);
+                sb.append(groupIndent).append("}\n");
+            }
+
+            if (!groupIndent.equals(indent))
+            {
+                sb.append(indent).append("}\n");
+            }
+        }
+
+        for (int i = 0, size = varData.size(); i < size; i += varData.get(i).componentTokenCount())
+        {
+            final Token varDataToken = varData.get(i);
+            final Token lengthToken = Generators.findFirst("length", varData, i);
+            final String lengthGet = generateGet(
+                lengthToken.encoding().primitiveType(), "limit", byteOrderString(lengthToken.encoding()));
+
+            final String varDataIndent = generateDecodedLengthVersionCondition(sb, varDataToken.version(), indent);
+            sb.append(varDataIndent).append("limit += ").append(lengthToken.encodedLength())
+                .append(" + (int)").append(lengthGet).append(";\n");
+
+            if (!varDataIndent.equals(indent))
+            {
+                sb.append(indent).append("}\n");
+            }
+        }
+    }
+
+    private static String generateDecodedLengthVersionCondition(
+        final StringBuilder sb, final int sinceVersion, final String indent)
+    {
+        if (0 == sinceVersion)
+        {
+            return indent;
+        }
+
+        sb.append(indent).append("if (actingVersion >= ").append(sinceVersion).append(")\n")
+            .append(indent).append("{\n");
+
+        return indent + INDENT;
+    }
+
     private void generateDecoderGroups(
         final StringBuilder sb,
         final String outerClassName,
@@ -326,6 +709,11 @@ public class JavaGenerator implements CodeGenerator
             generateAnnotations(indent + INDENT, groupClassName, tokens, sb, groupIndex + 1, this::encoderName);
             generateGroupEncoderClassHeader(sb, groupName, outerClassName, tokens, groups, groupIndex, indent + INDENT);
 
+            if (shouldGenerateBulkGroupEncoders && groups.isEmpty() && varData.isEmpty())
+            {
+                generateGroupEncoderBulkMethods(sb, groupClassName, groupToken, fields, indent + INDENT);
+            }
+
             generateEncoderFields(sb, groupClassName, fields, indent + INDENT);
             generateEncoderGroups(sb, outerClassName, groups, indent + INDENT, true);
             generateEncoderVarData(sb, groupClassName, varData, indent + INDENT);
@@ -518,6 +906,113 @@ public class JavaGenerator implements CodeGenerator
             .append(ind).append("    }\n");
     }
 
+    private void generateGroupEncoderBulkMethods(
+        final StringBuilder sb,
+        final String groupClassName,
+        final Token groupToken,
+        final List<Token> fields,
+        final String ind)
+    {
+        final int blockLength = groupToken.encodedLength();
+
+        new Formatter(sb).format("\n" +
+            ind + "    public %1$s encodeBlocksFrom(final org.agrona.DirectBuffer src, final int srcOffset)\n" +
+            ind + "    {\n" +
+            ind + "        final int remaining = count - (index + 1);\n" +
+            ind + "        final int length = remaining * %2$d;\n" +
+            ind + "        final int limit = parentMessage.limit();\n" +
+            ind + "        buffer.putBytes(limit, src, srcOffset, length);\n" +
+            ind + "        parentMessage.limit(limit + length);\n\n" +
+            ind + "        if (remaining > 0)\n" +
+            ind + "        {\n" +
+            ind + "            offset = limit + length - %2$d;\n" +
+            ind + "            index = count - 1;\n" +
+            ind + "        }\n\n" +
+            ind + "        return this;\n" +
+            ind + "    }\n",
+            groupClassName,
+            blockLength);
+
+        final StringBuilder params = new StringBuilder();
+        final StringBuilder checks = new StringBuilder();
+        final StringBuilder puts = new StringBuilder();
+        final List<String> arrayNames = new ArrayList<>();
+        PrimitiveType firstType = null;
+
+        for (int i = 0, size = fields.size(); i < size; i += fields.get(i).componentTokenCount())
+        {
+            final Token typeToken = fields.get(i + 1);
+            if (typeToken.signal() != Signal.ENCODING || typeToken.arrayLength() != 1)
+            {
+                return;
+            }
+
+            if (typeToken.isConstantEncoding())
+            {
+                continue;
+            }
+
+            final Encoding encoding = typeToken.encoding();
+            final String arrayName = formatPropertyName(fields.get(i).name()) + "Values";
+            if (arrayNames.isEmpty())
+            {
+                firstType = encoding.primitiveType();
+            }
+            arrayNames.add(arrayName);
+
+            params.append(", final ").append(javaTypeName(encoding.primitiveType())).append("[] ").append(arrayName);
+            checks.append(" ||\n").append(ind).append("            srcIndex > ")
+                .append(arrayName).append(".length - remaining");
+            puts.append(ind).append("            ").append(generatePut(
+                encoding.primitiveType(),
+                "limit + " + typeToken.offset(),
+                arrayName + "[i]",
+                byteOrderString(encoding))).append(";\n");
+        }
+
+        if (arrayNames.isEmpty())
+        {
+            return;
+        }
+
+        final boolean isByteBlock = arrayNames.size() == 1 && blockLength == 1 &&
+            (firstType == PrimitiveType.INT8 || firstType == PrimitiveType.CHAR);
+
+        final String encodeLoop = isByteBlock ?
+            ind + "        buffer.putBytes(limit, " + arrayNames.get(0) + ", srcIndex, remaining);\n" +
+            ind + "        limit += remaining;\n" :
+            ind + "        for (int i = srcIndex, end = srcIndex + remaining; i < end; i++)\n" +
+            ind + "        {\n" +
+            puts +
+            ind + "            limit += " + blockLength + ";\n" +
+            ind + "        }\n";
+
+        new Formatter(sb).format("\n" +
+            ind + "    public %1$s encodeFrom(final int srcIndex%2$s)\n" +
+            ind + "    {\n" +
+            ind + "        final int remaining = count - (index + 1);\n" +
+            ind + "        if (srcIndex < 0%3$s)\n" +
+            ind + "        {\n" +
+            ind + "            throw new IndexOutOfBoundsException(" +
+            "\"srcIndex=\" + srcIndex + \" remaining=\" + remaining);\n" +
+            ind + "        }\n\n" +
+            ind + "        int limit = parentMessage.limit();\n" +
+            "%4$s\n" +
+            ind + "        parentMessage.limit(limit);\n\n" +
+            ind + "        if (remaining > 0)\n" +
+            ind + "        {\n" +
+            ind + "            offset = limit - %5$d;\n" +
+            ind + "            index = count - 1;\n" +
+            ind + "        }\n\n" +
+            ind + "        return this;\n" +
+            ind + "    }\n",
+            groupClassName,
+            params,
+            checks,
+            encodeLoop,
+            blockLength);
+    }
+
     private static String primitiveTypeName(final Token token)
     {
         return javaTypeName(token.encoding().primitiveType());
@@ -921,6 +1416,27 @@ public class JavaGenerator implements CodeGenerator
                     generateGet(lengthType, "limit", byteOrderStr),
                     byteOrderStr);
             }
+
+            final String viewType = sequenceViewType(characterEncoding);
+            if (null != viewType)
+            {
+                new Formatter(sb).format("\n" +
+                    indent + "    public %1$s wrap%2$s(final %1$s view)\n" +
+                    indent + "    {\n" +
+                    "%3$s" +
+                    indent + "        final int headerLength = %4$d;\n" +
+                    indent + "        final int limit = parentMessage.limit();\n" +
+                    indent + "        final int dataLength = (int)%5$s;\n" +
+                    indent + "        final int dataOffset = limit + headerLength;\n" +
+                    indent + "        parentMessage.limit(dataOffset + dataLength);\n\n" +
+                    indent + "        return view.wrap(buffer, dataOffset, dataLength);\n" +
+                    indent + "    }\n",
+                    viewType,
+                    Generators.toUpperFirstChar(propertyName),
+                    generateSequenceViewNotPresentCondition(token.version(), indent),
+                    sizeOfLengthField,
+                    generateGet(lengthType, "limit", byteOrderStr));
+            }
         }
     }
 
@@ -1664,6 +2180,197 @@ public class JavaGenerator implements CodeGenerator
         }
     }
 
+    private static String sequenceViewType(final String characterEncoding)
+    {
+        if (characterEncoding.contains("ASCII"))
+        {
+            return ASCII_SEQUENCE_VIEW;
+        }
+
+        if (isUtf8Encoding(characterEncoding))
+        {
+            return UTF8_SEQUENCE_VIEW;
+        }
+
+        return null;
+    }
+
+    private boolean hasUtf8Encoding()
+    {
+        final List<List<Token>> tokenLists = new ArrayList<>(ir.types());
+        tokenLists.addAll(ir.messages());
+
+        for (final List<Token> tokens : tokenLists)
+        {
+            for (final Token token : tokens)
+            {
+                if (token.signal() == Signal.ENCODING && isUtf8Encoding(token.encoding().characterEncoding()))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void generateUtf8SequenceView() throws IOException
+    {
+        try (Writer out = outputManager.createOutput(UTF8_SEQUENCE_VIEW))
+        {
+            out.append(
+                "/* Generated SBE (Simple Binary Encoding) message codec. */\n" +
+                "package ").append(ir.applicableNamespace()).append(";\n\n")
+                .append(
+                "import org.agrona.DirectBuffer;\n\n" +
+                "/**\n" +
+                " * Reusable view of UTF-8 encoded bytes in a buffer as a {@link CharSequence} to avoid allocation.\n" +
+                " * ASCII content is read directly from the buffer, otherwise it is decoded on wrap into a reused\n" +
+                " * array. Malformed input is replaced with U+FFFD. The view is valid until the buffer changes.\n" +
+                " */\n" +
+                "public class Utf8SequenceView implements CharSequence\n" +
+                "{\n" +
+                "    private static final char REPLACEMENT_CHAR = '\\uFFFD';\n\n" +
+                "    private DirectBuffer buffer;\n" +
+                "    private int offset;\n" +
+                "    private int byteLength;\n" +
+                "    private int length;\n" +
+                "    private boolean isAscii = true;\n" +
+                "    private char[] chars;\n\n" +
+                "    public Utf8SequenceView wrap(final DirectBuffer buffer, final int offset, final int length)\n" +
+                "    {\n" +
+                "        this.buffer = buffer;\n" +
+                "        this.offset = offset;\n" +
+                "        this.byteLength = length;\n\n" +
+                "        int i = 0;\n" +
+                "        for (; i < length && buffer.getByte(offset + i) >= 0; ++i);\n\n" +
+                "        isAscii = i == length;\n" +
+                "        this.length = isAscii ? length : decode(i);\n\n" +
+                "        return this;\n" +
+                "    }\n\n" +
+                "    public DirectBuffer buffer()\n" +
+                "    {\n" +
+                "        return buffer;\n" +
+                "    }\n\n" +
+                "    public int offset()\n" +
+                "    {\n" +
+                "        return offset;\n" +
+                "    }\n\n" +
+                "    public int byteLength()\n" +
+                "    {\n" +
+                "        return byteLength;\n" +
+                "    }\n\n" +
+                "    public int length()\n" +
+                "    {\n" +
+                "        return length;\n" +
+                "    }\n\n" +
+                "    public char charAt(final int index)\n" +
+                "    {\n" +
+                "        if (index < 0 || index >= length)\n" +
+                "        {\n" +
+                "            throw new IndexOutOfBoundsException(\"index=\" + index + \" length=\" + length);\n" +
+                "        }\n\n" +
+                "        return isAscii ? (char)buffer.getByte(offset + index) : chars[index];\n" +
+                "    }\n\n" +
+                "    public CharSequence subSequence(final int start, final int end)\n" +
+                "    {\n" +
+                "        return toString().subSequence(start, end);\n" +
+                "    }\n\n" +
+                "    public void reset()\n" +
+                "    {\n" +
+                "        buffer = null;\n" +
+                "        offset = 0;\n" +
+                "        byteLength = 0;\n" +
+                "        length = 0;\n" +
+                "        isAscii = true;\n" +
+                "    }\n\n" +
+                "    public String toString()\n" +
+                "    {\n" +
+                "        if (0 == length)\n" +
+                "        {\n" +
+                "            return \"\";\n" +
+                "        }\n\n" +
+                "        return isAscii ?\n" +
+                "            buffer.getStringWithoutLengthAscii(offset, length) : new String(chars, 0, length);\n" +
+                "    }\n\n" +
+                "    private int decode(final int asciiLength)\n" +
+                "    {\n" +
+                "        if (null == chars || chars.length < byteLength)\n" +
+                "        {\n" +
+                "            chars = new char[byteLength];\n" +
+                "        }\n\n" +
+                "        int charIndex = 0;\n" +
+                "        for (; charIndex < asciiLength; ++charIndex)\n" +
+                "        {\n" +
+                "            chars[charIndex] = (char)buffer.getByte(offset + charIndex);\n" +
+                "        }\n\n" +
+                "        int i = asciiLength;\n" +
+                "        while (i < byteLength)\n" +
+                "        {\n" +
+                "            final int b = buffer.getByte(offset + i++) & 0xFF;\n" +
+                "            final int extraBytes;\n" +
+                "            final int minCodePoint;\n" +
+                "            int codePoint;\n\n" +
+                "            if (b < 0x80)\n" +
+                "            {\n" +
+                "                chars[charIndex++] = (char)b;\n" +
+                "                continue;\n" +
+                "            }\n" +
+                "            else if (b >= 0xC2 && b < 0xE0)\n" +
+                "            {\n" +
+                "                extraBytes = 1;\n" +
+                "                minCodePoint = 0x80;\n" +
+                "                codePoint = b & 0x1F;\n" +
+                "            }\n" +
+                "            else if (b >= 0xE0 && b < 0xF0)\n" +
+                "            {\n" +
+                "                extraBytes = 2;\n" +
+                "                minCodePoint = 0x800;\n" +
+                "                codePoint = b & 0x0F;\n" +
+                "            }\n" +
+                "            else if (b >= 0xF0 && b < 0xF5)\n" +
+                "            {\n" +
+                "                extraBytes = 3;\n" +
+                "                minCodePoint = 0x10000;\n" +
+                "                codePoint = b & 0x07;\n" +
+                "            }\n" +
+                "            else\n" +
+                "            {\n" +
+                "                chars[charIndex++] = REPLACEMENT_CHAR;\n" +
+                "                continue;\n" +
+                "            }\n\n" +
+                "            int k = 0;\n" +
+                "            for (; k < extraBytes && i < byteLength; ++k, ++i)\n" +
+                "            {\n" +
+                "                final int c = buffer.getByte(offset + i) & 0xFF;\n" +
+                "                if ((c & 0xC0) != 0x80)\n" +
+                "                {\n" +
+                "                    break;\n" +
+                "                }\n\n" +
+                "                codePoint = (codePoint << 6) | (c & 0x3F);\n" +
+                "            }\n\n" +
+                "            if (k < extraBytes || codePoint < minCodePoint ||\n" +
+                "                codePoint > Character.MAX_CODE_POINT ||\n" +
+                "                (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))\n" +
+                "            {\n" +
+                "                chars[charIndex++] = REPLACEMENT_CHAR;\n" +
+                "            }\n" +
+                "            else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT)\n" +
+                "            {\n" +
+                "                chars[charIndex++] = Character.highSurrogate(codePoint);\n" +
+                "                chars[charIndex++] = Character.lowSurrogate(codePoint);\n" +
+                "            }\n" +
+                "            else\n" +
+                "            {\n" +
+                "                chars[charIndex++] = (char)codePoint;\n" +
+                "            }\n" +
+                "        }\n\n" +
+                "        return charIndex;\n" +
+                "    }\n" +
+                "}\n");
+        }
+    }
+
     private static CharSequence generateEnumDeclaration(final String name, final Token typeToken)
     {
         final StringBuilder sb = new StringBuilder();
@@ -1880,6 +2587,20 @@ public class JavaGenerator implements CodeGenerator
             indent + "        }\n\n";
     }
 
+    private static CharSequence generateSequenceViewNotPresentCondition(final int sinceVersion, final String indent)
+    {
+        if (0 == sinceVersion)
+        {
+            return "";
+        }
+
+        return
+            indent + "        if (parentMessage.actingVersion < " + sinceVersion + ")\n" +
+            indent + "        {\n" +
+            indent + "            return view.wrap(buffer, 0, 0);\n" +
+            indent + "        }\n\n";
+    }
+
     private static CharSequence generateStringNotPresentCondition(final int sinceVersion, final String indent)
     {
         if (0 == sinceVersion)
@@ -2020,6 +2741,25 @@ public class JavaGenerator implements CodeGenerator
                     fieldLength,
                     offset);
             }
+
+            final String viewType = sequenceViewType(encoding.characterEncoding());
+            if (null != viewType)
+            {
+                new Formatter(sb).format("\n" +
+                    indent + "    public %1$s wrap%2$s(final %1$s view)\n" +
+                    indent + "    {\n" +
+                    "%3$s" +
+                    indent + "        final int pos = this.offset + %4$d;\n" +
+                    indent + "        int end = 0;\n" +
+                    indent + "        for (; end < %5$d && buffer.getByte(pos + end) != 0; ++end);\n\n" +
+                    indent + "        return view.wrap(buffer, pos, end);\n" +
+                    indent + "    }\n\n",
+                    viewType,
+                    Generators.toUpperFirstChar(propertyName),
+                    generateSequenceViewNotPresentCondition(propertyToken.version(), indent),
+                    offset,
+                    fieldLength);
+            }
         }
 
         return sb;
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.generation.java;
+
+import org.agrona.Verify;
+import org.agrona.generation.OutputManager;
+import uk.co.real_logic.sbe.generation.IncrementalFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.io.File.separatorChar;
+
+/**
+ * {@link OutputManager} for managing the creation of Java source files as the target of code generation.
+ * The character encoding for the {@link java.io.Writer} is UTF-8.
+ * <p>
+ * When incremental, files which already hold the generated content are not rewritten.
+ */
+public class JavaOutputManager implements OutputManager
+{
+    private final File outputDir;
+    private final boolean isIncremental;
+
+    /**
+     * Create a new {@link OutputManager} for generating Java source files into a given package.
+     *
+     * @param baseDirName   for the generated source code.
+     * @param packageName   for the generated source code relative to the baseDirName.
+     * @param isIncremental true if files which would not change should not be rewritten.
+     */
+    public JavaOutputManager(final String baseDirName, final String packageName, final boolean isIncremental)
+    {
+        Verify.notNull(baseDirName, "baseDirName");
+        Verify.notNull(packageName, "packageName");
+
+        final String dirName = baseDirName.endsWith("" + separatorChar) ? baseDirName : baseDirName + separatorChar;
+        final String packageDirName = dirName + packageName.replace('.', separatorChar);
+
+        outputDir = new File(packageDirName);
+        try
+        {
+            Files.createDirectories(outputDir.toPath());
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException("Unable to create directory: " + packageDirName, ex);
+        }
+
+        this.isIncremental = isIncremental;
+    }
+
+    /**
+     * Create a new output which will be a Java source file in the given package.
+     * <p>
+     * The {@link java.io.Writer} should be closed once the caller has finished with it. The Writer is
+     * buffered for efficient IO operations.
+     *
+     * @param name the name of the Java class.
+     * @return a {@link java.io.Writer} to which the source code should be written.
+     * @throws IOException if an issue occurs when creating the file.
+     */
+    public Writer createOutput(final String name) throws IOException
+    {
+        final Path path = new File(outputDir, name + ".java").toPath();
+
+        return isIncremental ? new IncrementalFileWriter(path) : Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    }
+}
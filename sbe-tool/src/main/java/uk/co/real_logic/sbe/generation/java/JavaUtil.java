@@ -211,6 +211,17 @@ public class JavaUtil
         }
     }
 
+    /**
+     * Is the given encoding name, or one of its aliases, for UTF-8.
+     *
+     * @param encoding as a string name (eg. UTF-8).
+     * @return true if the encoding is UTF-8 otherwise false.
+     */
+    public static boolean isUtf8Encoding(final String encoding)
+    {
+        return "UTF_8".equals(STD_CHARSETS.get(encoding));
+    }
+
     /**
      * Generate a literal value to be used in code generation.
      *
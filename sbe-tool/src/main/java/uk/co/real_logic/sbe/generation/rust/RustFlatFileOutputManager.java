@@ -40,10 +40,13 @@ public class RustFlatFileOutputManager implements OutputManager
         final String outputDirName = baseDirName.endsWith("" + separatorChar) ?
             baseDirName : baseDirName + separatorChar;
         final File outputDir = new File(outputDirName);
-        final boolean outputDirAvailable = outputDir.exists() || outputDir.mkdirs();
-        if (!outputDirAvailable)
+        try
         {
-            throw new IllegalStateException("Unable to create directory: " + outputDirName);
+            Files.createDirectories(outputDir.toPath());
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException("Unable to create directory: " + outputDirName, ex);
         }
         this.outputFile = new File(outputDirName + packageName.replace('.', '_') + ".rs");
 
@@ -16,6 +16,8 @@
 package uk.co.real_logic.sbe.ir;
 
 import org.agrona.Verify;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.LongArrayList;
 
 import uk.co.real_logic.sbe.SbeTool;
 
@@ -38,7 +40,9 @@ public class Ir
     private final ByteOrder byteOrder;
 
     private final HeaderStructure headerStructure;
-    private final Map<Long, List<Token>> messagesByIdMap = new HashMap<>();
+    private final Long2ObjectHashMap<List<Token>> messagesByIdMap = new Long2ObjectHashMap<>();
+    private final LongArrayList messageIds = new LongArrayList();
+    private final Collection<List<Token>> messages = new MessageCollection();
     private final Map<String, List<Token>> typesByNameMap = new HashMap<>();
 
     private final String[] namespaces;
@@ -112,11 +116,22 @@ public class Ir
         captureTypes(messageTokens, 0, messageTokens.size() - 1);
         updateComponentTokenCounts(messageTokens);
 
-        messagesByIdMap.put(messageId, new ArrayList<>(messageTokens));
+        if (null == messagesByIdMap.put(messageId, new ArrayList<>(messageTokens)))
+        {
+            int index = messageIds.size();
+            while (index > 0 && messageIds.getLong(index - 1) > messageId)
+            {
+                index--;
+            }
+
+            messageIds.addLong(index, messageId);
+        }
     }
 
     /**
      * Get the getMessage for a given identifier.
+     * <p>
+     * Lookup is by primitive key so it does not box the identifier or allocate when used on a decoding path.
      *
      * @param messageId to get.
      * @return the List of {@link Token}s representing the message or null if the id is not found.
@@ -148,13 +163,13 @@ public class Ir
     }
 
     /**
-     * The {@link Collection} of messages in this schema.
+     * The {@link Collection} of messages in this schema in ascending order of message id.
      *
      * @return the {@link Collection} of messages in this schema.
      */
     public Collection<List<Token>> messages()
     {
-        return messagesByIdMap.values();
+        return messages;
     }
 
     /**
@@ -329,4 +344,35 @@ public class Ir
 
         return i;
     }
+
+    private final class MessageCollection extends AbstractCollection<List<Token>>
+    {
+        public Iterator<List<Token>> iterator()
+        {
+            return new Iterator<List<Token>>()
+            {
+                private int index = 0;
+
+                public boolean hasNext()
+                {
+                    return index < messageIds.size();
+                }
+
+                public List<Token> next()
+                {
+                    if (index >= messageIds.size())
+                    {
+                        throw new NoSuchElementException();
+                    }
+
+                    return messagesByIdMap.get(messageIds.getLong(index++));
+                }
+            };
+        }
+
+        public int size()
+        {
+            return messageIds.size();
+        }
+    }
 }
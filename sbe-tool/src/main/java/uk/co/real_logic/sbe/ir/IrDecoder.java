@@ -17,6 +17,8 @@ package uk.co.real_logic.sbe.ir;
 
 import org.agrona.CloseHelper;
 import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Object2IntHashMap;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.sbe.PrimitiveType;
 import uk.co.real_logic.sbe.ir.generated.FrameCodecDecoder;
@@ -29,13 +31,19 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.nio.file.StandardOpenOption.READ;
 import static uk.co.real_logic.sbe.ir.IrUtil.*;
 
 /**
  * Decoder for encoded {@link Ir} representing an SBE schema which can be read from a buffer or file.
+ * <p>
+ * Files are memory mapped and can be decoded lazily with {@link #decodeLazily()} so only the messages and types
+ * which are used get decoded.
  */
 public class IrDecoder implements AutoCloseable
 {
@@ -135,6 +143,93 @@ public class IrDecoder implements AutoCloseable
         return ir;
     }
 
+    /**
+     * Decode the serialised {@link Ir} lazily. The frame and message header are decoded, and the offsets of the
+     * messages and types are indexed, but the {@link Token}s of a message or type are only decoded on first access.
+     * <p>
+     * The returned {@link Ir} decodes from the buffer, or mapped file, of this decoder which must remain unchanged
+     * while the {@link Ir} is in use. Closing the decoder does not unmap the file. Lazy decoding is not thread safe.
+     *
+     * @return the lazily decoded serialised {@link Ir} instance.
+     */
+    public Ir decodeLazily()
+    {
+        decodeFrame();
+
+        final int tokensOffset = offset;
+        final List<Token> headerTokens = new ArrayList<>();
+        final Token firstToken = decodeToken();
+        Token token = firstToken;
+        if (token.signal() == Signal.BEGIN_COMPOSITE)
+        {
+            final String headerName = token.name();
+            headerTokens.add(token);
+            do
+            {
+                token = decodeToken();
+                headerTokens.add(token);
+            }
+            while (Signal.END_COMPOSITE != token.signal() || !headerName.equals(token.name()));
+
+            irHeader = headerTokens;
+        }
+
+        final LazyIr ir = new LazyIr(firstToken.encoding().byteOrder());
+
+        offset = tokensOffset;
+        while (offset < length)
+        {
+            tokenDecoder.wrap(directBuffer, offset, tokenDecoder.sbeBlockLength(), TokenCodecDecoder.SCHEMA_VERSION);
+
+            switch (mapSignal(tokenDecoder.signal()))
+            {
+                case BEGIN_MESSAGE:
+                    ir.messageOffsetByIdMap.put(tokenDecoder.fieldId(), offset);
+                    skipVarData();
+                    break;
+
+                case BEGIN_COMPOSITE:
+                case BEGIN_ENUM:
+                case BEGIN_SET:
+                {
+                    final String name = tokenDecoder.name();
+                    skipVarDataAfterName();
+                    final String referencedName = tokenDecoder.referencedName();
+                    ir.typeOffsetByNameMap.put(referencedName.isEmpty() ? name : referencedName, offset);
+                    break;
+                }
+
+                default:
+                    skipVarData();
+                    break;
+            }
+
+            offset += tokenDecoder.encodedLength();
+        }
+
+        return ir;
+    }
+
+    private void skipVarData()
+    {
+        tokenDecoder.skipName();
+        skipVarDataAfterName();
+        tokenDecoder.skipReferencedName();
+    }
+
+    private void skipVarDataAfterName()
+    {
+        tokenDecoder.skipConstValue();
+        tokenDecoder.skipMinValue();
+        tokenDecoder.skipMaxValue();
+        tokenDecoder.skipNullValue();
+        tokenDecoder.skipCharacterEncoding();
+        tokenDecoder.skipEpoch();
+        tokenDecoder.skipTimeUnit();
+        tokenDecoder.skipSemanticType();
+        tokenDecoder.skipDescription();
+    }
+
     private int captureHeader(final List<Token> tokens)
     {
         final List<Token> headerTokens = new ArrayList<>();
@@ -254,4 +349,110 @@ public class IrDecoder implements AutoCloseable
 
         return tokenBuilder.encoding(encBuilder.build()).build();
     }
+
+    /**
+     * {@link Ir} which decodes the {@link Token}s of messages and types from their indexed offsets on first access.
+     */
+    private final class LazyIr extends Ir
+    {
+        private final Long2LongHashMap messageOffsetByIdMap = new Long2LongHashMap(-1);
+        private final Object2IntHashMap<String> typeOffsetByNameMap = new Object2IntHashMap<>(-1);
+        private final Map<String, List<Token>> decodedTypeByNameMap = new HashMap<>();
+
+        LazyIr(final ByteOrder byteOrder)
+        {
+            super(irPackageName, irNamespaceName, irId, irVersion, null, semanticVersion, byteOrder, irHeader);
+        }
+
+        public List<Token> getMessage(final long messageId)
+        {
+            List<Token> messageTokens = super.getMessage(messageId);
+            if (null == messageTokens)
+            {
+                final long messageOffset = messageOffsetByIdMap.get(messageId);
+                if (-1 == messageOffset)
+                {
+                    return null;
+                }
+
+                offset = (int)messageOffset;
+                final List<Token> tokens = new ArrayList<>();
+                Token token;
+                do
+                {
+                    token = decodeToken();
+                    tokens.add(token);
+                }
+                while (Signal.END_MESSAGE != token.signal());
+
+                addMessage(messageId, tokens);
+                messageTokens = super.getMessage(messageId);
+            }
+
+            return messageTokens;
+        }
+
+        public Collection<List<Token>> messages()
+        {
+            messageOffsetByIdMap.longForEach((messageId, messageOffset) -> getMessage(messageId));
+
+            return super.messages();
+        }
+
+        public List<Token> getType(final String name)
+        {
+            List<Token> typeTokens = decodedTypeByNameMap.get(name);
+            if (null == typeTokens)
+            {
+                final int typeOffset = typeOffsetByNameMap.getValue(name);
+                if (-1 == typeOffset)
+                {
+                    return null;
+                }
+
+                offset = typeOffset;
+                typeTokens = new ArrayList<>();
+                Token token = decodeToken();
+                final Signal endSignal = endSignal(token.signal());
+                final String typeName = token.name();
+                typeTokens.add(token);
+                do
+                {
+                    token = decodeToken();
+                    typeTokens.add(token);
+                }
+                while (endSignal != token.signal() || !typeName.equals(token.name()));
+
+                updateComponentTokenCounts(typeTokens);
+                decodedTypeByNameMap.put(name, typeTokens);
+            }
+
+            return typeTokens;
+        }
+
+        private Signal endSignal(final Signal beginSignal)
+        {
+            switch (beginSignal)
+            {
+                case BEGIN_COMPOSITE:
+                    return Signal.END_COMPOSITE;
+
+                case BEGIN_ENUM:
+                    return Signal.END_ENUM;
+
+                default:
+                    return Signal.END_SET;
+            }
+        }
+
+        public Collection<List<Token>> types()
+        {
+            for (final String name : typeOffsetByNameMap.keySet())
+            {
+                getType(name);
+            }
+
+            return decodedTypeByNameMap.values();
+        }
+    }
 }
@@ -0,0 +1,489 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.ir;
+
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Object2IntHashMap;
+import uk.co.real_logic.sbe.PrimitiveType;
+
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact table of the {@link Token}s of a schema as an alternative to holding a {@link List} of {@link Token}
+ * objects for each message.
+ * <p>
+ * The tokens of the message header followed by the tokens of each message are stored in parallel primitive arrays
+ * indexed by token, with names and descriptions held once in an interned string pool and each distinct
+ * {@link Encoding} held once in an encoding pool. Decoders can walk the structure of a message via the primitive
+ * arrays, e.g. {@link #signal(int)}, {@link #offset(int)}, and {@link #componentTokenCount(int)}, without touching
+ * a {@link Token} object.
+ * <p>
+ * A {@link Token} is created each time one is requested and is not retained by the table, so the memory held stays
+ * compact. The tokens created share the pooled strings and encodings. Decoders which pass tokens to a listener for
+ * each message should create the tokens of a message once, as {@link uk.co.real_logic.sbe.otf.OtfSchemaRegistry}
+ * does by compiling an {@link uk.co.real_logic.sbe.otf.OtfDecodePlan} for a message the first time it is decoded
+ * into a slot indexed by {@link #messageOrdinal(long)}.
+ * <p>
+ * A table is immutable after construction and can be used concurrently from multiple threads.
+ */
+public final class TokenTable
+{
+    private static final Signal[] SIGNALS = Signal.values();
+    private static final PrimitiveType[] PRIMITIVE_TYPES = PrimitiveType.values();
+    private static final int NULL_INDEX = -1;
+
+    private final byte[] signals;
+    private final byte[] primitiveTypes;
+    private final int[] offsets;
+    private final int[] encodedLengths;
+    private final int[] componentTokenCounts;
+    private final int[] versions;
+    private final int[] ids;
+    private final int[] deprecations;
+    private final int[] nameIndexes;
+    private final int[] referencedNameIndexes;
+    private final int[] descriptionIndexes;
+    private final int[] encodingIndexes;
+    private final String[] stringPool;
+    private final Encoding[] encodingPool;
+    private final int[] messageIndexes;
+    private final Long2LongHashMap messageOrdinalByIdMap = new Long2LongHashMap(NULL_INDEX);
+    private final TokenList tokenList = new TokenList();
+    private final int schemaId;
+    private final int version;
+    private final int headerTokenCount;
+    private final HeaderStructure headerStructure;
+
+    private TokenTable(final List<Token> tokens, final int headerTokenCount, final int schemaId, final int version)
+    {
+        final int size = tokens.size();
+        final Object2IntHashMap<String> stringIndexByValueMap = new Object2IntHashMap<>(NULL_INDEX);
+        final Object2IntHashMap<List<Object>> encodingIndexByKeyMap = new Object2IntHashMap<>(NULL_INDEX);
+        final List<String> strings = new ArrayList<>();
+        final List<Encoding> encodings = new ArrayList<>();
+        final IntArrayList messageIndexes = new IntArrayList();
+
+        signals = new byte[size];
+        primitiveTypes = new byte[size];
+        offsets = new int[size];
+        encodedLengths = new int[size];
+        componentTokenCounts = new int[size];
+        versions = new int[size];
+        ids = new int[size];
+        deprecations = new int[size];
+        nameIndexes = new int[size];
+        referencedNameIndexes = new int[size];
+        descriptionIndexes = new int[size];
+        encodingIndexes = new int[size];
+        this.headerTokenCount = headerTokenCount;
+        this.schemaId = schemaId;
+        this.version = version;
+
+        for (int i = 0; i < size; i++)
+        {
+            final Token token = tokens.get(i);
+            final Encoding encoding = token.encoding();
+
+            signals[i] = (byte)token.signal().ordinal();
+            primitiveTypes[i] = (byte)(null == encoding.primitiveType() ? NULL_INDEX :
+                encoding.primitiveType().ordinal());
+            offsets[i] = token.offset();
+            encodedLengths[i] = token.encodedLength();
+            componentTokenCounts[i] = token.componentTokenCount();
+            versions[i] = token.version();
+            ids[i] = token.id();
+            deprecations[i] = token.deprecated();
+            nameIndexes[i] = intern(stringIndexByValueMap, strings, token.name());
+            referencedNameIndexes[i] = intern(stringIndexByValueMap, strings, token.referencedName());
+            descriptionIndexes[i] = intern(stringIndexByValueMap, strings, token.description());
+            encodingIndexes[i] = intern(encodingIndexByKeyMap, encodings, encoding);
+
+            if (i >= headerTokenCount && Signal.BEGIN_MESSAGE == token.signal())
+            {
+                messageOrdinalByIdMap.put(token.id(), messageIndexes.size());
+                messageIndexes.addInt(i);
+            }
+        }
+
+        stringPool = strings.toArray(new String[0]);
+        encodingPool = encodings.toArray(new Encoding[0]);
+        this.messageIndexes = messageIndexes.toIntArray();
+        headerStructure = new HeaderStructure(new ArrayList<>(tokenList.subList(0, headerTokenCount)));
+    }
+
+    /**
+     * Build a table of the tokens for the message header and messages of a schema.
+     *
+     * @param ir for the schema.
+     * @return the table of tokens for the schema.
+     */
+    public static TokenTable of(final Ir ir)
+    {
+        final List<Token> headerTokens = ir.headerStructure().tokens();
+        final List<Token> tokens = new ArrayList<>(headerTokens);
+        for (final List<Token> messageTokens : ir.messages())
+        {
+            tokens.addAll(messageTokens);
+        }
+
+        return new TokenTable(tokens, headerTokens.size(), ir.id(), ir.version());
+    }
+
+    /**
+     * The id of the schema from which the table was built.
+     *
+     * @return the id of the schema from which the table was built.
+     */
+    public int schemaId()
+    {
+        return schemaId;
+    }
+
+    /**
+     * The version of the schema from which the table was built.
+     *
+     * @return the version of the schema from which the table was built.
+     */
+    public int version()
+    {
+        return version;
+    }
+
+    /**
+     * The number of tokens in the table.
+     *
+     * @return the number of tokens in the table.
+     */
+    public int size()
+    {
+        return signals.length;
+    }
+
+    /**
+     * The structure of the message header, for which the tokens are at the beginning of the table.
+     *
+     * @return the structure of the message header.
+     */
+    public HeaderStructure headerStructure()
+    {
+        return headerStructure;
+    }
+
+    /**
+     * The number of tokens at the beginning of the table for the message header.
+     *
+     * @return the number of tokens at the beginning of the table for the message header.
+     */
+    public int headerTokenCount()
+    {
+        return headerTokenCount;
+    }
+
+    /**
+     * The index of the {@link Signal#BEGIN_MESSAGE} token of a message, for which the tokens run to the index plus
+     * the {@link #componentTokenCount(int)} at the index.
+     *
+     * @param messageId of the message, i.e. the template id.
+     * @return the index of the first token of the message or -1 if the table does not contain the message.
+     */
+    public int messageIndex(final long messageId)
+    {
+        final int ordinal = messageOrdinal(messageId);
+
+        return NULL_INDEX == ordinal ? NULL_INDEX : messageIndexes[ordinal];
+    }
+
+    /**
+     * The number of messages in the table.
+     *
+     * @return the number of messages in the table.
+     */
+    public int messageCount()
+    {
+        return messageIndexes.length;
+    }
+
+    /**
+     * The position of a message in the order the messages are held by the table, from 0 to {@link #messageCount()}
+     * exclusive, so state can be held for each message in an array rather than a map.
+     *
+     * @param messageId of the message, i.e. the template id.
+     * @return the ordinal of the message or -1 if the table does not contain the message.
+     */
+    public int messageOrdinal(final long messageId)
+    {
+        return (int)messageOrdinalByIdMap.get(messageId);
+    }
+
+    /**
+     * The {@link Signal} of the token at an index.
+     *
+     * @param index of the token.
+     * @return the {@link Signal} of the token.
+     */
+    public Signal signal(final int index)
+    {
+        return SIGNALS[signals[index]];
+    }
+
+    /**
+     * The {@link PrimitiveType} of the encoding of the token at an index.
+     *
+     * @param index of the token.
+     * @return the {@link PrimitiveType} of the encoding of the token or null if it has none.
+     */
+    public PrimitiveType primitiveType(final int index)
+    {
+        final int ordinal = primitiveTypes[index];
+
+        return NULL_INDEX == ordinal ? null : PRIMITIVE_TYPES[ordinal];
+    }
+
+    /**
+     * The {@link ByteOrder} of the encoding of the token at an index.
+     *
+     * @param index of the token.
+     * @return the {@link ByteOrder} of the encoding of the token.
+     */
+    public ByteOrder byteOrder(final int index)
+    {
+        return encodingPool[encodingIndexes[index]].byteOrder();
+    }
+
+    /**
+     * The offset of the token at an index.
+     *
+     * @param index of the token.
+     * @return the offset of the token.
+     * @see Token#offset()
+     */
+    public int offset(final int index)
+    {
+        return offsets[index];
+    }
+
+    /**
+     * The encoded length of the token at an index.
+     *
+     * @param index of the token.
+     * @return the encoded length of the token.
+     * @see Token#encodedLength()
+     */
+    public int encodedLength(final int index)
+    {
+        return encodedLengths[index];
+    }
+
+    /**
+     * The number of tokens in the component beginning or ending with the token at an index.
+     *
+     * @param index of the token.
+     * @return the number of tokens in the component.
+     * @see Token#componentTokenCount()
+     */
+    public int componentTokenCount(final int index)
+    {
+        return componentTokenCounts[index];
+    }
+
+    /**
+     * The version in which the token at an index was added to the schema.
+     *
+     * @param index of the token.
+     * @return the version in which the token was added to the schema.
+     * @see Token#version()
+     */
+    public int version(final int index)
+    {
+        return versions[index];
+    }
+
+    /**
+     * The id of the token at an index.
+     *
+     * @param index of the token.
+     * @return the id of the token.
+     * @see Token#id()
+     */
+    public int id(final int index)
+    {
+        return ids[index];
+    }
+
+    /**
+     * The name of the token at an index, interned so equal names are the same instance.
+     *
+     * @param index of the token.
+     * @return the name of the token.
+     * @see Token#name()
+     */
+    public String name(final int index)
+    {
+        return string(nameIndexes[index]);
+    }
+
+    /**
+     * The {@link Encoding} of the token at an index, shared with other tokens which have an equal encoding.
+     *
+     * @param index of the token.
+     * @return the {@link Encoding} of the token.
+     */
+    public Encoding encoding(final int index)
+    {
+        return encodingPool[encodingIndexes[index]];
+    }
+
+    /**
+     * The number of distinct strings in the string pool.
+     *
+     * @return the number of distinct strings in the string pool.
+     */
+    public int stringPoolSize()
+    {
+        return stringPool.length;
+    }
+
+    /**
+     * The number of distinct encodings in the encoding pool.
+     *
+     * @return the number of distinct encodings in the encoding pool.
+     */
+    public int encodingPoolSize()
+    {
+        return encodingPool.length;
+    }
+
+    /**
+     * Create the {@link Token} at an index, which is not retained by the table.
+     *
+     * @param index of the token.
+     * @return a new {@link Token} for the index.
+     */
+    public Token token(final int index)
+    {
+        return new Token(
+            signal(index),
+            string(nameIndexes[index]),
+            string(referencedNameIndexes[index]),
+            string(descriptionIndexes[index]),
+            ids[index],
+            versions[index],
+            deprecations[index],
+            encodedLengths[index],
+            offsets[index],
+            componentTokenCounts[index],
+            encodingPool[encodingIndexes[index]]);
+    }
+
+    /**
+     * View of the table as a {@link List} of {@link Token}s, indexed as the table, which creates a token each time
+     * one is requested.
+     *
+     * @return the view of the table as a {@link List} of {@link Token}s.
+     */
+    public List<Token> tokens()
+    {
+        return tokenList;
+    }
+
+    /**
+     * View of the tokens of a message as a {@link List} beginning at index 0, e.g. for
+     * {@link uk.co.real_logic.sbe.otf.OtfMessageDecoder}, which creates a token each time one is requested.
+     *
+     * @param messageId of the message, i.e. the template id.
+     * @return the view of the tokens of the message or null if the table does not contain the message.
+     */
+    public List<Token> messageTokens(final long messageId)
+    {
+        final int index = messageIndex(messageId);
+        if (NULL_INDEX == index)
+        {
+            return null;
+        }
+
+        return tokenList.subList(index, index + componentTokenCounts[index]);
+    }
+
+    private String string(final int index)
+    {
+        return NULL_INDEX == index ? null : stringPool[index];
+    }
+
+    private static int intern(
+        final Object2IntHashMap<String> indexByValueMap, final List<String> values, final String value)
+    {
+        if (null == value)
+        {
+            return NULL_INDEX;
+        }
+
+        int index = indexByValueMap.getValue(value);
+        if (NULL_INDEX == index)
+        {
+            index = values.size();
+            values.add(value);
+            indexByValueMap.put(value, index);
+        }
+
+        return index;
+    }
+
+    private static int intern(
+        final Object2IntHashMap<List<Object>> indexByKeyMap, final List<Encoding> encodings, final Encoding encoding)
+    {
+        final List<Object> key = Arrays.asList(
+            encoding.presence(),
+            encoding.primitiveType(),
+            encoding.byteOrder(),
+            encoding.minValue(),
+            encoding.maxValue(),
+            encoding.nullValue(),
+            encoding.constValue(),
+            encoding.characterEncoding(),
+            encoding.epoch(),
+            encoding.timeUnit(),
+            encoding.semanticType());
+
+        int index = indexByKeyMap.getValue(key);
+        if (NULL_INDEX == index)
+        {
+            index = encodings.size();
+            encodings.add(encoding);
+            indexByKeyMap.put(key, index);
+        }
+
+        return index;
+    }
+
+    private final class TokenList extends AbstractList<Token> implements RandomAccess
+    {
+        public Token get(final int index)
+        {
+            return token(index);
+        }
+
+        public int size()
+        {
+            return signals.length;
+        }
+    }
+}
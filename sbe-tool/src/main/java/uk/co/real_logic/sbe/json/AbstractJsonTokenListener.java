@@ -0,0 +1,445 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.json;
+
+import org.agrona.DirectBuffer;
+import uk.co.real_logic.sbe.PrimitiveValue;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.otf.TokenListener;
+import uk.co.real_logic.sbe.otf.Types;
+
+import java.util.List;
+
+import static uk.co.real_logic.sbe.PrimitiveType.CHAR;
+
+/**
+ * Formats the structure of a message as JSON, leaving how the text and values are written to the output to
+ * subclasses so the same JSON can be written to different outputs.
+ */
+abstract class AbstractJsonTokenListener implements TokenListener
+{
+    private int indentation = 0;
+    private int compositeLevel = 0;
+
+    public void onBeginMessage(final Token token)
+    {
+        startObject();
+    }
+
+    public void onEndMessage(final Token token)
+    {
+        endObject();
+    }
+
+    public void onEncoding(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final Token typeToken,
+        final int actingVersion)
+    {
+        property(compositeLevel > 0 ? typeToken.name() : fieldToken.name());
+        appendEncodingAsString(buffer, bufferIndex, typeToken, actingVersion);
+        next();
+    }
+
+    public void onEnum(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        property(determineName(0, fieldToken, tokens, fromIndex));
+        doubleQuote();
+
+        if (fieldToken.isConstantEncoding())
+        {
+            appendConstEnumValue(fieldToken.encoding().constValue());
+        }
+        else
+        {
+            final Token typeToken = tokens.get(fromIndex + 1);
+            final long encodedValue = readEncodingAsLong(buffer, bufferIndex, typeToken, actingVersion);
+
+            String value = "null";
+            for (int i = fromIndex + 1; i < toIndex; i++)
+            {
+                if (encodedValue == tokens.get(i).encoding().constValue().longValue())
+                {
+                    value = tokens.get(i).name();
+                    break;
+                }
+            }
+
+            append(value);
+        }
+
+        doubleQuote();
+        next();
+    }
+
+    public void onBitSet(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        final Token typeToken = tokens.get(fromIndex + 1);
+        final long encodedValue = readEncodingAsLong(buffer, bufferIndex, typeToken, actingVersion);
+
+        property(determineName(0, fieldToken, tokens, fromIndex));
+
+        append("{ ");
+        for (int i = fromIndex + 1; i < toIndex; i++)
+        {
+            doubleQuote();
+            append(tokens.get(i).name());
+            append("\": ");
+
+            final long bitPosition = tokens.get(i).encoding().constValue().longValue();
+            final boolean flag = (encodedValue & (1L << bitPosition)) != 0;
+
+            append(flag ? "true" : "false");
+
+            if (i < (toIndex - 1))
+            {
+                append(", ");
+            }
+        }
+        append(" }");
+
+        next();
+    }
+
+    public void onBeginComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        ++compositeLevel;
+
+        property(determineName(1, fieldToken, tokens, fromIndex));
+        append('\n');
+        startObject();
+    }
+
+    public void onEndComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        --compositeLevel;
+        endObject();
+    }
+
+    public void onGroupHeader(final Token token, final int numInGroup)
+    {
+        property(token.name());
+        append("[\n");
+    }
+
+    public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        startObject();
+    }
+
+    public void onEndGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        endObject();
+        if (groupIndex == numInGroup - 1)
+        {
+            backup();
+            append("],\n");
+        }
+    }
+
+    public void onVarData(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final int length,
+        final Token typeToken)
+    {
+        property(fieldToken.name());
+        doubleQuote();
+        appendEscaped(buffer, bufferIndex, length, typeToken.encoding().characterEncoding());
+        doubleQuote();
+        next();
+    }
+
+    /**
+     * Reset the formatting state so the listener can be reused for the next message.
+     */
+    void reset()
+    {
+        indentation = 0;
+        compositeLevel = 0;
+    }
+
+    /**
+     * Append an ASCII character.
+     *
+     * @param c to be appended.
+     */
+    abstract void append(char c);
+
+    /**
+     * Append a range of ASCII characters.
+     *
+     * @param value  containing the characters.
+     * @param offset of the first character.
+     * @param length of the range.
+     */
+    abstract void append(CharSequence value, int offset, int length);
+
+    /**
+     * Append a byte of a char array as is.
+     *
+     * @param b to be appended.
+     */
+    abstract void append(byte b);
+
+    /**
+     * Remove the last two characters appended, i.e. a trailing separator.
+     */
+    abstract void backup();
+
+    /**
+     * Append the value of a primitive type encoded in a buffer.
+     *
+     * @param buffer   containing the encoded value.
+     * @param index    of the value in the buffer.
+     * @param encoding of the value.
+     */
+    abstract void appendValue(DirectBuffer buffer, int index, Encoding encoding);
+
+    /**
+     * Append a constant or null value.
+     *
+     * @param value to be appended.
+     */
+    abstract void appendValue(PrimitiveValue value);
+
+    /**
+     * Append var data escaped for a JSON string.
+     *
+     * @param buffer            containing the var data.
+     * @param index             of the var data in the buffer.
+     * @param length            of the var data in bytes.
+     * @param characterEncoding of the var data, or null if not specified.
+     */
+    abstract void appendEscaped(DirectBuffer buffer, int index, int length, String characterEncoding);
+
+    /**
+     * Does a character need a backslash before it in a JSON string.
+     *
+     * @param c to be checked.
+     * @return true if the character needs a backslash before it.
+     */
+    static boolean isEscaped(final int c)
+    {
+        return '"' == c || '\\' == c || '\b' == c || '\f' == c || '\n' == c || '\r' == c || '\t' == c;
+    }
+
+    final void append(final CharSequence value)
+    {
+        append(value, 0, value.length());
+    }
+
+    final void escape(final byte b)
+    {
+        if (isEscaped(b))
+        {
+            append('\\');
+        }
+
+        append(b);
+    }
+
+    private void appendEncodingAsString(
+        final DirectBuffer buffer, final int index, final Token typeToken, final int actingVersion)
+    {
+        final Encoding encoding = typeToken.encoding();
+        final PrimitiveValue constOrNotPresentValue = constOrNotPresentValue(typeToken, actingVersion);
+        if (null != constOrNotPresentValue)
+        {
+            if (encoding.primitiveType() == CHAR)
+            {
+                doubleQuote();
+                appendValue(constOrNotPresentValue);
+                doubleQuote();
+            }
+            else
+            {
+                appendValue(constOrNotPresentValue);
+            }
+
+            return;
+        }
+
+        final int elementSize = encoding.primitiveType().size();
+
+        final int size = typeToken.arrayLength();
+        if (size > 1 && encoding.primitiveType() == CHAR)
+        {
+            doubleQuote();
+
+            for (int i = 0; i < size; i++)
+            {
+                escape(buffer.getByte(index + (i * elementSize)));
+            }
+
+            doubleQuote();
+        }
+        else
+        {
+            if (size > 1)
+            {
+                append('[');
+            }
+
+            for (int i = 0; i < size; i++)
+            {
+                appendValue(buffer, index + (i * elementSize), encoding);
+                append(", ");
+            }
+
+            backup();
+            if (size > 1)
+            {
+                append(']');
+            }
+        }
+    }
+
+    private void appendConstEnumValue(final PrimitiveValue refValue)
+    {
+        if (PrimitiveValue.Representation.BYTE_ARRAY == refValue.representation())
+        {
+            final byte[] bytes = refValue.byteArrayValue();
+            int valueOffset = 0;
+            for (int i = 0; i < bytes.length; i++)
+            {
+                if ('.' == bytes[i])
+                {
+                    valueOffset = i + 1;
+                    break;
+                }
+            }
+
+            for (int i = valueOffset; i < bytes.length; i++)
+            {
+                append(bytes[i]);
+            }
+        }
+        else
+        {
+            final String value = refValue.toString();
+            final int valueOffset = value.indexOf('.') + 1;
+            append(value, valueOffset, value.length() - valueOffset);
+        }
+    }
+
+    private void next()
+    {
+        append(",\n");
+    }
+
+    private void property(final String name)
+    {
+        indent();
+        doubleQuote();
+        append(name);
+        append("\": ");
+    }
+
+    private void indent()
+    {
+        for (int i = 0; i < indentation; i++)
+        {
+            append("    ");
+        }
+    }
+
+    private void doubleQuote()
+    {
+        append('\"');
+    }
+
+    private void startObject()
+    {
+        indent();
+        append("{\n");
+        indentation++;
+    }
+
+    private void endObject()
+    {
+        backup();
+        append('\n');
+        indentation--;
+        indent();
+        append('}');
+
+        if (indentation > 0)
+        {
+            next();
+        }
+    }
+
+    private String determineName(
+        final int thresholdLevel, final Token fieldToken, final List<Token> tokens, final int fromIndex)
+    {
+        if (compositeLevel > thresholdLevel)
+        {
+            return tokens.get(fromIndex).name();
+        }
+        else
+        {
+            return fieldToken.name();
+        }
+    }
+
+    private static PrimitiveValue constOrNotPresentValue(final Token token, final int actingVersion)
+    {
+        final Encoding encoding = token.encoding();
+        if (token.isConstantEncoding())
+        {
+            return encoding.constValue();
+        }
+        else if (token.isOptionalEncoding() && actingVersion < token.version())
+        {
+            return encoding.applicableNullValue();
+        }
+
+        return null;
+    }
+
+    private static long readEncodingAsLong(
+        final DirectBuffer buffer, final int bufferIndex, final Token typeToken, final int actingVersion)
+    {
+        final PrimitiveValue constOrNotPresentValue = constOrNotPresentValue(typeToken, actingVersion);
+        if (null != constOrNotPresentValue)
+        {
+            return constOrNotPresentValue.longValue();
+        }
+
+        return Types.getLong(buffer, bufferIndex, typeToken.encoding());
+    }
+}
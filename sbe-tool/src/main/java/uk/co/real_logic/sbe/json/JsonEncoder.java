@@ -0,0 +1,1225 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.json;
+
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.PrimitiveValue;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.HeaderStructure;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Signal;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.otf.Types;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encode JSON documents, in the form printed by {@link JsonPrinter}, into SBE messages based upon the given Ir.
+ * <p>
+ * The JSON is parsed in a single pass with the message tokens guiding the parse so values are encoded directly into
+ * the destination buffer as they are read. Fields of a block may appear in any order and those missing are encoded
+ * with their null value. Repeating groups and var data must appear in schema order, as printed by
+ * {@link JsonPrinter}, and those missing are encoded empty. Names not in the schema are skipped so documents for a
+ * later version of a schema can be encoded with an earlier version. Messages are encoded at the version of the Ir.
+ * Numbers which overflow a long, or are outside the min and max values of their field other than its null value,
+ * are rejected with an {@link IllegalArgumentException} naming the field.
+ * <p>
+ * The quirks of {@link JsonPrinter} output are accepted in addition to standard JSON: single quoted strings for
+ * single chars, a backslash escaping any character, and 0/0, 1/0, and -1/0 for NaN and the infinities.
+ * <p>
+ * Internal state is reused between messages so an instance is not thread safe.
+ */
+public class JsonEncoder
+{
+    private static final double[] POWERS_OF_TEN =
+    {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final int MAX_EXPONENT = 400;
+
+    private final Ir ir;
+    private final Int2ObjectHashMap<Block> blockByTemplateIdMap = new Int2ObjectHashMap<>();
+    private final int headerLength;
+    private final Token blockLengthToken;
+    private final Token templateIdToken;
+    private final Token schemaIdToken;
+    private final Token schemaVersionToken;
+    private final ExpandableArrayBuffer scratch = new ExpandableArrayBuffer(256);
+    private final UnsafeBuffer stringInput = new UnsafeBuffer(0, 0);
+
+    private DirectBuffer json;
+    private int position;
+    private int jsonLimit;
+    private MutableDirectBuffer buffer;
+    private boolean isIntegral;
+    private boolean isUnsignedLong;
+    private long longValue;
+    private double doubleValue;
+
+    public JsonEncoder(final Ir ir)
+    {
+        this.ir = ir;
+
+        final List<Token> headerTokens = ir.headerStructure().tokens();
+        headerLength = headerTokens.get(0).encodedLength();
+        blockLengthToken = findToken(headerTokens, HeaderStructure.BLOCK_LENGTH);
+        templateIdToken = findToken(headerTokens, HeaderStructure.TEMPLATE_ID);
+        schemaIdToken = findToken(headerTokens, HeaderStructure.SCHEMA_ID);
+        schemaVersionToken = findToken(headerTokens, HeaderStructure.SCHEMA_VERSION);
+
+        for (final List<Token> msgTokens : ir.messages())
+        {
+            final Token[] tokens = msgTokens.toArray(new Token[0]);
+            final Token msgToken = tokens[0];
+            blockByTemplateIdMap.put(
+                msgToken.id(), compileBlock(tokens, msgToken.encodedLength(), 1, tokens.length - 1));
+        }
+    }
+
+    /**
+     * The {@link Ir} messages are encoded for.
+     *
+     * @return the {@link Ir} messages are encoded for.
+     */
+    public Ir ir()
+    {
+        return ir;
+    }
+
+    /**
+     * Encode a JSON document as a message, preceded by its message header, into a buffer.
+     * <p>
+     * The message header always carries the schema id and version of the {@link Ir}, as the message is encoded with
+     * the block length and fields of that version. To encode for an earlier version use the Ir of that version.
+     *
+     * @param json         containing the document encoded in UTF-8.
+     * @param jsonOffset   at which the document begins.
+     * @param jsonLength   of the document in bytes.
+     * @param templateId   of the message the document represents.
+     * @param buffer       to which the message is encoded. An expandable buffer will grow as required.
+     * @param bufferOffset at which the message header should begin.
+     * @return the number of bytes encoded including the message header.
+     */
+    public int encode(
+        final DirectBuffer json,
+        final int jsonOffset,
+        final int jsonLength,
+        final int templateId,
+        final MutableDirectBuffer buffer,
+        final int bufferOffset)
+    {
+        final Block block = blockByTemplateIdMap.get(templateId);
+        if (null == block)
+        {
+            throw new IllegalArgumentException("No message for template id: " + templateId);
+        }
+
+        this.json = json;
+        this.buffer = buffer;
+        position = jsonOffset;
+        jsonLimit = jsonOffset + jsonLength;
+
+        try
+        {
+            putHeaderValue(bufferOffset, blockLengthToken, block.blockLength);
+            putHeaderValue(bufferOffset, templateIdToken, templateId);
+            putHeaderValue(bufferOffset, schemaIdToken, ir.id());
+            putHeaderValue(bufferOffset, schemaVersionToken, ir.version());
+
+            final int limit = encodeBlock(block, bufferOffset + headerLength);
+
+            skipWhitespace();
+            if (position != jsonLimit)
+            {
+                throw error("unexpected content after message");
+            }
+
+            return limit - bufferOffset;
+        }
+        finally
+        {
+            this.json = null;
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Encode a JSON document as a message, preceded by its message header, into a buffer.
+     *
+     * @param json         document to be encoded.
+     * @param templateId   of the message the document represents.
+     * @param buffer       to which the message is encoded. An expandable buffer will grow as required.
+     * @param bufferOffset at which the message header should begin.
+     * @return the number of bytes encoded including the message header.
+     */
+    public int encode(
+        final CharSequence json, final int templateId, final MutableDirectBuffer buffer, final int bufferOffset)
+    {
+        final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        stringInput.wrap(bytes);
+
+        return encode(stringInput, 0, bytes.length, templateId, buffer, bufferOffset);
+    }
+
+    private int encodeBlock(final Block block, final int offset)
+    {
+        final Token[] tokens = block.tokens;
+        for (final int fieldIndex : block.fieldIndexes)
+        {
+            if (!tokens[fieldIndex].isConstantEncoding())
+            {
+                putNullValues(tokens, fieldIndex + 1, offset + tokens[fieldIndex + 1].offset());
+            }
+        }
+
+        int limit = offset + block.blockLength;
+        int nextVariable = 0;
+
+        if (beginObject())
+        {
+            do
+            {
+                final int nameLength = parseName();
+                final int fieldIndex = findField(block, nameLength);
+                if (-1 != fieldIndex)
+                {
+                    encodeField(tokens, fieldIndex, offset);
+                    continue;
+                }
+
+                final int variable = findVariable(block, nameLength);
+                if (-1 == variable)
+                {
+                    skipValue();
+                    continue;
+                }
+
+                if (variable < nextVariable)
+                {
+                    final String name = tokens[block.variableIndexes[variable]].name();
+                    throw error("group or var data out of schema order: " + name);
+                }
+
+                for (; nextVariable < variable; nextVariable++)
+                {
+                    limit = encodeEmpty(block, nextVariable, limit);
+                }
+
+                limit = encodeVariable(block, variable, limit);
+                nextVariable = variable + 1;
+            }
+            while (nextMember());
+        }
+
+        for (final int length = block.variableIndexes.length; nextVariable < length; nextVariable++)
+        {
+            limit = encodeEmpty(block, nextVariable, limit);
+        }
+
+        return limit;
+    }
+
+    private void encodeField(final Token[] tokens, final int fieldIndex, final int offset)
+    {
+        if (tokens[fieldIndex].isConstantEncoding())
+        {
+            skipValue();
+        }
+        else
+        {
+            encodeType(tokens[fieldIndex], tokens, fieldIndex + 1, offset + tokens[fieldIndex + 1].offset());
+        }
+    }
+
+    private void encodeType(final Token nameToken, final Token[] tokens, final int typeIndex, final int index)
+    {
+        final Token typeToken = tokens[typeIndex];
+        if (typeToken.isConstantEncoding())
+        {
+            skipValue();
+            return;
+        }
+
+        if (parseNull())
+        {
+            return;
+        }
+
+        switch (typeToken.signal())
+        {
+            case ENCODING:
+                encodeEncoding(nameToken, typeToken, index);
+                break;
+
+            case BEGIN_ENUM:
+                encodeEnum(tokens, typeIndex, index);
+                break;
+
+            case BEGIN_SET:
+                encodeSet(tokens, typeIndex, index);
+                break;
+
+            case BEGIN_COMPOSITE:
+                encodeComposite(tokens, typeIndex, index);
+                break;
+
+            default:
+                skipValue();
+        }
+    }
+
+    private void encodeEncoding(final Token nameToken, final Token typeToken, final int index)
+    {
+        final Encoding encoding = typeToken.encoding();
+        final int arrayLength = typeToken.arrayLength();
+
+        if (encoding.primitiveType() == PrimitiveType.CHAR && isQuote(peek()))
+        {
+            final int length = parseString();
+            if (length > arrayLength)
+            {
+                throw error("string too long for " + nameToken.name() + ": length=" + length);
+            }
+
+            buffer.putBytes(index, scratch, 0, length);
+            buffer.setMemory(index + length, arrayLength - length, (byte)0);
+        }
+        else if (arrayLength > 1)
+        {
+            final int elementSize = encoding.primitiveType().size();
+            if (beginArray())
+            {
+                int i = 0;
+                do
+                {
+                    if (i >= arrayLength)
+                    {
+                        throw error("too many elements for " + nameToken.name());
+                    }
+
+                    encodeScalar(nameToken, encoding, index + (i++ * elementSize));
+                }
+                while (nextElement());
+            }
+        }
+        else
+        {
+            encodeScalar(nameToken, encoding, index);
+        }
+    }
+
+    private void encodeScalar(final Token nameToken, final Encoding encoding, final int index)
+    {
+        if (parseNull())
+        {
+            Types.putPrimitiveValue(buffer, index, encoding.applicableNullValue(), encoding);
+        }
+        else if (encoding.primitiveType() == PrimitiveType.CHAR && isQuote(peek()))
+        {
+            final int length = parseString();
+            if (length > 1)
+            {
+                throw error("string too long for " + nameToken.name() + ": length=" + length);
+            }
+
+            buffer.putByte(index, length > 0 ? scratch.getByte(0) : 0);
+        }
+        else
+        {
+            parseNumber();
+            validateRange(nameToken, encoding);
+            if (isIntegral)
+            {
+                Types.putLong(buffer, index, longValue, encoding);
+            }
+            else
+            {
+                Types.putDouble(buffer, index, doubleValue, encoding);
+            }
+        }
+    }
+
+    private void encodeEnum(final Token[] tokens, final int beginIndex, final int index)
+    {
+        final Token beginToken = tokens[beginIndex];
+        final int length = parseString();
+        final int endIndex = beginIndex + beginToken.componentTokenCount() - 1;
+
+        for (int i = beginIndex + 1; i < endIndex; i++)
+        {
+            if (matches(tokens[i].name(), length))
+            {
+                Types.putPrimitiveValue(buffer, index, tokens[i].encoding().constValue(), beginToken.encoding());
+                return;
+            }
+        }
+
+        if (!matches("null", length))
+        {
+            throw error("unknown value for enum " + beginToken.name() + ": " + scratchString(length));
+        }
+    }
+
+    private void encodeSet(final Token[] tokens, final int beginIndex, final int index)
+    {
+        final Token beginToken = tokens[beginIndex];
+        final int endIndex = beginIndex + beginToken.componentTokenCount() - 1;
+        long bits = 0;
+
+        if (beginObject())
+        {
+            do
+            {
+                final int length = parseName();
+                int choiceIndex = -1;
+                for (int i = beginIndex + 1; i < endIndex; i++)
+                {
+                    if (matches(tokens[i].name(), length))
+                    {
+                        choiceIndex = i;
+                        break;
+                    }
+                }
+
+                if (parseBoolean() && -1 != choiceIndex)
+                {
+                    bits |= 1L << tokens[choiceIndex].encoding().constValue().longValue();
+                }
+            }
+            while (nextMember());
+        }
+
+        Types.putLong(buffer, index, bits, beginToken.encoding());
+    }
+
+    private void encodeComposite(final Token[] tokens, final int beginIndex, final int index)
+    {
+        final int endIndex = beginIndex + tokens[beginIndex].componentTokenCount() - 1;
+
+        if (beginObject())
+        {
+            do
+            {
+                final int length = parseName();
+                int componentIndex = -1;
+                for (int i = beginIndex + 1; i < endIndex; i += tokens[i].componentTokenCount())
+                {
+                    if (matches(tokens[i].name(), length))
+                    {
+                        componentIndex = i;
+                        break;
+                    }
+                }
+
+                if (-1 == componentIndex)
+                {
+                    skipValue();
+                }
+                else
+                {
+                    final Token componentToken = tokens[componentIndex];
+                    encodeType(componentToken, tokens, componentIndex, index + componentToken.offset());
+                }
+            }
+            while (nextMember());
+        }
+    }
+
+    private int encodeVariable(final Block block, final int variable, final int limit)
+    {
+        final Token[] tokens = block.tokens;
+        final int tokenIndex = block.variableIndexes[variable];
+
+        if (tokens[tokenIndex].signal() == Signal.BEGIN_GROUP)
+        {
+            return encodeGroup(block, variable, limit, true);
+        }
+
+        final Token lengthToken = tokens[tokenIndex + 2];
+        final Token dataToken = tokens[tokenIndex + 3];
+        final int dataIndex = limit + dataToken.offset();
+
+        int length = 0;
+        if (!parseNull())
+        {
+            length = parseString();
+            final String characterEncoding = dataToken.encoding().characterEncoding();
+            if (Utf8JsonTokenListener.isAsciiCompatible(characterEncoding))
+            {
+                validateLength(tokens[tokenIndex], "length", length, lengthToken.encoding());
+                buffer.putBytes(dataIndex, scratch, 0, length);
+            }
+            else
+            {
+                final byte[] bytes = scratch.getStringWithoutLengthUtf8(0, length)
+                    .getBytes(Charset.forName(characterEncoding));
+                length = bytes.length;
+                validateLength(tokens[tokenIndex], "length", length, lengthToken.encoding());
+                buffer.putBytes(dataIndex, bytes);
+            }
+        }
+
+        Types.putLong(buffer, limit + lengthToken.offset(), length, lengthToken.encoding());
+
+        return dataIndex + length;
+    }
+
+    private int encodeEmpty(final Block block, final int variable, final int limit)
+    {
+        final Token[] tokens = block.tokens;
+        final int tokenIndex = block.variableIndexes[variable];
+
+        if (tokens[tokenIndex].signal() == Signal.BEGIN_GROUP)
+        {
+            return encodeGroup(block, variable, limit, false);
+        }
+
+        final Token lengthToken = tokens[tokenIndex + 2];
+        Types.putLong(buffer, limit + lengthToken.offset(), 0, lengthToken.encoding());
+
+        return limit + tokens[tokenIndex + 3].offset();
+    }
+
+    private int encodeGroup(final Block block, final int variable, final int limit, final boolean hasValue)
+    {
+        final Token[] tokens = block.tokens;
+        final int tokenIndex = block.variableIndexes[variable];
+        final Block groupBlock = block.groupBlocks[variable];
+        final Token groupBlockLengthToken = tokens[tokenIndex + 2];
+        final Token numInGroupToken = tokens[tokenIndex + 3];
+
+        int groupLimit = limit + tokens[tokenIndex + 1].encodedLength();
+        int numInGroup = 0;
+
+        if (hasValue && !parseNull() && beginArray())
+        {
+            do
+            {
+                validateLength(tokens[tokenIndex], "numInGroup", ++numInGroup, numInGroupToken.encoding());
+                groupLimit = encodeBlock(groupBlock, groupLimit);
+            }
+            while (nextElement());
+        }
+
+        Types.putLong(
+            buffer, limit + groupBlockLengthToken.offset(), groupBlock.blockLength, groupBlockLengthToken.encoding());
+        Types.putLong(buffer, limit + numInGroupToken.offset(), numInGroup, numInGroupToken.encoding());
+
+        return groupLimit;
+    }
+
+    private void putNullValues(final Token[] tokens, final int typeIndex, final int index)
+    {
+        final Token typeToken = tokens[typeIndex];
+        if (typeToken.isConstantEncoding())
+        {
+            return;
+        }
+
+        final Encoding encoding = typeToken.encoding();
+        switch (typeToken.signal())
+        {
+            case ENCODING:
+                final int elementSize = encoding.primitiveType().size();
+                final PrimitiveValue nullValue = encoding.applicableNullValue();
+                for (int i = 0, length = typeToken.arrayLength(); i < length; i++)
+                {
+                    Types.putPrimitiveValue(buffer, index + (i * elementSize), nullValue, encoding);
+                }
+                break;
+
+            case BEGIN_ENUM:
+                Types.putPrimitiveValue(buffer, index, encoding.applicableNullValue(), encoding);
+                break;
+
+            case BEGIN_SET:
+                Types.putLong(buffer, index, 0, encoding);
+                break;
+
+            case BEGIN_COMPOSITE:
+                final int endIndex = typeIndex + typeToken.componentTokenCount() - 1;
+                for (int i = typeIndex + 1; i < endIndex; i += tokens[i].componentTokenCount())
+                {
+                    putNullValues(tokens, i, index + tokens[i].offset());
+                }
+                break;
+        }
+    }
+
+    private boolean matches(final String name, final int length)
+    {
+        if (name.length() != length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            if (name.charAt(i) != (char)scratch.getByte(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int findField(final Block block, final int nameLength)
+    {
+        for (final int fieldIndex : block.fieldIndexes)
+        {
+            if (matches(block.tokens[fieldIndex].name(), nameLength))
+            {
+                return fieldIndex;
+            }
+        }
+
+        return -1;
+    }
+
+    private int findVariable(final Block block, final int nameLength)
+    {
+        for (int i = 0, length = block.variableIndexes.length; i < length; i++)
+        {
+            if (matches(block.tokens[block.variableIndexes[i]].name(), nameLength))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private byte peek()
+    {
+        skipWhitespace();
+        if (position >= jsonLimit)
+        {
+            throw error("unexpected end of input");
+        }
+
+        return json.getByte(position);
+    }
+
+    private byte next()
+    {
+        final byte b = peek();
+        position++;
+
+        return b;
+    }
+
+    private void expect(final char c)
+    {
+        if (next() != c)
+        {
+            position--;
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private boolean beginObject()
+    {
+        expect('{');
+        if (peek() == '}')
+        {
+            position++;
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean nextMember()
+    {
+        final byte b = next();
+        if (',' == b)
+        {
+            return true;
+        }
+
+        if ('}' != b)
+        {
+            position--;
+            throw error("expected ',' or '}'");
+        }
+
+        return false;
+    }
+
+    private boolean beginArray()
+    {
+        expect('[');
+        if (peek() == ']')
+        {
+            position++;
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean nextElement()
+    {
+        final byte b = next();
+        if (',' == b)
+        {
+            return true;
+        }
+
+        if (']' != b)
+        {
+            position--;
+            throw error("expected ',' or ']'");
+        }
+
+        return false;
+    }
+
+    private int parseName()
+    {
+        final int length = parseString();
+        expect(':');
+
+        return length;
+    }
+
+    private int parseString()
+    {
+        final byte quote = next();
+        if (!isQuote(quote))
+        {
+            position--;
+            throw error("expected string");
+        }
+
+        int length = 0;
+        while (true)
+        {
+            if (position >= jsonLimit)
+            {
+                throw error("unterminated string");
+            }
+
+            byte b = json.getByte(position++);
+            if (quote == b)
+            {
+                return length;
+            }
+
+            if ('\\' == b)
+            {
+                if (position >= jsonLimit)
+                {
+                    throw error("unterminated string");
+                }
+
+                b = json.getByte(position++);
+                switch (b)
+                {
+                    case 'b':
+                        b = '\b';
+                        break;
+
+                    case 'f':
+                        b = '\f';
+                        break;
+
+                    case 'n':
+                        b = '\n';
+                        break;
+
+                    case 'r':
+                        b = '\r';
+                        break;
+
+                    case 't':
+                        b = '\t';
+                        break;
+
+                    case 'u':
+                        length += scratch.putStringWithoutLengthUtf8(length, String.valueOf(parseUnicodeEscape()));
+                        continue;
+                }
+            }
+
+            scratch.putByte(length++, b);
+        }
+    }
+
+    private char[] parseUnicodeEscape()
+    {
+        final char high = parseHexChar();
+        if (Character.isHighSurrogate(high) && position + 1 < jsonLimit &&
+            '\\' == json.getByte(position) && 'u' == json.getByte(position + 1))
+        {
+            position += 2;
+            return new char[]{ high, parseHexChar() };
+        }
+
+        return new char[]{ high };
+    }
+
+    private char parseHexChar()
+    {
+        if (position + 4 > jsonLimit)
+        {
+            throw error("truncated unicode escape");
+        }
+
+        int value = 0;
+        for (int i = 0; i < 4; i++)
+        {
+            final int digit = Character.digit(json.getByte(position++), 16);
+            if (-1 == digit)
+            {
+                throw error("invalid unicode escape");
+            }
+
+            value = (value << 4) | digit;
+        }
+
+        return (char)value;
+    }
+
+    private void parseNumber()
+    {
+        skipWhitespace();
+        final int start = position;
+        final boolean isNegative = peekIs('-');
+        if (isNegative)
+        {
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        int exponent = 0;
+        boolean isInteger = true;
+
+        for (; peekIsDigit(); position++, digits++)
+        {
+            mantissa = appendDigit(mantissa, json.getByte(position) - '0');
+        }
+
+        if (0 == digits)
+        {
+            throw error("expected number");
+        }
+
+        if (peekIs('.'))
+        {
+            isInteger = false;
+            for (position++; peekIsDigit(); position++, digits++, fractionDigits++)
+            {
+                mantissa = appendDigit(mantissa, json.getByte(position) - '0');
+            }
+        }
+
+        if (peekIs('e') || peekIs('E'))
+        {
+            isInteger = false;
+            position++;
+            final boolean isNegativeExponent = peekIs('-');
+            if (isNegativeExponent || peekIs('+'))
+            {
+                position++;
+            }
+
+            final int exponentStart = position;
+            for (; peekIsDigit(); position++)
+            {
+                if (exponent <= MAX_EXPONENT)
+                {
+                    exponent = (exponent * 10) + (json.getByte(position) - '0');
+                }
+            }
+
+            if (exponentStart == position)
+            {
+                throw error("expected exponent digits");
+            }
+
+            exponent = isNegativeExponent ? -exponent : exponent;
+        }
+
+        if (isInteger && peekIs('/'))
+        {
+            position++;
+            parseNumber();
+            isIntegral = false;
+            final double numerator = mantissa < 0 ? Double.MAX_VALUE : mantissa;
+            doubleValue = (isNegative ? -numerator : numerator) / (double)longValue;
+            return;
+        }
+
+        final boolean isOverflow = mantissa < 0;
+        isIntegral = isInteger;
+        isUnsignedLong = false;
+        if (isInteger)
+        {
+            if (isOverflow)
+            {
+                parseLongText(start, isNegative);
+            }
+            else
+            {
+                longValue = isNegative ? -mantissa : mantissa;
+            }
+
+            return;
+        }
+
+        final int scale = exponent - fractionDigits;
+        if (!isOverflow && digits <= MAX_EXACT_DIGITS && scale < POWERS_OF_TEN.length && -scale < POWERS_OF_TEN.length)
+        {
+            final double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+            doubleValue = isNegative ? -value : value;
+        }
+        else
+        {
+            doubleValue = Double.parseDouble(json.getStringWithoutLengthAscii(start, position - start));
+        }
+    }
+
+    private static long appendDigit(final long mantissa, final int digit)
+    {
+        return mantissa < 0 || mantissa > (Long.MAX_VALUE - digit) / 10 ? -1 : (mantissa * 10) + digit;
+    }
+
+    private void parseLongText(final int start, final boolean isNegative)
+    {
+        final String text = json.getStringWithoutLengthAscii(start, position - start);
+        try
+        {
+            if (isNegative)
+            {
+                longValue = Long.parseLong(text);
+            }
+            else
+            {
+                longValue = Long.parseUnsignedLong(text);
+                isUnsignedLong = longValue < 0;
+            }
+        }
+        catch (final NumberFormatException ex)
+        {
+            throw error("integer out of range: " + text);
+        }
+    }
+
+    private void validateRange(final Token nameToken, final Encoding encoding)
+    {
+        final PrimitiveType primitiveType = encoding.primitiveType();
+        final boolean isInRange;
+
+        if (PrimitiveType.FLOAT == primitiveType || PrimitiveType.DOUBLE == primitiveType)
+        {
+            final double value = isIntegral ? (isUnsignedLong ? unsignedToDouble(longValue) : longValue) : doubleValue;
+            final PrimitiveValue minValue = encoding.minValue();
+            final PrimitiveValue maxValue = encoding.maxValue();
+
+            isInRange = Double.isNaN(value) || Double.isInfinite(value) ||
+                ((null == minValue || value >= minValue.doubleValue()) &&
+                (null == maxValue || value <= maxValue.doubleValue()) &&
+                (PrimitiveType.DOUBLE == primitiveType || Math.abs(value) <= Float.MAX_VALUE));
+        }
+        else
+        {
+            final long minValue = encoding.applicableMinValue().longValue();
+            final long maxValue = encoding.applicableMaxValue().longValue();
+            final boolean isUnsigned64 = PrimitiveType.UINT64 == primitiveType;
+
+            if (isIntegral)
+            {
+                isInRange = longValue == encoding.applicableNullValue().longValue() || (isUnsigned64 ?
+                    Long.compareUnsigned(longValue, minValue) >= 0 && Long.compareUnsigned(longValue, maxValue) <= 0 :
+                    !isUnsignedLong && longValue >= minValue && longValue <= maxValue);
+            }
+            else
+            {
+                isInRange = doubleValue >= minValue &&
+                    doubleValue <= (isUnsigned64 ? unsignedToDouble(maxValue) : maxValue);
+            }
+        }
+
+        if (!isInRange)
+        {
+            final String value = isIntegral ?
+                (isUnsignedLong ? Long.toUnsignedString(longValue) : Long.toString(longValue)) :
+                Double.toString(doubleValue);
+
+            throw error("value out of range for " + nameToken.name() + ": " + value);
+        }
+
+        if (!isIntegral && doubleValue != Math.rint(doubleValue) &&
+            PrimitiveType.FLOAT != primitiveType && PrimitiveType.DOUBLE != primitiveType)
+        {
+            throw error("value not a whole number for " + nameToken.name() + ": " + doubleValue);
+        }
+    }
+
+    private void validateLength(
+        final Token nameToken, final String lengthName, final int length, final Encoding encoding)
+    {
+        if (Long.compareUnsigned(length, encoding.applicableMaxValue().longValue()) > 0)
+        {
+            throw error(lengthName + " out of range for " + nameToken.name() + ": " + length);
+        }
+    }
+
+    private static double unsignedToDouble(final long value)
+    {
+        return value >= 0 ? value : ((value >>> 1) * 2.0) + (value & 1);
+    }
+
+    private boolean parseBoolean()
+    {
+        final byte b = peek();
+        if ('t' == b)
+        {
+            parseLiteral("true");
+            return true;
+        }
+
+        if ('f' == b)
+        {
+            parseLiteral("false");
+            return false;
+        }
+
+        throw error("expected boolean");
+    }
+
+    private boolean parseNull()
+    {
+        if ('n' == peek())
+        {
+            parseLiteral("null");
+            return true;
+        }
+
+        return false;
+    }
+
+    private void parseLiteral(final String literal)
+    {
+        final int length = literal.length();
+        if (position + length > jsonLimit)
+        {
+            throw error("expected " + literal);
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            if (literal.charAt(i) != json.getByte(position + i))
+            {
+                throw error("expected " + literal);
+            }
+        }
+
+        position += length;
+    }
+
+    private void skipValue()
+    {
+        final byte b = peek();
+        switch (b)
+        {
+            case '{':
+                if (beginObject())
+                {
+                    do
+                    {
+                        parseName();
+                        skipValue();
+                    }
+                    while (nextMember());
+                }
+                break;
+
+            case '[':
+                if (beginArray())
+                {
+                    do
+                    {
+                        skipValue();
+                    }
+                    while (nextElement());
+                }
+                break;
+
+            case '"':
+            case '\'':
+                parseString();
+                break;
+
+            case 't':
+            case 'f':
+                parseBoolean();
+                break;
+
+            case 'n':
+                parseLiteral("null");
+                break;
+
+            default:
+                parseNumber();
+        }
+    }
+
+    private void skipWhitespace()
+    {
+        while (position < jsonLimit)
+        {
+            final byte b = json.getByte(position);
+            if (' ' != b && '\n' != b && '\r' != b && '\t' != b)
+            {
+                break;
+            }
+
+            position++;
+        }
+    }
+
+    private boolean peekIs(final char c)
+    {
+        return position < jsonLimit && json.getByte(position) == c;
+    }
+
+    private boolean peekIsDigit()
+    {
+        if (position >= jsonLimit)
+        {
+            return false;
+        }
+
+        final byte b = json.getByte(position);
+
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isQuote(final byte b)
+    {
+        return '"' == b || '\'' == b;
+    }
+
+    private String scratchString(final int length)
+    {
+        return scratch.getStringWithoutLengthUtf8(0, length);
+    }
+
+    private IllegalArgumentException error(final String message)
+    {
+        return new IllegalArgumentException("Invalid JSON at position " + position + ": " + message);
+    }
+
+    private void putHeaderValue(final int bufferOffset, final Token token, final long value)
+    {
+        Types.putLong(buffer, bufferOffset + token.offset(), value, token.encoding());
+    }
+
+    private static Token findToken(final List<Token> tokens, final String name)
+    {
+        for (final Token token : tokens)
+        {
+            if (name.equals(token.name()))
+            {
+                return token;
+            }
+        }
+
+        throw new IllegalStateException("No token in message header for name: " + name);
+    }
+
+    private static Block compileBlock(
+        final Token[] tokens, final int blockLength, final int fromIndex, final int toIndex)
+    {
+        final IntArrayList fieldIndexes = new IntArrayList();
+        final IntArrayList variableIndexes = new IntArrayList();
+        final ArrayList<Block> groupBlocks = new ArrayList<>();
+
+        for (int i = fromIndex; i < toIndex; )
+        {
+            final Token token = tokens[i];
+            switch (token.signal())
+            {
+                case BEGIN_FIELD:
+                    fieldIndexes.addInt(i);
+                    break;
+
+                case BEGIN_GROUP:
+                    final int beginFieldsIndex = i + tokens[i + 1].componentTokenCount() + 1;
+                    final int endGroupIndex = i + token.componentTokenCount() - 1;
+                    variableIndexes.addInt(i);
+                    groupBlocks.add(compileBlock(tokens, token.encodedLength(), beginFieldsIndex, endGroupIndex));
+                    break;
+
+                case BEGIN_VAR_DATA:
+                    variableIndexes.addInt(i);
+                    groupBlocks.add(null);
+                    break;
+            }
+
+            i += token.componentTokenCount();
+        }
+
+        return new Block(
+            tokens,
+            blockLength,
+            fieldIndexes.toIntArray(),
+            variableIndexes.toIntArray(),
+            groupBlocks.toArray(new Block[0]));
+    }
+
+    /**
+     * Fields, followed by repeating groups and var data, at a level of a message.
+     */
+    private static final class Block
+    {
+        private final Token[] tokens;
+        private final int blockLength;
+        private final int[] fieldIndexes;
+        private final int[] variableIndexes;
+        private final Block[] groupBlocks;
+
+        private Block(
+            final Token[] tokens,
+            final int blockLength,
+            final int[] fieldIndexes,
+            final int[] variableIndexes,
+            final Block[] groupBlocks)
+        {
+            this.tokens = tokens;
+            this.blockLength = blockLength;
+            this.fieldIndexes = fieldIndexes;
+            this.variableIndexes = variableIndexes;
+            this.groupBlocks = groupBlocks;
+        }
+    }
+}
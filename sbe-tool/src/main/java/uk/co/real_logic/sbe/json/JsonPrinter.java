@@ -15,27 +15,57 @@
  */
 package uk.co.real_logic.sbe.json;
 
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import uk.co.real_logic.sbe.ir.Ir;
-import uk.co.real_logic.sbe.ir.Token;
-import uk.co.real_logic.sbe.otf.OtfHeaderDecoder;
-import uk.co.real_logic.sbe.otf.OtfMessageDecoder;
+import uk.co.real_logic.sbe.ir.TokenTable;
+import uk.co.real_logic.sbe.otf.OtfSchemaRegistry;
+import uk.co.real_logic.sbe.otf.TokenListener;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.List;
 
 /**
- * Pretty Print Json based upon the given Ir.
+ * Pretty Print Json based upon the given Ir, or upon the schemas of an {@link OtfSchemaRegistry} for messages of
+ * different schemas and versions, or upon a compact {@link TokenTable} for schemas with very many tokens.
+ * <p>
+ * Printing to a {@link MutableDirectBuffer}, {@link ByteBuffer}, or {@link OutputStream} writes UTF-8 bytes via a
+ * reused {@link Utf8JsonTokenListener} and is therefore not thread safe.
  */
 public class JsonPrinter
 {
-    private final OtfHeaderDecoder headerDecoder;
-    private final Ir ir;
+    private final OtfSchemaRegistry registry;
+    private final Utf8JsonTokenListener utf8Listener = new Utf8JsonTokenListener();
+    private final UnsafeBuffer byteBufferOutput = new UnsafeBuffer(0, 0);
+    private ExpandableArrayBuffer streamOutput;
 
     public JsonPrinter(final Ir ir)
     {
-        this.ir = ir;
-        headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        this(new OtfSchemaRegistry().register(ir));
+    }
+
+    /**
+     * Construct a printer for the messages of the schemas in a registry, each being printed with the schema
+     * registered for its schema id and version.
+     *
+     * @param registry of the schemas for the messages.
+     */
+    public JsonPrinter(final OtfSchemaRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    /**
+     * Construct a printer for the messages of a schema described by a compact {@link TokenTable}.
+     *
+     * @param tokenTable for the schema of the messages.
+     */
+    public JsonPrinter(final TokenTable tokenTable)
+    {
+        this(new OtfSchemaRegistry().register(tokenTable));
     }
 
     public void print(final ByteBuffer encodedMessage, final StringBuilder output)
@@ -46,41 +76,64 @@ public class JsonPrinter
 
     public void print(final StringBuilder output, final UnsafeBuffer buffer, final int bufferOffset)
     {
-        final int templateId = headerDecoder.getTemplateId(buffer, bufferOffset);
-        final int schemaId = headerDecoder.getSchemaId(buffer, bufferOffset);
-        final int actingVersion = headerDecoder.getSchemaVersion(buffer, bufferOffset);
-        final int blockLength = headerDecoder.getBlockLength(buffer, bufferOffset);
-
-        validateId(schemaId);
-        validateVersion(schemaId, actingVersion);
-
-        final int messageOffset = bufferOffset + headerDecoder.encodedLength();
-        final List<Token> msgTokens = ir.getMessage(templateId);
-
-        OtfMessageDecoder.decode(
-            buffer,
-            messageOffset,
-            actingVersion,
-            blockLength,
-            msgTokens,
-            new JsonTokenListener(output));
+        decode(buffer, bufferOffset, new JsonTokenListener(output));
     }
 
-    private void validateId(final int schemaId)
+    /**
+     * Print a message as JSON encoded in UTF-8 to a buffer.
+     *
+     * @param buffer       containing the message header and encoded message.
+     * @param bufferOffset at which the message header begins.
+     * @param output       to which the JSON is written. An expandable buffer will grow as required.
+     * @param outputOffset at which the JSON begins in the output.
+     * @return the number of bytes written to the output.
+     */
+    public int print(
+        final DirectBuffer buffer, final int bufferOffset, final MutableDirectBuffer output, final int outputOffset)
     {
-        if (schemaId != ir.id())
-        {
-            throw new IllegalArgumentException("Required schema id " + ir.id() + " but was " + schemaId);
-        }
+        decode(buffer, bufferOffset, utf8Listener.wrap(output, outputOffset));
+
+        return utf8Listener.position() - outputOffset;
+    }
+
+    /**
+     * Print a message as JSON encoded in UTF-8 to a {@link ByteBuffer} from its position which is then advanced.
+     *
+     * @param buffer       containing the message header and encoded message.
+     * @param bufferOffset at which the message header begins.
+     * @param output       to which the JSON is written.
+     */
+    public void print(final DirectBuffer buffer, final int bufferOffset, final ByteBuffer output)
+    {
+        final int position = output.position();
+        byteBufferOutput.wrap(output, position, output.remaining());
+        final int length = print(buffer, bufferOffset, byteBufferOutput, 0);
+        output.position(position + length);
     }
 
-    private void validateVersion(final int schemaId, final int actingVersion)
+    /**
+     * Print a message as JSON encoded in UTF-8 to an {@link OutputStream}.
+     *
+     * @param buffer       containing the message header and encoded message.
+     * @param bufferOffset at which the message header begins.
+     * @param output       to which the JSON is written.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void print(final DirectBuffer buffer, final int bufferOffset, final OutputStream output)
+        throws IOException
     {
-        if (actingVersion > ir.version())
+        if (null == streamOutput)
         {
-            throw new IllegalArgumentException(
-                "Required schema version " + actingVersion + " but was " + ir.version() + " for schema id " + schemaId);
+            streamOutput = new ExpandableArrayBuffer();
         }
+
+        final int length = print(buffer, bufferOffset, streamOutput, 0);
+        output.write(streamOutput.byteArray(), 0, length);
+    }
+
+    private void decode(final DirectBuffer buffer, final int bufferOffset, final TokenListener listener)
+    {
+        registry.decode(buffer, bufferOffset, listener);
     }
 
     public String print(final ByteBuffer encodedMessage)
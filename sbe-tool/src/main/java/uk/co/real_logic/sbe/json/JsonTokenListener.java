@@ -18,353 +18,78 @@ package uk.co.real_logic.sbe.json;
 import org.agrona.DirectBuffer;
 import uk.co.real_logic.sbe.PrimitiveValue;
 import uk.co.real_logic.sbe.ir.Encoding;
-import uk.co.real_logic.sbe.ir.Token;
 import uk.co.real_logic.sbe.otf.TokenListener;
 import uk.co.real_logic.sbe.otf.Types;
 
-import java.io.UnsupportedEncodingException;
-import java.util.List;
+import java.nio.charset.Charset;
 
-import static uk.co.real_logic.sbe.PrimitiveType.CHAR;
-
-public class JsonTokenListener implements TokenListener
+/**
+ * {@link TokenListener} which appends the JSON for a message to a {@link StringBuilder}.
+ */
+public class JsonTokenListener extends AbstractJsonTokenListener
 {
     private final StringBuilder output;
-    private int indentation = 0;
-    private int compositeLevel = 0;
 
     public JsonTokenListener(final StringBuilder output)
     {
         this.output = output;
     }
 
-    public void onBeginMessage(final Token token)
-    {
-        startObject();
-    }
-
-    public void onEndMessage(final Token token)
-    {
-        endObject();
-    }
-
-    public void onEncoding(
-        final Token fieldToken,
-        final DirectBuffer buffer,
-        final int bufferIndex,
-        final Token typeToken,
-        final int actingVersion)
-    {
-        property(compositeLevel > 0 ? typeToken.name() : fieldToken.name());
-        appendEncodingAsString(buffer, bufferIndex, typeToken, actingVersion);
-        next();
-    }
-
-    public void onEnum(
-        final Token fieldToken,
-        final DirectBuffer buffer,
-        final int bufferIndex,
-        final List<Token> tokens,
-        final int fromIndex,
-        final int toIndex,
-        final int actingVersion)
-    {
-        final Token typeToken = tokens.get(fromIndex + 1);
-        final long encodedValue = readEncodingAsLong(buffer, bufferIndex, typeToken, actingVersion);
-
-        String value = null;
-        if (fieldToken.isConstantEncoding())
-        {
-            final String refValue = fieldToken.encoding().constValue().toString();
-            final int indexOfDot = refValue.indexOf('.');
-            value = -1 == indexOfDot ? refValue : refValue.substring(indexOfDot + 1);
-        }
-        else
-        {
-            for (int i = fromIndex + 1; i < toIndex; i++)
-            {
-                if (encodedValue == tokens.get(i).encoding().constValue().longValue())
-                {
-                    value = tokens.get(i).name();
-                    break;
-                }
-            }
-        }
-
-        property(determineName(0, fieldToken, tokens, fromIndex));
-        doubleQuote();
-        output.append(value);
-        doubleQuote();
-        next();
-    }
-
-    public void onBitSet(
-        final Token fieldToken,
-        final DirectBuffer buffer,
-        final int bufferIndex,
-        final List<Token> tokens,
-        final int fromIndex,
-        final int toIndex,
-        final int actingVersion)
-    {
-        final Token typeToken = tokens.get(fromIndex + 1);
-        final long encodedValue = readEncodingAsLong(buffer, bufferIndex, typeToken, actingVersion);
-
-        property(determineName(0, fieldToken, tokens, fromIndex));
-
-        output.append("{ ");
-        for (int i = fromIndex + 1; i < toIndex; i++)
-        {
-            output.append('"').append(tokens.get(i).name()).append("\": ");
-
-            final long bitPosition = tokens.get(i).encoding().constValue().longValue();
-            final boolean flag = (encodedValue & (1L << bitPosition)) != 0;
-
-            output.append(flag);
-
-            if (i < (toIndex - 1))
-            {
-                output.append(", ");
-            }
-        }
-        output.append(" }");
-
-        next();
-    }
-
-    public void onBeginComposite(
-        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
-    {
-        ++compositeLevel;
-
-        property(determineName(1, fieldToken, tokens, fromIndex));
-        output.append('\n');
-        startObject();
-    }
-
-    public void onEndComposite(
-        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    void append(final char c)
     {
-        --compositeLevel;
-        endObject();
-    }
-
-    public void onGroupHeader(final Token token, final int numInGroup)
-    {
-        property(token.name());
-        output.append("[\n");
+        output.append(c);
     }
 
-    public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+    void append(final CharSequence value, final int offset, final int length)
     {
-        startObject();
+        output.append(value, offset, offset + length);
     }
 
-    public void onEndGroup(final Token token, final int groupIndex, final int numInGroup)
+    void append(final byte b)
     {
-        endObject();
-        if (isLastGroup(groupIndex, numInGroup))
-        {
-            backup();
-            output.append("],\n");
-        }
+        output.append((char)b);
     }
 
-    public void onVarData(
-        final Token fieldToken,
-        final DirectBuffer buffer,
-        final int bufferIndex,
-        final int length,
-        final Token typeToken)
+    void backup()
     {
-        try
-        {
-            property(fieldToken.name());
-            doubleQuote();
-
-            final byte[] tempBuffer = new byte[length];
-            buffer.getBytes(bufferIndex, tempBuffer, 0, length);
-            final String str = new String(tempBuffer, 0, length, typeToken.encoding().characterEncoding());
-
-            escape(str);
-
-            doubleQuote();
-            next();
-        }
-        catch (final UnsupportedEncodingException ex)
-        {
-            ex.printStackTrace();
-        }
-    }
-
-    private static boolean isLastGroup(final int groupIndex, final int numInGroup)
-    {
-        return groupIndex == numInGroup - 1;
+        output.setLength(output.length() - 2);
     }
 
-    private void next()
+    void appendValue(final DirectBuffer buffer, final int index, final Encoding encoding)
     {
-        output.append(",\n");
+        Types.appendAsJsonString(output, buffer, index, encoding);
     }
 
-    private void property(final String name)
+    void appendValue(final PrimitiveValue value)
     {
-        indent();
-        doubleQuote();
-        output.append(name);
-        output.append("\": ");
+        output.append(value.toString());
     }
 
-    private void appendEncodingAsString(
-        final DirectBuffer buffer, final int index, final Token typeToken, final int actingVersion)
+    void appendEscaped(final DirectBuffer buffer, final int index, final int length, final String characterEncoding)
     {
-        final Encoding encoding = typeToken.encoding();
-        final PrimitiveValue constOrNotPresentValue = constOrNotPresentValue(typeToken, actingVersion);
-        if (null != constOrNotPresentValue)
+        if (null == characterEncoding)
         {
-            if (encoding.primitiveType() == CHAR)
-            {
-                doubleQuote();
-                output.append(constOrNotPresentValue.toString());
-                doubleQuote();
-            }
-            else
+            for (int i = index, limit = index + length; i < limit; i++)
             {
-                output.append(constOrNotPresentValue.toString());
+                escape(buffer.getByte(i));
             }
 
             return;
         }
 
-        final int elementSize = encoding.primitiveType().size();
+        final byte[] tempBuffer = new byte[length];
+        buffer.getBytes(index, tempBuffer, 0, length);
+        final String str = new String(tempBuffer, 0, length, Charset.forName(characterEncoding));
 
-        final int size = typeToken.arrayLength();
-        if (size > 1 && encoding.primitiveType() == CHAR)
+        for (int i = 0, strLength = str.length(); i < strLength; i++)
         {
-            doubleQuote();
-
-            for (int i = 0; i < size; i++)
+            final char c = str.charAt(i);
+            if (isEscaped(c))
             {
-                escape((char)buffer.getByte(index + (i * elementSize)));
+                output.append('\\');
             }
 
-            doubleQuote();
+            output.append(c);
         }
-        else
-        {
-            if (size > 1)
-            {
-                output.append('[');
-            }
-
-            for (int i = 0; i < size; i++)
-            {
-                Types.appendAsJsonString(output, buffer, index + (i * elementSize), encoding);
-                output.append(", ");
-            }
-
-            backup();
-            if (size > 1)
-            {
-                output.append(']');
-            }
-        }
-    }
-
-    private void backup()
-    {
-        output.setLength(output.length() - 2);
-    }
-
-    private void indent()
-    {
-        for (int i = 0; i < indentation; i++)
-        {
-            output.append("    ");
-        }
-    }
-
-    private void doubleQuote()
-    {
-        output.append('\"');
-    }
-
-    private void startObject()
-    {
-        indent();
-        output.append("{\n");
-        indentation++;
-    }
-
-    private void endObject()
-    {
-        backup();
-        output.append('\n');
-        indentation--;
-        indent();
-        output.append('}');
-
-        if (indentation > 0)
-        {
-            next();
-        }
-    }
-
-    private String determineName(
-        final int thresholdLevel, final Token fieldToken, final List<Token> tokens, final int fromIndex)
-    {
-        if (compositeLevel > thresholdLevel)
-        {
-            return tokens.get(fromIndex).name();
-        }
-        else
-        {
-            return fieldToken.name();
-        }
-    }
-
-    private static PrimitiveValue constOrNotPresentValue(final Token token, final int actingVersion)
-    {
-        final Encoding encoding = token.encoding();
-        if (token.isConstantEncoding())
-        {
-            return encoding.constValue();
-        }
-        else if (token.isOptionalEncoding() && actingVersion < token.version())
-        {
-            return encoding.applicableNullValue();
-        }
-
-        return null;
-    }
-
-    private static long readEncodingAsLong(
-        final DirectBuffer buffer, final int bufferIndex, final Token typeToken, final int actingVersion)
-    {
-        final PrimitiveValue constOrNotPresentValue = constOrNotPresentValue(typeToken, actingVersion);
-        if (null != constOrNotPresentValue)
-        {
-            return constOrNotPresentValue.longValue();
-        }
-
-        return Types.getLong(buffer, bufferIndex, typeToken.encoding());
-    }
-
-    private void escape(final String str)
-    {
-        for (int i = 0, length = str.length(); i < length; i++)
-        {
-            escape(str.charAt(i));
-        }
-    }
-
-    private void escape(final char c)
-    {
-        if ('"' == c || '\\' == c || '\b' == c || '\f' == c || '\n' == c || '\r' == c || '\t' == c)
-        {
-            output.append('\\');
-        }
-
-        output.append(c);
     }
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.json;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import uk.co.real_logic.sbe.PrimitiveValue;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.otf.TokenListener;
+
+import java.nio.charset.Charset;
+
+/**
+ * {@link TokenListener} which writes the same JSON as {@link JsonTokenListener} as UTF-8 bytes directly into a
+ * {@link MutableDirectBuffer}.
+ * <p>
+ * The listener is reusable by wrapping a new output for each message and does not allocate when printing
+ * messages whose var data is ASCII or UTF-8 encoded, as var data is escaped byte by byte.
+ */
+public class Utf8JsonTokenListener extends AbstractJsonTokenListener
+{
+    private final StringBuilder numberBuilder = new StringBuilder();
+    private MutableDirectBuffer output;
+    private int position;
+
+    /**
+     * Wrap an output buffer to which the JSON is to be written for the next message.
+     *
+     * @param output buffer to which the JSON is written.
+     * @param offset in the buffer at which the JSON begins.
+     * @return this for a fluent API.
+     */
+    public Utf8JsonTokenListener wrap(final MutableDirectBuffer output, final int offset)
+    {
+        this.output = output;
+        this.position = offset;
+        reset();
+
+        return this;
+    }
+
+    /**
+     * The position in the output buffer after the last byte written.
+     *
+     * @return position in the output buffer after the last byte written.
+     */
+    public int position()
+    {
+        return position;
+    }
+
+    void append(final char c)
+    {
+        output.putByte(position++, (byte)c);
+    }
+
+    void append(final CharSequence value, final int offset, final int length)
+    {
+        final MutableDirectBuffer output = this.output;
+        int position = this.position;
+        for (int i = offset, limit = offset + length; i < limit; i++)
+        {
+            output.putByte(position++, (byte)value.charAt(i));
+        }
+
+        this.position = position;
+    }
+
+    void append(final byte b)
+    {
+        output.putByte(position++, b);
+    }
+
+    void backup()
+    {
+        position -= 2;
+    }
+
+    void appendValue(final DirectBuffer buffer, final int index, final Encoding encoding)
+    {
+        switch (encoding.primitiveType())
+        {
+            case CHAR:
+                append('\'');
+                append(buffer.getByte(index));
+                append('\'');
+                break;
+
+            case INT8:
+                position += output.putIntAscii(position, buffer.getByte(index));
+                break;
+
+            case INT16:
+                position += output.putIntAscii(position, buffer.getShort(index, encoding.byteOrder()));
+                break;
+
+            case INT32:
+                position += output.putIntAscii(position, buffer.getInt(index, encoding.byteOrder()));
+                break;
+
+            case INT64:
+            case UINT64:
+                position += output.putLongAscii(position, buffer.getLong(index, encoding.byteOrder()));
+                break;
+
+            case UINT8:
+                position += output.putIntAscii(position, buffer.getByte(index) & 0xFF);
+                break;
+
+            case UINT16:
+                position += output.putIntAscii(position, buffer.getShort(index, encoding.byteOrder()) & 0xFFFF);
+                break;
+
+            case UINT32:
+                position += output.putLongAscii(
+                    position, buffer.getInt(index, encoding.byteOrder()) & 0xFFFF_FFFFL);
+                break;
+
+            case FLOAT:
+            {
+                final float value = buffer.getFloat(index, encoding.byteOrder());
+                if (Float.isNaN(value))
+                {
+                    append("0/0");
+                }
+                else if (value == Float.POSITIVE_INFINITY)
+                {
+                    append("1/0");
+                }
+                else if (value == Float.NEGATIVE_INFINITY)
+                {
+                    append("-1/0");
+                }
+                else
+                {
+                    numberBuilder.setLength(0);
+                    numberBuilder.append(value);
+                    append(numberBuilder);
+                }
+                break;
+            }
+
+            case DOUBLE:
+            {
+                final double value = buffer.getDouble(index, encoding.byteOrder());
+                if (Double.isNaN(value))
+                {
+                    append("0/0");
+                }
+                else if (value == Double.POSITIVE_INFINITY)
+                {
+                    append("1/0");
+                }
+                else if (value == Double.NEGATIVE_INFINITY)
+                {
+                    append("-1/0");
+                }
+                else
+                {
+                    numberBuilder.setLength(0);
+                    numberBuilder.append(value);
+                    append(numberBuilder);
+                }
+                break;
+            }
+        }
+    }
+
+    void appendValue(final PrimitiveValue value)
+    {
+        switch (value.representation())
+        {
+            case LONG:
+                position += output.putLongAscii(position, value.longValue());
+                break;
+
+            case DOUBLE:
+                numberBuilder.setLength(0);
+                numberBuilder.append(value.doubleValue());
+                append(numberBuilder);
+                break;
+
+            case BYTE_ARRAY:
+                if (isAsciiCompatible(value.characterEncoding()))
+                {
+                    final byte[] bytes = value.byteArrayValue();
+                    output.putBytes(position, bytes);
+                    position += bytes.length;
+                }
+                else
+                {
+                    position += output.putStringWithoutLengthUtf8(position, value.toString());
+                }
+                break;
+        }
+    }
+
+    void appendEscaped(final DirectBuffer buffer, final int index, final int length, final String characterEncoding)
+    {
+        if (isAsciiCompatible(characterEncoding))
+        {
+            for (int i = index, limit = index + length; i < limit; i++)
+            {
+                escape(buffer.getByte(i));
+            }
+
+            return;
+        }
+
+        final byte[] tempBuffer = new byte[length];
+        buffer.getBytes(index, tempBuffer, 0, length);
+        final String str = new String(tempBuffer, 0, length, Charset.forName(characterEncoding));
+
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0, strLength = str.length(); i < strLength; i++)
+        {
+            final char c = str.charAt(i);
+            if (isEscaped(c))
+            {
+                sb.append('\\');
+            }
+
+            sb.append(c);
+        }
+
+        position += output.putStringWithoutLengthUtf8(position, sb.toString());
+    }
+
+    static boolean isAsciiCompatible(final String characterEncoding)
+    {
+        return null == characterEncoding ||
+            "UTF-8".equalsIgnoreCase(characterEncoding) ||
+            "UTF8".equalsIgnoreCase(characterEncoding) ||
+            "US-ASCII".equalsIgnoreCase(characterEncoding) ||
+            "ASCII".equalsIgnoreCase(characterEncoding);
+    }
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.collections.Object2IntHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal writer of Java class files for the flyweights generated by {@link OtfCodecFactory}.
+ * <p>
+ * Classes are written in the version 49 format so they are verified by type inference and need no stack map frames,
+ * which keeps the writer small enough to not need a bytecode library. Only the constants and instructions the
+ * generated flyweights use are supported.
+ */
+final class ClassFileWriter
+{
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PROTECTED = 0x0004;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 0x03;
+    static final int LCONST_0 = 0x09;
+    static final int DCONST_0 = 0x0E;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int IADD = 0x60;
+    static final int IAND = 0x7E;
+    static final int LAND = 0x7F;
+    static final int I2L = 0x85;
+    static final int I2D = 0x87;
+    static final int L2D = 0x8A;
+    static final int F2L = 0x8C;
+    static final int F2D = 0x8D;
+    static final int D2L = 0x8F;
+    static final int IF_ICMPGE = 0xA2;
+    static final int TABLESWITCH = 0xAA;
+    static final int IRETURN = 0xAC;
+    static final int LRETURN = 0xAD;
+    static final int DRETURN = 0xAF;
+    static final int RETURN = 0xB1;
+    static final int GETSTATIC = 0xB2;
+    static final int GETFIELD = 0xB4;
+    static final int INVOKESPECIAL = 0xB7;
+    static final int INVOKESTATIC = 0xB8;
+    static final int INVOKEINTERFACE = 0xB9;
+    static final int ATHROW = 0xBF;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private final Object2IntHashMap<String> constantIndexByKeyMap = new Object2IntHashMap<>(-1);
+    private final List<byte[]> methods = new ArrayList<>();
+    private final String className;
+    private final String superClassName;
+    private int constantCount = 1;
+
+    /**
+     * Begin writing a public class.
+     *
+     * @param className      internal name of the class, e.g. {@code "a/b/C"}.
+     * @param superClassName internal name of the super class.
+     */
+    ClassFileWriter(final String className, final String superClassName)
+    {
+        this.className = className;
+        this.superClassName = superClassName;
+    }
+
+    /**
+     * Begin the code of a method, which adds its constants to the class.
+     *
+     * @return the code of a method.
+     */
+    Code newCode()
+    {
+        return new Code();
+    }
+
+    /**
+     * Add a method to the class.
+     *
+     * @param access     flags of the method.
+     * @param name       of the method.
+     * @param descriptor of the method.
+     * @param code       of the method.
+     * @param maxStack   depth of the operand stack in slots.
+     * @param maxLocals  number of local variable slots, including the parameters and this.
+     */
+    void addMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final Code code,
+        final int maxStack,
+        final int maxLocals)
+    {
+        final byte[] bytecode = code.toByteArray();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        try
+        {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * The class file for the class and the methods added.
+     *
+     * @return the class file for the class and the methods added.
+     */
+    byte[] toByteArray()
+    {
+        final int thisClass = classRef(className);
+        final int superClass = classRef(superClassName);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(constantCount);
+            constantPoolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (final byte[] method : methods)
+            {
+                out.write(method);
+            }
+            out.writeShort(0);
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private int utf8(final String value)
+    {
+        final String key = "U" + value;
+        int index = constantIndexByKeyMap.getValue(key);
+        if (-1 == index)
+        {
+            index = newConstant(1);
+            writeConstant(CONSTANT_UTF8);
+            try
+            {
+                constantPool.writeUTF(value);
+            }
+            catch (final IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            constantIndexByKeyMap.put(key, index);
+        }
+
+        return index;
+    }
+
+    private int classRef(final String internalName)
+    {
+        final String key = "C" + internalName;
+        int index = constantIndexByKeyMap.getValue(key);
+        if (-1 == index)
+        {
+            final int nameIndex = utf8(internalName);
+            index = newConstant(1);
+            writeConstant(CONSTANT_CLASS, nameIndex);
+            constantIndexByKeyMap.put(key, index);
+        }
+
+        return index;
+    }
+
+    private int memberRef(final int tag, final String owner, final String name, final String descriptor)
+    {
+        final String key = "M" + tag + owner + '.' + name + descriptor;
+        int index = constantIndexByKeyMap.getValue(key);
+        if (-1 == index)
+        {
+            final int classIndex = classRef(owner);
+            final int nameIndex = utf8(name);
+            final int descriptorIndex = utf8(descriptor);
+
+            final int nameAndTypeIndex = newConstant(1);
+            writeConstant(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+
+            index = newConstant(1);
+            writeConstant(tag, classIndex, nameAndTypeIndex);
+            constantIndexByKeyMap.put(key, index);
+        }
+
+        return index;
+    }
+
+    private int intConstant(final int value)
+    {
+        final String key = "I" + value;
+        int index = constantIndexByKeyMap.getValue(key);
+        if (-1 == index)
+        {
+            index = newConstant(1);
+            writeConstant(CONSTANT_INTEGER);
+            try
+            {
+                constantPool.writeInt(value);
+            }
+            catch (final IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            constantIndexByKeyMap.put(key, index);
+        }
+
+        return index;
+    }
+
+    private int wideConstant(final int tag, final long bits)
+    {
+        final String key = "W" + tag + ':' + bits;
+        int index = constantIndexByKeyMap.getValue(key);
+        if (-1 == index)
+        {
+            index = newConstant(2);
+            writeConstant(tag);
+            try
+            {
+                constantPool.writeLong(bits);
+            }
+            catch (final IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            constantIndexByKeyMap.put(key, index);
+        }
+
+        return index;
+    }
+
+    private int newConstant(final int slots)
+    {
+        final int index = constantCount;
+        constantCount += slots;
+        if (constantCount > 0xFFFF)
+        {
+            throw new IllegalStateException("Too many constants for class: " + className);
+        }
+
+        return index;
+    }
+
+    private void writeConstant(final int tag, final int... indexes)
+    {
+        try
+        {
+            constantPool.writeByte(tag);
+            for (final int index : indexes)
+            {
+                constantPool.writeShort(index);
+            }
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Position in the code of a method which branches can target before it is marked.
+     */
+    static final class Label
+    {
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>();
+    }
+
+    /**
+     * Bytecode of a method with constants added to the pool of the class being written.
+     */
+    final class Code
+    {
+        private byte[] bytes = new byte[64];
+        private int length;
+        private final List<Label> labels = new ArrayList<>();
+
+        void op(final int opcode)
+        {
+            put(opcode);
+        }
+
+        void iload(final int slot)
+        {
+            put(ILOAD);
+            put(slot);
+        }
+
+        void aload(final int slot)
+        {
+            put(ALOAD);
+            put(slot);
+        }
+
+        void pushInt(final int value)
+        {
+            if (value >= -1 && value <= 5)
+            {
+                put(ICONST_0 + value);
+            }
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            {
+                put(BIPUSH);
+                put(value);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            {
+                put(SIPUSH);
+                putShort(value);
+            }
+            else
+            {
+                ldc(intConstant(value));
+            }
+        }
+
+        void pushLong(final long value)
+        {
+            if (0L == value || 1L == value)
+            {
+                put(LCONST_0 + (int)value);
+            }
+            else
+            {
+                put(LDC2_W);
+                putShort(wideConstant(CONSTANT_LONG, value));
+            }
+        }
+
+        void pushDouble(final double value)
+        {
+            final long bits = Double.doubleToRawLongBits(value);
+            if (0L == bits || Double.doubleToRawLongBits(1.0) == bits)
+            {
+                put(DCONST_0 + (int)value);
+            }
+            else
+            {
+                put(LDC2_W);
+                putShort(wideConstant(CONSTANT_DOUBLE, bits));
+            }
+        }
+
+        void getField(final String owner, final String name, final String descriptor)
+        {
+            put(GETFIELD);
+            putShort(memberRef(CONSTANT_FIELD_REF, owner, name, descriptor));
+        }
+
+        void getStatic(final String owner, final String name, final String descriptor)
+        {
+            put(GETSTATIC);
+            putShort(memberRef(CONSTANT_FIELD_REF, owner, name, descriptor));
+        }
+
+        void invokeSpecial(final String owner, final String name, final String descriptor)
+        {
+            put(INVOKESPECIAL);
+            putShort(memberRef(CONSTANT_METHOD_REF, owner, name, descriptor));
+        }
+
+        void invokeStatic(final String owner, final String name, final String descriptor)
+        {
+            put(INVOKESTATIC);
+            putShort(memberRef(CONSTANT_METHOD_REF, owner, name, descriptor));
+        }
+
+        /**
+         * Invoke an interface method.
+         *
+         * @param owner      internal name of the interface.
+         * @param name       of the method.
+         * @param descriptor of the method.
+         * @param argSlots   number of slots taken by the arguments, excluding the receiver.
+         */
+        void invokeInterface(final String owner, final String name, final String descriptor, final int argSlots)
+        {
+            put(INVOKEINTERFACE);
+            putShort(memberRef(CONSTANT_INTERFACE_METHOD_REF, owner, name, descriptor));
+            put(argSlots + 1);
+            put(0);
+        }
+
+        Label newLabel()
+        {
+            final Label label = new Label();
+            labels.add(label);
+
+            return label;
+        }
+
+        void mark(final Label label)
+        {
+            label.position = length;
+        }
+
+        void branch(final int opcode, final Label label)
+        {
+            final int position = length;
+            put(opcode);
+            label.fixups.add(new int[]{ position, length, 2 });
+            putShort(0);
+        }
+
+        /**
+         * Jump by the int on the top of the stack to the label for the value, or to the default label.
+         *
+         * @param low          value of the first label.
+         * @param defaultLabel when the value is outside the labels.
+         * @param caseLabels   for each value from the low value.
+         */
+        void tableSwitch(final int low, final Label defaultLabel, final Label[] caseLabels)
+        {
+            final int position = length;
+            put(TABLESWITCH);
+            while ((length & 3) != 0)
+            {
+                put(0);
+            }
+
+            defaultLabel.fixups.add(new int[]{ position, length, 4 });
+            putInt(0);
+            putInt(low);
+            putInt(low + caseLabels.length - 1);
+            for (final Label label : caseLabels)
+            {
+                label.fixups.add(new int[]{ position, length, 4 });
+                putInt(0);
+            }
+        }
+
+        byte[] toByteArray()
+        {
+            for (final Label label : labels)
+            {
+                if (-1 == label.position && !label.fixups.isEmpty())
+                {
+                    throw new IllegalStateException("Label is not marked");
+                }
+
+                for (final int[] fixup : label.fixups)
+                {
+                    final int jump = label.position - fixup[0];
+                    if (2 == fixup[2])
+                    {
+                        bytes[fixup[1]] = (byte)(jump >> 8);
+                        bytes[fixup[1] + 1] = (byte)jump;
+                    }
+                    else
+                    {
+                        bytes[fixup[1]] = (byte)(jump >> 24);
+                        bytes[fixup[1] + 1] = (byte)(jump >> 16);
+                        bytes[fixup[1] + 2] = (byte)(jump >> 8);
+                        bytes[fixup[1] + 3] = (byte)jump;
+                    }
+                }
+            }
+
+            if (length > 0xFFFF)
+            {
+                throw new IllegalStateException("Method is too large for class: " + className);
+            }
+
+            final byte[] code = new byte[length];
+            System.arraycopy(bytes, 0, code, 0, length);
+
+            return code;
+        }
+
+        private void ldc(final int index)
+        {
+            if (index <= 0xFF)
+            {
+                put(LDC);
+                put(index);
+            }
+            else
+            {
+                put(LDC_W);
+                putShort(index);
+            }
+        }
+
+        private void put(final int value)
+        {
+            if (length == bytes.length)
+            {
+                final byte[] newBytes = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, newBytes, 0, length);
+                bytes = newBytes;
+            }
+
+            bytes[length++] = (byte)value;
+        }
+
+        private void putShort(final int value)
+        {
+            put(value >> 8);
+            put(value);
+        }
+
+        private void putInt(final int value)
+        {
+            putShort(value >> 16);
+            putShort(value);
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.*;
+import static uk.co.real_logic.sbe.otf.ColumnarTable.*;
+
+/**
+ * Simple file format for {@link ColumnarTable}s which is memory-mapped to be read so columns are accessed in place.
+ * <p>
+ * All values are little endian. The file begins with a header of the magic number, format version, and table count
+ * as ints. Each table follows as its name, the name of its parent or an empty string, its row count, and its column
+ * count, then each column as its name, its {@link ColumnType} ordinal, for dictionary columns the dictionary size and
+ * strings, and padding to 8 byte alignment before the values of the rows. Strings are an int length followed by
+ * UTF-8 bytes. Files are mapped whole so must be smaller than 2GB.
+ * <p>
+ * The mapping is released when the file and the views of its tables are no longer reachable.
+ */
+public final class ColumnarFile
+{
+    /**
+     * Magic number at the start of a columnar file.
+     */
+    public static final int MAGIC = 0x4C4F4353;
+
+    /**
+     * Version of the format written.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int ALIGNMENT = 8;
+
+    private final DirectBuffer buffer;
+    private final Map<String, TableView> tableByNameMap = new LinkedHashMap<>();
+
+    private ColumnarFile(final DirectBuffer buffer)
+    {
+        this.buffer = buffer;
+
+        if (MAGIC != buffer.getInt(0, ByteOrder.LITTLE_ENDIAN))
+        {
+            throw new IllegalArgumentException("Not a columnar file");
+        }
+
+        final int version = buffer.getInt(4, ByteOrder.LITTLE_ENDIAN);
+        if (FORMAT_VERSION != version)
+        {
+            throw new IllegalArgumentException("Unsupported columnar file version: " + version);
+        }
+
+        final int tableCount = buffer.getInt(8, ByteOrder.LITTLE_ENDIAN);
+        int offset = 12;
+        for (int t = 0; t < tableCount; t++)
+        {
+            final String name = getString(buffer, offset);
+            offset += 4 + buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+            final String parentName = getString(buffer, offset);
+            offset += 4 + buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+            final int rowCount = buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+            final int columnCount = buffer.getInt(offset + 4, ByteOrder.LITTLE_ENDIAN);
+            offset += 8;
+
+            final TableView table = new TableView(name, parentName.isEmpty() ? null : parentName, rowCount);
+            for (int c = 0; c < columnCount; c++)
+            {
+                final String columnName = getString(buffer, offset);
+                offset += 4 + buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+                final ColumnType type = ColumnType.values()[buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN)];
+                offset += 4;
+
+                final List<String> dictionary = new ArrayList<>();
+                if (ColumnType.DICTIONARY == type)
+                {
+                    final int dictionarySize = buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+                    offset += 4;
+                    for (int i = 0; i < dictionarySize; i++)
+                    {
+                        dictionary.add(getString(buffer, offset));
+                        offset += 4 + buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+                    }
+                }
+
+                offset = align(offset);
+                table.columnByNameMap.put(columnName, new ColumnView(columnName, type, offset, rowCount, dictionary));
+                offset += rowCount * type.width();
+            }
+
+            tableByNameMap.put(name, table);
+        }
+    }
+
+    /**
+     * Write tables to a file.
+     *
+     * @param path   of the file to be written.
+     * @param tables to be written in order.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(final Path path, final List<ColumnarTable> tables) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            final ByteBuffer header = newBuffer(12);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(tables.size());
+            long position = write(channel, header);
+
+            for (final ColumnarTable table : tables)
+            {
+                final ColumnarTable parent = table.parent();
+                final ByteArrayBuilder tableHeader = new ByteArrayBuilder()
+                    .putString(table.name())
+                    .putString(null == parent ? "" : parent.name())
+                    .putInt(table.rowCount())
+                    .putInt(table.columns().size());
+                position += write(channel, tableHeader.toBuffer());
+
+                for (final Column column : table.columns())
+                {
+                    final ByteArrayBuilder columnHeader = new ByteArrayBuilder()
+                        .putString(column.name())
+                        .putInt(column.type().ordinal());
+
+                    if (column instanceof DictionaryColumn)
+                    {
+                        final List<String> dictionary = ((DictionaryColumn)column).dictionary();
+                        columnHeader.putInt(dictionary.size());
+                        for (final String value : dictionary)
+                        {
+                            columnHeader.putString(value);
+                        }
+                    }
+
+                    columnHeader.pad(align(position + columnHeader.length()) - position - columnHeader.length());
+                    position += write(channel, columnHeader.toBuffer());
+                    position += write(channel, values(column, table.rowCount()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Map a file of tables to be read.
+     *
+     * @param path of the file.
+     * @return the mapped file.
+     * @throws IOException if the file cannot be read.
+     */
+    public static ColumnarFile map(final Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, READ))
+        {
+            return new ColumnarFile(new UnsafeBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
+    }
+
+    /**
+     * The tables in the file in the order they were written.
+     *
+     * @return the tables in the file in the order they were written.
+     */
+    public List<TableView> tables()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(tableByNameMap.values()));
+    }
+
+    /**
+     * The table with a name.
+     *
+     * @param name of the table.
+     * @return the table with the name or null if the file has no such table.
+     */
+    public TableView table(final String name)
+    {
+        return tableByNameMap.get(name);
+    }
+
+    /**
+     * View of a table in a mapped file.
+     */
+    public static final class TableView
+    {
+        private final String name;
+        private final String parentName;
+        private final int rowCount;
+        private final Map<String, ColumnView> columnByNameMap = new LinkedHashMap<>();
+
+        TableView(final String name, final String parentName, final int rowCount)
+        {
+            this.name = name;
+            this.parentName = parentName;
+            this.rowCount = rowCount;
+        }
+
+        /**
+         * The name of the table.
+         *
+         * @return the name of the table.
+         */
+        public String name()
+        {
+            return name;
+        }
+
+        /**
+         * The name of the parent table.
+         *
+         * @return the name of the parent table or null for the table of a message.
+         */
+        public String parentName()
+        {
+            return parentName;
+        }
+
+        /**
+         * The number of rows in the table.
+         *
+         * @return the number of rows in the table.
+         */
+        public int rowCount()
+        {
+            return rowCount;
+        }
+
+        /**
+         * The names of the columns in the order they were written.
+         *
+         * @return the names of the columns in the order they were written.
+         */
+        public List<String> columnNames()
+        {
+            return Collections.unmodifiableList(new ArrayList<>(columnByNameMap.keySet()));
+        }
+
+        /**
+         * The column with a name.
+         *
+         * @param name of the column.
+         * @return the column with the name or null if the table has no such column.
+         */
+        public ColumnView column(final String name)
+        {
+            return columnByNameMap.get(name);
+        }
+    }
+
+    /**
+     * View of the values of a column in a mapped file which are read in place.
+     */
+    public final class ColumnView
+    {
+        private final String name;
+        private final ColumnType type;
+        private final int offset;
+        private final int rowCount;
+        private final List<String> dictionary;
+
+        ColumnView(
+            final String name,
+            final ColumnType type,
+            final int offset,
+            final int rowCount,
+            final List<String> dictionary)
+        {
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+            this.rowCount = rowCount;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * The name of the column.
+         *
+         * @return the name of the column.
+         */
+        public String name()
+        {
+            return name;
+        }
+
+        /**
+         * The type of the values held by the column.
+         *
+         * @return the type of the values held by the column.
+         */
+        public ColumnType type()
+        {
+            return type;
+        }
+
+        /**
+         * The buffer holding the values of the column.
+         *
+         * @return the buffer holding the values of the column.
+         */
+        public DirectBuffer buffer()
+        {
+            return buffer;
+        }
+
+        /**
+         * The offset in the buffer at which the values of the column begin.
+         *
+         * @return the offset in the buffer at which the values of the column begin.
+         */
+        public int offset()
+        {
+            return offset;
+        }
+
+        /**
+         * The value of a row of an {@link ColumnType#INT} column, or the code of a row of a
+         * {@link ColumnType#DICTIONARY} column.
+         *
+         * @param row for the value.
+         * @return the value of the row.
+         */
+        public int getInt(final int row)
+        {
+            return buffer.getInt(index(row), ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * The value of a row of a {@link ColumnType#LONG} column.
+         *
+         * @param row for the value.
+         * @return the value of the row.
+         */
+        public long getLong(final int row)
+        {
+            return buffer.getLong(index(row), ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * The value of a row of a {@link ColumnType#DOUBLE} column.
+         *
+         * @param row for the value.
+         * @return the value of the row.
+         */
+        public double getDouble(final int row)
+        {
+            return buffer.getDouble(index(row), ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * The value of a row of a {@link ColumnType#DICTIONARY} column.
+         *
+         * @param row for the value.
+         * @return the value of the row or null.
+         */
+        public String getString(final int row)
+        {
+            final int code = getInt(row);
+
+            return DictionaryColumn.NULL_CODE == code ? null : dictionary.get(code);
+        }
+
+        /**
+         * The distinct values of a {@link ColumnType#DICTIONARY} column indexed by code.
+         *
+         * @return the distinct values indexed by code.
+         */
+        public List<String> dictionary()
+        {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        private int index(final int row)
+        {
+            if (row < 0 || row >= rowCount)
+            {
+                throw new IndexOutOfBoundsException("row=" + row + " rowCount=" + rowCount);
+            }
+
+            return offset + (row * type.width());
+        }
+    }
+
+    private static ByteBuffer values(final Column column, final int rowCount)
+    {
+        final ByteBuffer values = newBuffer(rowCount * column.type().width());
+        switch (column.type())
+        {
+            case INT:
+                values.asIntBuffer().put(((IntColumn)column).values(), 0, rowCount);
+                break;
+
+            case LONG:
+                values.asLongBuffer().put(((LongColumn)column).values(), 0, rowCount);
+                break;
+
+            case DOUBLE:
+                values.asDoubleBuffer().put(((DoubleColumn)column).values(), 0, rowCount);
+                break;
+
+            case DICTIONARY:
+                values.asIntBuffer().put(((DictionaryColumn)column).codes(), 0, rowCount);
+                break;
+        }
+
+        values.position(values.limit());
+
+        return values;
+    }
+
+    private static long write(final FileChannel channel, final ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        final int length = buffer.remaining();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+
+        return length;
+    }
+
+    private static ByteBuffer newBuffer(final int capacity)
+    {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int align(final int offset)
+    {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static long align(final long offset)
+    {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static String getString(final DirectBuffer buffer, final int offset)
+    {
+        final int length = buffer.getInt(offset, ByteOrder.LITTLE_ENDIAN);
+        final byte[] bytes = new byte[length];
+        buffer.getBytes(offset + 4, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class ByteArrayBuilder
+    {
+        private ByteBuffer buffer = newBuffer(64);
+
+        ByteArrayBuilder putInt(final int value)
+        {
+            ensureCapacity(4);
+            buffer.putInt(value);
+
+            return this;
+        }
+
+        ByteArrayBuilder putString(final String value)
+        {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensureCapacity(bytes.length);
+            buffer.put(bytes);
+
+            return this;
+        }
+
+        ByteArrayBuilder pad(final long length)
+        {
+            ensureCapacity((int)length);
+            buffer.position(buffer.position() + (int)length);
+
+            return this;
+        }
+
+        int length()
+        {
+            return buffer.position();
+        }
+
+        ByteBuffer toBuffer()
+        {
+            return buffer;
+        }
+
+        private void ensureCapacity(final int length)
+        {
+            if (buffer.remaining() < length)
+            {
+                final ByteBuffer newBuffer = newBuffer(Math.max(buffer.capacity() * 2, buffer.position() + length));
+                buffer.flip();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+            }
+        }
+    }
+}
@@ -0,0 +1,687 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Hashing;
+import org.agrona.collections.Object2IntHashMap;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of columns holding the values of the fields of a message, or of the entries of a repeating group, as growable
+ * primitive arrays with a row per message or entry.
+ * <p>
+ * The table for a repeating group is a child of the table for the message or group containing it and each of its
+ * rows holds the id of the row in the parent table to which the entry belongs in the {@link #parentRowIds()} column.
+ */
+public class ColumnarTable
+{
+    /**
+     * Name of the column holding the row ids in the parent table for the rows of a child table.
+     */
+    public static final String PARENT_ROW_ID_COLUMN_NAME = "parentRowId";
+
+    /**
+     * Type of values held by a column.
+     */
+    public enum ColumnType
+    {
+        /**
+         * Values which fit in an int.
+         */
+        INT(4),
+
+        /**
+         * Values which need a long.
+         */
+        LONG(8),
+
+        /**
+         * Floating point values.
+         */
+        DOUBLE(8),
+
+        /**
+         * Strings held as int codes into a dictionary of the distinct values.
+         */
+        DICTIONARY(4);
+
+        private final int width;
+
+        ColumnType(final int width)
+        {
+            this.width = width;
+        }
+
+        /**
+         * The number of bytes taken by the value of each row.
+         *
+         * @return the number of bytes taken by the value of each row.
+         */
+        public int width()
+        {
+            return width;
+        }
+    }
+
+    private final String name;
+    private final ColumnarTable parent;
+    private final IntColumn parentRowIds;
+    private final ArrayList<Column> columns = new ArrayList<>();
+    private final Map<String, Column> columnByNameMap = new HashMap<>();
+    private final ArrayList<ColumnarTable> children = new ArrayList<>();
+    private int rowCount;
+
+    /**
+     * Construct a table which is the child of a parent table when it holds the entries of a repeating group.
+     *
+     * @param name   of the table.
+     * @param parent of the table or null for the table of a message.
+     */
+    public ColumnarTable(final String name, final ColumnarTable parent)
+    {
+        this.name = name;
+        this.parent = parent;
+
+        if (null == parent)
+        {
+            parentRowIds = null;
+        }
+        else
+        {
+            parentRowIds = (IntColumn)addColumn(new IntColumn(PARENT_ROW_ID_COLUMN_NAME, 0, -1));
+            parent.children.add(this);
+        }
+    }
+
+    /**
+     * The name of the table.
+     *
+     * @return the name of the table.
+     */
+    public String name()
+    {
+        return name;
+    }
+
+    /**
+     * The parent of the table.
+     *
+     * @return the parent of the table or null if this is the table of a message.
+     */
+    public ColumnarTable parent()
+    {
+        return parent;
+    }
+
+    /**
+     * The tables of the repeating groups within the rows of this table.
+     *
+     * @return the tables of the repeating groups within the rows of this table.
+     */
+    public List<ColumnarTable> children()
+    {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * The columns of the table in the order of the fields in the schema.
+     *
+     * @return the columns of the table in the order of the fields in the schema.
+     */
+    public List<Column> columns()
+    {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * The column of the table with a name.
+     *
+     * @param name of the column.
+     * @return the column with the name or null if the table has no such column.
+     */
+    public Column column(final String name)
+    {
+        return columnByNameMap.get(name);
+    }
+
+    /**
+     * The column holding the ids of the rows in the parent table to which the rows of this table belong.
+     *
+     * @return the column of the parent row ids or null if this is the table of a message.
+     */
+    public IntColumn parentRowIds()
+    {
+        return parentRowIds;
+    }
+
+    /**
+     * The number of complete rows in the table.
+     *
+     * @return the number of complete rows in the table.
+     */
+    public int rowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Remove all rows from this table and its children while keeping the columns and their dictionaries.
+     */
+    public void clear()
+    {
+        for (final Column column : columns)
+        {
+            column.size = 0;
+        }
+
+        for (final ColumnarTable child : children)
+        {
+            child.clear();
+        }
+
+        rowCount = 0;
+    }
+
+    Column addColumn(final Column column)
+    {
+        if (null != columnByNameMap.put(column.name(), column))
+        {
+            throw new IllegalArgumentException("Duplicate column " + column.name() + " in table " + name);
+        }
+
+        columns.add(column);
+
+        return column;
+    }
+
+    void endRow()
+    {
+        final int size = rowCount + 1;
+        for (final Column column : columns)
+        {
+            if (column.size < size)
+            {
+                column.appendNull();
+            }
+        }
+
+        rowCount = size;
+    }
+
+    /**
+     * Column of values for the rows of a table.
+     */
+    public abstract static class Column
+    {
+        private final String name;
+        private final int sinceVersion;
+        int size;
+
+        Column(final String name, final int sinceVersion)
+        {
+            this.name = name;
+            this.sinceVersion = sinceVersion;
+        }
+
+        /**
+         * The name of the column, being the path to its field within the table.
+         *
+         * @return the name of the column.
+         */
+        public String name()
+        {
+            return name;
+        }
+
+        /**
+         * The number of values held by the column.
+         *
+         * @return the number of values held by the column.
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * The type of the values held by the column.
+         *
+         * @return the type of the values held by the column.
+         */
+        public abstract ColumnType type();
+
+        int sinceVersion()
+        {
+            return sinceVersion;
+        }
+
+        abstract void appendNull();
+
+        static int newCapacity(final int capacity)
+        {
+            return Math.max(16, capacity + (capacity >> 1));
+        }
+    }
+
+    /**
+     * Column of int values.
+     */
+    public static final class IntColumn extends Column
+    {
+        private final int nullValue;
+        private int[] values = new int[16];
+
+        IntColumn(final String name, final int sinceVersion, final int nullValue)
+        {
+            super(name, sinceVersion);
+            this.nullValue = nullValue;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public ColumnType type()
+        {
+            return ColumnType.INT;
+        }
+
+        /**
+         * The value of a row.
+         *
+         * @param row for the value.
+         * @return the value of the row.
+         */
+        public int get(final int row)
+        {
+            return values[row];
+        }
+
+        /**
+         * The array holding the values which is valid up to {@link #size()}.
+         *
+         * @return the array holding the values.
+         */
+        public int[] values()
+        {
+            return values;
+        }
+
+        void append(final int value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, newCapacity(size));
+            }
+
+            values[size++] = value;
+        }
+
+        void appendNull()
+        {
+            append(nullValue);
+        }
+    }
+
+    /**
+     * Column of long values.
+     */
+    public static final class LongColumn extends Column
+    {
+        private final long nullValue;
+        private long[] values = new long[16];
+
+        LongColumn(final String name, final int sinceVersion, final long nullValue)
+        {
+            super(name, sinceVersion);
+            this.nullValue = nullValue;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public ColumnType type()
+        {
+            return ColumnType.LONG;
+        }
+
+        /**
+         * The value of a row.
+         *
+         * @param row for the value.
+         * @return the value of the row.
+         */
+        public long get(final int row)
+        {
+            return values[row];
+        }
+
+        /**
+         * The array holding the values which is valid up to {@link #size()}.
+         *
+         * @return the array holding the values.
+         */
+        public long[] values()
+        {
+            return values;
+        }
+
+        void append(final long value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, newCapacity(size));
+            }
+
+            values[size++] = value;
+        }
+
+        void appendNull()
+        {
+            append(nullValue);
+        }
+    }
+
+    /**
+     * Column of double values.
+     */
+    public static final class DoubleColumn extends Column
+    {
+        private final double nullValue;
+        private double[] values = new double[16];
+
+        DoubleColumn(final String name, final int sinceVersion, final double nullValue)
+        {
+            super(name, sinceVersion);
+            this.nullValue = nullValue;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public ColumnType type()
+        {
+            return ColumnType.DOUBLE;
+        }
+
+        /**
+         * The value of a row.
+         *
+         * @param row for the value.
+         * @return the value of the row.
+         */
+        public double get(final int row)
+        {
+            return values[row];
+        }
+
+        /**
+         * The array holding the values which is valid up to {@link #size()}.
+         *
+         * @return the array holding the values.
+         */
+        public double[] values()
+        {
+            return values;
+        }
+
+        void append(final double value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, newCapacity(size));
+            }
+
+            values[size++] = value;
+        }
+
+        void appendNull()
+        {
+            append(nullValue);
+        }
+    }
+
+    /**
+     * Column of strings held as codes into a dictionary of the distinct values, with null held as the code -1.
+     * <p>
+     * Values decoded from a buffer are looked up by their encoded bytes in place so a String is only created for an
+     * encoding which has not been seen before.
+     */
+    public static final class DictionaryColumn extends Column
+    {
+        /**
+         * Code held for a null value.
+         */
+        public static final int NULL_CODE = -1;
+
+        private final ArrayList<String> dictionary = new ArrayList<>();
+        private final Object2IntHashMap<String> codeByValueMap = new Object2IntHashMap<>(NULL_CODE);
+        private int[] codes = new int[16];
+        private int[] codeBySlot = newSlots(16);
+        private byte[][] encodedValueBySlot = new byte[16][];
+        private int encodedValueCount;
+
+        DictionaryColumn(final String name, final int sinceVersion)
+        {
+            super(name, sinceVersion);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public ColumnType type()
+        {
+            return ColumnType.DICTIONARY;
+        }
+
+        /**
+         * The value of a row.
+         *
+         * @param row for the value.
+         * @return the value of the row or null.
+         */
+        public String get(final int row)
+        {
+            final int code = codes[row];
+
+            return NULL_CODE == code ? null : dictionary.get(code);
+        }
+
+        /**
+         * The dictionary code of the value of a row.
+         *
+         * @param row for the value.
+         * @return the dictionary code of the value of the row or {@link #NULL_CODE}.
+         */
+        public int code(final int row)
+        {
+            return codes[row];
+        }
+
+        /**
+         * The array holding the codes which is valid up to {@link #size()}.
+         *
+         * @return the array holding the codes.
+         */
+        public int[] codes()
+        {
+            return codes;
+        }
+
+        /**
+         * The distinct values indexed by code.
+         *
+         * @return the distinct values indexed by code.
+         */
+        public List<String> dictionary()
+        {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        void append(final String value)
+        {
+            int code = codeByValueMap.getValue(value);
+            if (NULL_CODE == code)
+            {
+                code = dictionary.size();
+                dictionary.add(value);
+                codeByValueMap.put(value, code);
+            }
+
+            appendCode(code);
+        }
+
+        void append(final DirectBuffer buffer, final int index, final int length, final String characterEncoding)
+        {
+            final int mask = codeBySlot.length - 1;
+            int slot = Hashing.hash(hash(buffer, index, length), mask);
+            int code;
+            while (NULL_CODE != (code = codeBySlot[slot]))
+            {
+                if (isEqual(encodedValueBySlot[slot], buffer, index, length))
+                {
+                    appendCode(code);
+                    return;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            final byte[] encodedValue = new byte[length];
+            buffer.getBytes(index, encodedValue);
+
+            final String value;
+            try
+            {
+                value = new String(encodedValue, characterEncoding);
+            }
+            catch (final UnsupportedEncodingException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+
+            code = codeByValueMap.getValue(value);
+            if (NULL_CODE == code)
+            {
+                code = dictionary.size();
+                dictionary.add(value);
+                codeByValueMap.put(value, code);
+            }
+
+            codeBySlot[slot] = code;
+            encodedValueBySlot[slot] = encodedValue;
+            if (++encodedValueCount > (codeBySlot.length >> 1))
+            {
+                rehash();
+            }
+
+            appendCode(code);
+        }
+
+        void appendNull()
+        {
+            appendCode(NULL_CODE);
+        }
+
+        private void appendCode(final int code)
+        {
+            if (size == codes.length)
+            {
+                codes = Arrays.copyOf(codes, newCapacity(size));
+            }
+
+            codes[size++] = code;
+        }
+
+        private void rehash()
+        {
+            final int[] oldCodeBySlot = codeBySlot;
+            final byte[][] oldEncodedValueBySlot = encodedValueBySlot;
+            final int capacity = oldCodeBySlot.length << 1;
+            final int mask = capacity - 1;
+
+            codeBySlot = newSlots(capacity);
+            encodedValueBySlot = new byte[capacity][];
+
+            for (int i = 0; i < oldCodeBySlot.length; i++)
+            {
+                final byte[] encodedValue = oldEncodedValueBySlot[i];
+                if (null != encodedValue)
+                {
+                    int hash = 0;
+                    for (final byte b : encodedValue)
+                    {
+                        hash = (31 * hash) + b;
+                    }
+
+                    int slot = Hashing.hash(hash, mask);
+                    while (NULL_CODE != codeBySlot[slot])
+                    {
+                        slot = (slot + 1) & mask;
+                    }
+
+                    codeBySlot[slot] = oldCodeBySlot[i];
+                    encodedValueBySlot[slot] = encodedValue;
+                }
+            }
+        }
+
+        private static int hash(final DirectBuffer buffer, final int index, final int length)
+        {
+            int hash = 0;
+            for (int i = 0; i < length; i++)
+            {
+                hash = (31 * hash) + buffer.getByte(index + i);
+            }
+
+            return hash;
+        }
+
+        private static boolean isEqual(
+            final byte[] encodedValue, final DirectBuffer buffer, final int index, final int length)
+        {
+            if (encodedValue.length != length)
+            {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++)
+            {
+                if (encodedValue[i] != buffer.getByte(index + i))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static int[] newSlots(final int capacity)
+        {
+            final int[] slots = new int[capacity];
+            Arrays.fill(slots, NULL_CODE);
+
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.List;
+
+/**
+ * {@link TokenListener} which dispatches each callback to a number of listeners in turn so a message can be decoded
+ * once for all of them, e.g. for logging, metrics, and filtering.
+ * <p>
+ * A listener can prune the subtree it is being called back for by calling {@link #prune()} from within
+ * {@link TokenListener#onGroupHeader(Token, int)} for all the entries of a group,
+ * {@link TokenListener#onBeginGroup(Token, int, int)} for the current entry of a group, or
+ * {@link TokenListener#onBeginComposite(Token, List, int, int)} for a composite. The listener then receives no
+ * callbacks until after the end of the subtree, which is a single check for each callback while the other listeners
+ * carry on.
+ */
+public class MulticastTokenListener implements TokenListener
+{
+    private static final int NOT_PRUNABLE = 0;
+    private static final int PRUNE_GROUP = 1;
+    private static final int PRUNE_ENTRY = 2;
+    private static final int PRUNE_COMPOSITE = 3;
+
+    private final TokenListener[] listeners;
+    private final Token[] prunedTokens;
+    private final int[] prunedIndexes;
+    private int currentListenerIndex = -1;
+    private int currentPruneType = NOT_PRUNABLE;
+    private Token currentToken;
+    private int currentIndex;
+
+    /**
+     * Construct a listener which dispatches to a number of listeners in the order given.
+     *
+     * @param listeners to which the callbacks are dispatched.
+     */
+    public MulticastTokenListener(final TokenListener... listeners)
+    {
+        this.listeners = listeners.clone();
+        prunedTokens = new Token[listeners.length];
+        prunedIndexes = new int[listeners.length];
+    }
+
+    /**
+     * Prune the subtree of the group, group entry, or composite for which the current listener is being called back
+     * so it receives no further callbacks until after its end.
+     *
+     * @throws IllegalStateException if not called from within a callback for the beginning of a subtree.
+     */
+    public void prune()
+    {
+        if (NOT_PRUNABLE == currentPruneType)
+        {
+            throw new IllegalStateException(
+                "prune must be called from onGroupHeader, onBeginGroup, or onBeginComposite");
+        }
+
+        if (PRUNE_GROUP == currentPruneType && currentIndex < 0)
+        {
+            return;
+        }
+
+        prunedTokens[currentListenerIndex] = currentToken;
+        prunedIndexes[currentListenerIndex] = currentIndex;
+    }
+
+    /**
+     * Is the listener at an index currently pruned from receiving callbacks.
+     *
+     * @param listenerIndex of the listener in the order given on construction.
+     * @return true if the listener is currently pruned from receiving callbacks.
+     */
+    public boolean isPruned(final int listenerIndex)
+    {
+        return null != prunedTokens[listenerIndex];
+    }
+
+    public void onBeginMessage(final Token token)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            prunedTokens[i] = null;
+            listeners[i].onBeginMessage(token);
+        }
+    }
+
+    public void onEndMessage(final Token token)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onEndMessage(token);
+            }
+        }
+    }
+
+    public void onEncoding(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final Token typeToken,
+        final int actingVersion)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onEncoding(fieldToken, buffer, bufferIndex, typeToken, actingVersion);
+            }
+        }
+    }
+
+    public void onEnum(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onEnum(fieldToken, buffer, bufferIndex, tokens, fromIndex, toIndex, actingVersion);
+            }
+        }
+    }
+
+    public void onBitSet(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onBitSet(fieldToken, buffer, bufferIndex, tokens, fromIndex, toIndex, actingVersion);
+            }
+        }
+    }
+
+    public void onBeginComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        beginPrunable(PRUNE_COMPOSITE, fieldToken, fromIndex);
+        try
+        {
+            for (int i = 0; i < listeners.length; i++)
+            {
+                if (null == prunedTokens[i])
+                {
+                    currentListenerIndex = i;
+                    listeners[i].onBeginComposite(fieldToken, tokens, fromIndex, toIndex);
+                }
+            }
+        }
+        finally
+        {
+            endPrunable();
+        }
+    }
+
+    public void onEndComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onEndComposite(fieldToken, tokens, fromIndex, toIndex);
+            }
+            else if (prunedTokens[i] == fieldToken && prunedIndexes[i] == fromIndex)
+            {
+                prunedTokens[i] = null;
+            }
+        }
+    }
+
+    public void onGroupHeader(final Token token, final int numInGroup)
+    {
+        beginPrunable(PRUNE_GROUP, token, numInGroup - 1);
+        try
+        {
+            for (int i = 0; i < listeners.length; i++)
+            {
+                if (null == prunedTokens[i])
+                {
+                    currentListenerIndex = i;
+                    listeners[i].onGroupHeader(token, numInGroup);
+                }
+            }
+        }
+        finally
+        {
+            endPrunable();
+        }
+    }
+
+    public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        beginPrunable(PRUNE_ENTRY, token, groupIndex);
+        try
+        {
+            for (int i = 0; i < listeners.length; i++)
+            {
+                if (null == prunedTokens[i])
+                {
+                    currentListenerIndex = i;
+                    listeners[i].onBeginGroup(token, groupIndex, numInGroup);
+                }
+            }
+        }
+        finally
+        {
+            endPrunable();
+        }
+    }
+
+    public void onEndGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onEndGroup(token, groupIndex, numInGroup);
+            }
+            else if (prunedTokens[i] == token && prunedIndexes[i] == groupIndex)
+            {
+                prunedTokens[i] = null;
+            }
+        }
+    }
+
+    public void onVarData(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final int length,
+        final Token typeToken)
+    {
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (null == prunedTokens[i])
+            {
+                listeners[i].onVarData(fieldToken, buffer, bufferIndex, length, typeToken);
+            }
+        }
+    }
+
+    private void beginPrunable(final int pruneType, final Token token, final int index)
+    {
+        currentPruneType = pruneType;
+        currentToken = token;
+        currentIndex = index;
+    }
+
+    private void endPrunable()
+    {
+        currentPruneType = NOT_PRUNABLE;
+        currentToken = null;
+        currentListenerIndex = -1;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import uk.co.real_logic.sbe.ir.Ir;
+
+/**
+ * On-the-fly decoder for a buffer of back-to-back messages, each preceded by its message header, as found in capture
+ * files and network batches.
+ * <p>
+ * Each message is dispatched to the {@link TokenListener} registered for its template id, or the default listener
+ * when none is registered, and skipped without being decoded if neither exists. Messages can also be selected by
+ * an {@link OtfFilter} for their template id which is evaluated in the buffer before any dispatch. Decoding plans
+ * and listeners are resolved once per template id up front so the cost per message is a header read and a primitive
+ * keyed lookup.
+ * <p>
+ * A message which is truncated by the end of the buffer is not decoded so the consumed length can be used to retain
+ * the partial message until more data arrives. A message with a negative group dimension or var data length, or one
+ * which claims the message extends beyond the capacity of the buffer, is rejected as corrupt rather than being
+ * retained as partial, since no more data can complete it. Instances are not thread safe.
+ */
+public class OtfBatchDecoder
+{
+    private final Ir ir;
+    private final OtfHeaderDecoder headerDecoder;
+    private final Int2ObjectHashMap<OtfDecodePlan> planByTemplateIdMap;
+    private final Int2ObjectHashMap<TokenListener> listenerByTemplateIdMap = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<OtfFilter> filterByTemplateIdMap = new Int2ObjectHashMap<>();
+    private TokenListener defaultListener;
+    private int messageCount;
+
+    /**
+     * Construct a decoder for messages of a schema.
+     *
+     * @param ir for the schema of the messages.
+     */
+    public OtfBatchDecoder(final Ir ir)
+    {
+        this.ir = ir;
+        headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        planByTemplateIdMap = OtfDecodePlan.compile(ir);
+    }
+
+    /**
+     * Register the listener to which messages with a template id are dispatched.
+     *
+     * @param templateId of the messages.
+     * @param listener   to which the messages are dispatched, or null to remove the registration.
+     * @return this for a fluent API.
+     */
+    public OtfBatchDecoder listener(final int templateId, final TokenListener listener)
+    {
+        if (!planByTemplateIdMap.containsKey(templateId))
+        {
+            throw new IllegalArgumentException("No message for template id: " + templateId);
+        }
+
+        if (null == listener)
+        {
+            listenerByTemplateIdMap.remove(templateId);
+        }
+        else
+        {
+            listenerByTemplateIdMap.put(templateId, listener);
+        }
+
+        return this;
+    }
+
+    /**
+     * Register the filter which messages with a template id must match to be dispatched to a listener.
+     *
+     * @param templateId of the messages.
+     * @param filter     which the messages must match, or null to remove the registration.
+     * @return this for a fluent API.
+     */
+    public OtfBatchDecoder filter(final int templateId, final OtfFilter filter)
+    {
+        if (!planByTemplateIdMap.containsKey(templateId))
+        {
+            throw new IllegalArgumentException("No message for template id: " + templateId);
+        }
+
+        if (null == filter)
+        {
+            filterByTemplateIdMap.remove(templateId);
+        }
+        else if (filter.templateId() != templateId)
+        {
+            throw new IllegalArgumentException(
+                "Filter for template id " + filter.templateId() + " registered for template id " + templateId);
+        }
+        else
+        {
+            filterByTemplateIdMap.put(templateId, filter);
+        }
+
+        return this;
+    }
+
+    /**
+     * Set the listener to which messages are dispatched when no listener is registered for their template id.
+     *
+     * @param listener to which messages are dispatched by default, or null to skip them.
+     * @return this for a fluent API.
+     */
+    public OtfBatchDecoder defaultListener(final TokenListener listener)
+    {
+        defaultListener = listener;
+        return this;
+    }
+
+    /**
+     * The number of messages consumed by the last call to {@link #decode(DirectBuffer, int, int)}.
+     *
+     * @return the number of messages consumed by the last decode.
+     */
+    public int messageCount()
+    {
+        return messageCount;
+    }
+
+    /**
+     * Decode the complete messages in a range of a buffer, stopping at the end of the range or at a message which
+     * is truncated by it.
+     *
+     * @param buffer containing the message headers and encoded messages.
+     * @param offset at which the first message header begins.
+     * @param length of the range in the buffer holding messages.
+     * @return the number of bytes consumed from the offset, which is the length of the complete messages.
+     * @throws IllegalArgumentException if a message is not of the schema or is corrupt.
+     */
+    public int decode(final DirectBuffer buffer, final int offset, final int length)
+    {
+        final OtfHeaderDecoder headerDecoder = this.headerDecoder;
+        final int headerLength = headerDecoder.encodedLength();
+        final int limit = offset + length;
+        int position = offset;
+        int count = 0;
+
+        while (headerLength <= limit - position)
+        {
+            final int templateId = headerDecoder.getTemplateId(buffer, position);
+            final int schemaId = headerDecoder.getSchemaId(buffer, position);
+            final int actingVersion = headerDecoder.getSchemaVersion(buffer, position);
+            final int blockLength = headerDecoder.getBlockLength(buffer, position);
+
+            validateMessage(schemaId, actingVersion, position);
+
+            final OtfDecodePlan plan = planByTemplateIdMap.get(templateId);
+            if (null == plan)
+            {
+                throw new IllegalArgumentException(
+                    "No message for template id " + templateId + " at offset " + position);
+            }
+
+            final int messageOffset = position + headerLength;
+            final int messageLimit = plan.validatedEncodedLimit(
+                buffer, messageOffset, actingVersion, blockLength, limit);
+            if (-1 == messageLimit)
+            {
+                break;
+            }
+
+            TokenListener listener = listenerByTemplateIdMap.get(templateId);
+            if (null == listener)
+            {
+                listener = defaultListener;
+            }
+
+            final OtfFilter filter = filterByTemplateIdMap.get(templateId);
+            if (null != listener &&
+                (null == filter || filter.matches(buffer, messageOffset, actingVersion, blockLength)))
+            {
+                plan.decode(buffer, messageOffset, actingVersion, blockLength, listener);
+            }
+
+            position = messageLimit;
+            count++;
+        }
+
+        messageCount = count;
+
+        return position - offset;
+    }
+
+    private void validateMessage(final int schemaId, final int actingVersion, final int position)
+    {
+        if (schemaId != ir.id())
+        {
+            throw new IllegalArgumentException(
+                "Required schema id " + ir.id() + " but was " + schemaId + " at offset " + position);
+        }
+
+        if (actingVersion > ir.version())
+        {
+            throw new IllegalArgumentException(
+                "Required schema version " + ir.version() + " or less but was " + actingVersion +
+                " at offset " + position);
+        }
+    }
+}
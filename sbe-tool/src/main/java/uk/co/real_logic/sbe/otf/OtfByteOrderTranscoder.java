@@ -0,0 +1,375 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Signal;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transcodes messages, including their message header, repeating group dimensions, and var data lengths, into the
+ * opposite byte order so consumers can use codecs generated for their native byte order.
+ * <p>
+ * The transcoded messages are described by {@link #targetIr()} which is derived from the IR of the source schema with
+ * the byte order of every encoding flipped. Each block is copied in bulk and then the primitive values wider than a
+ * byte are swapped in place. Fields from a newer version of the schema than the IR, which appear past the known fields
+ * in a block, are copied unchanged.
+ * <p>
+ * This class is not thread safe.
+ */
+public class OtfByteOrderTranscoder
+{
+    private static final int SWAP_LENGTH = 3;
+
+    private final Ir targetIr;
+    private final OtfHeaderDecoder headerDecoder;
+    private final int[] headerSwaps;
+    private final Int2ObjectHashMap<Block> blockByTemplateIdMap = new Int2ObjectHashMap<>();
+    private int srcLimit;
+    private int dstLimit;
+
+    /**
+     * Construct a transcoder for the messages of a schema.
+     *
+     * @param ir for the schema in which messages are encoded.
+     */
+    public OtfByteOrderTranscoder(final Ir ir)
+    {
+        final List<Token> headerTokens = ir.headerStructure().tokens();
+        headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        headerSwaps = swaps(headerTokens, 0, 1);
+
+        final ByteOrder targetByteOrder =
+            ByteOrder.BIG_ENDIAN == ir.byteOrder() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        targetIr = new Ir(
+            ir.packageName(),
+            ir.namespaceName(),
+            ir.id(),
+            ir.version(),
+            ir.description(),
+            ir.semanticVersion(),
+            targetByteOrder,
+            flip(headerTokens));
+
+        for (final List<Token> msgTokens : ir.messages())
+        {
+            final Token msgToken = msgTokens.get(0);
+            blockByTemplateIdMap.put(msgToken.id(), new Block(msgTokens, 1, msgTokens.size() - 1));
+            targetIr.addMessage(msgToken.id(), flip(msgTokens));
+        }
+    }
+
+    /**
+     * The IR describing the transcoded messages which has the opposite byte order to the source schema.
+     *
+     * @return the IR describing the transcoded messages.
+     */
+    public Ir targetIr()
+    {
+        return targetIr;
+    }
+
+    /**
+     * Transcode the message at an offset in the source buffer, including its message header, into the target buffer
+     * in the opposite byte order.
+     *
+     * @param srcBuffer containing the message header and encoded message.
+     * @param srcOffset at which the message header begins.
+     * @param dstBuffer into which the transcoded message header and message are written.
+     * @param dstOffset at which the message header is written.
+     * @return the number of bytes written to the target buffer.
+     */
+    public int transcode(
+        final DirectBuffer srcBuffer, final int srcOffset, final MutableDirectBuffer dstBuffer, final int dstOffset)
+    {
+        final int templateId = headerDecoder.getTemplateId(srcBuffer, srcOffset);
+        final Block block = blockByTemplateIdMap.get(templateId);
+        if (null == block)
+        {
+            throw new IllegalArgumentException("No message for template id " + templateId + " at offset " + srcOffset);
+        }
+
+        final int headerLength = headerDecoder.encodedLength();
+        final int actingVersion = headerDecoder.getSchemaVersion(srcBuffer, srcOffset);
+        final int actingBlockLength = headerDecoder.getBlockLength(srcBuffer, srcOffset);
+
+        copySwapped(srcBuffer, srcOffset, dstBuffer, dstOffset, headerLength, headerSwaps, actingVersion);
+        srcLimit = srcOffset + headerLength;
+        dstLimit = dstOffset + headerLength;
+        transcodeBlock(block, srcBuffer, dstBuffer, actingBlockLength, actingVersion);
+
+        return dstLimit - dstOffset;
+    }
+
+    private void transcodeBlock(
+        final Block block,
+        final DirectBuffer srcBuffer,
+        final MutableDirectBuffer dstBuffer,
+        final int actingBlockLength,
+        final int actingVersion)
+    {
+        copySwapped(srcBuffer, srcLimit, dstBuffer, dstLimit, actingBlockLength, block.swaps, actingVersion);
+        srcLimit += actingBlockLength;
+        dstLimit += actingBlockLength;
+
+        for (final Node node : block.nodes)
+        {
+            if (node.sinceVersion > actingVersion)
+            {
+                continue;
+            }
+
+            final int headerLength = node.headerLength;
+            final int count = (int)Types.getLong(srcBuffer, srcLimit + node.countOffset, node.countEncoding);
+            copySwapped(srcBuffer, srcLimit, dstBuffer, dstLimit, headerLength, node.headerSwaps, actingVersion);
+            srcLimit += headerLength;
+            dstLimit += headerLength;
+
+            if (null == node.block)
+            {
+                dstBuffer.putBytes(dstLimit, srcBuffer, srcLimit, count);
+                srcLimit += count;
+                dstLimit += count;
+            }
+            else
+            {
+                final int blockLength = (int)Types.getLong(
+                    srcBuffer, srcLimit - headerLength + node.blockLengthOffset, node.blockLengthEncoding);
+
+                for (int i = 0; i < count; i++)
+                {
+                    transcodeBlock(node.block, srcBuffer, dstBuffer, blockLength, actingVersion);
+                }
+            }
+        }
+    }
+
+    private static void copySwapped(
+        final DirectBuffer srcBuffer,
+        final int srcOffset,
+        final MutableDirectBuffer dstBuffer,
+        final int dstOffset,
+        final int length,
+        final int[] swaps,
+        final int actingVersion)
+    {
+        dstBuffer.putBytes(dstOffset, srcBuffer, srcOffset, length);
+
+        for (int i = 0; i < swaps.length; i += SWAP_LENGTH)
+        {
+            final int offset = swaps[i];
+            final int size = swaps[i + 1];
+            if (swaps[i + 2] > actingVersion || offset + size > length)
+            {
+                continue;
+            }
+
+            switch (size)
+            {
+                case 2:
+                    dstBuffer.putShort(dstOffset + offset, Short.reverseBytes(srcBuffer.getShort(srcOffset + offset)));
+                    break;
+
+                case 4:
+                    dstBuffer.putInt(dstOffset + offset, Integer.reverseBytes(srcBuffer.getInt(srcOffset + offset)));
+                    break;
+
+                case 8:
+                    dstBuffer.putLong(dstOffset + offset, Long.reverseBytes(srcBuffer.getLong(srcOffset + offset)));
+                    break;
+            }
+        }
+    }
+
+    private static int[] swaps(final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        final IntArrayList swaps = new IntArrayList();
+        for (int i = fromIndex; i < toIndex; i += tokens.get(i).componentTokenCount())
+        {
+            final Token token = tokens.get(i);
+            if (Signal.BEGIN_FIELD == token.signal())
+            {
+                final Token typeToken = tokens.get(i + 1);
+                addSwaps(swaps, tokens, i + 1, typeToken.offset(), token.version());
+            }
+            else if (Signal.BEGIN_COMPOSITE == token.signal())
+            {
+                addSwaps(swaps, tokens, i, 0, token.version());
+            }
+        }
+
+        return swaps.toIntArray();
+    }
+
+    private static void addSwaps(
+        final IntArrayList swaps,
+        final List<Token> tokens,
+        final int typeIndex,
+        final int offset,
+        final int sinceVersion)
+    {
+        final Token typeToken = tokens.get(typeIndex);
+        if (Signal.BEGIN_COMPOSITE == typeToken.signal())
+        {
+            for (int i = typeIndex + 1, end = typeIndex + typeToken.componentTokenCount() - 1; i < end; )
+            {
+                final Token memberToken = tokens.get(i);
+                addSwaps(swaps, tokens, i, offset + memberToken.offset(), sinceVersion);
+                i += memberToken.componentTokenCount();
+            }
+
+            return;
+        }
+
+        final Encoding encoding = typeToken.encoding();
+        if (Encoding.Presence.CONSTANT == encoding.presence() || typeToken.encodedLength() <= 0)
+        {
+            return;
+        }
+
+        final int size = encoding.primitiveType().size();
+        if (size > 1)
+        {
+            for (int i = 0, length = typeToken.arrayLength(); i < length; i++)
+            {
+                swaps.addInt(offset + (i * size));
+                swaps.addInt(size);
+                swaps.addInt(sinceVersion);
+            }
+        }
+    }
+
+    private static List<Token> flip(final List<Token> tokens)
+    {
+        final List<Token> flipped = new ArrayList<>(tokens.size());
+        for (final Token token : tokens)
+        {
+            final Encoding encoding = token.encoding();
+            final ByteOrder byteOrder =
+                ByteOrder.BIG_ENDIAN == encoding.byteOrder() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+            final Encoding flippedEncoding = new Encoding(
+                encoding.presence(),
+                encoding.primitiveType(),
+                byteOrder,
+                encoding.minValue(),
+                encoding.maxValue(),
+                encoding.nullValue(),
+                encoding.constValue(),
+                encoding.characterEncoding(),
+                encoding.epoch(),
+                encoding.timeUnit(),
+                encoding.semanticType());
+
+            flipped.add(new Token(
+                token.signal(),
+                token.name(),
+                token.referencedName(),
+                token.description(),
+                token.id(),
+                token.version(),
+                token.deprecated(),
+                token.encodedLength(),
+                token.offset(),
+                token.componentTokenCount(),
+                flippedEncoding));
+        }
+
+        return flipped;
+    }
+
+    /**
+     * Block of fixed length fields with the swaps for its values followed by its repeating groups and var data.
+     */
+    static final class Block
+    {
+        final int[] swaps;
+        final Node[] nodes;
+
+        Block(final List<Token> tokens, final int fromIndex, final int toIndex)
+        {
+            int i = fromIndex;
+            while (i < toIndex && Signal.BEGIN_FIELD == tokens.get(i).signal())
+            {
+                i += tokens.get(i).componentTokenCount();
+            }
+
+            swaps = swaps(tokens, fromIndex, i);
+
+            final ArrayList<Node> nodeList = new ArrayList<>();
+            for (; i < toIndex; i += tokens.get(i).componentTokenCount())
+            {
+                nodeList.add(new Node(tokens, i));
+            }
+
+            nodes = nodeList.toArray(new Node[0]);
+        }
+    }
+
+    /**
+     * Repeating group or var data with the swaps for its dimensions or length.
+     */
+    static final class Node
+    {
+        final int sinceVersion;
+        final int headerLength;
+        final int[] headerSwaps;
+        final int blockLengthOffset;
+        final Encoding blockLengthEncoding;
+        final int countOffset;
+        final Encoding countEncoding;
+        final Block block;
+
+        Node(final List<Token> tokens, final int index)
+        {
+            final Token token = tokens.get(index);
+            final Token compositeToken = tokens.get(index + 1);
+            final Token countToken = tokens.get(Signal.BEGIN_GROUP == token.signal() ? index + 3 : index + 2);
+
+            sinceVersion = token.version();
+            countOffset = countToken.offset();
+            countEncoding = countToken.encoding();
+            headerSwaps = swaps(tokens, index + 1, index + 2);
+
+            if (Signal.BEGIN_GROUP == token.signal())
+            {
+                final int endIndex = index + token.componentTokenCount() - 1;
+                final Token blockLengthToken = tokens.get(index + 2);
+
+                headerLength = compositeToken.encodedLength();
+                blockLengthOffset = blockLengthToken.offset();
+                blockLengthEncoding = blockLengthToken.encoding();
+                block = new Block(tokens, index + 1 + compositeToken.componentTokenCount(), endIndex);
+            }
+            else
+            {
+                headerLength = tokens.get(index + 3).offset();
+                blockLengthOffset = 0;
+                blockLengthEncoding = null;
+                block = null;
+            }
+        }
+    }
+}
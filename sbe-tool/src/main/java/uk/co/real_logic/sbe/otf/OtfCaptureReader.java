@@ -0,0 +1,266 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.LangUtil;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.sbe.ir.Ir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Reader for capture files of back-to-back messages, each preceded by its message header, which decodes chunks of
+ * the file in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * The file is first indexed into chunks of complete messages no longer than the chunk length by a pass which maps
+ * the file and reads only the message headers, group dimensions, and var data lengths. Each chunk is mapped along
+ * with a chunk length of the file following it so a length which claims a message extends beyond that is rejected as
+ * corrupt, unless it runs into the end of the file where the message is taken to be partial. Each chunk is then mapped
+ * and decoded by an {@link OtfBatchDecoder} dispatching to a {@link TokenListener} of its own, with the listeners
+ * being returned in the order of their chunks in the file so results can be merged in order. The mappings are released
+ * when they are no longer reachable. A partial message at the end of the file is not decoded.
+ */
+public class OtfCaptureReader
+{
+    /**
+     * Default length of the chunks into which a file is divided for decoding.
+     */
+    public static final int DEFAULT_CHUNK_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Maximum length of the chunks so a chunk and the chunk length of the file following it can be mapped together.
+     */
+    public static final int MAX_CHUNK_LENGTH = Integer.MAX_VALUE / 2;
+
+    private final Ir ir;
+    private final int chunkLength;
+    private final ForkJoinPool pool;
+
+    /**
+     * Construct a reader for capture files of messages of a schema which decodes on the common pool in chunks of the
+     * default length.
+     *
+     * @param ir for the schema of the messages.
+     */
+    public OtfCaptureReader(final Ir ir)
+    {
+        this(ir, DEFAULT_CHUNK_LENGTH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a reader for capture files of messages of a schema.
+     *
+     * @param ir          for the schema of the messages.
+     * @param chunkLength maximum length of the chunks into which a file is divided, which must hold any message and
+     *                    be at most {@link #MAX_CHUNK_LENGTH}.
+     * @param pool        on which the chunks are decoded.
+     */
+    public OtfCaptureReader(final Ir ir, final int chunkLength, final ForkJoinPool pool)
+    {
+        if (chunkLength <= 0 || chunkLength > MAX_CHUNK_LENGTH)
+        {
+            throw new IllegalArgumentException(
+                "Chunk length must be positive and at most " + MAX_CHUNK_LENGTH + ": " + chunkLength);
+        }
+
+        this.ir = ir;
+        this.chunkLength = chunkLength;
+        this.pool = pool;
+    }
+
+    /**
+     * Index a capture file into chunks of complete messages.
+     *
+     * @param path of the capture file.
+     * @return the file offsets of the chunk boundaries, starting with 0 and ending after the last complete message.
+     * @throws IOException if the file cannot be read.
+     */
+    public long[] index(final Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return index(channel);
+        }
+    }
+
+    /**
+     * Decode a capture file in parallel with a listener for each chunk of the file.
+     *
+     * @param path             of the capture file.
+     * @param listenerSupplier which supplies a new listener for each chunk.
+     * @param <T>              type of the listeners.
+     * @return the listeners in the order of the chunks they decoded in the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public <T extends TokenListener> List<T> decode(final Path path, final Supplier<T> listenerSupplier)
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            final long[] boundaries = index(channel);
+            if (boundaries.length < 2)
+            {
+                return Collections.emptyList();
+            }
+
+            return pool.invoke(new ChunkTask<>(channel, boundaries, 0, boundaries.length - 1, listenerSupplier));
+        }
+    }
+
+    private long[] index(final FileChannel channel) throws IOException
+    {
+        final OtfLengthDecoder lengthDecoder = new OtfLengthDecoder(ir);
+        final long fileLength = channel.size();
+        final LongArrayList boundaries = new LongArrayList();
+        long chunkOffset = 0;
+
+        boundaries.addLong(chunkOffset);
+
+        while (chunkOffset < fileLength)
+        {
+            final long remaining = fileLength - chunkOffset;
+            final int length = (int)Math.min(remaining, chunkLength);
+            final int mappedLength = (int)Math.min(remaining, 2L * chunkLength);
+            final boolean mapsEndOfFile = mappedLength == remaining;
+            final MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffset, mappedLength);
+            final UnsafeBuffer buffer = new UnsafeBuffer(mappedBuffer);
+            int offset = 0;
+            while (offset < length)
+            {
+                final int messageLength;
+                try
+                {
+                    messageLength = mapsEndOfFile ?
+                        lengthDecoder.messageLength(buffer, offset) :
+                        lengthDecoder.messageLength(buffer, offset, length);
+                }
+                catch (final IllegalArgumentException ex)
+                {
+                    throw new IllegalStateException("Corrupt message at offset " + (chunkOffset + offset), ex);
+                }
+
+                if (-1 == messageLength || messageLength > length - offset)
+                {
+                    break;
+                }
+
+                if (messageLength <= 0)
+                {
+                    throw new IllegalStateException(
+                        "Corrupt message at offset " + (chunkOffset + offset) + ": length=" + messageLength);
+                }
+
+                offset += messageLength;
+            }
+
+            if (0 == offset)
+            {
+                if (chunkOffset + length == fileLength)
+                {
+                    break;
+                }
+
+                throw new IllegalStateException(
+                    "Message at offset " + chunkOffset + " is longer than the chunk length " + chunkLength);
+            }
+
+            chunkOffset += offset;
+            boundaries.addLong(chunkOffset);
+        }
+
+        return boundaries.toLongArray();
+    }
+
+    private void decodeChunk(
+        final FileChannel channel, final long chunkOffset, final int length, final TokenListener listener)
+        throws IOException
+    {
+        final OtfBatchDecoder decoder = new OtfBatchDecoder(ir).defaultListener(listener);
+        final MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffset, length);
+        final int consumed = decoder.decode(new UnsafeBuffer(mappedBuffer), 0, length);
+        if (consumed != length)
+        {
+            throw new IllegalStateException(
+                "Chunk at offset " + chunkOffset + " changed while being decoded: consumed=" + consumed);
+        }
+    }
+
+    private final class ChunkTask<T extends TokenListener> extends RecursiveTask<List<T>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final int fromChunk;
+        private final int toChunk;
+        private final Supplier<T> listenerSupplier;
+
+        ChunkTask(
+            final FileChannel channel,
+            final long[] boundaries,
+            final int fromChunk,
+            final int toChunk,
+            final Supplier<T> listenerSupplier)
+        {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.listenerSupplier = listenerSupplier;
+        }
+
+        protected List<T> compute()
+        {
+            if (1 == toChunk - fromChunk)
+            {
+                final T listener = listenerSupplier.get();
+                final long chunkOffset = boundaries[fromChunk];
+                try
+                {
+                    decodeChunk(channel, chunkOffset, (int)(boundaries[toChunk] - chunkOffset), listener);
+                }
+                catch (final IOException ex)
+                {
+                    LangUtil.rethrowUnchecked(ex);
+                }
+
+                return Collections.singletonList(listener);
+            }
+
+            final int midChunk = (fromChunk + toChunk) >>> 1;
+            final ChunkTask<T> head = new ChunkTask<>(channel, boundaries, fromChunk, midChunk, listenerSupplier);
+            final ChunkTask<T> tail = new ChunkTask<>(channel, boundaries, midChunk, toChunk, listenerSupplier);
+            tail.fork();
+
+            final List<T> listeners = new ArrayList<>(toChunk - fromChunk);
+            listeners.addAll(head.compute());
+            listeners.addAll(tail.join());
+
+            return listeners;
+        }
+    }
+}
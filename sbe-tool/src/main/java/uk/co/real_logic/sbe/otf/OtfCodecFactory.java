@@ -0,0 +1,507 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.collections.Int2ObjectHashMap;
+import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.PrimitiveValue;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static uk.co.real_logic.sbe.otf.ClassFileWriter.*;
+
+/**
+ * Generates flyweight decoder classes for the messages of an {@link Ir} at runtime so schemas only known at runtime,
+ * e.g. decoded from a .sbeir file with {@link uk.co.real_logic.sbe.ir.IrDecoder}, can be decoded without generating
+ * and compiling codecs or interpreting the {@link Token}s for each message.
+ * <p>
+ * A class is generated as bytecode for the root block of each message and for each of its repeating groups, and
+ * defined by a {@link ClassLoader} of the factory, so neither javac nor a full JDK is needed. The generated
+ * {@link OtfMessageFlyweight}s and {@link OtfGroupFlyweight}s read each field from the buffer at its literal offset
+ * with its primitive type and byte order, as the decoders {@code JavaGenerator} generates do.
+ * <p>
+ * The factory is immutable and thread safe once created but the flyweights it creates are not.
+ */
+public class OtfCodecFactory
+{
+    private static final String GENERATED_PACKAGE = "uk/co/real_logic/sbe/otf/generated/";
+    private static final String DIRECT_BUFFER = "org/agrona/DirectBuffer";
+    private static final String BYTE_ORDER = "java/nio/ByteOrder";
+    private static final int MAX_STACK = 6;
+
+    private final Ir ir;
+    private final FlyweightClassLoader classLoader = new FlyweightClassLoader(OtfCodecFactory.class.getClassLoader());
+    private final Int2ObjectHashMap<OtfFlyweight.Layout> layoutByTemplateIdMap = new Int2ObjectHashMap<>();
+    private int classCount;
+
+    /**
+     * Generate and load the flyweight classes for the messages of an {@link Ir}.
+     *
+     * @param ir for the schema.
+     */
+    public OtfCodecFactory(final Ir ir)
+    {
+        this.ir = ir;
+
+        for (final List<Token> tokens : ir.messages())
+        {
+            final OtfFlyweight.Layout layout = new OtfFlyweight.Layout(tokens, ir.id(), ir.version());
+            defineClass(layout);
+            layoutByTemplateIdMap.put(layout.templateId, layout);
+        }
+    }
+
+    /**
+     * The {@link Ir} the flyweights are generated for.
+     *
+     * @return the {@link Ir} the flyweights are generated for.
+     */
+    public Ir ir()
+    {
+        return ir;
+    }
+
+    /**
+     * The class generated for the flyweight of a message.
+     *
+     * @param templateId of the message.
+     * @return the class generated for the flyweight of the message.
+     */
+    public Class<? extends OtfMessageFlyweight> decoderClass(final int templateId)
+    {
+        return layout(templateId).constructor.getDeclaringClass().asSubclass(OtfMessageFlyweight.class);
+    }
+
+    /**
+     * Create a new flyweight decoder for a message. Instances should be created once and reused by wrapping each
+     * message.
+     *
+     * @param templateId of the message.
+     * @return a new decoder instance.
+     */
+    public OtfMessageFlyweight newDecoder(final int templateId)
+    {
+        return (OtfMessageFlyweight)layout(templateId).newFlyweight(null);
+    }
+
+    private OtfFlyweight.Layout layout(final int templateId)
+    {
+        final OtfFlyweight.Layout layout = layoutByTemplateIdMap.get(templateId);
+        if (null == layout)
+        {
+            throw new IllegalArgumentException("No message for template id: " + templateId);
+        }
+
+        return layout;
+    }
+
+    private void defineClass(final OtfFlyweight.Layout layout)
+    {
+        for (final OtfFlyweight.Layout groupLayout : layout.groupLayouts)
+        {
+            defineClass(groupLayout);
+        }
+
+        final boolean isGroup = null != layout.groupToken;
+        final String superClassName = isGroup ? OtfGroupFlyweight.INTERNAL_NAME : OtfMessageFlyweight.INTERNAL_NAME;
+        final String className = GENERATED_PACKAGE + layout.name.replaceAll("[^A-Za-z0-9_$]", "_") + '_' + classCount++;
+        final ClassFileWriter writer = new ClassFileWriter(className, superClassName);
+
+        final ClassFileWriter.Code constructor = writer.newCode();
+        constructor.aload(0);
+        constructor.invokeSpecial(superClassName, "<init>", "()V");
+        constructor.op(RETURN);
+        writer.addMethod(ACC_PUBLIC, "<init>", "()V", constructor, 1, 1);
+
+        writer.addMethod(ACC_PUBLIC, "getLong", "(II)J", getLongCode(writer, layout.fields), MAX_STACK, 3);
+        writer.addMethod(ACC_PUBLIC, "getDouble", "(II)D", getDoubleCode(writer, layout.fields), MAX_STACK, 3);
+        writer.addMethod(
+            ACC_PROTECTED, "readVarDataLength", "(II)I", readVarDataLengthCode(writer, layout.varData), MAX_STACK, 3);
+
+        if (isGroup)
+        {
+            writer.addMethod(
+                ACC_PROTECTED, "readBlockLength", "(I)I", readIntCode(writer, layout.blockLengthToken), MAX_STACK, 2);
+            writer.addMethod(
+                ACC_PROTECTED, "readNumInGroup", "(I)I", readIntCode(writer, layout.numInGroupToken), MAX_STACK, 2);
+        }
+
+        final Class<?> flyweightClass = classLoader.define(className.replace('/', '.'), writer.toByteArray());
+        try
+        {
+            layout.constructor = flyweightClass.asSubclass(OtfFlyweight.class).getConstructor();
+        }
+        catch (final NoSuchMethodException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /*
+     * getLong(fieldIndex, elementIndex) and getDouble(fieldIndex, elementIndex) switch on the field index to a case
+     * per field which reads the element at the literal offset of the field from the beginning of the block.
+     */
+
+    private static ClassFileWriter.Code getLongCode(final ClassFileWriter writer, final OtfFlyweight.Field[] fields)
+    {
+        final ClassFileWriter.Code code = writer.newCode();
+        final ClassFileWriter.Label[] labels = switchOnIndex(code, fields.length);
+
+        for (int i = 0; i < fields.length; i++)
+        {
+            final OtfFlyweight.Field field = fields[i];
+            code.mark(labels[i]);
+
+            if (null != field.constValue)
+            {
+                code.aload(0);
+                code.iload(1);
+                code.iload(2);
+                code.invokeSpecial(OtfFlyweight.INTERNAL_NAME, "constLong", "(II)J");
+                code.op(LRETURN);
+                continue;
+            }
+
+            final PrimitiveValue nullValue = field.encoding.applicableNullValue();
+            final long nullLong = PrimitiveValue.Representation.DOUBLE == nullValue.representation() ?
+                (long)nullValue.doubleValue() : nullValue.longValue();
+            notPresentCheck(code, field.sinceVersion, () -> code.pushLong(nullLong), LRETURN);
+            fieldIndex(code, field);
+
+            switch (field.encoding.primitiveType())
+            {
+                case CHAR:
+                case INT8:
+                    read(code, "getByte", "B", field.encoding);
+                    code.op(I2L);
+                    break;
+
+                case UINT8:
+                    read(code, "getByte", "B", field.encoding);
+                    code.pushInt(0xFF);
+                    code.op(IAND);
+                    code.op(I2L);
+                    break;
+
+                case INT16:
+                    read(code, "getShort", "S", field.encoding);
+                    code.op(I2L);
+                    break;
+
+                case UINT16:
+                    read(code, "getShort", "S", field.encoding);
+                    code.pushInt(0xFFFF);
+                    code.op(IAND);
+                    code.op(I2L);
+                    break;
+
+                case INT32:
+                    read(code, "getInt", "I", field.encoding);
+                    code.op(I2L);
+                    break;
+
+                case UINT32:
+                    read(code, "getInt", "I", field.encoding);
+                    code.op(I2L);
+                    code.pushLong(0xFFFF_FFFFL);
+                    code.op(LAND);
+                    break;
+
+                case INT64:
+                case UINT64:
+                    read(code, "getLong", "J", field.encoding);
+                    break;
+
+                case FLOAT:
+                    read(code, "getFloat", "F", field.encoding);
+                    code.op(F2L);
+                    break;
+
+                case DOUBLE:
+                    read(code, "getDouble", "D", field.encoding);
+                    code.op(D2L);
+                    break;
+            }
+
+            code.op(LRETURN);
+        }
+
+        return code;
+    }
+
+    private static ClassFileWriter.Code getDoubleCode(final ClassFileWriter writer, final OtfFlyweight.Field[] fields)
+    {
+        final ClassFileWriter.Code code = writer.newCode();
+        final ClassFileWriter.Label[] labels = switchOnIndex(code, fields.length);
+
+        for (int i = 0; i < fields.length; i++)
+        {
+            final OtfFlyweight.Field field = fields[i];
+            code.mark(labels[i]);
+
+            if (null != field.constValue)
+            {
+                code.aload(0);
+                code.iload(1);
+                code.iload(2);
+                code.invokeSpecial(OtfFlyweight.INTERNAL_NAME, "constDouble", "(II)D");
+                code.op(DRETURN);
+                continue;
+            }
+
+            final PrimitiveValue nullValue = field.encoding.applicableNullValue();
+            final double nullDouble = PrimitiveValue.Representation.DOUBLE == nullValue.representation() ?
+                nullValue.doubleValue() : nullValue.longValue();
+            notPresentCheck(code, field.sinceVersion, () -> code.pushDouble(nullDouble), DRETURN);
+            fieldIndex(code, field);
+
+            switch (field.encoding.primitiveType())
+            {
+                case CHAR:
+                case INT8:
+                    read(code, "getByte", "B", field.encoding);
+                    code.op(I2D);
+                    break;
+
+                case UINT8:
+                    read(code, "getByte", "B", field.encoding);
+                    code.pushInt(0xFF);
+                    code.op(IAND);
+                    code.op(I2D);
+                    break;
+
+                case INT16:
+                    read(code, "getShort", "S", field.encoding);
+                    code.op(I2D);
+                    break;
+
+                case UINT16:
+                    read(code, "getShort", "S", field.encoding);
+                    code.pushInt(0xFFFF);
+                    code.op(IAND);
+                    code.op(I2D);
+                    break;
+
+                case INT32:
+                    read(code, "getInt", "I", field.encoding);
+                    code.op(I2D);
+                    break;
+
+                case UINT32:
+                    read(code, "getInt", "I", field.encoding);
+                    code.op(I2L);
+                    code.pushLong(0xFFFF_FFFFL);
+                    code.op(LAND);
+                    code.op(L2D);
+                    break;
+
+                case INT64:
+                case UINT64:
+                    read(code, "getLong", "J", field.encoding);
+                    code.op(L2D);
+                    break;
+
+                case FLOAT:
+                    read(code, "getFloat", "F", field.encoding);
+                    code.op(F2D);
+                    break;
+
+                case DOUBLE:
+                    read(code, "getDouble", "D", field.encoding);
+                    break;
+            }
+
+            code.op(DRETURN);
+        }
+
+        return code;
+    }
+
+    /*
+     * readVarDataLength(varDataIndex, index) switches on the var data index to a case per var data field which reads
+     * its length at the literal offset from the beginning of its header.
+     */
+
+    private static ClassFileWriter.Code readVarDataLengthCode(
+        final ClassFileWriter writer, final OtfFlyweight.VarData[] varData)
+    {
+        final ClassFileWriter.Code code = writer.newCode();
+        final ClassFileWriter.Label[] labels = switchOnIndex(code, varData.length);
+
+        for (int i = 0; i < varData.length; i++)
+        {
+            code.mark(labels[i]);
+            readInt(code, 2, varData[i].lengthToken);
+            code.op(IRETURN);
+        }
+
+        return code;
+    }
+
+    private static ClassFileWriter.Code readIntCode(final ClassFileWriter writer, final Token token)
+    {
+        final ClassFileWriter.Code code = writer.newCode();
+        readInt(code, 1, token);
+        code.op(IRETURN);
+
+        return code;
+    }
+
+    /*
+     * Switch on the index in local 1 to a label for each index, with the default case throwing the exception from
+     * OtfFlyweight.indexOutOfRange(int).
+     */
+    private static ClassFileWriter.Label[] switchOnIndex(final ClassFileWriter.Code code, final int count)
+    {
+        final ClassFileWriter.Label defaultLabel = code.newLabel();
+        final ClassFileWriter.Label[] labels = new ClassFileWriter.Label[count];
+        for (int i = 0; i < count; i++)
+        {
+            labels[i] = code.newLabel();
+        }
+
+        if (count > 0)
+        {
+            code.iload(1);
+            code.tableSwitch(0, defaultLabel, labels);
+        }
+
+        code.mark(defaultLabel);
+        code.iload(1);
+        code.invokeStatic(
+            OtfFlyweight.INTERNAL_NAME, "indexOutOfRange", "(I)Ljava/lang/IndexOutOfBoundsException;");
+        code.op(ATHROW);
+
+        return labels;
+    }
+
+    private static void notPresentCheck(
+        final ClassFileWriter.Code code, final int sinceVersion, final Runnable pushNullValue, final int returnOpcode)
+    {
+        if (sinceVersion > 0)
+        {
+            final ClassFileWriter.Label presentLabel = code.newLabel();
+            code.aload(0);
+            code.getField(OtfFlyweight.INTERNAL_NAME, "actingVersion", "I");
+            code.pushInt(sinceVersion);
+            code.branch(IF_ICMPGE, presentLabel);
+            pushNullValue.run();
+            code.op(returnOpcode);
+            code.mark(presentLabel);
+        }
+    }
+
+    /*
+     * Push the buffer and the index of the element in local 2 of a field, i.e.
+     * buffer, offset + fieldOffset + elementOffset(elementIndex, arrayLength, size).
+     */
+    private static void fieldIndex(final ClassFileWriter.Code code, final OtfFlyweight.Field field)
+    {
+        code.aload(0);
+        code.getField(OtfFlyweight.INTERNAL_NAME, "buffer", 'L' + DIRECT_BUFFER + ';');
+        code.aload(0);
+        code.getField(OtfFlyweight.INTERNAL_NAME, "offset", "I");
+        code.pushInt(field.offset);
+        code.op(IADD);
+        code.iload(2);
+        code.pushInt(field.arrayLength);
+        code.pushInt(field.encoding.primitiveType().size());
+        code.invokeStatic(OtfFlyweight.INTERNAL_NAME, "elementOffset", "(III)I");
+        code.op(IADD);
+    }
+
+    /*
+     * Push the value of an integer, at an offset from the index in a local, as an int.
+     */
+    private static void readInt(final ClassFileWriter.Code code, final int indexLocal, final Token token)
+    {
+        final Encoding encoding = token.encoding();
+        code.aload(0);
+        code.getField(OtfFlyweight.INTERNAL_NAME, "buffer", 'L' + DIRECT_BUFFER + ';');
+        code.iload(indexLocal);
+        code.pushInt(token.offset());
+        code.op(IADD);
+
+        switch (encoding.primitiveType())
+        {
+            case INT8:
+                read(code, "getByte", "B", encoding);
+                break;
+
+            case UINT8:
+                read(code, "getByte", "B", encoding);
+                code.pushInt(0xFF);
+                code.op(IAND);
+                break;
+
+            case INT16:
+                read(code, "getShort", "S", encoding);
+                break;
+
+            case UINT16:
+                read(code, "getShort", "S", encoding);
+                code.pushInt(0xFFFF);
+                code.op(IAND);
+                break;
+
+            case INT32:
+            case UINT32:
+                read(code, "getInt", "I", encoding);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported type for a length: " + encoding.primitiveType());
+        }
+    }
+
+    /*
+     * Read from the buffer and index on the stack with the byte order of the encoding when wider than a byte.
+     */
+    private static void read(
+        final ClassFileWriter.Code code, final String method, final String returnType, final Encoding encoding)
+    {
+        if (PrimitiveType.CHAR == encoding.primitiveType() || 1 == encoding.primitiveType().size())
+        {
+            code.invokeInterface(DIRECT_BUFFER, method, "(I)" + returnType, 1);
+        }
+        else
+        {
+            final String byteOrder = ByteOrder.BIG_ENDIAN == encoding.byteOrder() ? "BIG_ENDIAN" : "LITTLE_ENDIAN";
+            code.getStatic(BYTE_ORDER, byteOrder, 'L' + BYTE_ORDER + ';');
+            code.invokeInterface(DIRECT_BUFFER, method, "(IL" + BYTE_ORDER + ";)" + returnType, 2);
+        }
+    }
+
+    /**
+     * Defines the generated flyweight classes of a factory so they can be unloaded with it.
+     */
+    private static final class FlyweightClassLoader extends ClassLoader
+    {
+        FlyweightClassLoader(final ClassLoader parent)
+        {
+            super(parent);
+        }
+
+        Class<?> define(final String name, final byte[] bytes)
+        {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
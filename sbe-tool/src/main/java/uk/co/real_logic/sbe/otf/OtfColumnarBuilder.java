@@ -0,0 +1,442 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.co.real_logic.sbe.otf.ColumnarTable.*;
+
+/**
+ * {@link TokenListener} which extracts the messages of one template into {@link ColumnarTable}s with a column per
+ * primitive field, so values are appended to primitive arrays without being boxed or formatted.
+ * <p>
+ * The layout of the tables is derived from the IR of the message. Fields within composites are named by their path,
+ * e.g. {@code "engine.capacity"}, and fixed length arrays other than strings have a column per element, e.g.
+ * {@code "someNumbers[0]"}. Integers are held as ints when they fit and longs otherwise, floating point values as
+ * doubles, bit sets by their encoded value, and enums by name, fixed length strings, and var data as dictionary
+ * encoded strings. Constant fields are not held. A field which is not present in the acting version of a message
+ * holds its null value.
+ * <p>
+ * Repeating groups are flattened into child tables named by the path of the group, e.g. {@code "Car.fuelFigures"},
+ * with each row holding the id of its parent row.
+ * <p>
+ * Columns are found for each callback by the names of the field and its enclosing groups and composites rather than
+ * by {@link Token} instance, so the builder works with tokens from any source which describes the same message, e.g.
+ * a {@link uk.co.real_logic.sbe.ir.TokenTable}.
+ */
+public class OtfColumnarBuilder implements TokenListener
+{
+    private final ColumnarTable table;
+    private final Scope messageScope;
+    private final ArrayList<Scope> scopeStack = new ArrayList<>();
+
+    /**
+     * Construct a builder for the tables of a message.
+     *
+     * @param msgTokens in IR format describing the message structure.
+     */
+    public OtfColumnarBuilder(final List<Token> msgTokens)
+    {
+        table = new ColumnarTable(msgTokens.get(0).name(), null);
+        messageScope = new Scope(table, false);
+        addColumns(msgTokens, 1, msgTokens.size() - 1, messageScope);
+    }
+
+    /**
+     * The table for the messages.
+     *
+     * @return the table for the messages.
+     */
+    public ColumnarTable table()
+    {
+        return table;
+    }
+
+    /**
+     * The table for the messages followed by the tables for the repeating groups in depth first order.
+     *
+     * @return the table for the messages followed by the tables for the repeating groups.
+     */
+    public List<ColumnarTable> tables()
+    {
+        final List<ColumnarTable> tables = new ArrayList<>();
+        addTables(table, tables);
+
+        return tables;
+    }
+
+    public void onBeginMessage(final Token token)
+    {
+        scopeStack.clear();
+        scopeStack.add(messageScope);
+    }
+
+    public void onEndMessage(final Token token)
+    {
+        table.endRow();
+    }
+
+    public void onEncoding(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final Token typeToken,
+        final int actingVersion)
+    {
+        final Column[] columns = columns(fieldToken, typeToken);
+        if (null == columns || columns[0].sinceVersion() > actingVersion)
+        {
+            return;
+        }
+
+        final Encoding encoding = typeToken.encoding();
+        if (columns[0] instanceof DictionaryColumn)
+        {
+            final int length = typeToken.arrayLength();
+            int end = 0;
+            while (end < length && 0 != buffer.getByte(bufferIndex + end))
+            {
+                end++;
+            }
+
+            ((DictionaryColumn)columns[0]).append(buffer, bufferIndex, end, characterEncoding(encoding));
+            return;
+        }
+
+        final int size = encoding.primitiveType().size();
+        for (int i = 0; i < columns.length; i++)
+        {
+            append(columns[i], buffer, bufferIndex + (i * size), encoding);
+        }
+    }
+
+    public void onEnum(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        final Token typeToken = tokens.get(fromIndex);
+        final Column[] columns = columns(fieldToken, typeToken);
+        if (null == columns || columns[0].sinceVersion() > actingVersion)
+        {
+            return;
+        }
+
+        final long value = Types.getLong(buffer, bufferIndex, typeToken.encoding());
+        String name = null;
+        for (int i = fromIndex + 1; i < toIndex; i++)
+        {
+            final Token validValue = tokens.get(i);
+            if (validValue.encoding().constValue().longValue() == value)
+            {
+                name = validValue.name();
+                break;
+            }
+        }
+
+        final DictionaryColumn column = (DictionaryColumn)columns[0];
+        if (null == name)
+        {
+            column.appendNull();
+        }
+        else
+        {
+            column.append(name);
+        }
+    }
+
+    public void onBitSet(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        final Token typeToken = tokens.get(fromIndex);
+        final Column[] columns = columns(fieldToken, typeToken);
+        if (null != columns && columns[0].sinceVersion() <= actingVersion)
+        {
+            ((LongColumn)columns[0]).append(Types.getLong(buffer, bufferIndex, typeToken.encoding()));
+        }
+    }
+
+    public void onBeginComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        final Scope scope = scopeStack.get(scopeStack.size() - 1);
+        final Scope compositeScope = scope.scopeByNameMap.get(name(scope, fieldToken, tokens.get(fromIndex)));
+
+        scopeStack.add(null == compositeScope ? Scope.EMPTY : compositeScope);
+    }
+
+    public void onEndComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        scopeStack.remove(scopeStack.size() - 1);
+    }
+
+    public void onGroupHeader(final Token token, final int numInGroup)
+    {
+    }
+
+    public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        final Scope parentScope = scopeStack.get(scopeStack.size() - 1);
+        final Scope groupScope = parentScope.scopeByNameMap.get(token.name());
+
+        groupScope.table.parentRowIds().append(parentScope.table.rowCount());
+        scopeStack.add(groupScope);
+    }
+
+    public void onEndGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        scopeStack.remove(scopeStack.size() - 1).table.endRow();
+    }
+
+    public void onVarData(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final int length,
+        final Token typeToken)
+    {
+        final Column[] columns = scopeStack.get(scopeStack.size() - 1).columnsByNameMap.get(fieldToken.name());
+        if (null != columns)
+        {
+            final String characterEncoding = characterEncoding(typeToken.encoding());
+            ((DictionaryColumn)columns[0]).append(buffer, bufferIndex, length, characterEncoding);
+        }
+    }
+
+    private Column[] columns(final Token fieldToken, final Token typeToken)
+    {
+        final Scope scope = scopeStack.get(scopeStack.size() - 1);
+
+        return scope.columnsByNameMap.get(name(scope, fieldToken, typeToken));
+    }
+
+    /*
+     * Fields of a block are named by the field token while the members of a composite, which are called back with
+     * the token of the enclosing field, are named by their type token.
+     */
+    private static String name(final Scope scope, final Token fieldToken, final Token typeToken)
+    {
+        return scope.isComposite ? typeToken.name() : fieldToken.name();
+    }
+
+    private static void addColumns(
+        final List<Token> tokens, final int fromIndex, final int toIndex, final Scope scope)
+    {
+        final ColumnarTable table = scope.table;
+        for (int i = fromIndex; i < toIndex; )
+        {
+            final Token token = tokens.get(i);
+            switch (token.signal())
+            {
+                case BEGIN_FIELD:
+                    addTypeColumns(tokens, i + 1, token.name(), token.name(), token.version(), scope);
+                    break;
+
+                case BEGIN_GROUP:
+                {
+                    final Scope groupScope = new Scope(
+                        new ColumnarTable(table.name() + "." + token.name(), table), false);
+                    scope.scopeByNameMap.put(token.name(), groupScope);
+
+                    final int fieldsIndex = i + 1 + tokens.get(i + 1).componentTokenCount();
+                    addColumns(tokens, fieldsIndex, i + token.componentTokenCount() - 1, groupScope);
+                    break;
+                }
+
+                case BEGIN_VAR_DATA:
+                    scope.columnsByNameMap.put(
+                        token.name(),
+                        new Column[]{ table.addColumn(new DictionaryColumn(token.name(), token.version())) });
+                    break;
+            }
+
+            i += token.componentTokenCount();
+        }
+    }
+
+    private static void addTypeColumns(
+        final List<Token> tokens,
+        final int typeIndex,
+        final String key,
+        final String name,
+        final int sinceVersion,
+        final Scope scope)
+    {
+        final Token typeToken = tokens.get(typeIndex);
+        final Encoding encoding = typeToken.encoding();
+        if (Encoding.Presence.CONSTANT == encoding.presence())
+        {
+            return;
+        }
+
+        final ColumnarTable table = scope.table;
+        switch (typeToken.signal())
+        {
+            case BEGIN_COMPOSITE:
+            {
+                final Scope compositeScope = new Scope(table, true);
+                scope.scopeByNameMap.put(key, compositeScope);
+
+                for (int i = typeIndex + 1, end = typeIndex + typeToken.componentTokenCount() - 1; i < end; )
+                {
+                    final Token memberToken = tokens.get(i);
+                    addTypeColumns(
+                        tokens, i, memberToken.name(), name + "." + memberToken.name(), sinceVersion, compositeScope);
+                    i += memberToken.componentTokenCount();
+                }
+                break;
+            }
+
+            case BEGIN_ENUM:
+                scope.columnsByNameMap.put(
+                    key, new Column[]{ table.addColumn(new DictionaryColumn(name, sinceVersion)) });
+                break;
+
+            case BEGIN_SET:
+                scope.columnsByNameMap.put(
+                    key, new Column[]{ table.addColumn(new LongColumn(name, sinceVersion, 0)) });
+                break;
+
+            case ENCODING:
+            {
+                final int arrayLength = typeToken.arrayLength();
+                final Column[] columns;
+                if (PrimitiveType.CHAR == encoding.primitiveType() && arrayLength > 1)
+                {
+                    columns = new Column[]{ table.addColumn(new DictionaryColumn(name, sinceVersion)) };
+                }
+                else if (arrayLength > 1)
+                {
+                    columns = new Column[arrayLength];
+                    for (int i = 0; i < arrayLength; i++)
+                    {
+                        columns[i] = table.addColumn(newColumn(name + "[" + i + "]", sinceVersion, encoding));
+                    }
+                }
+                else
+                {
+                    columns = new Column[]{ table.addColumn(newColumn(name, sinceVersion, encoding)) };
+                }
+
+                scope.columnsByNameMap.put(key, columns);
+                break;
+            }
+        }
+    }
+
+    private static Column newColumn(final String name, final int sinceVersion, final Encoding encoding)
+    {
+        switch (encoding.primitiveType())
+        {
+            case FLOAT:
+            case DOUBLE:
+                return new DoubleColumn(name, sinceVersion, encoding.applicableNullValue().doubleValue());
+
+            case UINT32:
+            case INT64:
+            case UINT64:
+                return new LongColumn(name, sinceVersion, encoding.applicableNullValue().longValue());
+
+            default:
+                return new IntColumn(name, sinceVersion, (int)encoding.applicableNullValue().longValue());
+        }
+    }
+
+    private static void append(final Column column, final DirectBuffer buffer, final int index, final Encoding encoding)
+    {
+        switch (column.type())
+        {
+            case DOUBLE:
+                ((DoubleColumn)column).append(PrimitiveType.FLOAT == encoding.primitiveType() ?
+                    buffer.getFloat(index, encoding.byteOrder()) : buffer.getDouble(index, encoding.byteOrder()));
+                break;
+
+            case LONG:
+                ((LongColumn)column).append(Types.getLong(buffer, index, encoding));
+                break;
+
+            default:
+                ((IntColumn)column).append((int)Types.getLong(buffer, index, encoding));
+                break;
+        }
+    }
+
+    private static String characterEncoding(final Encoding encoding)
+    {
+        final String characterEncoding = encoding.characterEncoding();
+
+        return null == characterEncoding ? "ISO-8859-1" : characterEncoding;
+    }
+
+    private static void addTables(final ColumnarTable table, final List<ColumnarTable> tables)
+    {
+        tables.add(table);
+        for (final ColumnarTable child : table.children())
+        {
+            addTables(child, tables);
+        }
+    }
+
+    /**
+     * Columns of a message, group, or composite by name, and the scopes of the groups and composites within it.
+     */
+    private static final class Scope
+    {
+        static final Scope EMPTY = new Scope(null, true, Collections.emptyMap(), Collections.emptyMap());
+
+        final ColumnarTable table;
+        final boolean isComposite;
+        final Map<String, Column[]> columnsByNameMap;
+        final Map<String, Scope> scopeByNameMap;
+
+        Scope(final ColumnarTable table, final boolean isComposite)
+        {
+            this(table, isComposite, new HashMap<>(), new HashMap<>());
+        }
+
+        private Scope(
+            final ColumnarTable table,
+            final boolean isComposite,
+            final Map<String, Column[]> columnsByNameMap,
+            final Map<String, Scope> scopeByNameMap)
+        {
+            this.table = table;
+            this.isComposite = isComposite;
+            this.columnsByNameMap = columnsByNameMap;
+            this.scopeByNameMap = scopeByNameMap;
+        }
+    }
+}
@@ -0,0 +1,1032 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Int2ObjectHashMap;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static uk.co.real_logic.sbe.ir.Signal.*;
+
+/**
+ * Precompiled plan for on-the-fly decoding of a message that drives the same {@link TokenListener} callbacks as
+ * {@link OtfMessageDecoder} without re-interpreting the IR {@link Token}s for each message.
+ * <p>
+ * The message structure is flattened once into an array of int instructions holding opcodes, absolute offsets
+ * within a block, and the primitive type and byte order codes of group dimensions and var data lengths. Decoding
+ * then only walks this array, touching {@link Token}s solely to pass them to the listener.
+ * <p>
+ * A plan can be projected to a subset of the fields, groups, and var data of a message by id or by path so that
+ * callbacks are only made for them. Groups which contain nothing projected are skipped by reading their dimensions,
+ * and jumped over as {@code blockLength * numInGroup} when they have no nested groups or var data.
+ * <p>
+ * A plan is immutable after construction and can be used concurrently from multiple threads.
+ */
+@SuppressWarnings("FinalParameters")
+public class OtfDecodePlan
+{
+    /**
+     * Instruction layouts, with token indexes referring into the message tokens:
+     * <pre>
+     *   ENCODING:  opcode, fieldTokenIndex, typeTokenIndex, offset
+     *   ENUM, SET: opcode, fieldTokenIndex, fromIndex, toIndex, offset
+     *   COMPOSITE: opcode, fieldTokenIndex, fromIndex, toIndex
+     *   GROUP:     opcode, groupTokenIndex, sinceVersion, dimensionsLength,
+     *              blockLengthOffset, blockLengthType, blockLengthByteOrder,
+     *              numInGroupOffset, numInGroupType, numInGroupByteOrder, endOfGroupInstructionIndex,
+     *              isFixedLength
+     *   VAR_DATA:  opcode, varDataTokenIndex, dataTokenIndex, sinceVersion,
+     *              lengthOffset, lengthType, lengthByteOrder, dataOffset
+     * </pre>
+     * The SKIP_GROUP and SKIP_VAR_DATA instructions have the layouts of GROUP and VAR_DATA but are only stepped over.
+     */
+    static final int OP_ENCODING = 1;
+    static final int OP_ENUM = 2;
+    static final int OP_BIT_SET = 3;
+    static final int OP_BEGIN_COMPOSITE = 4;
+    static final int OP_END_COMPOSITE = 5;
+    static final int OP_GROUP = 6;
+    static final int OP_VAR_DATA = 7;
+    static final int OP_SKIP_GROUP = 8;
+    static final int OP_SKIP_VAR_DATA = 9;
+
+    static final int ENCODING_LENGTH = 4;
+    static final int TYPE_SET_LENGTH = 5;
+    static final int COMPOSITE_LENGTH = 4;
+    static final int GROUP_LENGTH = 12;
+    static final int VAR_DATA_LENGTH = 8;
+
+    static final int TYPE_INT8 = 0;
+    static final int TYPE_UINT8 = 1;
+    static final int TYPE_INT16 = 2;
+    static final int TYPE_UINT16 = 3;
+    static final int TYPE_INT32 = 4;
+    static final int TYPE_UINT32 = 5;
+
+    static final int LITTLE_ENDIAN = 0;
+    static final int BIG_ENDIAN = 1;
+
+    private static final int NATIVE_BYTE_ORDER = byteOrderCode(ByteOrder.nativeOrder());
+
+    private static final int MODE_ALL = 0;
+    private static final int MODE_PROJECTED = 1;
+    private static final int MODE_SKIP = 2;
+
+    private final int templateId;
+    private final int[] instructions;
+    private final Token[] tokens;
+    private final List<Token> msgTokens;
+    private final boolean[] projected;
+
+    /**
+     * Compile a plan for decoding the message described by the IR {@link Token}s.
+     *
+     * @param msgTokens in IR format describing the message structure.
+     */
+    public OtfDecodePlan(final List<Token> msgTokens)
+    {
+        this(msgTokens, (boolean[])null);
+    }
+
+    /**
+     * Compile a plan for decoding only the fields, groups, and var data with the given ids from the message described
+     * by the IR {@link Token}s. Projecting a group projects everything within it.
+     *
+     * @param msgTokens in IR format describing the message structure.
+     * @param ids       of the fields, groups, and var data to be decoded.
+     */
+    public OtfDecodePlan(final List<Token> msgTokens, final int... ids)
+    {
+        this(msgTokens, project(msgTokens, ids));
+    }
+
+    /**
+     * Compile a plan for decoding only the fields, groups, and var data at the given paths from the message described
+     * by the IR {@link Token}s. A path is the dot separated names of the enclosing groups followed by the name, e.g.
+     * {@code "fuelFigures.speed"}. Projecting a group projects everything within it.
+     *
+     * @param msgTokens in IR format describing the message structure.
+     * @param paths     of the fields, groups, and var data to be decoded.
+     */
+    public OtfDecodePlan(final List<Token> msgTokens, final String... paths)
+    {
+        this(msgTokens, project(msgTokens, paths));
+    }
+
+    private OtfDecodePlan(final List<Token> msgTokens, final boolean[] projected)
+    {
+        this.msgTokens = msgTokens;
+        this.tokens = msgTokens.toArray(new Token[0]);
+        this.templateId = tokens[0].id();
+        this.projected = projected;
+
+        final IntArrayList instructions = new IntArrayList();
+        final int numTokens = tokens.length;
+        final int mode = null == projected ? MODE_ALL : MODE_PROJECTED;
+        int tokenIdx = compileFields(instructions, 1, numTokens, mode);
+        tokenIdx = compileGroups(instructions, tokenIdx, numTokens, mode);
+        compileData(instructions, tokenIdx, numTokens, mode);
+
+        this.instructions = instructions.toIntArray();
+    }
+
+    /**
+     * Compile plans for all the messages in a schema keyed by template id.
+     *
+     * @param ir for the schema.
+     * @return a map of template id to the compiled plan for each message.
+     */
+    public static Int2ObjectHashMap<OtfDecodePlan> compile(final Ir ir)
+    {
+        final Int2ObjectHashMap<OtfDecodePlan> planByTemplateIdMap = new Int2ObjectHashMap<>();
+        for (final List<Token> msgTokens : ir.messages())
+        {
+            final OtfDecodePlan plan = new OtfDecodePlan(msgTokens);
+            planByTemplateIdMap.put(plan.templateId(), plan);
+        }
+
+        return planByTemplateIdMap;
+    }
+
+    /**
+     * The template id of the message this plan decodes.
+     *
+     * @return the template id of the message this plan decodes.
+     */
+    public int templateId()
+    {
+        return templateId;
+    }
+
+    /**
+     * The IR {@link Token}s describing the message this plan was compiled from.
+     *
+     * @return the IR {@link Token}s describing the message this plan was compiled from.
+     */
+    public List<Token> msgTokens()
+    {
+        return msgTokens;
+    }
+
+    /**
+     * Decode a message from the provided buffer.
+     *
+     * @param buffer        containing the encoded message.
+     * @param offset        at which the message encoding starts in the buffer.
+     * @param actingVersion of the encoded message for dealing with extension fields.
+     * @param blockLength   of the root message fields.
+     * @param listener      to callback for decoding the primitive values as discovered in the structure.
+     * @return the index in the underlying buffer after decoding.
+     */
+    public int decode(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int blockLength,
+        final TokenListener listener)
+    {
+        listener.onBeginMessage(tokens[0]);
+
+        final int limit = decodeBlock(
+            buffer, offset, blockLength, actingVersion, 0, instructions.length, listener);
+
+        listener.onEndMessage(tokens[tokens.length - 1]);
+
+        return limit;
+    }
+
+    /**
+     * Find the limit of a message in the provided buffer without decoding its fields. Only the repeating group
+     * dimensions and var data lengths are read, each being checked to lie within the max limit so that a message
+     * truncated at the end of a buffer can be detected before it is decoded.
+     *
+     * @param buffer        containing the encoded message.
+     * @param offset        at which the message encoding starts in the buffer.
+     * @param actingVersion of the encoded message for dealing with extension fields.
+     * @param blockLength   of the root message fields.
+     * @param maxLimit      beyond which the message must not extend.
+     * @return the index in the underlying buffer after the message or -1 if it would extend beyond the max limit.
+     * @throws IllegalArgumentException if a group dimension or var data length is negative.
+     */
+    public int encodedLimit(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int blockLength,
+        final int maxLimit)
+    {
+        if (blockLength > maxLimit - offset)
+        {
+            return -1;
+        }
+
+        return skipBlock(buffer, offset + blockLength, actingVersion, 0, instructions.length, maxLimit, false);
+    }
+
+    /**
+     * Find the limit of a message as {@link #encodedLimit(DirectBuffer, int, int, int, int)} does, while also
+     * rejecting a message with a group dimension or var data length, read from within the max limit, which claims the
+     * message extends beyond the capacity of the buffer. Such a message is corrupt rather than truncated as more data
+     * arriving in the buffer cannot complete it.
+     *
+     * @param buffer        containing the encoded message.
+     * @param offset        at which the message encoding starts in the buffer.
+     * @param actingVersion of the encoded message for dealing with extension fields.
+     * @param blockLength   of the root message fields.
+     * @param maxLimit      beyond which the message must not extend.
+     * @return the index in the underlying buffer after the message or -1 if it would extend beyond the max limit.
+     * @throws IllegalArgumentException if the message is corrupt.
+     */
+    public int validatedEncodedLimit(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int blockLength,
+        final int maxLimit)
+    {
+        if (blockLength > maxLimit - offset)
+        {
+            return beyondMaxLimit(buffer, offset, blockLength, offset, true);
+        }
+
+        return skipBlock(buffer, offset + blockLength, actingVersion, 0, instructions.length, maxLimit, true);
+    }
+
+    int[] instructions()
+    {
+        return instructions;
+    }
+
+    int groupInstructionIndex(final int groupTokenIndex)
+    {
+        final int[] instructions = this.instructions;
+        int i = 0;
+
+        while (i < instructions.length)
+        {
+            switch (instructions[i])
+            {
+                case OP_ENCODING:
+                    i += ENCODING_LENGTH;
+                    break;
+
+                case OP_ENUM:
+                case OP_BIT_SET:
+                    i += TYPE_SET_LENGTH;
+                    break;
+
+                case OP_BEGIN_COMPOSITE:
+                case OP_END_COMPOSITE:
+                    i += COMPOSITE_LENGTH;
+                    break;
+
+                case OP_GROUP:
+                case OP_SKIP_GROUP:
+                    if (instructions[i + 1] == groupTokenIndex)
+                    {
+                        return i;
+                    }
+                    i += GROUP_LENGTH;
+                    break;
+
+                default:
+                    i += VAR_DATA_LENGTH;
+                    break;
+            }
+        }
+
+        return -1;
+    }
+
+    int skip(
+        final DirectBuffer buffer, final int offset, final int actingVersion, final int fromIndex, final int toIndex)
+    {
+        return skipBlock(buffer, offset, actingVersion, fromIndex, toIndex, Integer.MAX_VALUE, false);
+    }
+
+    private int decodeBlock(
+        final DirectBuffer buffer,
+        final int blockOffset,
+        final int blockLength,
+        final int actingVersion,
+        final int fromIndex,
+        final int toIndex,
+        final TokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final Token[] tokens = this.tokens;
+        int limit = blockOffset + blockLength;
+        int i = fromIndex;
+
+        while (i < toIndex)
+        {
+            switch (instructions[i])
+            {
+                case OP_ENCODING:
+                {
+                    listener.onEncoding(
+                        tokens[instructions[i + 1]],
+                        buffer,
+                        blockOffset + instructions[i + 3],
+                        tokens[instructions[i + 2]],
+                        actingVersion);
+                    i += ENCODING_LENGTH;
+                    break;
+                }
+
+                case OP_ENUM:
+                {
+                    listener.onEnum(
+                        tokens[instructions[i + 1]],
+                        buffer,
+                        blockOffset + instructions[i + 4],
+                        msgTokens,
+                        instructions[i + 2],
+                        instructions[i + 3],
+                        actingVersion);
+                    i += TYPE_SET_LENGTH;
+                    break;
+                }
+
+                case OP_BIT_SET:
+                {
+                    listener.onBitSet(
+                        tokens[instructions[i + 1]],
+                        buffer,
+                        blockOffset + instructions[i + 4],
+                        msgTokens,
+                        instructions[i + 2],
+                        instructions[i + 3],
+                        actingVersion);
+                    i += TYPE_SET_LENGTH;
+                    break;
+                }
+
+                case OP_BEGIN_COMPOSITE:
+                {
+                    listener.onBeginComposite(
+                        tokens[instructions[i + 1]], msgTokens, instructions[i + 2], instructions[i + 3]);
+                    i += COMPOSITE_LENGTH;
+                    break;
+                }
+
+                case OP_END_COMPOSITE:
+                {
+                    listener.onEndComposite(
+                        tokens[instructions[i + 1]], msgTokens, instructions[i + 2], instructions[i + 3]);
+                    i += COMPOSITE_LENGTH;
+                    break;
+                }
+
+                case OP_GROUP:
+                {
+                    limit = decodeGroup(buffer, limit, actingVersion, i, listener);
+                    i = instructions[i + 10];
+                    break;
+                }
+
+                case OP_VAR_DATA:
+                {
+                    limit = decodeVarData(buffer, limit, actingVersion, i, listener);
+                    i += VAR_DATA_LENGTH;
+                    break;
+                }
+
+                case OP_SKIP_GROUP:
+                    limit = skipGroup(buffer, limit, actingVersion, i, Integer.MAX_VALUE, false);
+                    i = instructions[i + 10];
+                    break;
+
+                case OP_SKIP_VAR_DATA:
+                    limit = skipVarData(buffer, limit, actingVersion, i, Integer.MAX_VALUE, false);
+                    i += VAR_DATA_LENGTH;
+                    break;
+
+                default:
+                    throw new IllegalStateException("unknown opcode: " + instructions[i]);
+            }
+        }
+
+        return limit;
+    }
+
+    private int decodeGroup(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int i,
+        final TokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final Token groupToken = tokens[instructions[i + 1]];
+        final boolean isPresent = instructions[i + 2] <= actingVersion;
+        final int endIndex = instructions[i + 10];
+        int limit = offset;
+
+        int blockLength = 0;
+        int numInGroup = 0;
+        if (isPresent)
+        {
+            blockLength = getInt(buffer, limit + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+            numInGroup = getInt(buffer, limit + instructions[i + 7], instructions[i + 8], instructions[i + 9]);
+            limit += instructions[i + 3];
+        }
+
+        listener.onGroupHeader(groupToken, numInGroup);
+
+        for (int g = 0; g < numInGroup; g++)
+        {
+            listener.onBeginGroup(groupToken, g, numInGroup);
+            limit = decodeBlock(buffer, limit, blockLength, actingVersion, i + GROUP_LENGTH, endIndex, listener);
+            listener.onEndGroup(groupToken, g, numInGroup);
+        }
+
+        return limit;
+    }
+
+    private int decodeVarData(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int i,
+        final TokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final boolean isPresent = instructions[i + 3] <= actingVersion;
+        int limit = offset;
+
+        int length = 0;
+        if (isPresent)
+        {
+            length = getInt(buffer, limit + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+            limit += instructions[i + 7];
+        }
+
+        listener.onVarData(tokens[instructions[i + 1]], buffer, limit, length, tokens[instructions[i + 2]]);
+
+        return limit + length;
+    }
+
+    private int skipBlock(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int fromIndex,
+        final int toIndex,
+        final int maxLimit,
+        final boolean validate)
+    {
+        final int[] instructions = this.instructions;
+        int limit = offset;
+        int i = fromIndex;
+
+        while (i < toIndex && -1 != limit)
+        {
+            switch (instructions[i])
+            {
+                case OP_ENCODING:
+                    i += ENCODING_LENGTH;
+                    break;
+
+                case OP_ENUM:
+                case OP_BIT_SET:
+                    i += TYPE_SET_LENGTH;
+                    break;
+
+                case OP_BEGIN_COMPOSITE:
+                case OP_END_COMPOSITE:
+                    i += COMPOSITE_LENGTH;
+                    break;
+
+                case OP_GROUP:
+                case OP_SKIP_GROUP:
+                    limit = skipGroup(buffer, limit, actingVersion, i, maxLimit, validate);
+                    i = instructions[i + 10];
+                    break;
+
+                case OP_VAR_DATA:
+                case OP_SKIP_VAR_DATA:
+                    limit = skipVarData(buffer, limit, actingVersion, i, maxLimit, validate);
+                    i += VAR_DATA_LENGTH;
+                    break;
+
+                default:
+                    throw new IllegalStateException("unknown opcode: " + instructions[i]);
+            }
+        }
+
+        return limit;
+    }
+
+    private int skipGroup(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int i,
+        final int maxLimit,
+        final boolean validate)
+    {
+        final int[] instructions = this.instructions;
+        if (instructions[i + 2] > actingVersion)
+        {
+            return offset;
+        }
+
+        final int dimensionsLength = instructions[i + 3];
+        if (dimensionsLength > maxLimit - offset)
+        {
+            return -1;
+        }
+
+        final int blockLength = getInt(buffer, offset + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+        final int numInGroup = getInt(buffer, offset + instructions[i + 7], instructions[i + 8], instructions[i + 9]);
+        final int endIndex = instructions[i + 10];
+        int limit = offset + dimensionsLength;
+
+        if (blockLength < 0 || numInGroup < 0)
+        {
+            throw new IllegalArgumentException("Negative group dimensions at index " + offset + ": blockLength=" +
+                blockLength + " numInGroup=" + numInGroup);
+        }
+
+        if (1 == instructions[i + 11])
+        {
+            final long length = (long)blockLength * numInGroup;
+            return length > maxLimit - limit ?
+                beyondMaxLimit(buffer, offset, length, limit, validate) : limit + (int)length;
+        }
+
+        if (validate && (long)blockLength * numInGroup > buffer.capacity() - limit)
+        {
+            return beyondMaxLimit(buffer, offset, (long)blockLength * numInGroup, limit, true);
+        }
+
+        for (int g = 0; g < numInGroup; g++)
+        {
+            if (blockLength > maxLimit - limit)
+            {
+                return -1;
+            }
+
+            limit = skipBlock(
+                buffer, limit + blockLength, actingVersion, i + GROUP_LENGTH, endIndex, maxLimit, validate);
+            if (-1 == limit)
+            {
+                return -1;
+            }
+        }
+
+        return limit;
+    }
+
+    private int skipVarData(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int i,
+        final int maxLimit,
+        final boolean validate)
+    {
+        final int[] instructions = this.instructions;
+        if (instructions[i + 3] > actingVersion)
+        {
+            return offset;
+        }
+
+        final int dataOffset = instructions[i + 7];
+        if (dataOffset > maxLimit - offset)
+        {
+            return -1;
+        }
+
+        final int length = getInt(buffer, offset + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+        if (length < 0)
+        {
+            throw new IllegalArgumentException("Negative var data length at index " + offset + ": " + length);
+        }
+
+        return length > maxLimit - offset - dataOffset ?
+            beyondMaxLimit(buffer, offset, length, offset + dataOffset, validate) : offset + dataOffset + length;
+    }
+
+    /*
+     * A length which extends beyond the max limit is truncated, and -1 is returned, unless it extends beyond the
+     * capacity of the buffer when validating, in which case the message is corrupt.
+     */
+    private static int beyondMaxLimit(
+        final DirectBuffer buffer, final int index, final long length, final int limit, final boolean validate)
+    {
+        if (validate && length > buffer.capacity() - limit)
+        {
+            throw new IllegalArgumentException("Length " + length + " at index " + index +
+                " extends the message beyond the buffer capacity " + buffer.capacity());
+        }
+
+        return -1;
+    }
+
+    private int compileFields(
+        final IntArrayList instructions, final int tokenIndex, final int numTokens, final int mode)
+    {
+        int i = tokenIndex;
+
+        while (i < numTokens)
+        {
+            final Token fieldToken = tokens[i];
+            if (BEGIN_FIELD != fieldToken.signal())
+            {
+                break;
+            }
+
+            final int nextFieldIdx = i + fieldToken.componentTokenCount();
+            if (!isDecoded(mode, i))
+            {
+                i = nextFieldIdx;
+                continue;
+            }
+
+            i++;
+
+            final Token typeToken = tokens[i];
+            final int offset = typeToken.offset();
+
+            switch (typeToken.signal())
+            {
+                case BEGIN_COMPOSITE:
+                    compileComposite(instructions, i - 1, i, nextFieldIdx - 2, offset);
+                    break;
+
+                case BEGIN_ENUM:
+                    addTypeSet(instructions, OP_ENUM, i - 1, i, nextFieldIdx - 2, offset);
+                    break;
+
+                case BEGIN_SET:
+                    addTypeSet(instructions, OP_BIT_SET, i - 1, i, nextFieldIdx - 2, offset);
+                    break;
+
+                case ENCODING:
+                    addEncoding(instructions, i - 1, i, offset);
+                    break;
+            }
+
+            i = nextFieldIdx;
+        }
+
+        return i;
+    }
+
+    private void compileComposite(
+        final IntArrayList instructions,
+        final int fieldIdx,
+        final int tokenIdx,
+        final int toIndex,
+        final int compositeOffset)
+    {
+        addComposite(instructions, OP_BEGIN_COMPOSITE, fieldIdx, tokenIdx, toIndex);
+
+        for (int i = tokenIdx + 1; i < toIndex; )
+        {
+            final Token typeToken = tokens[i];
+            final int nextFieldIdx = i + typeToken.componentTokenCount();
+            final int offset = compositeOffset + typeToken.offset();
+
+            switch (typeToken.signal())
+            {
+                case BEGIN_COMPOSITE:
+                    compileComposite(instructions, fieldIdx, i, nextFieldIdx - 1, offset);
+                    break;
+
+                case BEGIN_ENUM:
+                    addTypeSet(instructions, OP_ENUM, fieldIdx, i, nextFieldIdx - 1, offset);
+                    break;
+
+                case BEGIN_SET:
+                    addTypeSet(instructions, OP_BIT_SET, fieldIdx, i, nextFieldIdx - 1, offset);
+                    break;
+
+                case ENCODING:
+                    addEncoding(instructions, i, i, offset);
+                    break;
+            }
+
+            i += typeToken.componentTokenCount();
+        }
+
+        addComposite(instructions, OP_END_COMPOSITE, fieldIdx, tokenIdx, toIndex);
+    }
+
+    private int compileGroups(
+        final IntArrayList instructions, final int tokenIndex, final int numTokens, final int mode)
+    {
+        int tokenIdx = tokenIndex;
+
+        while (tokenIdx < numTokens)
+        {
+            final Token token = tokens[tokenIdx];
+            if (BEGIN_GROUP != token.signal())
+            {
+                break;
+            }
+
+            final int endTokenIdx = tokenIdx + token.componentTokenCount();
+            final int groupMode = groupMode(mode, tokenIdx, endTokenIdx);
+            final Token dimensionTypeComposite = tokens[tokenIdx + 1];
+            final Encoding blockLengthEncoding = tokens[tokenIdx + 2].encoding();
+            final Encoding numInGroupEncoding = tokens[tokenIdx + 3].encoding();
+
+            final int groupIndex = instructions.size();
+            instructions.addInt(MODE_SKIP == groupMode ? OP_SKIP_GROUP : OP_GROUP);
+            instructions.addInt(tokenIdx);
+            instructions.addInt(token.version());
+            instructions.addInt(dimensionTypeComposite.encodedLength());
+            instructions.addInt(tokens[tokenIdx + 2].offset());
+            instructions.addInt(typeCode(blockLengthEncoding));
+            instructions.addInt(byteOrderCode(blockLengthEncoding.byteOrder()));
+            instructions.addInt(tokens[tokenIdx + 3].offset());
+            instructions.addInt(typeCode(numInGroupEncoding));
+            instructions.addInt(byteOrderCode(numInGroupEncoding.byteOrder()));
+            instructions.addInt(0);
+            instructions.addInt(isFixedLength(tokenIdx + 1, endTokenIdx - 1) ? 1 : 0);
+
+            final int beginFieldsIdx = tokenIdx + dimensionTypeComposite.componentTokenCount() + 1;
+            int idx = compileFields(instructions, beginFieldsIdx, numTokens, groupMode);
+            idx = compileGroups(instructions, idx, numTokens, groupMode);
+            compileData(instructions, idx, numTokens, groupMode);
+
+            instructions.setInt(groupIndex + 10, instructions.size());
+
+            tokenIdx = endTokenIdx;
+        }
+
+        return tokenIdx;
+    }
+
+    private void compileData(
+        final IntArrayList instructions, final int tokenIndex, final int numTokens, final int mode)
+    {
+        int tokenIdx = tokenIndex;
+
+        while (tokenIdx < numTokens)
+        {
+            final Token token = tokens[tokenIdx];
+            if (BEGIN_VAR_DATA != token.signal())
+            {
+                break;
+            }
+
+            final Token lengthToken = tokens[tokenIdx + 2];
+            final Token dataToken = tokens[tokenIdx + 3];
+
+            instructions.addInt(isDecoded(mode, tokenIdx) ? OP_VAR_DATA : OP_SKIP_VAR_DATA);
+            instructions.addInt(tokenIdx);
+            instructions.addInt(tokenIdx + 3);
+            instructions.addInt(token.version());
+            instructions.addInt(lengthToken.offset());
+            instructions.addInt(typeCode(lengthToken.encoding()));
+            instructions.addInt(byteOrderCode(lengthToken.encoding().byteOrder()));
+            instructions.addInt(dataToken.offset());
+
+            tokenIdx += token.componentTokenCount();
+        }
+    }
+
+    private boolean isDecoded(final int mode, final int tokenIdx)
+    {
+        return MODE_ALL == mode || (MODE_PROJECTED == mode && projected[tokenIdx]);
+    }
+
+    private int groupMode(final int mode, final int beginTokenIdx, final int endTokenIdx)
+    {
+        if (MODE_PROJECTED != mode)
+        {
+            return mode;
+        }
+
+        if (projected[beginTokenIdx])
+        {
+            return MODE_ALL;
+        }
+
+        for (int i = beginTokenIdx + 1; i < endTokenIdx; i++)
+        {
+            if (projected[i])
+            {
+                return MODE_PROJECTED;
+            }
+        }
+
+        return MODE_SKIP;
+    }
+
+    private boolean isFixedLength(final int fromTokenIdx, final int toTokenIdx)
+    {
+        for (int i = fromTokenIdx; i < toTokenIdx; i++)
+        {
+            final Token token = tokens[i];
+            if (BEGIN_GROUP == token.signal() || BEGIN_VAR_DATA == token.signal())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean[] project(final List<Token> msgTokens, final int... ids)
+    {
+        final boolean[] projected = new boolean[msgTokens.size()];
+        for (final int id : ids)
+        {
+            if (!markProjected(msgTokens, 1, msgTokens.size() - 1, "", id, null, projected))
+            {
+                throw new IllegalArgumentException("No field, group, or var data with id " + id);
+            }
+        }
+
+        return projected;
+    }
+
+    private static boolean[] project(final List<Token> msgTokens, final String... paths)
+    {
+        final boolean[] projected = new boolean[msgTokens.size()];
+        for (final String path : paths)
+        {
+            if (!markProjected(msgTokens, 1, msgTokens.size() - 1, "", 0, path, projected))
+            {
+                throw new IllegalArgumentException("No field, group, or var data at path " + path);
+            }
+        }
+
+        return projected;
+    }
+
+    private static boolean markProjected(
+        final List<Token> msgTokens,
+        final int fromIndex,
+        final int toIndex,
+        final String prefix,
+        final int id,
+        final String path,
+        final boolean[] projected)
+    {
+        boolean isFound = false;
+
+        for (int i = fromIndex; i < toIndex; )
+        {
+            final Token token = msgTokens.get(i);
+            final String tokenPath = prefix + token.name();
+
+            if (null == path ? token.id() == id : path.equals(tokenPath))
+            {
+                projected[i] = true;
+                isFound = true;
+            }
+
+            if (BEGIN_GROUP == token.signal())
+            {
+                final int fieldsIndex = i + 1 + msgTokens.get(i + 1).componentTokenCount();
+                final int endIndex = i + token.componentTokenCount() - 1;
+                isFound |= markProjected(msgTokens, fieldsIndex, endIndex, tokenPath + ".", id, path, projected);
+            }
+
+            i += token.componentTokenCount();
+        }
+
+        return isFound;
+    }
+
+    private static void addEncoding(
+        final IntArrayList instructions, final int fieldTokenIdx, final int typeTokenIdx, final int offset)
+    {
+        instructions.addInt(OP_ENCODING);
+        instructions.addInt(fieldTokenIdx);
+        instructions.addInt(typeTokenIdx);
+        instructions.addInt(offset);
+    }
+
+    private static void addTypeSet(
+        final IntArrayList instructions,
+        final int opcode,
+        final int fieldTokenIdx,
+        final int fromIndex,
+        final int toIndex,
+        final int offset)
+    {
+        instructions.addInt(opcode);
+        instructions.addInt(fieldTokenIdx);
+        instructions.addInt(fromIndex);
+        instructions.addInt(toIndex);
+        instructions.addInt(offset);
+    }
+
+    private static void addComposite(
+        final IntArrayList instructions,
+        final int opcode,
+        final int fieldTokenIdx,
+        final int fromIndex,
+        final int toIndex)
+    {
+        instructions.addInt(opcode);
+        instructions.addInt(fieldTokenIdx);
+        instructions.addInt(fromIndex);
+        instructions.addInt(toIndex);
+    }
+
+    static int typeCode(final Encoding encoding)
+    {
+        switch (encoding.primitiveType())
+        {
+            case INT8:
+                return TYPE_INT8;
+
+            case UINT8:
+                return TYPE_UINT8;
+
+            case INT16:
+                return TYPE_INT16;
+
+            case UINT16:
+                return TYPE_UINT16;
+
+            case INT32:
+                return TYPE_INT32;
+
+            case UINT32:
+                return TYPE_UINT32;
+
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + encoding.primitiveType());
+        }
+    }
+
+    static int byteOrderCode(final ByteOrder byteOrder)
+    {
+        return ByteOrder.BIG_ENDIAN == byteOrder ? BIG_ENDIAN : LITTLE_ENDIAN;
+    }
+
+    static int getInt(final DirectBuffer buffer, final int index, final int typeCode, final int byteOrderCode)
+    {
+        final boolean swap = NATIVE_BYTE_ORDER != byteOrderCode;
+
+        switch (typeCode)
+        {
+            case TYPE_INT8:
+                return buffer.getByte(index);
+
+            case TYPE_UINT8:
+                return buffer.getByte(index) & 0xFF;
+
+            case TYPE_INT16:
+            {
+                final short value = buffer.getShort(index);
+                return swap ? Short.reverseBytes(value) : value;
+            }
+
+            case TYPE_UINT16:
+            {
+                final short value = buffer.getShort(index);
+                return (swap ? Short.reverseBytes(value) : value) & 0xFFFF;
+            }
+
+            case TYPE_INT32:
+            {
+                final int value = buffer.getInt(index);
+                return swap ? Integer.reverseBytes(value) : value;
+            }
+
+            case TYPE_UINT32:
+            {
+                final int raw = buffer.getInt(index);
+                final int value = swap ? Integer.reverseBytes(raw) : raw;
+                if (value < 0)
+                {
+                    throw new IllegalStateException(
+                        "UINT32 type should not be greater than Integer.MAX_VALUE: value=" + value);
+                }
+                return value;
+            }
+
+            default:
+                throw new IllegalArgumentException("Unsupported type code: " + typeCode);
+        }
+    }
+}
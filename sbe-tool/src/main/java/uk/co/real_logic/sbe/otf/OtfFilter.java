@@ -0,0 +1,520 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
+import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.List;
+
+import static uk.co.real_logic.sbe.ir.Signal.*;
+import static uk.co.real_logic.sbe.otf.OtfDecodePlan.*;
+
+/**
+ * Filter which evaluates {@link Condition}s on the fields of an encoded message directly in the buffer so messages
+ * can be selected before they are decoded and dispatched to a {@link TokenListener}.
+ * <p>
+ * Conditions are built from equality, range, and set membership tests on the primitive value of a field, including
+ * enums and bit sets by their encoded value, which are combined with {@link #and(Condition...)} and
+ * {@link #or(Condition...)}. A field is named by its path of dot separated names through the enclosing groups and
+ * composites, e.g. {@code "engine.capacity"} or {@code "performanceFigures.acceleration.mph"}.
+ * <p>
+ * Root fields are read at offsets computed when the filter is constructed. A test on a field within a group holds
+ * when any entry of the group satisfies it, and only the dimensions and lengths needed to reach the group are read.
+ * A field which is not present in the acting version of a message does not satisfy any test.
+ */
+public class OtfFilter
+{
+    private final OtfDecodePlan plan;
+    private final Node node;
+
+    /**
+     * Compile a filter for messages described by the IR {@link Token}s.
+     *
+     * @param msgTokens in IR format describing the message structure.
+     * @param condition which messages must satisfy to match.
+     */
+    public OtfFilter(final List<Token> msgTokens, final Condition condition)
+    {
+        plan = new OtfDecodePlan(msgTokens, new int[0]);
+        node = condition.compile(plan);
+    }
+
+    /**
+     * The template id of the messages this filter applies to.
+     *
+     * @return the template id of the messages this filter applies to.
+     */
+    public int templateId()
+    {
+        return plan.templateId();
+    }
+
+    /**
+     * Evaluate the filter on a message in the provided buffer.
+     *
+     * @param buffer        containing the encoded message.
+     * @param offset        at which the message encoding starts in the buffer.
+     * @param actingVersion of the encoded message for dealing with extension fields.
+     * @param blockLength   of the root message fields.
+     * @return true if the message satisfies the condition of the filter.
+     */
+    public boolean matches(final DirectBuffer buffer, final int offset, final int actingVersion, final int blockLength)
+    {
+        return node.evaluate(buffer, offset, actingVersion, blockLength);
+    }
+
+    /**
+     * Condition that the field at a path is equal to a value.
+     *
+     * @param path  of the field.
+     * @param value to which the field must be equal.
+     * @return the condition.
+     */
+    public static Condition equalTo(final String path, final long value)
+    {
+        return new FieldCondition(path, FieldCondition.ANY_OF, new long[]{ value }, 0, 0);
+    }
+
+    /**
+     * Condition that the field at a path is equal to one of a set of values.
+     *
+     * @param path   of the field.
+     * @param values one of which the field must be equal to.
+     * @return the condition.
+     */
+    public static Condition anyOf(final String path, final long... values)
+    {
+        return new FieldCondition(path, FieldCondition.ANY_OF, values.clone(), 0, 0);
+    }
+
+    /**
+     * Condition that the field at a path is within an inclusive range. Unsigned 64 bit fields are compared unsigned.
+     *
+     * @param path of the field.
+     * @param min  value of the range.
+     * @param max  value of the range.
+     * @return the condition.
+     */
+    public static Condition between(final String path, final long min, final long max)
+    {
+        return new FieldCondition(path, FieldCondition.RANGE, null, min, max);
+    }
+
+    /**
+     * Condition that the field at a path is within an inclusive range, comparing the value of the field as a double.
+     *
+     * @param path of the field.
+     * @param min  value of the range.
+     * @param max  value of the range.
+     * @return the condition.
+     */
+    public static Condition between(final String path, final double min, final double max)
+    {
+        return new FieldCondition(
+            path, FieldCondition.DOUBLE_RANGE, null, Double.doubleToLongBits(min), Double.doubleToLongBits(max));
+    }
+
+    /**
+     * Condition that all of a number of conditions are satisfied.
+     *
+     * @param conditions which must all be satisfied.
+     * @return the condition.
+     */
+    public static Condition and(final Condition... conditions)
+    {
+        return new Junction(true, conditions.clone());
+    }
+
+    /**
+     * Condition that any of a number of conditions is satisfied.
+     *
+     * @param conditions one of which must be satisfied.
+     * @return the condition.
+     */
+    public static Condition or(final Condition... conditions)
+    {
+        return new Junction(false, conditions.clone());
+    }
+
+    /**
+     * Condition on the fields of a message which is compiled into an {@link OtfFilter}.
+     */
+    public abstract static class Condition
+    {
+        Condition()
+        {
+        }
+
+        /**
+         * Condition that both this and another condition are satisfied.
+         *
+         * @param condition which must also be satisfied.
+         * @return the condition.
+         */
+        public Condition and(final Condition condition)
+        {
+            return OtfFilter.and(this, condition);
+        }
+
+        /**
+         * Condition that either this or another condition is satisfied.
+         *
+         * @param condition which may be satisfied instead.
+         * @return the condition.
+         */
+        public Condition or(final Condition condition)
+        {
+            return OtfFilter.or(this, condition);
+        }
+
+        abstract Node compile(OtfDecodePlan plan);
+    }
+
+    abstract static class Node
+    {
+        abstract boolean evaluate(DirectBuffer buffer, int offset, int actingVersion, int blockLength);
+    }
+
+    static final class Junction extends Condition
+    {
+        private final boolean isAnd;
+        private final Condition[] conditions;
+
+        Junction(final boolean isAnd, final Condition[] conditions)
+        {
+            this.isAnd = isAnd;
+            this.conditions = conditions;
+        }
+
+        Node compile(final OtfDecodePlan plan)
+        {
+            final Node[] nodes = new Node[conditions.length];
+            for (int i = 0; i < nodes.length; i++)
+            {
+                nodes[i] = conditions[i].compile(plan);
+            }
+
+            return new JunctionNode(isAnd, nodes);
+        }
+    }
+
+    static final class JunctionNode extends Node
+    {
+        private final boolean isAnd;
+        private final Node[] nodes;
+
+        JunctionNode(final boolean isAnd, final Node[] nodes)
+        {
+            this.isAnd = isAnd;
+            this.nodes = nodes;
+        }
+
+        boolean evaluate(final DirectBuffer buffer, final int offset, final int actingVersion, final int blockLength)
+        {
+            for (final Node node : nodes)
+            {
+                if (node.evaluate(buffer, offset, actingVersion, blockLength) != isAnd)
+                {
+                    return !isAnd;
+                }
+            }
+
+            return isAnd;
+        }
+    }
+
+    static final class FieldCondition extends Condition
+    {
+        static final int ANY_OF = 0;
+        static final int RANGE = 1;
+        static final int DOUBLE_RANGE = 2;
+
+        private final String path;
+        private final int kind;
+        private final long[] values;
+        private final long min;
+        private final long max;
+
+        FieldCondition(final String path, final int kind, final long[] values, final long min, final long max)
+        {
+            this.path = path;
+            this.kind = kind;
+            this.values = values;
+            this.min = min;
+            this.max = max;
+        }
+
+        Node compile(final OtfDecodePlan plan)
+        {
+            final List<Token> tokens = plan.msgTokens();
+            final String[] names = path.split("\\.");
+            final IntArrayList groupIndexes = new IntArrayList();
+            int fromIndex = 1;
+            int toIndex = tokens.size() - 1;
+
+            for (int n = 0; n < names.length; n++)
+            {
+                final int tokenIndex = findStructuralToken(tokens, fromIndex, toIndex, names[n]);
+                final Token token = tokens.get(tokenIndex);
+                final boolean isLast = n == names.length - 1;
+
+                if (BEGIN_GROUP == token.signal() && !isLast)
+                {
+                    groupIndexes.addInt(plan.groupInstructionIndex(tokenIndex));
+                    fromIndex = tokenIndex + 1 + tokens.get(tokenIndex + 1).componentTokenCount();
+                    toIndex = tokenIndex + token.componentTokenCount() - 1;
+                }
+                else if (BEGIN_FIELD == token.signal())
+                {
+                    return compileField(plan, groupIndexes.toIntArray(), tokens, tokenIndex, names, n + 1);
+                }
+                else
+                {
+                    break;
+                }
+            }
+
+            throw new IllegalArgumentException("No primitive field at path: " + path);
+        }
+
+        private Node compileField(
+            final OtfDecodePlan plan,
+            final int[] groupIndexes,
+            final List<Token> tokens,
+            final int fieldIndex,
+            final String[] names,
+            final int nameIndex)
+        {
+            final Token fieldToken = tokens.get(fieldIndex);
+            int typeIndex = fieldIndex + 1;
+            int offset = tokens.get(typeIndex).offset();
+            int sinceVersion = fieldToken.version();
+
+            for (int n = nameIndex; n < names.length; n++)
+            {
+                final Token compositeToken = tokens.get(typeIndex);
+                if (BEGIN_COMPOSITE != compositeToken.signal())
+                {
+                    throw new IllegalArgumentException("No primitive field at path: " + path);
+                }
+
+                final int toIndex = typeIndex + compositeToken.componentTokenCount() - 1;
+                typeIndex = findStructuralToken(tokens, typeIndex + 1, toIndex, names[n]);
+                offset += tokens.get(typeIndex).offset();
+                sinceVersion = Math.max(sinceVersion, tokens.get(typeIndex).version());
+            }
+
+            final Token typeToken = tokens.get(typeIndex);
+            final Encoding encoding = typeToken.encoding();
+
+            if (BEGIN_COMPOSITE == typeToken.signal() ||
+                typeToken.arrayLength() != 1 ||
+                Encoding.Presence.CONSTANT == encoding.presence())
+            {
+                throw new IllegalArgumentException("Field is not a single non constant primitive at path: " + path);
+            }
+
+            return new FieldNode(
+                plan, groupIndexes, offset, sinceVersion, encoding, kind, values, min, max);
+        }
+
+        private int findStructuralToken(
+            final List<Token> tokens, final int fromIndex, final int toIndex, final String name)
+        {
+            for (int i = fromIndex; i < toIndex; )
+            {
+                final Token token = tokens.get(i);
+                if (name.equals(token.name()))
+                {
+                    return i;
+                }
+
+                i += token.componentTokenCount();
+            }
+
+            throw new IllegalArgumentException("No field named " + name + " at path: " + path);
+        }
+    }
+
+    static final class FieldNode extends Node
+    {
+        private final OtfDecodePlan plan;
+        private final int[] groupIndexes;
+        private final int offset;
+        private final int sinceVersion;
+        private final Encoding encoding;
+        private final boolean isFloatingPoint;
+        private final int kind;
+        private final long[] values;
+        private final long min;
+        private final long max;
+        private final double doubleMin;
+        private final double doubleMax;
+
+        FieldNode(
+            final OtfDecodePlan plan,
+            final int[] groupIndexes,
+            final int offset,
+            final int sinceVersion,
+            final Encoding encoding,
+            final int kind,
+            final long[] values,
+            final long min,
+            final long max)
+        {
+            this.plan = plan;
+            this.groupIndexes = groupIndexes;
+            this.offset = offset;
+            this.sinceVersion = sinceVersion;
+            this.encoding = encoding;
+            this.kind = kind;
+            this.values = values;
+            this.min = min;
+            this.max = max;
+
+            final PrimitiveType type = encoding.primitiveType();
+            isFloatingPoint = PrimitiveType.FLOAT == type || PrimitiveType.DOUBLE == type;
+
+            if (FieldCondition.DOUBLE_RANGE == kind)
+            {
+                doubleMin = Double.longBitsToDouble(min);
+                doubleMax = Double.longBitsToDouble(max);
+            }
+            else
+            {
+                doubleMin = min;
+                doubleMax = max;
+            }
+        }
+
+        boolean evaluate(final DirectBuffer buffer, final int offset, final int actingVersion, final int blockLength)
+        {
+            if (sinceVersion > actingVersion)
+            {
+                return false;
+            }
+
+            if (0 == groupIndexes.length)
+            {
+                return test(buffer, offset + this.offset);
+            }
+
+            final int groupOffset = plan.skip(buffer, offset + blockLength, actingVersion, 0, groupIndexes[0]);
+
+            return anyEntry(buffer, groupOffset, actingVersion, 0);
+        }
+
+        private boolean anyEntry(final DirectBuffer buffer, final int offset, final int actingVersion, final int depth)
+        {
+            final int[] instructions = plan.instructions();
+            final int i = groupIndexes[depth];
+            if (instructions[i + 2] > actingVersion)
+            {
+                return false;
+            }
+
+            final int blockLength = getInt(
+                buffer, offset + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+            final int numInGroup = getInt(
+                buffer, offset + instructions[i + 7], instructions[i + 8], instructions[i + 9]);
+            final int endIndex = instructions[i + 10];
+            final boolean isFixedLength = 1 == instructions[i + 11];
+            final boolean isLast = depth == groupIndexes.length - 1;
+            int limit = offset + instructions[i + 3];
+
+            for (int g = 0; g < numInGroup; g++)
+            {
+                final int entryLimit = limit + blockLength;
+                if (isLast)
+                {
+                    if (test(buffer, limit + this.offset))
+                    {
+                        return true;
+                    }
+
+                    limit = isFixedLength ?
+                        entryLimit : plan.skip(buffer, entryLimit, actingVersion, i + GROUP_LENGTH, endIndex);
+                }
+                else
+                {
+                    final int nestedIndex = groupIndexes[depth + 1];
+                    final int nestedOffset = plan.skip(
+                        buffer, entryLimit, actingVersion, i + GROUP_LENGTH, nestedIndex);
+                    if (anyEntry(buffer, nestedOffset, actingVersion, depth + 1))
+                    {
+                        return true;
+                    }
+
+                    limit = plan.skip(buffer, nestedOffset, actingVersion, nestedIndex, endIndex);
+                }
+            }
+
+            return false;
+        }
+
+        private boolean test(final DirectBuffer buffer, final int index)
+        {
+            if (isFloatingPoint)
+            {
+                final double value = PrimitiveType.FLOAT == encoding.primitiveType() ?
+                    buffer.getFloat(index, encoding.byteOrder()) : buffer.getDouble(index, encoding.byteOrder());
+
+                if (FieldCondition.ANY_OF == kind)
+                {
+                    for (final long v : values)
+                    {
+                        if (value == v)
+                        {
+                            return true;
+                        }
+                    }
+
+                    return false;
+                }
+
+                return doubleMin <= value && value <= doubleMax;
+            }
+
+            final long value = Types.getLong(buffer, index, encoding);
+            switch (kind)
+            {
+                case FieldCondition.ANY_OF:
+                    for (final long v : values)
+                    {
+                        if (value == v)
+                        {
+                            return true;
+                        }
+                    }
+                    return false;
+
+                case FieldCondition.RANGE:
+                    if (PrimitiveType.UINT64 == encoding.primitiveType())
+                    {
+                        return Long.compareUnsigned(min, value) <= 0 && Long.compareUnsigned(value, max) <= 0;
+                    }
+                    return min <= value && value <= max;
+
+                default:
+                    return doubleMin <= value && value <= doubleMax;
+            }
+        }
+    }
+}
@@ -0,0 +1,753 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.AsciiSequenceView;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Object2IntHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.PrimitiveValue;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Signal;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of the flyweights {@link OtfCodecFactory} generates at runtime for the root block of a message and the
+ * entries of its repeating groups.
+ * <p>
+ * The fields of a block, including the members of composites, are resolved once by path to an index with
+ * {@link #fieldIndex(String)}, e.g. {@code "serialNumber"} or {@code "engine.capacity"}. The generated subclass
+ * implements {@link #getLong(int, int)} and {@link #getDouble(int, int)} with a case per field which reads the field
+ * at its literal offset with its primitive type and byte order, as the decoders {@code JavaGenerator} generates do.
+ * Enums and sets are read as their encoded values. Fields not in the acting version read as their null value and
+ * constant fields as their constant value.
+ * <p>
+ * Repeating groups and var data must be accessed in schema order, as with generated decoders, as their positions
+ * depend on what precedes them in the message.
+ */
+public abstract class OtfFlyweight
+{
+    static final String INTERNAL_NAME = "uk/co/real_logic/sbe/otf/OtfFlyweight";
+
+    protected DirectBuffer buffer;
+    protected int offset;
+    protected int actingVersion;
+
+    Layout layout;
+    OtfMessageFlyweight message;
+    private OtfGroupFlyweight[] groups;
+
+    protected OtfFlyweight()
+    {
+    }
+
+    void init(final Layout layout, final OtfMessageFlyweight message)
+    {
+        this.layout = layout;
+        this.message = message;
+
+        groups = new OtfGroupFlyweight[layout.groupLayouts.length];
+        for (int i = 0; i < groups.length; i++)
+        {
+            groups[i] = (OtfGroupFlyweight)layout.groupLayouts[i].newFlyweight(message);
+        }
+    }
+
+    public DirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int offset()
+    {
+        return offset;
+    }
+
+    /**
+     * The acting version of the message wrapped.
+     *
+     * @return the acting version of the message wrapped.
+     */
+    public int actingVersion()
+    {
+        return actingVersion;
+    }
+
+    /**
+     * The index of a field of the block by path, which should be resolved once and then used to read the field.
+     *
+     * @param path of the field, with the members of composites separated by dots, e.g. {@code "engine.capacity"}.
+     * @return the index of the field or -1 if the block has no field for the path.
+     */
+    public int fieldIndex(final String path)
+    {
+        return layout.fieldIndexByPathMap.getValue(path);
+    }
+
+    /**
+     * The number of elements in a field, which is greater than 1 for an array.
+     *
+     * @param fieldIndex of the field.
+     * @return the number of elements in the field.
+     */
+    public int arrayLength(final int fieldIndex)
+    {
+        return layout.fields[fieldIndex].arrayLength;
+    }
+
+    /**
+     * Read an integer, char, enum, or set field as a long.
+     *
+     * @param fieldIndex of the field.
+     * @return the value of the field.
+     */
+    public long getLong(final int fieldIndex)
+    {
+        return getLong(fieldIndex, 0);
+    }
+
+    /**
+     * Read an element of an integer or char array field as a long.
+     *
+     * @param fieldIndex   of the field.
+     * @param elementIndex within the array.
+     * @return the value of the element.
+     */
+    public abstract long getLong(int fieldIndex, int elementIndex);
+
+    /**
+     * Read a numeric field as a double.
+     *
+     * @param fieldIndex of the field.
+     * @return the value of the field.
+     */
+    public double getDouble(final int fieldIndex)
+    {
+        return getDouble(fieldIndex, 0);
+    }
+
+    /**
+     * Read an element of a numeric array field as a double.
+     *
+     * @param fieldIndex   of the field.
+     * @param elementIndex within the array.
+     * @return the value of the element.
+     */
+    public abstract double getDouble(int fieldIndex, int elementIndex);
+
+    /**
+     * Wrap a view over a char array field up to its first null character, which does not allocate.
+     *
+     * @param fieldIndex of the field.
+     * @param view       to wrap over the field.
+     * @return the view for a fluent API.
+     */
+    public AsciiSequenceView wrapString(final int fieldIndex, final AsciiSequenceView view)
+    {
+        final Field field = layout.fields[fieldIndex];
+        if (null != field.constBuffer)
+        {
+            return view.wrap(field.constBuffer, 0, field.constBuffer.capacity());
+        }
+
+        if (actingVersion < field.sinceVersion)
+        {
+            return view.wrap(buffer, offset, 0);
+        }
+
+        final int index = offset + field.offset;
+        return view.wrap(buffer, index, stringLength(index, field.arrayLength));
+    }
+
+    /**
+     * Read a char array field as a String up to its first null character, which allocates the String.
+     *
+     * @param fieldIndex of the field.
+     * @return the value of the field.
+     * @see #wrapString(int, AsciiSequenceView)
+     */
+    public String getString(final int fieldIndex)
+    {
+        final Field field = layout.fields[fieldIndex];
+        if (null != field.constBuffer)
+        {
+            return field.constValue.toString();
+        }
+
+        if (actingVersion < field.sinceVersion)
+        {
+            return "";
+        }
+
+        final int index = offset + field.offset;
+        final byte[] bytes = new byte[stringLength(index, field.arrayLength)];
+        buffer.getBytes(index, bytes);
+
+        try
+        {
+            return new String(bytes, field.characterEncoding);
+        }
+        catch (final UnsupportedEncodingException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * The index of a repeating group of the block by name, which should be resolved once.
+     *
+     * @param name of the group.
+     * @return the index of the group or -1 if the block has no group for the name.
+     */
+    public int groupIndex(final String name)
+    {
+        return layout.groupIndexByNameMap.getValue(name);
+    }
+
+    /**
+     * Wrap a repeating group at the current limit of the message, after the preceding groups and var data have been
+     * read, and advance the limit past its dimensions.
+     *
+     * @param groupIndex of the group.
+     * @return the flyweight for the entries of the group, which is reused for each call.
+     */
+    public OtfGroupFlyweight group(final int groupIndex)
+    {
+        final OtfGroupFlyweight group = groups[groupIndex];
+        group.wrap(buffer, actingVersion);
+
+        return group;
+    }
+
+    /**
+     * The index of a var data field of the block by name, which should be resolved once.
+     *
+     * @param name of the var data field.
+     * @return the index of the var data field or -1 if the block has no var data field for the name.
+     */
+    public int varDataIndex(final String name)
+    {
+        return layout.varDataIndexByNameMap.getValue(name);
+    }
+
+    /**
+     * The length of a var data field at the current limit of the message, without advancing the limit.
+     *
+     * @param varDataIndex of the var data field.
+     * @return the length of the var data, which is 0 when it is not in the acting version.
+     */
+    public int varDataLength(final int varDataIndex)
+    {
+        if (actingVersion < layout.varData[varDataIndex].sinceVersion)
+        {
+            return 0;
+        }
+
+        return checkedVarDataLength(varDataIndex, message.limit());
+    }
+
+    /**
+     * Copy a var data field at the current limit of the message and advance the limit past it.
+     *
+     * @param varDataIndex of the var data field.
+     * @param dst          to which the data is copied.
+     * @param dstOffset    at which the data is copied.
+     * @param length       maximum number of bytes to copy.
+     * @return the number of bytes copied.
+     */
+    public int getVarData(final int varDataIndex, final MutableDirectBuffer dst, final int dstOffset, final int length)
+    {
+        final VarData varData = layout.varData[varDataIndex];
+        if (actingVersion < varData.sinceVersion)
+        {
+            return 0;
+        }
+
+        final int limit = message.limit();
+        final int dataLength = checkedVarDataLength(varDataIndex, limit);
+        final int bytesCopied = Math.min(length, dataLength);
+        message.limit(limit + varData.headerLength + dataLength);
+        buffer.getBytes(limit + varData.headerLength, dst, dstOffset, bytesCopied);
+
+        return bytesCopied;
+    }
+
+    /**
+     * Wrap a buffer over a var data field at the current limit of the message and advance the limit past it.
+     *
+     * @param varDataIndex of the var data field.
+     * @param wrapBuffer   to wrap over the data.
+     * @return the length of the data.
+     */
+    public int wrapVarData(final int varDataIndex, final DirectBuffer wrapBuffer)
+    {
+        final int dataOffset = advanceVarData(varDataIndex);
+        final int length = message.limit() - dataOffset;
+        wrapBuffer.wrap(buffer, dataOffset, length);
+
+        return length;
+    }
+
+    /**
+     * Wrap a view over an ASCII var data field at the current limit of the message, which does not allocate, and
+     * advance the limit past it.
+     *
+     * @param varDataIndex of the var data field.
+     * @param view         to wrap over the data.
+     * @return the view for a fluent API.
+     */
+    public AsciiSequenceView wrapVarData(final int varDataIndex, final AsciiSequenceView view)
+    {
+        final int dataOffset = advanceVarData(varDataIndex);
+
+        return view.wrap(buffer, dataOffset, message.limit() - dataOffset);
+    }
+
+    /**
+     * Skip a var data field at the current limit of the message by advancing the limit past it.
+     *
+     * @param varDataIndex of the var data field.
+     * @return the length of the data skipped.
+     */
+    public int skipVarData(final int varDataIndex)
+    {
+        final int dataOffset = advanceVarData(varDataIndex);
+
+        return message.limit() - dataOffset;
+    }
+
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('[').append(layout.name).append(']');
+
+        if (null != buffer)
+        {
+            sb.append('(');
+            final Field[] fields = layout.fields;
+            for (int i = 0; i < fields.length; i++)
+            {
+                if (i > 0)
+                {
+                    sb.append('|');
+                }
+
+                sb.append(fields[i].path).append('=');
+                if (fields[i].isString)
+                {
+                    sb.append(getString(i));
+                }
+                else if (fields[i].isFloatingPoint)
+                {
+                    sb.append(getDouble(i));
+                }
+                else
+                {
+                    sb.append(getLong(i));
+                }
+            }
+            sb.append(')');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Read the length of a var data field, which is generated with the literal offset and type of the length.
+     *
+     * @param varDataIndex of the var data field.
+     * @param index        at which the var data header begins.
+     * @return the length of the var data.
+     */
+    protected abstract int readVarDataLength(int varDataIndex, int index);
+
+    /**
+     * The constant value of a field or element of a field as a long, which is not read from the buffer.
+     *
+     * @param fieldIndex   of the field.
+     * @param elementIndex within the field.
+     * @return the constant value.
+     */
+    protected final long constLong(final int fieldIndex, final int elementIndex)
+    {
+        final Field field = layout.fields[fieldIndex];
+        if (null != field.constBuffer)
+        {
+            return field.constBuffer.getByte(elementOffset(elementIndex, field.constBuffer.capacity(), 1));
+        }
+
+        final PrimitiveValue value = field.constValue;
+        elementOffset(elementIndex, 1, 0);
+
+        return PrimitiveValue.Representation.DOUBLE == value.representation() ?
+            (long)value.doubleValue() : value.longValue();
+    }
+
+    /**
+     * The constant value of a field or element of a field as a double, which is not read from the buffer.
+     *
+     * @param fieldIndex   of the field.
+     * @param elementIndex within the field.
+     * @return the constant value.
+     */
+    protected final double constDouble(final int fieldIndex, final int elementIndex)
+    {
+        final PrimitiveValue value = layout.fields[fieldIndex].constValue;
+        if (PrimitiveValue.Representation.DOUBLE == value.representation())
+        {
+            elementOffset(elementIndex, 1, 0);
+            return value.doubleValue();
+        }
+
+        return constLong(fieldIndex, elementIndex);
+    }
+
+    /**
+     * The offset of an element within an array field, checking the element is within the array.
+     *
+     * @param elementIndex within the array.
+     * @param arrayLength  of the array.
+     * @param elementSize  in bytes.
+     * @return the offset of the element from the beginning of the field.
+     */
+    protected static int elementOffset(final int elementIndex, final int arrayLength, final int elementSize)
+    {
+        if (elementIndex < 0 || elementIndex >= arrayLength)
+        {
+            throw new IndexOutOfBoundsException("elementIndex out of range: " + elementIndex);
+        }
+
+        return elementIndex * elementSize;
+    }
+
+    /**
+     * The exception for an index of a field or var data field which the block does not have.
+     *
+     * @param index of the field or var data field.
+     * @return the exception to be thrown.
+     */
+    protected static IndexOutOfBoundsException indexOutOfRange(final int index)
+    {
+        return new IndexOutOfBoundsException("index out of range: " + index);
+    }
+
+    private int stringLength(final int index, final int arrayLength)
+    {
+        int length = 0;
+        while (length < arrayLength && 0 != buffer.getByte(index + length))
+        {
+            length++;
+        }
+
+        return length;
+    }
+
+    private int checkedVarDataLength(final int varDataIndex, final int index)
+    {
+        final int length = readVarDataLength(varDataIndex, index);
+        if (length < 0)
+        {
+            throw new IllegalStateException(
+                "Length of var data " + layout.varData[varDataIndex].name + " is not valid: " + length);
+        }
+
+        return length;
+    }
+
+    private int advanceVarData(final int varDataIndex)
+    {
+        final VarData varData = layout.varData[varDataIndex];
+        final int limit = message.limit();
+        if (actingVersion < varData.sinceVersion)
+        {
+            return limit;
+        }
+
+        final int length = checkedVarDataLength(varDataIndex, limit);
+        final int dataOffset = limit + varData.headerLength;
+        message.limit(dataOffset + length);
+
+        return dataOffset;
+    }
+
+    /**
+     * Layout of a block resolved from its {@link Token}s, which is immutable and shared by the flyweights for the
+     * block. The {@link Token}s of the layout describe what {@link OtfCodecFactory} generates for the block.
+     */
+    static final class Layout
+    {
+        final String name;
+        final Field[] fields;
+        final Layout[] groupLayouts;
+        final VarData[] varData;
+        final Object2IntHashMap<String> fieldIndexByPathMap = new Object2IntHashMap<>(-1);
+        final Object2IntHashMap<String> groupIndexByNameMap = new Object2IntHashMap<>(-1);
+        final Object2IntHashMap<String> varDataIndexByNameMap = new Object2IntHashMap<>(-1);
+        final int templateId;
+        final int blockLength;
+        final int schemaId;
+        final int schemaVersion;
+        final String semanticType;
+        final Token groupToken;
+        final Token blockLengthToken;
+        final Token numInGroupToken;
+        final int headerLength;
+        Constructor<? extends OtfFlyweight> constructor;
+
+        /**
+         * Resolve the layout of the root block of a message.
+         *
+         * @param msgTokens     of the message.
+         * @param schemaId      of the schema of the message.
+         * @param schemaVersion of the schema of the message.
+         */
+        Layout(final List<Token> msgTokens, final int schemaId, final int schemaVersion)
+        {
+            this(msgTokens.get(0).name(), msgTokens, 1, msgTokens.size() - 1, -1, schemaId, schemaVersion);
+        }
+
+        private Layout(
+            final String name,
+            final List<Token> tokens,
+            final int fromIndex,
+            final int toIndex,
+            final int groupIndex,
+            final int schemaId,
+            final int schemaVersion)
+        {
+            final Token msgToken = tokens.get(0);
+            final String semanticType = msgToken.encoding().semanticType();
+
+            this.name = name;
+            this.schemaId = schemaId;
+            this.schemaVersion = schemaVersion;
+            templateId = msgToken.id();
+            blockLength = -1 == groupIndex ? msgToken.encodedLength() : tokens.get(groupIndex).encodedLength();
+            this.semanticType = null == semanticType ? "" : semanticType;
+
+            if (-1 == groupIndex)
+            {
+                groupToken = null;
+                blockLengthToken = null;
+                numInGroupToken = null;
+                headerLength = 0;
+            }
+            else
+            {
+                groupToken = tokens.get(groupIndex);
+                blockLengthToken = tokens.get(groupIndex + 2);
+                numInGroupToken = tokens.get(groupIndex + 3);
+                headerLength = tokens.get(groupIndex + 1).encodedLength();
+            }
+
+            final List<Field> fields = new ArrayList<>();
+            int i = fromIndex;
+            while (i < toIndex && Signal.BEGIN_FIELD == tokens.get(i).signal())
+            {
+                final Token fieldToken = tokens.get(i);
+                final Token typeToken = tokens.get(i + 1);
+                addField(
+                    fields, tokens, fieldToken, i + 1, fieldToken.name(), typeToken.offset(), fieldToken.version());
+                i += fieldToken.componentTokenCount();
+            }
+
+            final List<Layout> groupLayouts = new ArrayList<>();
+            while (i < toIndex && Signal.BEGIN_GROUP == tokens.get(i).signal())
+            {
+                final Token token = tokens.get(i);
+                final int fieldsIndex = i + 1 + tokens.get(i + 1).componentTokenCount();
+                final int endIndex = i + token.componentTokenCount() - 1;
+                groupIndexByNameMap.put(token.name(), groupLayouts.size());
+                groupLayouts.add(new Layout(
+                    name + '.' + token.name(), tokens, fieldsIndex, endIndex, i, schemaId, schemaVersion));
+                i += token.componentTokenCount();
+            }
+
+            final List<VarData> varData = new ArrayList<>();
+            while (i < toIndex && Signal.BEGIN_VAR_DATA == tokens.get(i).signal())
+            {
+                final Token token = tokens.get(i);
+                varDataIndexByNameMap.put(token.name(), varData.size());
+                varData.add(new VarData(token, tokens.get(i + 2), tokens.get(i + 3)));
+                i += token.componentTokenCount();
+            }
+
+            this.fields = fields.toArray(new Field[0]);
+            this.groupLayouts = groupLayouts.toArray(new Layout[0]);
+            this.varData = varData.toArray(new VarData[0]);
+
+            for (int f = 0; f < this.fields.length; f++)
+            {
+                fieldIndexByPathMap.put(this.fields[f].path, f);
+            }
+        }
+
+        OtfFlyweight newFlyweight(final OtfMessageFlyweight message)
+        {
+            final OtfFlyweight flyweight;
+            try
+            {
+                flyweight = constructor.newInstance();
+            }
+            catch (final ReflectiveOperationException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+
+            flyweight.init(this, null == message ? (OtfMessageFlyweight)flyweight : message);
+
+            return flyweight;
+        }
+
+        private static void addField(
+            final List<Field> fields,
+            final List<Token> tokens,
+            final Token fieldToken,
+            final int typeIndex,
+            final String path,
+            final int offset,
+            final int sinceVersion)
+        {
+            final Token typeToken = tokens.get(typeIndex);
+            switch (typeToken.signal())
+            {
+                case ENCODING:
+                    fields.add(new Field(
+                        path,
+                        offset,
+                        typeToken.arrayLength(),
+                        sinceVersion,
+                        typeToken.encoding(),
+                        typeToken.isConstantEncoding() ? typeToken.encoding().constValue() : null));
+                    break;
+
+                case BEGIN_ENUM:
+                    fields.add(new Field(
+                        path,
+                        offset,
+                        1,
+                        sinceVersion,
+                        typeToken.encoding(),
+                        fieldToken.isConstantEncoding() ? enumConstValue(fieldToken, tokens, typeIndex) : null));
+                    break;
+
+                case BEGIN_SET:
+                    fields.add(new Field(path, offset, 1, sinceVersion, typeToken.encoding(), null));
+                    break;
+
+                case BEGIN_COMPOSITE:
+                    final int endIndex = typeIndex + typeToken.componentTokenCount() - 1;
+                    for (int i = typeIndex + 1; i < endIndex; )
+                    {
+                        final Token memberToken = tokens.get(i);
+                        addField(
+                            fields,
+                            tokens,
+                            memberToken,
+                            i,
+                            path + '.' + memberToken.name(),
+                            offset + memberToken.offset(),
+                            Math.max(sinceVersion, memberToken.version()));
+                        i += memberToken.componentTokenCount();
+                    }
+                    break;
+            }
+        }
+
+        private static PrimitiveValue enumConstValue(final Token fieldToken, final List<Token> tokens, final int index)
+        {
+            final String qualifiedName = fieldToken.encoding().constValue().toString();
+            final String validValueName = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+            for (int i = index + 1, end = index + tokens.get(index).componentTokenCount() - 1; i < end; i++)
+            {
+                final Token validValueToken = tokens.get(i);
+                if (validValueToken.name().equals(validValueName))
+                {
+                    return validValueToken.encoding().constValue();
+                }
+            }
+
+            throw new IllegalStateException("No valid value for constant enum: " + qualifiedName);
+        }
+    }
+
+    /**
+     * Field of a block, or member of a composite field, at a constant offset within the block.
+     */
+    static final class Field
+    {
+        final String path;
+        final int offset;
+        final int arrayLength;
+        final int sinceVersion;
+        final Encoding encoding;
+        final PrimitiveValue constValue;
+        final UnsafeBuffer constBuffer;
+        final String characterEncoding;
+        final boolean isFloatingPoint;
+        final boolean isString;
+
+        Field(
+            final String path,
+            final int offset,
+            final int arrayLength,
+            final int sinceVersion,
+            final Encoding encoding,
+            final PrimitiveValue constValue)
+        {
+            final PrimitiveType primitiveType = encoding.primitiveType();
+            final boolean isByteArrayConst = null != constValue &&
+                PrimitiveValue.Representation.BYTE_ARRAY == constValue.representation();
+
+            this.path = path;
+            this.offset = offset;
+            this.arrayLength = arrayLength;
+            this.sinceVersion = sinceVersion;
+            this.encoding = encoding;
+            this.constValue = constValue;
+            constBuffer = isByteArrayConst ? new UnsafeBuffer(constValue.byteArrayValue()) : null;
+            characterEncoding = null == encoding.characterEncoding() ? "US-ASCII" : encoding.characterEncoding();
+            isFloatingPoint = PrimitiveType.FLOAT == primitiveType || PrimitiveType.DOUBLE == primitiveType;
+            isString = PrimitiveType.CHAR == primitiveType && (arrayLength > 1 || isByteArrayConst);
+        }
+    }
+
+    /**
+     * Var data field of a block.
+     */
+    static final class VarData
+    {
+        final String name;
+        final int sinceVersion;
+        final int headerLength;
+        final Token lengthToken;
+
+        VarData(final Token varDataToken, final Token lengthToken, final Token dataToken)
+        {
+            name = varDataToken.name();
+            sinceVersion = varDataToken.version();
+            headerLength = dataToken.offset();
+            this.lengthToken = lengthToken;
+        }
+    }
+}
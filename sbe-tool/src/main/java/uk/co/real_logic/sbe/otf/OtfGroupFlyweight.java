@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Flyweight decoder for the entries of a repeating group of a message, generated by {@link OtfCodecFactory} and
+ * obtained from its enclosing block with {@link OtfFlyweight#group(int)}.
+ * <p>
+ * Each call to {@link #next()} moves to the next entry at the limit of the message, after the nested groups and var
+ * data of the previous entry have been read or skipped. The fields of the entry are then read by index as described
+ * for {@link OtfFlyweight}.
+ */
+public abstract class OtfGroupFlyweight extends OtfFlyweight
+    implements Iterable<OtfGroupFlyweight>, Iterator<OtfGroupFlyweight>
+{
+    static final String INTERNAL_NAME = "uk/co/real_logic/sbe/otf/OtfGroupFlyweight";
+
+    private int blockLength;
+    private int count;
+    private int index;
+
+    protected OtfGroupFlyweight()
+    {
+    }
+
+    void wrap(final DirectBuffer buffer, final int actingVersion)
+    {
+        this.buffer = buffer;
+        this.actingVersion = actingVersion;
+        index = 0;
+
+        if (actingVersion < layout.groupToken.version())
+        {
+            blockLength = 0;
+            count = 0;
+            return;
+        }
+
+        final int limit = message.limit();
+        blockLength = readBlockLength(limit);
+        count = readNumInGroup(limit);
+        if (blockLength < 0 || count < 0)
+        {
+            throw new IllegalStateException(
+                "Dimensions of group " + layout.name + " are not valid: blockLength=" + blockLength +
+                " numInGroup=" + count);
+        }
+
+        message.limit(limit + layout.headerLength);
+    }
+
+    /**
+     * The number of entries in the group.
+     *
+     * @return the number of entries in the group.
+     */
+    public int count()
+    {
+        return count;
+    }
+
+    /**
+     * The block length of the entries of the group wrapped.
+     *
+     * @return the block length of the entries of the group wrapped.
+     */
+    public int actingBlockLength()
+    {
+        return blockLength;
+    }
+
+    public Iterator<OtfGroupFlyweight> iterator()
+    {
+        return this;
+    }
+
+    public boolean hasNext()
+    {
+        return index < count;
+    }
+
+    /**
+     * Move to the next entry of the group at the limit of the message.
+     *
+     * @return this for a fluent API.
+     */
+    public OtfGroupFlyweight next()
+    {
+        if (index >= count)
+        {
+            throw new NoSuchElementException();
+        }
+
+        offset = message.limit();
+        message.limit(offset + blockLength);
+        index++;
+
+        return this;
+    }
+
+    /**
+     * Read the block length from the dimensions of the group, which is generated with its literal offset and type.
+     *
+     * @param index at which the dimensions begin.
+     * @return the block length of the entries.
+     */
+    protected abstract int readBlockLength(int index);
+
+    /**
+     * Read the number of entries from the dimensions of the group, which is generated with its literal offset and
+     * type.
+     *
+     * @param index at which the dimensions begin.
+     * @return the number of entries.
+     */
+    protected abstract int readNumInGroup(int index);
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.List;
+
+/**
+ * Finds the encoded length of messages, each preceded by its message header, for framing and skipping them in a
+ * stream. Only the message header, repeating group dimensions, and var data lengths are read, with fixed length
+ * groups being stepped over as {@code blockLength * numInGroup}.
+ */
+public class OtfLengthDecoder
+{
+    private final OtfHeaderDecoder headerDecoder;
+    private final Int2ObjectHashMap<OtfDecodePlan> planByTemplateIdMap = new Int2ObjectHashMap<>();
+
+    /**
+     * Construct a decoder for the lengths of messages of a schema.
+     *
+     * @param ir for the schema of the messages.
+     */
+    public OtfLengthDecoder(final Ir ir)
+    {
+        headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        for (final List<Token> msgTokens : ir.messages())
+        {
+            final OtfDecodePlan plan = new OtfDecodePlan(msgTokens, new int[0]);
+            planByTemplateIdMap.put(plan.templateId(), plan);
+        }
+    }
+
+    /**
+     * Find the encoded length of the message at an offset in the buffer including its message header. A message
+     * which extends beyond the capacity of the buffer is taken to be truncated.
+     *
+     * @param buffer containing the message header and encoded message.
+     * @param offset at which the message header begins.
+     * @return the length of the message header and message, or -1 if either extends beyond the capacity of the buffer.
+     * @throws IllegalArgumentException if the template id is unknown or a group dimension or var data length is
+     *                                  negative.
+     * @throws IllegalStateException    if an unsigned 32 bit length is greater than {@link Integer#MAX_VALUE}.
+     */
+    public int messageLength(final DirectBuffer buffer, final int offset)
+    {
+        final int headerLength = headerDecoder.encodedLength();
+        if (headerLength > buffer.capacity() - offset)
+        {
+            return -1;
+        }
+
+        final OtfDecodePlan plan = plan(buffer, offset);
+        final int limit = plan.encodedLimit(
+            buffer,
+            offset + headerLength,
+            headerDecoder.getSchemaVersion(buffer, offset),
+            headerDecoder.getBlockLength(buffer, offset),
+            buffer.capacity());
+
+        return -1 == limit ? -1 : limit - offset;
+    }
+
+    /**
+     * Find the encoded length of the message at an offset in the buffer including its message header, where the
+     * message must end by a limit and the capacity of the buffer bounds the length of any message. A message which
+     * extends beyond the limit is taken to be truncated, while one which claims to extend beyond the capacity of the
+     * buffer is corrupt, as more data arriving before the limit cannot complete it.
+     *
+     * @param buffer containing the message header and encoded message.
+     * @param offset at which the message header begins.
+     * @param limit  in the buffer beyond which the message must not extend.
+     * @return the length of the message header and message, or -1 if either extends beyond the limit.
+     * @throws IllegalArgumentException if the template id is unknown or a group dimension or var data length is
+     *                                  negative or extends the message beyond the capacity of the buffer.
+     * @throws IllegalStateException    if an unsigned 32 bit length is greater than {@link Integer#MAX_VALUE}.
+     */
+    public int messageLength(final DirectBuffer buffer, final int offset, final int limit)
+    {
+        final int headerLength = headerDecoder.encodedLength();
+        if (headerLength > limit - offset)
+        {
+            return -1;
+        }
+
+        final OtfDecodePlan plan = plan(buffer, offset);
+        final int messageLimit = plan.validatedEncodedLimit(
+            buffer,
+            offset + headerLength,
+            headerDecoder.getSchemaVersion(buffer, offset),
+            headerDecoder.getBlockLength(buffer, offset),
+            limit);
+
+        return -1 == messageLimit ? -1 : messageLimit - offset;
+    }
+
+    private OtfDecodePlan plan(final DirectBuffer buffer, final int offset)
+    {
+        final int templateId = headerDecoder.getTemplateId(buffer, offset);
+        final OtfDecodePlan plan = planByTemplateIdMap.get(templateId);
+        if (null == plan)
+        {
+            throw new IllegalArgumentException("No message for template id " + templateId + " at offset " + offset);
+        }
+
+        return plan;
+    }
+}
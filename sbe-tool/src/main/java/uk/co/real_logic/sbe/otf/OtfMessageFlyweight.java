@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.sbe.MessageDecoderFlyweight;
+
+/**
+ * Flyweight decoder for a message of a schema only known at runtime, generated by {@link OtfCodecFactory}.
+ * <p>
+ * The root block fields are read by index as described for {@link OtfFlyweight}. Repeating groups and var data are
+ * read in schema order from the limit of the message, which {@link #encodedLength()} reflects once they have all
+ * been read or skipped.
+ * <p>
+ * Instances are not thread safe and should be reused by wrapping each message.
+ */
+public abstract class OtfMessageFlyweight extends OtfFlyweight implements MessageDecoderFlyweight
+{
+    static final String INTERNAL_NAME = "uk/co/real_logic/sbe/otf/OtfMessageFlyweight";
+
+    private int limit;
+    private int actingBlockLength;
+
+    protected OtfMessageFlyweight()
+    {
+    }
+
+    public OtfMessageFlyweight wrap(
+        final DirectBuffer buffer, final int offset, final int actingBlockLength, final int actingVersion)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.actingBlockLength = actingBlockLength;
+        this.actingVersion = actingVersion;
+        limit = offset + actingBlockLength;
+
+        return this;
+    }
+
+    /**
+     * The length of the message from its offset to its limit, which is the length of the whole message once its
+     * repeating groups and var data have been read or skipped.
+     *
+     * @return the length of the message from its offset to its limit.
+     */
+    public int encodedLength()
+    {
+        return limit - offset;
+    }
+
+    /**
+     * The position in the buffer at which the next repeating group or var data field of the message begins.
+     *
+     * @return the position in the buffer at which the next repeating group or var data field begins.
+     */
+    public int limit()
+    {
+        return limit;
+    }
+
+    /**
+     * Set the position in the buffer at which the next repeating group or var data field of the message begins.
+     *
+     * @param limit at which the next repeating group or var data field begins.
+     */
+    public void limit(final int limit)
+    {
+        this.limit = limit;
+    }
+
+    /**
+     * The block length of the message wrapped, which may differ from {@link #sbeBlockLength()} for other versions.
+     *
+     * @return the block length of the message wrapped.
+     */
+    public int actingBlockLength()
+    {
+        return actingBlockLength;
+    }
+
+    public int sbeBlockLength()
+    {
+        return layout.blockLength;
+    }
+
+    public int sbeTemplateId()
+    {
+        return layout.templateId;
+    }
+
+    public int sbeSchemaId()
+    {
+        return layout.schemaId;
+    }
+
+    public int sbeSchemaVersion()
+    {
+        return layout.schemaVersion;
+    }
+
+    public String sbeSemanticType()
+    {
+        return layout.semanticType;
+    }
+}
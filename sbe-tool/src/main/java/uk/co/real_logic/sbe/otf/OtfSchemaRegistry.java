@@ -0,0 +1,335 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import uk.co.real_logic.sbe.ir.HeaderStructure;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.IrDecoder;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.ir.TokenTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Registry of prepared schemas keyed by schema id and version for decoding streams which interleave the messages
+ * of a number of schemas, or of a number of versions of a schema.
+ * <p>
+ * A message is decoded with the schema registered for its schema id and acting version or, when that version is not
+ * registered, with the earliest later version registered, as a later version can decode the messages of an earlier
+ * one. Lookups are by primitive key and do not allocate.
+ * <p>
+ * Messages are decoded with an {@link OtfDecodePlan} for each message. The plans of a schema registered from an
+ * {@link Ir} are compiled when it is registered, while the plan for a message of a schema registered from a compact
+ * {@link TokenTable} is compiled the first time the message is decoded so only the {@link Token}s of the messages
+ * decoded are created, and they are created once.
+ * <p>
+ * The message headers of all schemas must encode the schema id and version in the same way so they can be read
+ * before the schema is known. Registration is not thread safe but lookups may be made concurrently once all
+ * schemas are registered.
+ */
+public class OtfSchemaRegistry
+{
+    private final Long2ObjectHashMap<Schema> schemaByIdAndVersionMap = new Long2ObjectHashMap<>();
+    private final Int2ObjectHashMap<List<Schema>> schemasByIdMap = new Int2ObjectHashMap<>();
+    private OtfHeaderDecoder headerDecoder;
+    private HeaderStructure headerStructure;
+    private int headerSchemaId;
+
+    /**
+     * Register the schema described by an {@link Ir}, replacing any schema registered with the same id and version.
+     *
+     * @param ir for the schema.
+     * @return this for a fluent API.
+     * @throws IllegalArgumentException if the message header does not encode the schema id and version in the same
+     *                                  way as the schemas already registered.
+     */
+    public OtfSchemaRegistry register(final Ir ir)
+    {
+        return register(new Schema(ir));
+    }
+
+    /**
+     * Register the schema described by a {@link TokenTable}, replacing any schema registered with the same id and
+     * version.
+     *
+     * @param tokenTable for the schema.
+     * @return this for a fluent API.
+     * @throws IllegalArgumentException if the message header does not encode the schema id and version in the same
+     *                                  way as the schemas already registered.
+     */
+    public OtfSchemaRegistry register(final TokenTable tokenTable)
+    {
+        return register(new Schema(tokenTable));
+    }
+
+    /**
+     * Load and register the schemas from files of serialised {@link Ir}, as produced by the SbeTool.
+     *
+     * @param fileNames of the serialised {@link Ir}.
+     * @return this for a fluent API.
+     */
+    public OtfSchemaRegistry load(final String... fileNames)
+    {
+        for (final String fileName : fileNames)
+        {
+            try (IrDecoder irDecoder = new IrDecoder(fileName))
+            {
+                register(irDecoder.decode());
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Lookup the schema for decoding messages with a schema id and acting version.
+     *
+     * @param schemaId      of the messages.
+     * @param actingVersion of the messages.
+     * @return the schema for decoding the messages or null if none is registered.
+     */
+    public Schema lookup(final int schemaId, final int actingVersion)
+    {
+        return schemaByIdAndVersionMap.get(key(schemaId, actingVersion));
+    }
+
+    /**
+     * Find the schema for decoding the message beginning with a message header at an offset in a buffer.
+     *
+     * @param buffer containing the message header and encoded message.
+     * @param offset at which the message header begins.
+     * @return the schema for decoding the message.
+     * @throws IllegalArgumentException if no schema is registered for the message.
+     */
+    public Schema schemaFor(final DirectBuffer buffer, final int offset)
+    {
+        if (null == headerDecoder)
+        {
+            throw new IllegalStateException("No schemas registered");
+        }
+
+        final int schemaId = headerDecoder.getSchemaId(buffer, offset);
+        final int actingVersion = headerDecoder.getSchemaVersion(buffer, offset);
+        final Schema schema = lookup(schemaId, actingVersion);
+        if (null == schema)
+        {
+            throw new IllegalArgumentException(
+                "No schema registered for schema id " + schemaId + " and version " + actingVersion);
+        }
+
+        return schema;
+    }
+
+    /**
+     * Decode the message beginning with a message header at an offset in a buffer with the schema registered for it.
+     *
+     * @param buffer   containing the message header and encoded message.
+     * @param offset   at which the message header begins.
+     * @param listener to callback for decoding the primitive values as discovered in the structure.
+     * @return the index in the underlying buffer after decoding.
+     * @throws IllegalArgumentException if no schema or message is registered for the message.
+     */
+    public int decode(final DirectBuffer buffer, final int offset, final TokenListener listener)
+    {
+        return schemaFor(buffer, offset).decode(buffer, offset, listener);
+    }
+
+    private OtfSchemaRegistry register(final Schema schema)
+    {
+        if (null == headerDecoder)
+        {
+            headerDecoder = schema.headerDecoder;
+            headerStructure = schema.headerStructure;
+            headerSchemaId = schema.id;
+        }
+        else
+        {
+            validateHeader(schema);
+        }
+
+        final List<Schema> schemas = schemasByIdMap.computeIfAbsent(schema.id, (id) -> new ArrayList<>());
+        schemas.removeIf((s) -> s.version == schema.version);
+        schemas.add(schema);
+        schemas.sort((a, b) -> Integer.compare(a.version, b.version));
+
+        int version = 0;
+        for (final Schema s : schemas)
+        {
+            for (final int maxVersion = s.version; version <= maxVersion; version++)
+            {
+                schemaByIdAndVersionMap.put(key(schema.id, version), s);
+            }
+        }
+
+        return this;
+    }
+
+    private void validateHeader(final Schema schema)
+    {
+        for (final String name : new String[]{ HeaderStructure.SCHEMA_ID, HeaderStructure.SCHEMA_VERSION })
+        {
+            final Token expected = headerToken(headerStructure, name);
+            final Token actual = headerToken(schema.headerStructure, name);
+            if (null == expected || null == actual ||
+                expected.offset() != actual.offset() ||
+                expected.encoding().primitiveType() != actual.encoding().primitiveType() ||
+                expected.encoding().byteOrder() != actual.encoding().byteOrder())
+            {
+                throw new IllegalArgumentException(
+                    "Message header " + name + " of schema id " + schema.id + " differs from schema id " +
+                    headerSchemaId);
+            }
+        }
+    }
+
+    private static Token headerToken(final HeaderStructure headerStructure, final String name)
+    {
+        for (final Token token : headerStructure.tokens())
+        {
+            if (name.equals(token.name()))
+            {
+                return token;
+            }
+        }
+
+        return null;
+    }
+
+    private static long key(final int schemaId, final int version)
+    {
+        return ((long)schemaId << 32) | (version & 0xFFFF_FFFFL);
+    }
+
+    /**
+     * Schema prepared for decoding with its message header decoder and a decode plan for each message.
+     */
+    public static final class Schema
+    {
+        private final int id;
+        private final int version;
+        private final Ir ir;
+        private final HeaderStructure headerStructure;
+        private final OtfHeaderDecoder headerDecoder;
+        private final IntFunction<OtfDecodePlan> planByTemplateId;
+
+        Schema(final Ir ir)
+        {
+            final Int2ObjectHashMap<OtfDecodePlan> planByTemplateIdMap = OtfDecodePlan.compile(ir);
+
+            this.ir = ir;
+            planByTemplateId = planByTemplateIdMap::get;
+            id = ir.id();
+            version = ir.version();
+            headerStructure = ir.headerStructure();
+            headerDecoder = new OtfHeaderDecoder(headerStructure);
+        }
+
+        Schema(final TokenTable tokenTable)
+        {
+            final AtomicReferenceArray<OtfDecodePlan> planByMessageOrdinal =
+                new AtomicReferenceArray<>(tokenTable.messageCount());
+
+            ir = null;
+            id = tokenTable.schemaId();
+            version = tokenTable.version();
+            headerStructure = tokenTable.headerStructure();
+            headerDecoder = new OtfHeaderDecoder(headerStructure);
+            planByTemplateId = (templateId) ->
+            {
+                final int ordinal = tokenTable.messageOrdinal(templateId);
+                if (-1 == ordinal)
+                {
+                    return null;
+                }
+
+                final OtfDecodePlan plan = planByMessageOrdinal.get(ordinal);
+                if (null != plan)
+                {
+                    return plan;
+                }
+
+                planByMessageOrdinal.compareAndSet(
+                    ordinal, null, new OtfDecodePlan(new ArrayList<>(tokenTable.messageTokens(templateId))));
+
+                return planByMessageOrdinal.get(ordinal);
+            };
+        }
+
+        /**
+         * The {@link Ir} for the schema.
+         *
+         * @return the {@link Ir} for the schema or null if the schema was registered from a {@link TokenTable}.
+         */
+        public Ir ir()
+        {
+            return ir;
+        }
+
+        /**
+         * The decoder for the message header of the schema.
+         *
+         * @return the decoder for the message header of the schema.
+         */
+        public OtfHeaderDecoder headerDecoder()
+        {
+            return headerDecoder;
+        }
+
+        /**
+         * The plan for decoding a message of the schema.
+         *
+         * @param templateId of the message.
+         * @return the plan for decoding the message or null if the schema has no message for the template id.
+         */
+        public OtfDecodePlan plan(final int templateId)
+        {
+            return planByTemplateId.apply(templateId);
+        }
+
+        /**
+         * Decode the message beginning with a message header at an offset in a buffer.
+         *
+         * @param buffer   containing the message header and encoded message.
+         * @param offset   at which the message header begins.
+         * @param listener to callback for decoding the primitive values as discovered in the structure.
+         * @return the index in the underlying buffer after decoding.
+         * @throws IllegalArgumentException if the schema has no message for the template id.
+         */
+        public int decode(final DirectBuffer buffer, final int offset, final TokenListener listener)
+        {
+            final int templateId = headerDecoder.getTemplateId(buffer, offset);
+            final OtfDecodePlan plan = planByTemplateId.apply(templateId);
+            if (null == plan)
+            {
+                throw new IllegalArgumentException("No message for template id " + templateId + " in schema id " +
+                    id + " version " + version);
+            }
+
+            return plan.decode(
+                buffer,
+                offset + headerDecoder.encodedLength(),
+                headerDecoder.getSchemaVersion(buffer, offset),
+                headerDecoder.getBlockLength(buffer, offset),
+                listener);
+        }
+    }
+}
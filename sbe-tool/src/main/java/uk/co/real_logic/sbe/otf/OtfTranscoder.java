@@ -0,0 +1,567 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.HeaderStructure;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Signal;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transcodes messages encoded with one version of a schema into another version of the schema, for example to
+ * downgrade messages for consumers which only know an older version, without decoding and encoding each field.
+ * <p>
+ * The IR of both versions is compared up front to build a plan for each message, and each block of a message or
+ * repeating group. Fields are matched by id. A block is first filled with a template holding the null value of each
+ * of its fields, then the fields present in both versions are copied as contiguous ranges of bytes. Message header
+ * and group dimension block lengths are rewritten for the target version, while fields, repeating groups, and var data
+ * not present in the target version are dropped and those not present in the source are left null or empty.
+ * <p>
+ * This class is not thread safe.
+ */
+public class OtfTranscoder
+{
+    private static final int RANGE_LENGTH = 4;
+
+    private final OtfHeaderDecoder headerDecoder;
+    private final byte[] targetNullHeader;
+    private final Token targetBlockLengthToken;
+    private final Token targetTemplateIdToken;
+    private final Token targetSchemaIdToken;
+    private final Token targetSchemaVersionToken;
+    private final int targetSchemaId;
+    private final int targetSchemaVersion;
+    private final Int2ObjectHashMap<BlockPlan> planByTemplateIdMap = new Int2ObjectHashMap<>();
+    private int srcLimit;
+    private int dstLimit;
+
+    /**
+     * Construct a transcoder from one version of a schema to another by comparing their IR.
+     *
+     * @param sourceIr for the version of the schema in which messages are encoded.
+     * @param targetIr for the version of the schema into which messages are transcoded.
+     * @throws IllegalArgumentException if a field present in both versions has a different encoding.
+     */
+    public OtfTranscoder(final Ir sourceIr, final Ir targetIr)
+    {
+        headerDecoder = new OtfHeaderDecoder(sourceIr.headerStructure());
+
+        final List<Token> headerTokens = targetIr.headerStructure().tokens();
+        targetNullHeader = new byte[headerTokens.get(0).encodedLength()];
+        fillNulls(new UnsafeBuffer(targetNullHeader), headerTokens, 0, 0);
+        targetBlockLengthToken = headerToken(headerTokens, HeaderStructure.BLOCK_LENGTH);
+        targetTemplateIdToken = headerToken(headerTokens, HeaderStructure.TEMPLATE_ID);
+        targetSchemaIdToken = headerToken(headerTokens, HeaderStructure.SCHEMA_ID);
+        targetSchemaVersionToken = headerToken(headerTokens, HeaderStructure.SCHEMA_VERSION);
+        targetSchemaId = targetIr.id();
+        targetSchemaVersion = targetIr.version();
+
+        for (final List<Token> targetTokens : targetIr.messages())
+        {
+            final Token targetMsgToken = targetTokens.get(0);
+            final List<Token> sourceTokens = sourceIr.getMessage(targetMsgToken.id());
+            if (null != sourceTokens)
+            {
+                final BlockPlan plan = new BlockPlan(
+                    sourceTokens,
+                    1,
+                    sourceTokens.size() - 1,
+                    targetTokens,
+                    1,
+                    targetTokens.size() - 1,
+                    targetMsgToken.encodedLength());
+
+                planByTemplateIdMap.put(targetMsgToken.id(), plan);
+            }
+        }
+    }
+
+    /**
+     * Transcode the message at an offset in the source buffer, including its message header, into the target buffer.
+     *
+     * @param srcBuffer containing the message header and encoded message in the source version.
+     * @param srcOffset at which the message header begins.
+     * @param dstBuffer into which the message header and message are written in the target version.
+     * @param dstOffset at which the message header is written.
+     * @return the number of bytes written to the target buffer.
+     * @throws IllegalArgumentException if the message is not present in both versions of the schema.
+     */
+    public int transcode(
+        final DirectBuffer srcBuffer, final int srcOffset, final MutableDirectBuffer dstBuffer, final int dstOffset)
+    {
+        final int templateId = headerDecoder.getTemplateId(srcBuffer, srcOffset);
+        final BlockPlan plan = planByTemplateIdMap.get(templateId);
+        if (null == plan)
+        {
+            throw new IllegalArgumentException("No message for template id " + templateId + " in both versions");
+        }
+
+        final int actingVersion = headerDecoder.getSchemaVersion(srcBuffer, srcOffset);
+        final int actingBlockLength = headerDecoder.getBlockLength(srcBuffer, srcOffset);
+
+        dstBuffer.putBytes(dstOffset, targetNullHeader);
+        putInt(dstBuffer, dstOffset, targetBlockLengthToken, plan.blockLength);
+        putInt(dstBuffer, dstOffset, targetTemplateIdToken, templateId);
+        putInt(dstBuffer, dstOffset, targetSchemaIdToken, targetSchemaId);
+        putInt(dstBuffer, dstOffset, targetSchemaVersionToken, targetSchemaVersion);
+
+        srcLimit = srcOffset + headerDecoder.encodedLength();
+        dstLimit = dstOffset + targetNullHeader.length;
+        transcodeBlock(plan, srcBuffer, actingBlockLength, actingVersion, dstBuffer);
+
+        return dstLimit - dstOffset;
+    }
+
+    private void transcodeBlock(
+        final BlockPlan plan,
+        final DirectBuffer srcBuffer,
+        final int actingBlockLength,
+        final int actingVersion,
+        final MutableDirectBuffer dstBuffer)
+    {
+        final int srcBlockOffset = srcLimit;
+        final int dstBlockOffset = dstLimit;
+        final int[] ranges = plan.ranges;
+
+        dstBuffer.putBytes(dstBlockOffset, plan.nullBlock);
+        for (int i = 0; i < ranges.length; i += RANGE_LENGTH)
+        {
+            final int srcFieldOffset = ranges[i];
+            final int length = ranges[i + 2];
+            if (ranges[i + 3] <= actingVersion && srcFieldOffset + length <= actingBlockLength)
+            {
+                dstBuffer.putBytes(dstBlockOffset + ranges[i + 1], srcBuffer, srcBlockOffset + srcFieldOffset, length);
+            }
+        }
+
+        srcLimit = srcBlockOffset + actingBlockLength;
+        dstLimit = dstBlockOffset + plan.blockLength;
+
+        final Node[] sourceNodes = plan.sourceNodes;
+        int sourceIndex = 0;
+        for (final Node targetNode : plan.targetNodes)
+        {
+            final int matchIndex = targetNode.sourceIndex;
+            if (-1 != matchIndex && sourceNodes[matchIndex].sinceVersion <= actingVersion)
+            {
+                while (sourceIndex < matchIndex)
+                {
+                    skipNode(sourceNodes[sourceIndex++], srcBuffer, actingVersion);
+                }
+
+                if (null == targetNode.children)
+                {
+                    transcodeVarData(sourceNodes[sourceIndex++], targetNode, srcBuffer, dstBuffer);
+                }
+                else
+                {
+                    transcodeGroup(sourceNodes[sourceIndex++], targetNode, srcBuffer, actingVersion, dstBuffer);
+                }
+            }
+            else
+            {
+                if (null != targetNode.children)
+                {
+                    putInt(dstBuffer, dstLimit, targetNode.blockLengthToken, targetNode.blockLength);
+                }
+                putInt(dstBuffer, dstLimit, targetNode.countToken, 0);
+                dstLimit += targetNode.headerLength;
+            }
+        }
+
+        while (sourceIndex < sourceNodes.length)
+        {
+            skipNode(sourceNodes[sourceIndex++], srcBuffer, actingVersion);
+        }
+    }
+
+    private void transcodeGroup(
+        final Node sourceNode,
+        final Node targetNode,
+        final DirectBuffer srcBuffer,
+        final int actingVersion,
+        final MutableDirectBuffer dstBuffer)
+    {
+        final int blockLength = getInt(srcBuffer, srcLimit, sourceNode.blockLengthToken);
+        final int numInGroup = getInt(srcBuffer, srcLimit, sourceNode.countToken);
+
+        putInt(dstBuffer, dstLimit, targetNode.blockLengthToken, targetNode.blockLength);
+        putInt(dstBuffer, dstLimit, targetNode.countToken, numInGroup);
+        srcLimit += sourceNode.headerLength;
+        dstLimit += targetNode.headerLength;
+
+        for (int i = 0; i < numInGroup; i++)
+        {
+            transcodeBlock(targetNode.plan, srcBuffer, blockLength, actingVersion, dstBuffer);
+        }
+    }
+
+    private void transcodeVarData(
+        final Node sourceNode, final Node targetNode, final DirectBuffer srcBuffer, final MutableDirectBuffer dstBuffer)
+    {
+        final int length = getInt(srcBuffer, srcLimit, sourceNode.countToken);
+
+        putInt(dstBuffer, dstLimit, targetNode.countToken, length);
+        dstBuffer.putBytes(dstLimit + targetNode.headerLength, srcBuffer, srcLimit + sourceNode.headerLength, length);
+        srcLimit += sourceNode.headerLength + length;
+        dstLimit += targetNode.headerLength + length;
+    }
+
+    private void skipNode(final Node node, final DirectBuffer srcBuffer, final int actingVersion)
+    {
+        if (node.sinceVersion > actingVersion)
+        {
+            return;
+        }
+
+        final int count = getInt(srcBuffer, srcLimit, node.countToken);
+        if (null == node.children)
+        {
+            srcLimit += node.headerLength + count;
+            return;
+        }
+
+        final int blockLength = getInt(srcBuffer, srcLimit, node.blockLengthToken);
+        srcLimit += node.headerLength;
+        for (int i = 0; i < count; i++)
+        {
+            srcLimit += blockLength;
+            for (final Node child : node.children)
+            {
+                skipNode(child, srcBuffer, actingVersion);
+            }
+        }
+    }
+
+    private static int getInt(final DirectBuffer buffer, final int offset, final Token token)
+    {
+        return (int)Types.getLong(buffer, offset + token.offset(), token.encoding());
+    }
+
+    private static void putInt(final MutableDirectBuffer buffer, final int offset, final Token token, final int value)
+    {
+        Types.putLong(buffer, offset + token.offset(), value, token.encoding());
+    }
+
+    private static Token headerToken(final List<Token> headerTokens, final String name)
+    {
+        for (final Token token : headerTokens)
+        {
+            if (name.equals(token.name()))
+            {
+                return token;
+            }
+        }
+
+        throw new IllegalArgumentException("No " + name + " in message header");
+    }
+
+    private static void fillNulls(
+        final MutableDirectBuffer buffer, final List<Token> tokens, final int typeIndex, final int offset)
+    {
+        final Token typeToken = tokens.get(typeIndex);
+        final Encoding encoding = typeToken.encoding();
+
+        switch (typeToken.signal())
+        {
+            case BEGIN_COMPOSITE:
+                for (int i = typeIndex + 1, end = typeIndex + typeToken.componentTokenCount() - 1; i < end; )
+                {
+                    final Token memberToken = tokens.get(i);
+                    fillNulls(buffer, tokens, i, offset + memberToken.offset());
+                    i += memberToken.componentTokenCount();
+                }
+                break;
+
+            case BEGIN_ENUM:
+                Types.putPrimitiveValue(buffer, offset, encoding.applicableNullValue(), encoding);
+                break;
+
+            case ENCODING:
+                if (Encoding.Presence.CONSTANT != encoding.presence())
+                {
+                    final int size = encoding.primitiveType().size();
+                    for (int i = 0, length = typeToken.arrayLength(); i < length; i++)
+                    {
+                        Types.putPrimitiveValue(buffer, offset + (i * size), encoding.applicableNullValue(), encoding);
+                    }
+                }
+                break;
+        }
+    }
+
+    private static void appendLayout(
+        final StringBuilder sb, final List<Token> tokens, final int typeIndex, final int offset)
+    {
+        final Token typeToken = tokens.get(typeIndex);
+        if (Signal.BEGIN_COMPOSITE == typeToken.signal())
+        {
+            for (int i = typeIndex + 1, end = typeIndex + typeToken.componentTokenCount() - 1; i < end; )
+            {
+                final Token memberToken = tokens.get(i);
+                appendLayout(sb, tokens, i, offset + memberToken.offset());
+                i += memberToken.componentTokenCount();
+            }
+        }
+        else if (typeToken.encodedLength() > 0)
+        {
+            final Encoding encoding = typeToken.encoding();
+            sb.append(offset).append(':')
+                .append(encoding.primitiveType()).append(':')
+                .append(typeToken.arrayLength()).append(':')
+                .append(encoding.byteOrder()).append(';');
+        }
+    }
+
+    private static String layout(final List<Token> tokens, final int typeIndex)
+    {
+        final StringBuilder sb = new StringBuilder();
+        appendLayout(sb, tokens, typeIndex, 0);
+
+        return sb.toString();
+    }
+
+    private static int findById(final List<Token> tokens, final int fromIndex, final int toIndex, final int id)
+    {
+        for (int i = fromIndex; i < toIndex; )
+        {
+            final Token token = tokens.get(i);
+            if (token.id() == id)
+            {
+                return i;
+            }
+
+            i += token.componentTokenCount();
+        }
+
+        return -1;
+    }
+
+    private static int fieldsEnd(final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        int i = fromIndex;
+        while (i < toIndex && Signal.BEGIN_FIELD == tokens.get(i).signal())
+        {
+            i += tokens.get(i).componentTokenCount();
+        }
+
+        return i;
+    }
+
+    /**
+     * Plan for transcoding a block of fixed length fields followed by its repeating groups and var data.
+     */
+    static final class BlockPlan
+    {
+        final int blockLength;
+        final byte[] nullBlock;
+        final int[] ranges;
+        final Node[] sourceNodes;
+        final Node[] targetNodes;
+
+        BlockPlan(
+            final List<Token> srcTokens,
+            final int srcFromIndex,
+            final int srcToIndex,
+            final List<Token> dstTokens,
+            final int dstFromIndex,
+            final int dstToIndex,
+            final int blockLength)
+        {
+            this.blockLength = blockLength;
+            nullBlock = new byte[blockLength];
+
+            final UnsafeBuffer nullBuffer = new UnsafeBuffer(nullBlock);
+            final IntArrayList rangeList = new IntArrayList();
+            final int srcFieldsEnd = fieldsEnd(srcTokens, srcFromIndex, srcToIndex);
+            final int dstFieldsEnd = fieldsEnd(dstTokens, dstFromIndex, dstToIndex);
+
+            for (int i = dstFromIndex; i < dstFieldsEnd; i += dstTokens.get(i).componentTokenCount())
+            {
+                final Token dstField = dstTokens.get(i);
+                final Token dstType = dstTokens.get(i + 1);
+                if (dstType.encodedLength() == 0)
+                {
+                    continue;
+                }
+
+                fillNulls(nullBuffer, dstTokens, i + 1, dstType.offset());
+
+                final int srcIndex = findById(srcTokens, srcFromIndex, srcFieldsEnd, dstField.id());
+                if (-1 != srcIndex)
+                {
+                    final Token srcField = srcTokens.get(srcIndex);
+                    if (!layout(srcTokens, srcIndex + 1).equals(layout(dstTokens, i + 1)))
+                    {
+                        throw new IllegalArgumentException(
+                            "Incompatible encoding for field " + dstField.name() + " id=" + dstField.id());
+                    }
+
+                    addRange(
+                        rangeList,
+                        srcTokens.get(srcIndex + 1).offset(),
+                        dstType.offset(),
+                        dstType.encodedLength(),
+                        srcField.version());
+                }
+            }
+
+            ranges = rangeList.toIntArray();
+            sourceNodes = nodes(srcTokens, srcFieldsEnd, srcToIndex, null, 0, 0);
+            targetNodes = nodes(dstTokens, dstFieldsEnd, dstToIndex, srcTokens, srcFieldsEnd, srcToIndex);
+
+            int lastSourceIndex = -1;
+            for (final Node node : targetNodes)
+            {
+                if (-1 != node.sourceIndex)
+                {
+                    if (node.sourceIndex < lastSourceIndex)
+                    {
+                        throw new IllegalArgumentException(
+                            "Repeating groups and var data must be in the same order in both versions");
+                    }
+
+                    lastSourceIndex = node.sourceIndex;
+                }
+            }
+        }
+
+        private static void addRange(
+            final IntArrayList rangeList,
+            final int srcOffset,
+            final int dstOffset,
+            final int length,
+            final int sinceVersion)
+        {
+            final int last = rangeList.size() - RANGE_LENGTH;
+            if (last >= 0 &&
+                rangeList.getInt(last + 3) == sinceVersion &&
+                rangeList.getInt(last) + rangeList.getInt(last + 2) == srcOffset &&
+                rangeList.getInt(last + 1) + rangeList.getInt(last + 2) == dstOffset)
+            {
+                rangeList.setInt(last + 2, rangeList.getInt(last + 2) + length);
+                return;
+            }
+
+            rangeList.addInt(srcOffset);
+            rangeList.addInt(dstOffset);
+            rangeList.addInt(length);
+            rangeList.addInt(sinceVersion);
+        }
+
+        private static Node[] nodes(
+            final List<Token> tokens,
+            final int fromIndex,
+            final int toIndex,
+            final List<Token> srcTokens,
+            final int srcFromIndex,
+            final int srcToIndex)
+        {
+            final ArrayList<Node> nodes = new ArrayList<>();
+            for (int i = fromIndex; i < toIndex; i += tokens.get(i).componentTokenCount())
+            {
+                final Token token = tokens.get(i);
+                int srcIndex = -1;
+                int sourceIndex = -1;
+                if (null != srcTokens)
+                {
+                    for (int j = srcFromIndex, k = 0; j < srcToIndex; j += srcTokens.get(j).componentTokenCount(), k++)
+                    {
+                        final Token srcToken = srcTokens.get(j);
+                        if (srcToken.id() == token.id() && srcToken.signal() == token.signal())
+                        {
+                            srcIndex = j;
+                            sourceIndex = k;
+                            break;
+                        }
+                    }
+                }
+
+                nodes.add(new Node(tokens, i, sourceIndex, srcTokens, srcIndex));
+            }
+
+            return nodes.toArray(new Node[0]);
+        }
+    }
+
+    /**
+     * Repeating group or var data within a block with the tokens of its dimensions or length.
+     */
+    static final class Node
+    {
+        final int sinceVersion;
+        final int headerLength;
+        final int blockLength;
+        final int sourceIndex;
+        final Token blockLengthToken;
+        final Token countToken;
+        final Node[] children;
+        final BlockPlan plan;
+
+        Node(
+            final List<Token> tokens,
+            final int index,
+            final int sourceIndex,
+            final List<Token> srcTokens,
+            final int srcIndex)
+        {
+            final Token token = tokens.get(index);
+            final int endIndex = index + token.componentTokenCount() - 1;
+
+            this.sourceIndex = sourceIndex;
+            sinceVersion = token.version();
+            headerLength = Signal.BEGIN_GROUP == token.signal() ?
+                tokens.get(index + 1).encodedLength() : tokens.get(index + 3).offset();
+            blockLength = token.encodedLength();
+
+            if (Signal.BEGIN_GROUP == token.signal())
+            {
+                final int fieldsIndex = index + 1 + tokens.get(index + 1).componentTokenCount();
+                blockLengthToken = tokens.get(index + 2);
+                countToken = tokens.get(index + 3);
+                children = BlockPlan.nodes(tokens, fieldsEnd(tokens, fieldsIndex, endIndex), endIndex, null, 0, 0);
+
+                if (-1 != srcIndex)
+                {
+                    final int srcEndIndex = srcIndex + srcTokens.get(srcIndex).componentTokenCount() - 1;
+                    final int srcFieldsIndex = srcIndex + 1 + srcTokens.get(srcIndex + 1).componentTokenCount();
+                    plan = new BlockPlan(
+                        srcTokens, srcFieldsIndex, srcEndIndex, tokens, fieldsIndex, endIndex, blockLength);
+                }
+                else
+                {
+                    plan = null;
+                }
+            }
+            else
+            {
+                blockLengthToken = null;
+                countToken = tokens.get(index + 2);
+                children = null;
+                plan = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,806 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.PrimitiveValue;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.co.real_logic.sbe.ir.Signal.*;
+import static uk.co.real_logic.sbe.otf.OtfDecodePlan.byteOrderCode;
+import static uk.co.real_logic.sbe.otf.OtfDecodePlan.getInt;
+import static uk.co.real_logic.sbe.otf.OtfDecodePlan.typeCode;
+
+/**
+ * Precompiled plan for on-the-fly decoding of a message that drives {@link TypedTokenListener} callbacks with each
+ * primitive value already read from the buffer.
+ * <p>
+ * The dispatch on the {@link PrimitiveType} and byte order of each encoding is done once when the plan is compiled,
+ * resulting in an opcode per primitive type, and array elements, constant values, enum valid values, and null values
+ * are resolved up front so decoding does not allocate.
+ * <p>
+ * A plan is immutable after construction and can be used concurrently from multiple threads.
+ */
+@SuppressWarnings("FinalParameters")
+public class OtfTypedDecodePlan
+{
+    /**
+     * Instruction layouts, with token indexes referring into the message tokens:
+     * <pre>
+     *   PRIMITIVE: opcode, fieldTokenIndex, typeTokenIndex, offset, swap, sinceVersion, nullIndex, length
+     *   CONSTANT:  opcode, fieldTokenIndex, typeTokenIndex, poolIndex
+     *   ENUM, SET: opcode, fieldTokenIndex, fromIndex, toIndex, offset, readOpcode, swap, sinceVersion, poolIndex
+     *   COMPOSITE: opcode, fieldTokenIndex, typeTokenIndex
+     *   GROUP:     opcode, groupTokenIndex, sinceVersion, dimensionsLength,
+     *              blockLengthOffset, blockLengthType, blockLengthByteOrder,
+     *              numInGroupOffset, numInGroupType, numInGroupByteOrder, endOfGroupInstructionIndex
+     *   VAR_DATA:  opcode, varDataTokenIndex, dataTokenIndex, sinceVersion,
+     *              lengthOffset, lengthType, lengthByteOrder, dataOffset
+     * </pre>
+     * The pool entries of an ENUM are its valid values followed by its null value.
+     */
+    private static final int OP_INT8 = 1;
+    private static final int OP_UINT8 = 2;
+    private static final int OP_INT16 = 3;
+    private static final int OP_UINT16 = 4;
+    private static final int OP_INT32 = 5;
+    private static final int OP_UINT32 = 6;
+    private static final int OP_INT64 = 7;
+    private static final int OP_FLOAT = 8;
+    private static final int OP_DOUBLE = 9;
+    private static final int OP_CHAR = 10;
+    private static final int OP_CONST_INT64 = 11;
+    private static final int OP_CONST_DOUBLE = 12;
+    private static final int OP_CONST_CHAR = 13;
+    private static final int OP_CONST_ENUM = 14;
+    private static final int OP_ENUM = 15;
+    private static final int OP_BIT_SET = 16;
+    private static final int OP_BEGIN_COMPOSITE = 17;
+    private static final int OP_END_COMPOSITE = 18;
+    private static final int OP_GROUP = 19;
+    private static final int OP_VAR_DATA = 20;
+
+    private static final int PRIMITIVE_LENGTH = 8;
+    private static final int CONSTANT_LENGTH = 4;
+    private static final int TYPE_SET_LENGTH = 9;
+    private static final int COMPOSITE_LENGTH = 3;
+    private static final int GROUP_LENGTH = 11;
+    private static final int VAR_DATA_LENGTH = 8;
+
+    private static final int NO_NULL = -1;
+
+    private final int templateId;
+    private final int[] instructions;
+    private final long[] pool;
+    private final DirectBuffer[] constBuffers;
+    private final Token[] tokens;
+    private final List<Token> msgTokens;
+
+    /**
+     * Compile a plan for decoding the message described by the IR {@link Token}s.
+     *
+     * @param msgTokens in IR format describing the message structure.
+     */
+    public OtfTypedDecodePlan(final List<Token> msgTokens)
+    {
+        this.msgTokens = msgTokens;
+        this.tokens = msgTokens.toArray(new Token[0]);
+        this.templateId = tokens[0].id();
+
+        final IntArrayList instructions = new IntArrayList();
+        final LongArrayList pool = new LongArrayList();
+        final ArrayList<DirectBuffer> constBuffers = new ArrayList<>();
+        compileBlock(instructions, pool, constBuffers, 1, tokens.length - 1);
+
+        this.instructions = instructions.toIntArray();
+        this.pool = pool.toLongArray();
+        this.constBuffers = constBuffers.toArray(new DirectBuffer[0]);
+    }
+
+    /**
+     * The template id of the message this plan decodes.
+     *
+     * @return the template id of the message this plan decodes.
+     */
+    public int templateId()
+    {
+        return templateId;
+    }
+
+    /**
+     * Decode a message from the provided buffer.
+     *
+     * @param buffer        containing the encoded message.
+     * @param offset        at which the message encoding starts in the buffer.
+     * @param actingVersion of the encoded message for dealing with extension fields.
+     * @param blockLength   of the root message fields.
+     * @param listener      to callback with the values as discovered in the structure.
+     * @return the index in the underlying buffer after decoding.
+     */
+    public int decode(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int blockLength,
+        final TypedTokenListener listener)
+    {
+        listener.onBeginMessage(tokens[0]);
+
+        final int limit = decodeBlock(buffer, offset, blockLength, actingVersion, 0, instructions.length, listener);
+
+        listener.onEndMessage(tokens[tokens.length - 1]);
+
+        return limit;
+    }
+
+    private int decodeBlock(
+        final DirectBuffer buffer,
+        final int blockOffset,
+        final int blockLength,
+        final int actingVersion,
+        final int fromIndex,
+        final int toIndex,
+        final TypedTokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final Token[] tokens = this.tokens;
+        int limit = blockOffset + blockLength;
+        int i = fromIndex;
+
+        while (i < toIndex)
+        {
+            final int opcode = instructions[i];
+            switch (opcode)
+            {
+                case OP_INT8:
+                case OP_UINT8:
+                case OP_INT16:
+                case OP_UINT16:
+                case OP_INT32:
+                case OP_UINT32:
+                case OP_INT64:
+                case OP_FLOAT:
+                case OP_DOUBLE:
+                case OP_CHAR:
+                    decodePrimitive(buffer, blockOffset, actingVersion, i, listener);
+                    i += PRIMITIVE_LENGTH;
+                    break;
+
+                case OP_CONST_INT64:
+                    listener.onInt64(
+                        tokens[instructions[i + 1]], tokens[instructions[i + 2]], pool[instructions[i + 3]]);
+                    i += CONSTANT_LENGTH;
+                    break;
+
+                case OP_CONST_DOUBLE:
+                    listener.onDouble(
+                        tokens[instructions[i + 1]],
+                        tokens[instructions[i + 2]],
+                        Double.longBitsToDouble(pool[instructions[i + 3]]));
+                    i += CONSTANT_LENGTH;
+                    break;
+
+                case OP_CONST_CHAR:
+                {
+                    final DirectBuffer constBuffer = constBuffers[instructions[i + 3]];
+                    listener.onChar(
+                        tokens[instructions[i + 1]],
+                        tokens[instructions[i + 2]],
+                        constBuffer,
+                        0,
+                        constBuffer.capacity());
+                    i += CONSTANT_LENGTH;
+                    break;
+                }
+
+                case OP_CONST_ENUM:
+                {
+                    final Token validValueToken = tokens[instructions[i + 3]];
+                    listener.onEnum(
+                        tokens[instructions[i + 1]],
+                        tokens[instructions[i + 2]],
+                        validValueToken.encoding().constValue().longValue(),
+                        validValueToken);
+                    i += CONSTANT_LENGTH;
+                    break;
+                }
+
+                case OP_ENUM:
+                case OP_BIT_SET:
+                    decodeTypeSet(buffer, blockOffset, actingVersion, i, listener);
+                    i += TYPE_SET_LENGTH;
+                    break;
+
+                case OP_BEGIN_COMPOSITE:
+                    listener.onBeginComposite(tokens[instructions[i + 1]], tokens[instructions[i + 2]]);
+                    i += COMPOSITE_LENGTH;
+                    break;
+
+                case OP_END_COMPOSITE:
+                    listener.onEndComposite(tokens[instructions[i + 1]], tokens[instructions[i + 2]]);
+                    i += COMPOSITE_LENGTH;
+                    break;
+
+                case OP_GROUP:
+                    limit = decodeGroup(buffer, limit, actingVersion, i, listener);
+                    i = instructions[i + 10];
+                    break;
+
+                case OP_VAR_DATA:
+                    limit = decodeVarData(buffer, limit, actingVersion, i, listener);
+                    i += VAR_DATA_LENGTH;
+                    break;
+
+                default:
+                    throw new IllegalStateException("unknown opcode: " + opcode);
+            }
+        }
+
+        return limit;
+    }
+
+    private void decodePrimitive(
+        final DirectBuffer buffer,
+        final int blockOffset,
+        final int actingVersion,
+        final int i,
+        final TypedTokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final Token fieldToken = tokens[instructions[i + 1]];
+        final Token typeToken = tokens[instructions[i + 2]];
+        final int nullIndex = instructions[i + 6];
+
+        if (instructions[i + 5] > actingVersion)
+        {
+            listener.onNull(fieldToken, typeToken);
+            return;
+        }
+
+        final int opcode = instructions[i];
+        final int index = blockOffset + instructions[i + 3];
+        final boolean swap = 1 == instructions[i + 4];
+
+        if (OP_CHAR == opcode)
+        {
+            final int maxLength = instructions[i + 7];
+            int length = 0;
+            while (length < maxLength && 0 != buffer.getByte(index + length))
+            {
+                length++;
+            }
+
+            if (0 == length && NO_NULL != nullIndex)
+            {
+                listener.onNull(fieldToken, typeToken);
+            }
+            else
+            {
+                listener.onChar(fieldToken, typeToken, buffer, index, length);
+            }
+        }
+        else if (OP_FLOAT == opcode || OP_DOUBLE == opcode)
+        {
+            final double value = OP_FLOAT == opcode ?
+                Float.intBitsToFloat(getRawInt(buffer, index, swap)) :
+                Double.longBitsToDouble(getRawLong(buffer, index, swap));
+
+            if (NO_NULL != nullIndex && isNull(value, Double.longBitsToDouble(pool[nullIndex])))
+            {
+                listener.onNull(fieldToken, typeToken);
+            }
+            else
+            {
+                listener.onDouble(fieldToken, typeToken, value);
+            }
+        }
+        else
+        {
+            final long value = getLong(buffer, index, opcode, swap);
+            if (NO_NULL != nullIndex && value == pool[nullIndex])
+            {
+                listener.onNull(fieldToken, typeToken);
+            }
+            else
+            {
+                listener.onInt64(fieldToken, typeToken, value);
+            }
+        }
+    }
+
+    private void decodeTypeSet(
+        final DirectBuffer buffer,
+        final int blockOffset,
+        final int actingVersion,
+        final int i,
+        final TypedTokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final Token fieldToken = tokens[instructions[i + 1]];
+        final int fromIndex = instructions[i + 2];
+        final int toIndex = instructions[i + 3];
+        final Token typeToken = tokens[fromIndex];
+
+        if (instructions[i + 7] > actingVersion)
+        {
+            listener.onNull(fieldToken, typeToken);
+            return;
+        }
+
+        final long value = getLong(
+            buffer, blockOffset + instructions[i + 4], instructions[i + 5], 1 == instructions[i + 6]);
+        if (OP_BIT_SET == instructions[i])
+        {
+            listener.onBitSet(fieldToken, msgTokens, fromIndex, toIndex, value);
+            return;
+        }
+
+        final int poolIndex = instructions[i + 8];
+        final int count = toIndex - fromIndex - 1;
+        for (int v = 0; v < count; v++)
+        {
+            if (pool[poolIndex + v] == value)
+            {
+                listener.onEnum(fieldToken, typeToken, value, tokens[fromIndex + 1 + v]);
+                return;
+            }
+        }
+
+        if (pool[poolIndex + count] == value)
+        {
+            listener.onNull(fieldToken, typeToken);
+        }
+        else
+        {
+            listener.onEnum(fieldToken, typeToken, value, null);
+        }
+    }
+
+    private int decodeGroup(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int i,
+        final TypedTokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        final Token groupToken = tokens[instructions[i + 1]];
+        final int endIndex = instructions[i + 10];
+        int limit = offset;
+
+        int blockLength = 0;
+        int numInGroup = 0;
+        if (instructions[i + 2] <= actingVersion)
+        {
+            blockLength = getInt(buffer, limit + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+            numInGroup = getInt(buffer, limit + instructions[i + 7], instructions[i + 8], instructions[i + 9]);
+            limit += instructions[i + 3];
+        }
+
+        listener.onGroupHeader(groupToken, numInGroup);
+
+        for (int g = 0; g < numInGroup; g++)
+        {
+            listener.onBeginGroup(groupToken, g, numInGroup);
+            limit = decodeBlock(buffer, limit, blockLength, actingVersion, i + GROUP_LENGTH, endIndex, listener);
+            listener.onEndGroup(groupToken, g, numInGroup);
+        }
+
+        return limit;
+    }
+
+    private int decodeVarData(
+        final DirectBuffer buffer,
+        final int offset,
+        final int actingVersion,
+        final int i,
+        final TypedTokenListener listener)
+    {
+        final int[] instructions = this.instructions;
+        int limit = offset;
+
+        int length = 0;
+        if (instructions[i + 3] <= actingVersion)
+        {
+            length = getInt(buffer, limit + instructions[i + 4], instructions[i + 5], instructions[i + 6]);
+            limit += instructions[i + 7];
+        }
+
+        listener.onVarData(tokens[instructions[i + 1]], buffer, limit, length, tokens[instructions[i + 2]]);
+
+        return limit + length;
+    }
+
+    private void compileBlock(
+        final IntArrayList instructions,
+        final LongArrayList pool,
+        final List<DirectBuffer> constBuffers,
+        final int fromIndex,
+        final int toIndex)
+    {
+        int i = fromIndex;
+        while (i < toIndex)
+        {
+            final Token token = tokens[i];
+            final int nextIndex = i + token.componentTokenCount();
+
+            switch (token.signal())
+            {
+                case BEGIN_FIELD:
+                    compileType(instructions, pool, constBuffers, i, i + 1, tokens[i + 1].offset(), token);
+                    break;
+
+                case BEGIN_GROUP:
+                    compileGroup(instructions, pool, constBuffers, i);
+                    break;
+
+                case BEGIN_VAR_DATA:
+                    compileVarData(instructions, i);
+                    break;
+            }
+
+            i = nextIndex;
+        }
+    }
+
+    private void compileType(
+        final IntArrayList instructions,
+        final LongArrayList pool,
+        final List<DirectBuffer> constBuffers,
+        final int fieldIndex,
+        final int typeIndex,
+        final int offset,
+        final Token fieldToken)
+    {
+        final Token typeToken = tokens[typeIndex];
+        final int endIndex = typeIndex + typeToken.componentTokenCount() - 1;
+        final int sinceVersion = Math.max(fieldToken.version(), typeToken.version());
+
+        switch (typeToken.signal())
+        {
+            case BEGIN_COMPOSITE:
+                addComposite(instructions, OP_BEGIN_COMPOSITE, fieldIndex, typeIndex);
+                for (int i = typeIndex + 1; i < endIndex; )
+                {
+                    final Token memberToken = tokens[i];
+                    compileType(instructions, pool, constBuffers, i, i, offset + memberToken.offset(), fieldToken);
+                    i += memberToken.componentTokenCount();
+                }
+                addComposite(instructions, OP_END_COMPOSITE, fieldIndex, typeIndex);
+                break;
+
+            case BEGIN_ENUM:
+                if (fieldToken.isConstantEncoding())
+                {
+                    instructions.addInt(OP_CONST_ENUM);
+                    instructions.addInt(fieldIndex);
+                    instructions.addInt(typeIndex);
+                    instructions.addInt(constValidValueIndex(fieldToken, typeIndex, endIndex));
+                }
+                else
+                {
+                    addTypeSet(instructions, pool, OP_ENUM, fieldIndex, typeIndex, endIndex, offset, sinceVersion);
+                }
+                break;
+
+            case BEGIN_SET:
+                addTypeSet(instructions, pool, OP_BIT_SET, fieldIndex, typeIndex, endIndex, offset, sinceVersion);
+                break;
+
+            case ENCODING:
+                addEncoding(instructions, pool, constBuffers, fieldIndex, typeIndex, offset, sinceVersion);
+                break;
+        }
+    }
+
+    private void addEncoding(
+        final IntArrayList instructions,
+        final LongArrayList pool,
+        final List<DirectBuffer> constBuffers,
+        final int fieldIndex,
+        final int typeIndex,
+        final int offset,
+        final int sinceVersion)
+    {
+        final Token typeToken = tokens[typeIndex];
+        final Encoding encoding = typeToken.encoding();
+        final PrimitiveType primitiveType = encoding.primitiveType();
+
+        if (Encoding.Presence.CONSTANT == encoding.presence())
+        {
+            final PrimitiveValue constValue = encoding.constValue();
+            instructions.addInt(
+                PrimitiveType.CHAR == primitiveType ? OP_CONST_CHAR :
+                PrimitiveValue.Representation.DOUBLE == constValue.representation() ? OP_CONST_DOUBLE :
+                OP_CONST_INT64);
+            instructions.addInt(fieldIndex);
+            instructions.addInt(typeIndex);
+
+            if (PrimitiveType.CHAR == primitiveType)
+            {
+                instructions.addInt(constBuffers.size());
+                constBuffers.add(new UnsafeBuffer(constBytes(constValue)));
+            }
+            else
+            {
+                instructions.addInt(pool.size());
+                pool.addLong(PrimitiveValue.Representation.DOUBLE == constValue.representation() ?
+                    Double.doubleToRawLongBits(constValue.doubleValue()) : constValue.longValue());
+            }
+
+            return;
+        }
+
+        final int opcode = opcode(primitiveType);
+        final int swap = byteOrderCode(encoding.byteOrder()) == byteOrderCode(ByteOrder.nativeOrder()) ? 0 : 1;
+        final int nullIndex = Encoding.Presence.OPTIONAL == encoding.presence() ? pool.size() : NO_NULL;
+        if (NO_NULL != nullIndex)
+        {
+            final PrimitiveValue nullValue = encoding.applicableNullValue();
+            pool.addLong(OP_FLOAT == opcode || OP_DOUBLE == opcode ?
+                Double.doubleToRawLongBits(nullValue.doubleValue()) : nullValue.longValue());
+        }
+
+        final int arrayLength = typeToken.arrayLength();
+        if (OP_CHAR == opcode)
+        {
+            addPrimitive(
+                instructions, opcode, fieldIndex, typeIndex, offset, swap, sinceVersion, nullIndex, arrayLength);
+            return;
+        }
+
+        for (int i = 0, size = primitiveType.size(); i < arrayLength; i++)
+        {
+            addPrimitive(
+                instructions, opcode, fieldIndex, typeIndex, offset + (i * size), swap, sinceVersion, nullIndex, 1);
+        }
+    }
+
+    private void addTypeSet(
+        final IntArrayList instructions,
+        final LongArrayList pool,
+        final int opcode,
+        final int fieldIndex,
+        final int fromIndex,
+        final int toIndex,
+        final int offset,
+        final int sinceVersion)
+    {
+        final Encoding encoding = tokens[fromIndex].encoding();
+
+        instructions.addInt(opcode);
+        instructions.addInt(fieldIndex);
+        instructions.addInt(fromIndex);
+        instructions.addInt(toIndex);
+        instructions.addInt(offset);
+        instructions.addInt(
+            PrimitiveType.CHAR == encoding.primitiveType() ? OP_UINT8 : opcode(encoding.primitiveType()));
+        instructions.addInt(byteOrderCode(encoding.byteOrder()) == byteOrderCode(ByteOrder.nativeOrder()) ? 0 : 1);
+        instructions.addInt(sinceVersion);
+        instructions.addInt(pool.size());
+
+        if (OP_ENUM == opcode)
+        {
+            for (int i = fromIndex + 1; i < toIndex; i++)
+            {
+                pool.addLong(tokens[i].encoding().constValue().longValue());
+            }
+            pool.addLong(encoding.applicableNullValue().longValue());
+        }
+    }
+
+    private void compileGroup(
+        final IntArrayList instructions,
+        final LongArrayList pool,
+        final List<DirectBuffer> constBuffers,
+        final int groupIndex)
+    {
+        final Token groupToken = tokens[groupIndex];
+        final Token dimensionsToken = tokens[groupIndex + 1];
+        final Token blockLengthToken = tokens[groupIndex + 2];
+        final Token numInGroupToken = tokens[groupIndex + 3];
+
+        final int instructionIndex = instructions.size();
+        instructions.addInt(OP_GROUP);
+        instructions.addInt(groupIndex);
+        instructions.addInt(groupToken.version());
+        instructions.addInt(dimensionsToken.encodedLength());
+        instructions.addInt(blockLengthToken.offset());
+        instructions.addInt(typeCode(blockLengthToken.encoding()));
+        instructions.addInt(byteOrderCode(blockLengthToken.encoding().byteOrder()));
+        instructions.addInt(numInGroupToken.offset());
+        instructions.addInt(typeCode(numInGroupToken.encoding()));
+        instructions.addInt(byteOrderCode(numInGroupToken.encoding().byteOrder()));
+        instructions.addInt(0);
+
+        compileBlock(
+            instructions,
+            pool,
+            constBuffers,
+            groupIndex + 1 + dimensionsToken.componentTokenCount(),
+            groupIndex + groupToken.componentTokenCount() - 1);
+
+        instructions.setInt(instructionIndex + 10, instructions.size());
+    }
+
+    private void compileVarData(final IntArrayList instructions, final int varDataIndex)
+    {
+        final Token lengthToken = tokens[varDataIndex + 2];
+        final Token dataToken = tokens[varDataIndex + 3];
+
+        instructions.addInt(OP_VAR_DATA);
+        instructions.addInt(varDataIndex);
+        instructions.addInt(varDataIndex + 3);
+        instructions.addInt(tokens[varDataIndex].version());
+        instructions.addInt(lengthToken.offset());
+        instructions.addInt(typeCode(lengthToken.encoding()));
+        instructions.addInt(byteOrderCode(lengthToken.encoding().byteOrder()));
+        instructions.addInt(dataToken.offset());
+    }
+
+    private int constValidValueIndex(final Token fieldToken, final int fromIndex, final int toIndex)
+    {
+        final String refValue = fieldToken.encoding().constValue().toString();
+        final String name = refValue.substring(refValue.indexOf('.') + 1);
+        for (int i = fromIndex + 1; i < toIndex; i++)
+        {
+            if (name.equals(tokens[i].name()))
+            {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("No valid value " + refValue + " for field " + fieldToken.name());
+    }
+
+    private static void addPrimitive(
+        final IntArrayList instructions,
+        final int opcode,
+        final int fieldIndex,
+        final int typeIndex,
+        final int offset,
+        final int swap,
+        final int sinceVersion,
+        final int nullIndex,
+        final int length)
+    {
+        instructions.addInt(opcode);
+        instructions.addInt(fieldIndex);
+        instructions.addInt(typeIndex);
+        instructions.addInt(offset);
+        instructions.addInt(swap);
+        instructions.addInt(sinceVersion);
+        instructions.addInt(nullIndex);
+        instructions.addInt(length);
+    }
+
+    private static void addComposite(
+        final IntArrayList instructions, final int opcode, final int fieldIndex, final int typeIndex)
+    {
+        instructions.addInt(opcode);
+        instructions.addInt(fieldIndex);
+        instructions.addInt(typeIndex);
+    }
+
+    private static byte[] constBytes(final PrimitiveValue constValue)
+    {
+        if (PrimitiveValue.Representation.BYTE_ARRAY == constValue.representation())
+        {
+            return constValue.byteArrayValue();
+        }
+
+        return new byte[]{ (byte)constValue.longValue() };
+    }
+
+    private static int opcode(final PrimitiveType primitiveType)
+    {
+        switch (primitiveType)
+        {
+            case CHAR:
+                return OP_CHAR;
+
+            case INT8:
+                return OP_INT8;
+
+            case UINT8:
+                return OP_UINT8;
+
+            case INT16:
+                return OP_INT16;
+
+            case UINT16:
+                return OP_UINT16;
+
+            case INT32:
+                return OP_INT32;
+
+            case UINT32:
+                return OP_UINT32;
+
+            case INT64:
+            case UINT64:
+                return OP_INT64;
+
+            case FLOAT:
+                return OP_FLOAT;
+
+            case DOUBLE:
+                return OP_DOUBLE;
+
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + primitiveType);
+        }
+    }
+
+    private static boolean isNull(final double value, final double nullValue)
+    {
+        return Double.isNaN(nullValue) ? Double.isNaN(value) : value == nullValue;
+    }
+
+    private static long getLong(final DirectBuffer buffer, final int index, final int opcode, final boolean swap)
+    {
+        switch (opcode)
+        {
+            case OP_INT8:
+                return buffer.getByte(index);
+
+            case OP_UINT8:
+                return buffer.getByte(index) & 0xFF;
+
+            case OP_INT16:
+            {
+                final short value = buffer.getShort(index);
+                return swap ? Short.reverseBytes(value) : value;
+            }
+
+            case OP_UINT16:
+            {
+                final short value = buffer.getShort(index);
+                return (swap ? Short.reverseBytes(value) : value) & 0xFFFF;
+            }
+
+            case OP_INT32:
+                return getRawInt(buffer, index, swap);
+
+            case OP_UINT32:
+                return getRawInt(buffer, index, swap) & 0xFFFF_FFFFL;
+
+            default:
+                return getRawLong(buffer, index, swap);
+        }
+    }
+
+    private static int getRawInt(final DirectBuffer buffer, final int index, final boolean swap)
+    {
+        final int value = buffer.getInt(index);
+        return swap ? Integer.reverseBytes(value) : value;
+    }
+
+    private static long getRawLong(final DirectBuffer buffer, final int index, final boolean swap)
+    {
+        final long value = buffer.getLong(index);
+        return swap ? Long.reverseBytes(value) : value;
+    }
+}
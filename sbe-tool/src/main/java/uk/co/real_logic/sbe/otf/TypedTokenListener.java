@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.List;
+
+/**
+ * Callbacks for decoding a message with {@link OtfTypedDecodePlan} where primitive values have already been read
+ * from the buffer according to their type, so listeners do not need to switch on the
+ * {@link uk.co.real_logic.sbe.PrimitiveType} of each encoding.
+ * <p>
+ * Each element of a fixed length array, other than a char array, is passed in turn by a separate callback. Constant
+ * fields are passed with their constant value. A field which is not present in the acting version of a message, or
+ * an optional field holding its null value, is passed to {@link #onNull(Token, Token)}.
+ */
+public interface TypedTokenListener
+{
+    void onBeginMessage(Token token);
+
+    void onEndMessage(Token token);
+
+    /**
+     * Called for an integer value, with uint64 values being passed as their two's complement bits.
+     *
+     * @param fieldToken of the field or the member within a composite.
+     * @param typeToken  of the encoding.
+     * @param value      read from the buffer.
+     */
+    void onInt64(Token fieldToken, Token typeToken, long value);
+
+    /**
+     * Called for a float or double value.
+     *
+     * @param fieldToken of the field or the member within a composite.
+     * @param typeToken  of the encoding.
+     * @param value      read from the buffer.
+     */
+    void onDouble(Token fieldToken, Token typeToken, double value);
+
+    /**
+     * Called for a char or char array value with the length up to the first null byte.
+     *
+     * @param fieldToken of the field or the member within a composite.
+     * @param typeToken  of the encoding.
+     * @param buffer     containing the chars.
+     * @param offset     at which the chars begin.
+     * @param length     of the chars before any null byte padding.
+     */
+    void onChar(Token fieldToken, Token typeToken, DirectBuffer buffer, int offset, int length);
+
+    /**
+     * Called for a value which is not present in the acting version or holds the null value of an optional field.
+     *
+     * @param fieldToken of the field or the member within a composite.
+     * @param typeToken  of the encoding.
+     */
+    void onNull(Token fieldToken, Token typeToken);
+
+    /**
+     * Called for an enum value.
+     *
+     * @param fieldToken      of the field or the member within a composite.
+     * @param typeToken       beginning the enum.
+     * @param value           encoded for the enum.
+     * @param validValueToken matching the value or null if the value is not known.
+     */
+    void onEnum(Token fieldToken, Token typeToken, long value, Token validValueToken);
+
+    /**
+     * Called for a bit set value.
+     *
+     * @param fieldToken of the field or the member within a composite.
+     * @param tokens     of the message containing the choices of the bit set.
+     * @param fromIndex  of the token beginning the bit set.
+     * @param toIndex    of the token ending the bit set.
+     * @param value      encoded for the bit set.
+     */
+    void onBitSet(Token fieldToken, List<Token> tokens, int fromIndex, int toIndex, long value);
+
+    void onBeginComposite(Token fieldToken, Token typeToken);
+
+    void onEndComposite(Token fieldToken, Token typeToken);
+
+    void onGroupHeader(Token token, int numInGroup);
+
+    void onBeginGroup(Token token, int groupIndex, int numInGroup);
+
+    void onEndGroup(Token token, int groupIndex, int numInGroup);
+
+    void onVarData(Token fieldToken, DirectBuffer buffer, int bufferIndex, int length, Token typeToken);
+}
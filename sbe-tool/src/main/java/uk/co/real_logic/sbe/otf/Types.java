@@ -16,13 +16,15 @@
 package uk.co.real_logic.sbe.otf;
 
 import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
 import uk.co.real_logic.sbe.PrimitiveType;
+import uk.co.real_logic.sbe.PrimitiveValue;
 import uk.co.real_logic.sbe.ir.Encoding;
 
 import java.nio.ByteOrder;
 
 /**
- * Utility functions for applying to types to help with on-the-fly (OTF) decoding.
+ * Utility functions for applying to types to help with on-the-fly (OTF) decoding and encoding.
  */
 public class Types
 {
@@ -113,6 +115,109 @@ public class Types
         }
     }
 
+    /**
+     * Put a long value into a buffer at a given index for a given {@link Encoding}. Floating point encodings are
+     * written with the value converted.
+     *
+     * @param buffer   to which the value is written.
+     * @param index    at which the value should be written.
+     * @param value    to be written.
+     * @param encoding of the value.
+     */
+    public static void putLong(
+        final MutableDirectBuffer buffer, final int index, final long value, final Encoding encoding)
+    {
+        switch (encoding.primitiveType())
+        {
+            case CHAR:
+            case INT8:
+            case UINT8:
+                buffer.putByte(index, (byte)value);
+                break;
+
+            case INT16:
+            case UINT16:
+                buffer.putShort(index, (short)value, encoding.byteOrder());
+                break;
+
+            case INT32:
+            case UINT32:
+                buffer.putInt(index, (int)value, encoding.byteOrder());
+                break;
+
+            case INT64:
+            case UINT64:
+                buffer.putLong(index, value, encoding.byteOrder());
+                break;
+
+            case FLOAT:
+                buffer.putFloat(index, (float)value, encoding.byteOrder());
+                break;
+
+            case DOUBLE:
+                buffer.putDouble(index, (double)value, encoding.byteOrder());
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported type for long: " + encoding.primitiveType());
+        }
+    }
+
+    /**
+     * Put a double value into a buffer at a given index for a given {@link Encoding}. Integer encodings are
+     * written with the value truncated.
+     *
+     * @param buffer   to which the value is written.
+     * @param index    at which the value should be written.
+     * @param value    to be written.
+     * @param encoding of the value.
+     */
+    public static void putDouble(
+        final MutableDirectBuffer buffer, final int index, final double value, final Encoding encoding)
+    {
+        switch (encoding.primitiveType())
+        {
+            case FLOAT:
+                buffer.putFloat(index, (float)value, encoding.byteOrder());
+                break;
+
+            case DOUBLE:
+                buffer.putDouble(index, value, encoding.byteOrder());
+                break;
+
+            default:
+                putLong(buffer, index, (long)value, encoding);
+        }
+    }
+
+    /**
+     * Put a {@link PrimitiveValue}, such as a null or constant value, into a buffer at a given index for a given
+     * {@link Encoding}.
+     *
+     * @param buffer   to which the value is written.
+     * @param index    at which the value should be written.
+     * @param value    to be written.
+     * @param encoding of the value.
+     */
+    public static void putPrimitiveValue(
+        final MutableDirectBuffer buffer, final int index, final PrimitiveValue value, final Encoding encoding)
+    {
+        switch (value.representation())
+        {
+            case LONG:
+                putLong(buffer, index, value.longValue(), encoding);
+                break;
+
+            case DOUBLE:
+                putDouble(buffer, index, value.doubleValue(), encoding);
+                break;
+
+            case BYTE_ARRAY:
+                buffer.putBytes(index, value.byteArrayValue());
+                break;
+        }
+    }
+
     /**
      * Append an encoding as a String to a {@link StringBuilder}.
      *
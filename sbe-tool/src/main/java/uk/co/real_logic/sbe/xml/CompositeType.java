@@ -21,16 +21,12 @@ import uk.co.real_logic.sbe.PrimitiveType;
 import uk.co.real_logic.sbe.PrimitiveValue;
 import uk.co.real_logic.sbe.ir.Token;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static javax.xml.xpath.XPathConstants.NODESET;
 import static uk.co.real_logic.sbe.PrimitiveType.*;
 import static uk.co.real_logic.sbe.SbeTool.JAVA_GENERATE_INTERFACES;
 import static uk.co.real_logic.sbe.xml.XmlSchemaParser.getAttributeValue;
@@ -73,8 +69,7 @@ public class CompositeType extends Type
         this.compositesPath.addAll(compositesPath);
         this.compositesPath.add(getAttributeValue(node, "name"));
 
-        final XPath xPath = XPathFactory.newInstance().newXPath();
-        final NodeList list = (NodeList)xPath.compile(SUB_TYPES_EXP).evaluate(node, NODESET);
+        final NodeList list = XmlSchemaParser.findChildNodes(node, SUB_TYPES_EXP);
 
         for (int i = 0, size = list.getLength(); i < size; i++)
         {
@@ -430,14 +425,10 @@ public class CompositeType extends Type
 
             case "ref":
             {
-                final XPath xPath = XPathFactory.newInstance().newXPath();
-
                 final String refName = XmlSchemaParser.getAttributeValue(subTypeNode, "name");
                 final String refTypeName = XmlSchemaParser.getAttributeValue(subTypeNode, "type");
                 final int refOffset = Integer.parseInt(XmlSchemaParser.getAttributeValue(subTypeNode, "offset", "-1"));
-                final Node refTypeNode = (Node)xPath.compile(
-                    "/*[local-name() = 'messageSchema']/types/*[@name='" + refTypeName + "']")
-                    .evaluate(subTypeNode.getOwnerDocument(), XPathConstants.NODE);
+                final Node refTypeNode = XmlSchemaParser.findTypeNode(subTypeNode, "*", refTypeName);
 
                 if (refTypeNode == null)
                 {
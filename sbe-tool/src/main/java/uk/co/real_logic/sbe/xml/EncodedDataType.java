@@ -21,10 +21,7 @@ import uk.co.real_logic.sbe.PrimitiveValue;
 
 import org.w3c.dom.Node;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathException;
-import javax.xml.xpath.XPathFactory;
 
 import static uk.co.real_logic.sbe.xml.Presence.CONSTANT;
 import static uk.co.real_logic.sbe.xml.XmlSchemaParser.handleError;
@@ -163,10 +160,7 @@ public class EncodedDataType extends Type
             final int periodIndex = valueRef.indexOf('.');
             final String valueRefType = valueRef.substring(0, periodIndex);
 
-            final XPath xPath = XPathFactory.newInstance().newXPath();
-            final Node valueRefNode = (Node)xPath.compile(
-                "/*[local-name() = 'messageSchema']/types/enum[@name='" + valueRefType + "']")
-                .evaluate(node.getOwnerDocument(), XPathConstants.NODE);
+            final Node valueRefNode = XmlSchemaParser.findTypeNode(node, EnumType.ENUM_TYPE, valueRefType);
 
             if (valueRefNode == null)
             {
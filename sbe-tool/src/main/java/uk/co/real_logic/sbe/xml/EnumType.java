@@ -20,10 +20,7 @@ import org.w3c.dom.NodeList;
 import uk.co.real_logic.sbe.PrimitiveType;
 import uk.co.real_logic.sbe.PrimitiveValue;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -68,7 +65,6 @@ public class EnumType extends Type
     {
         super(node, givenName, referencedName);
 
-        final XPath xPath = XPathFactory.newInstance().newXPath();
         final String encodingTypeStr = getAttributeValue(node, "encodingType");
         final EncodedDataType encodedDataType;
 
@@ -86,9 +82,8 @@ public class EnumType extends Type
 
             default:
                 // might not have ran into this type yet, so look for it
-                final Node encodingTypeNode = (Node)xPath.compile(
-                    String.format("%s[@name=\'%s\']", XmlSchemaParser.TYPE_XPATH_EXPR, encodingTypeStr))
-                    .evaluate(node.getOwnerDocument(), XPathConstants.NODE);
+                final Node encodingTypeNode = XmlSchemaParser.findTypeNode(
+                    node, EncodedDataType.ENCODED_DATA_TYPE, encodingTypeStr);
 
                 if (null == encodingTypeNode)
                 {
@@ -133,7 +128,7 @@ public class EnumType extends Type
             nullValue = null;
         }
 
-        final NodeList list = (NodeList)xPath.compile("validValue").evaluate(node, XPathConstants.NODESET);
+        final NodeList list = XmlSchemaParser.findChildNodes(node, "validValue");
 
         for (int i = 0, size = list.getLength(); i < size; i++)
         {
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.xml;
+
+import uk.co.real_logic.sbe.SbeTool;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.IrDecoder;
+import uk.co.real_logic.sbe.ir.IrEncoder;
+import uk.co.real_logic.sbe.ir.generated.FrameCodecEncoder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * On disk cache of the {@link Ir} generated from XML schemas so schema driven tools can start without parsing the XML
+ * when it has not changed.
+ * <p>
+ * Entries are serialised with {@link IrEncoder} in a cache directory under a name which is a SHA-256 hash of the
+ * implementation version of the tool, the XML of the schema, the XML of each document it XIncludes, the XSD it is
+ * validated against, the {@link ParserOptions}, and the target namespace. A tool run from classes rather than its
+ * jar has no implementation version so a cache should not be shared between builds of the tool during development.
+ * On a hit the {@link Ir} is loaded with {@link IrDecoder}, otherwise the schema is validated, parsed, and generated
+ * in full and the result stored, with the parser selected by {@link SbeTool#XML_STREAMING_PARSER}. Warnings are
+ * therefore only reported on a miss.
+ * <p>
+ * Entries are written to a temporary file and moved into place so the cache can be shared by concurrent builds.
+ */
+public class IrCache
+{
+    private static final int CACHE_FORMAT_VERSION = 1;
+    private static final String CACHE_FILE_SUFFIX = ".sbeir";
+    private static final String TOOL_VERSION = SbeTool.class.getPackage().getImplementationVersion();
+
+    private final File cacheDir;
+
+    /**
+     * Construct a cache which stores its entries in a directory, which is created when the first entry is stored.
+     *
+     * @param cacheDir in which the entries are stored.
+     */
+    public IrCache(final File cacheDir)
+    {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Load the {@link Ir} for a schema from the cache, or parse and generate it and store it in the cache on a miss.
+     *
+     * @param schemaFileName  of the XML schema.
+     * @param options         to be applied during parsing.
+     * @param targetNamespace for the generated code, or null for the package of the schema.
+     * @return the {@link Ir} for the schema.
+     * @throws Exception on parsing error or if the cache cannot be read or written.
+     */
+    public Ir load(final String schemaFileName, final ParserOptions options, final String targetNamespace)
+        throws Exception
+    {
+        final Path cachePath = cacheFile(schemaFileName, options, targetNamespace).toPath();
+        if (Files.exists(cachePath))
+        {
+            try (IrDecoder irDecoder = new IrDecoder(cachePath.toString()))
+            {
+                return irDecoder.decode();
+            }
+            catch (final RuntimeException ignore)
+            {
+                // entry is truncated or corrupt so regenerate it
+            }
+        }
+
+        final Ir ir = new IrGenerator().generate(parse(schemaFileName, options), targetNamespace);
+
+        Files.createDirectories(cacheDir.toPath());
+        final Path tmpPath = Files.createTempFile(cacheDir.toPath(), cachePath.getFileName().toString(), ".tmp");
+        try
+        {
+            try (IrEncoder irEncoder = new IrEncoder(tmpPath.toString(), ir))
+            {
+                irEncoder.encode();
+            }
+
+            Files.move(tmpPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmpPath);
+        }
+
+        return ir;
+    }
+
+    /**
+     * The file in which the {@link Ir} for a schema is, or would be, cached given its current contents.
+     *
+     * @param schemaFileName  of the XML schema.
+     * @param options         to be applied during parsing.
+     * @param targetNamespace for the generated code, or null for the package of the schema.
+     * @return the file in which the {@link Ir} for the schema is cached.
+     * @throws Exception if the schema, the documents it includes, or the XSD cannot be read.
+     */
+    public File cacheFile(final String schemaFileName, final ParserOptions options, final String targetNamespace)
+        throws Exception
+    {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        update(digest, "format:" + CACHE_FORMAT_VERSION + ':' + FrameCodecEncoder.SCHEMA_VERSION);
+        update(digest, "tool:" + TOOL_VERSION);
+        update(digest, "options:" + options.stopOnError() + ':' + options.warningsFatal() + ':' +
+            options.suppressOutput() + ':' + options.xIncludeAware());
+        update(digest, "namespace:" + targetNamespace);
+
+        if (null != options.xsdFilename())
+        {
+            update(digest, "xsd:" + options.xsdFilename());
+            digest.update(Files.readAllBytes(Paths.get(options.xsdFilename())));
+        }
+
+        final Path schemaPath = Paths.get(schemaFileName);
+        updateWithDocument(
+            digest, schemaPath.getFileName().toString(), schemaPath.toUri(), options.xIncludeAware(), new HashSet<>());
+
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest())
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return new File(cacheDir, sb.append(CACHE_FILE_SUFFIX).toString());
+    }
+
+    private static MessageSchema parse(final String schemaFileName, final ParserOptions options) throws Exception
+    {
+        if (null != options.xsdFilename())
+        {
+            SbeTool.validateAgainstSchema(schemaFileName, options.xsdFilename(), options);
+        }
+
+        return SbeTool.parseSchema(schemaFileName, options);
+    }
+
+    private static void updateWithDocument(
+        final MessageDigest digest,
+        final String name,
+        final URI uri,
+        final boolean xIncludeAware,
+        final Set<URI> visitedUris) throws Exception
+    {
+        if (!visitedUris.add(uri.normalize()))
+        {
+            update(digest, "visited:" + name);
+            return;
+        }
+
+        final byte[] bytes = Files.readAllBytes(Paths.get(uri));
+        update(digest, "document:" + name + ':' + bytes.length);
+        digest.update(bytes);
+
+        if (!xIncludeAware)
+        {
+            return;
+        }
+
+        final XMLStreamReader reader = XMLInputFactory.newInstance()
+            .createXMLStreamReader(uri.toString(), new ByteArrayInputStream(bytes));
+        try
+        {
+            while (reader.hasNext())
+            {
+                if (XMLStreamConstants.START_ELEMENT == reader.next() &&
+                    StreamingXmlSchemaParser.XINCLUDE_NAMESPACE.equals(reader.getNamespaceURI()) &&
+                    "include".equals(reader.getLocalName()))
+                {
+                    final String href = reader.getAttributeValue(null, "href");
+                    if (null != href && !href.isEmpty())
+                    {
+                        updateWithDocument(digest, href, uri.resolve(href), true, visitedUris);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+}
@@ -23,6 +23,7 @@ import uk.co.real_logic.sbe.ir.Token;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -55,7 +56,10 @@ public class IrGenerator
             schema.byteOrder(),
             headerTokens);
 
-        for (final Message message : schema.messages())
+        // Add in id order, the order of Ir.messages(), so types are captured as when the Ir is encoded and decoded.
+        final List<Message> messages = new ArrayList<>(schema.messages());
+        messages.sort(Comparator.comparingLong(Message::id));
+        for (final Message message : messages)
         {
             final long msgId = message.id();
             ir.addMessage(msgId, generateForMessage(schema, msgId));
@@ -22,14 +22,11 @@ import uk.co.real_logic.sbe.ir.Token;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import static javax.xml.xpath.XPathConstants.NODESET;
 import static uk.co.real_logic.sbe.xml.XmlSchemaParser.*;
 
 /**
@@ -165,8 +162,7 @@ public class Message
 
     private List<Field> parseMembers(final Node node) throws XPathExpressionException
     {
-        final XPath xPath = XPathFactory.newInstance().newXPath();
-        final NodeList list = (NodeList)xPath.compile(FIELD_OR_GROUP_OR_DATA_EXPR).evaluate(node, NODESET);
+        final NodeList list = findChildNodes(node, FIELD_OR_GROUP_OR_DATA_EXPR);
         boolean groupEncountered = false, dataEncountered = false;
 
         final ObjectHashSet<String> distinctNames = new ObjectHashSet<>();
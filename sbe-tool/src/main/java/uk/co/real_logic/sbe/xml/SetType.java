@@ -20,10 +20,7 @@ import org.w3c.dom.NodeList;
 import uk.co.real_logic.sbe.PrimitiveType;
 import uk.co.real_logic.sbe.PrimitiveValue;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -64,7 +61,6 @@ public class SetType extends Type
     {
         super(node, givenName, referencedName);
 
-        final XPath xPath = XPathFactory.newInstance().newXPath();
         final String encodingTypeStr = getAttributeValue(node, "encodingType");
 
         switch (encodingTypeStr)
@@ -78,9 +74,8 @@ public class SetType extends Type
 
             default:
                 // might not have ran into this type yet, so look for it
-                final Node encodingTypeNode = (Node)xPath.compile(
-                    String.format("%s[@name=\'%s\']", XmlSchemaParser.TYPE_XPATH_EXPR, encodingTypeStr))
-                    .evaluate(node.getOwnerDocument(), XPathConstants.NODE);
+                final Node encodingTypeNode = XmlSchemaParser.findTypeNode(
+                    node, EncodedDataType.ENCODED_DATA_TYPE, encodingTypeStr);
 
                 if (encodingTypeNode == null)
                 {
@@ -102,7 +97,7 @@ public class SetType extends Type
             throw new IllegalArgumentException("Illegal encodingType " + encodingTypeStr);
         }
 
-        final NodeList list = (NodeList)xPath.compile("choice").evaluate(node, XPathConstants.NODESET);
+        final NodeList list = XmlSchemaParser.findChildNodes(node, "choice");
 
         for (int i = 0, size = list.getLength(); i < size; i++)
         {
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.xml;
+
+import org.agrona.collections.ObjectHashSet;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.co.real_logic.sbe.xml.XmlSchemaParser.*;
+
+/**
+ * Parse an XML schema for SBE with a StAX reader, in a single forward pass over the XML, as an alternative to
+ * {@link XmlSchemaParser#parse(InputSource, ParserOptions)} which avoids evaluating XPath over the schema.
+ * <p>
+ * This is an XPath free DOM build rather than a DOM free parse. The pass builds a DOM {@link Document} holding an
+ * element node for every element of the schema, with its attributes and significant text but no whitespace or comment
+ * nodes, with XIncludes resolved in place. It collects the type and message nodes as it goes and indexes the type
+ * nodes by name under {@link XmlSchemaParser#TYPE_NODE_BY_NAME_KEY}. With the index present, types, messages,
+ * references between types, and the members of each type and message are found without XPath. The
+ * {@link MessageSchema} is then built from the collected nodes by the same DOM based constructors, and so with the
+ * same validation and the same {@link uk.co.real_logic.sbe.ir.Ir}, as the DOM based parser. Parsing time is saved
+ * but the document is still held in memory while the schema is built.
+ * <p>
+ * Only XIncludes of whole XML documents are supported, i.e. without an xpointer and with a parse of "xml". A document
+ * which XIncludes itself, directly or through other documents, is rejected as a cycle.
+ *
+ * @see uk.co.real_logic.sbe.SbeTool#XML_STREAMING_PARSER
+ */
+public final class StreamingXmlSchemaParser
+{
+    /**
+     * Namespace of XInclude elements.
+     */
+    public static final String XINCLUDE_NAMESPACE = "http://www.w3.org/2001/XInclude";
+
+    private static final String ANY_TYPE = "*";
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    private final ParserOptions options;
+    private final Document document;
+    private final StringBuilder text = new StringBuilder();
+    private final Map<String, Node> typeNodeByNameMap = new HashMap<>();
+    private final List<Node> encodedDataTypeNodes = new ArrayList<>();
+    private final List<Node> compositeTypeNodes = new ArrayList<>();
+    private final List<Node> enumTypeNodes = new ArrayList<>();
+    private final List<Node> setTypeNodes = new ArrayList<>();
+    private final List<Node> messageNodes = new ArrayList<>();
+    private final List<URI> includeUris = new ArrayList<>();
+    private Node parent;
+    private Node schemaNode;
+
+    private StreamingXmlSchemaParser(final ParserOptions options) throws Exception
+    {
+        this.options = options;
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        parent = document;
+    }
+
+    /**
+     * Take an {@link InputSource} and parse it generating map of template ID to Message objects, types, and schema.
+     *
+     * @param is      source from which schema is read. Ideally it will have the systemId property set to resolve
+     *                relative references.
+     * @param options to be applied during parsing.
+     * @return {@link MessageSchema} encoding for the schema.
+     * @throws Exception on parsing error.
+     */
+    public static MessageSchema parse(final InputSource is, final ParserOptions options) throws Exception
+    {
+        final StreamingXmlSchemaParser parser = new StreamingXmlSchemaParser(options);
+        parser.read(is);
+
+        return parser.messageSchema();
+    }
+
+    /**
+     * Wraps the {@link InputStream} into an {@link InputSource} and delegates to
+     * {@link #parse(InputSource, ParserOptions)}.
+     * <p>
+     * <b>Note:</b> this method does not set the {@link InputSource#setSystemId(java.lang.String)} property.
+     * However, it is recommended to use the {@link #parse(InputSource, ParserOptions)} method directly.
+     *
+     * @param in      stream from which schema is read.
+     * @param options to be applied during parsing.
+     * @return {@link MessageSchema} encoding for the schema.
+     * @throws Exception on parsing error.
+     */
+    public static MessageSchema parse(final InputStream in, final ParserOptions options) throws Exception
+    {
+        return parse(new InputSource(in), options);
+    }
+
+    private MessageSchema messageSchema() throws Exception
+    {
+        if (null == schemaNode)
+        {
+            throw new IllegalStateException("Document element is not a messageSchema");
+        }
+
+        final ErrorHandler errorHandler = new ErrorHandler(options);
+        document.setUserData(ERROR_HANDLER_KEY, errorHandler, null);
+        document.setUserData(TYPE_NODE_BY_NAME_KEY, typeNodeByNameMap, null);
+
+        final Map<String, Type> typeByNameMap = primitiveTypeByNameMap();
+        for (final Node node : encodedDataTypeNodes)
+        {
+            addTypeWithNameCheck(typeByNameMap, new EncodedDataType(node), node);
+        }
+
+        for (final Node node : compositeTypeNodes)
+        {
+            addTypeWithNameCheck(typeByNameMap, new CompositeType(node), node);
+        }
+
+        for (final Node node : enumTypeNodes)
+        {
+            addTypeWithNameCheck(typeByNameMap, new EnumType(node), node);
+        }
+
+        for (final Node node : setTypeNodes)
+        {
+            addTypeWithNameCheck(typeByNameMap, new SetType(node), node);
+        }
+        errorHandler.checkIfShouldExit();
+
+        final Map<Long, Message> messageByIdMap = new HashMap<>();
+        final ObjectHashSet<String> distinctNames = new ObjectHashSet<>();
+        for (final Node node : messageNodes)
+        {
+            addMessageWithIdCheck(distinctNames, messageByIdMap, new Message(node, typeByNameMap), node);
+        }
+        errorHandler.checkIfShouldExit();
+
+        final MessageSchema messageSchema = new MessageSchema(schemaNode, typeByNameMap, messageByIdMap);
+        errorHandler.checkIfShouldExit();
+
+        return messageSchema;
+    }
+
+    private void read(final InputSource is) throws Exception
+    {
+        final String systemId = is.getSystemId();
+        final URI baseUri = null == systemId ? null : new URI(systemId);
+        final XMLStreamReader reader;
+
+        if (null != is.getCharacterStream())
+        {
+            reader = inputFactory.createXMLStreamReader(systemId, is.getCharacterStream());
+        }
+        else if (null != is.getByteStream())
+        {
+            reader = null == is.getEncoding() ?
+                inputFactory.createXMLStreamReader(systemId, is.getByteStream()) :
+                inputFactory.createXMLStreamReader(is.getByteStream(), is.getEncoding());
+        }
+        else if (null != baseUri)
+        {
+            try (InputStream in = baseUri.toURL().openStream())
+            {
+                read(inputFactory.createXMLStreamReader(systemId, in), baseUri);
+            }
+
+            return;
+        }
+        else
+        {
+            throw new IllegalArgumentException("InputSource has no stream or system id to read from");
+        }
+
+        read(reader, baseUri);
+    }
+
+    private void read(final XMLStreamReader reader, final URI baseUri) throws Exception
+    {
+        try
+        {
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        appendText(true);
+                        if (options.xIncludeAware() && isXInclude(reader))
+                        {
+                            include(reader, baseUri);
+                        }
+                        else
+                        {
+                            startElement(reader);
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        appendText(false);
+                        parent = parent.getParentNode();
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (parent != document)
+                        {
+                            text.append(reader.getText());
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private void startElement(final XMLStreamReader reader)
+    {
+        final Element element = document.createElementNS(
+            emptyToNull(reader.getNamespaceURI()), qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+        for (int i = 0, size = reader.getAttributeCount(); i < size; i++)
+        {
+            element.setAttributeNS(
+                emptyToNull(reader.getAttributeNamespace(i)),
+                qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                reader.getAttributeValue(i));
+        }
+
+        if (parent == document)
+        {
+            if ("messageSchema".equals(element.getLocalName()))
+            {
+                schemaNode = element;
+            }
+        }
+        else if (null != schemaNode && parent.getParentNode() == schemaNode && "types".equals(parent.getNodeName()))
+        {
+            addTypeNode(element);
+        }
+
+        if ("message".equals(element.getLocalName()))
+        {
+            messageNodes.add(element);
+        }
+
+        parent.appendChild(element);
+        parent = element;
+    }
+
+    private void addTypeNode(final Element element)
+    {
+        final String nodeName = element.getNodeName();
+        switch (nodeName)
+        {
+            case EncodedDataType.ENCODED_DATA_TYPE:
+                encodedDataTypeNodes.add(element);
+                break;
+
+            case CompositeType.COMPOSITE_TYPE:
+                compositeTypeNodes.add(element);
+                break;
+
+            case EnumType.ENUM_TYPE:
+                enumTypeNodes.add(element);
+                break;
+
+            case SetType.SET_TYPE:
+                setTypeNodes.add(element);
+                break;
+        }
+
+        if (element.hasAttribute("name"))
+        {
+            final String name = element.getAttribute("name");
+            typeNodeByNameMap.putIfAbsent(typeNodeKey(nodeName, name), element);
+            typeNodeByNameMap.putIfAbsent(typeNodeKey(ANY_TYPE, name), element);
+        }
+    }
+
+    private void include(final XMLStreamReader reader, final URI baseUri) throws Exception
+    {
+        final String href = reader.getAttributeValue(null, "href");
+        final String parse = reader.getAttributeValue(null, "parse");
+        if (null == href || href.isEmpty() || null != reader.getAttributeValue(null, "xpointer"))
+        {
+            throw new IllegalStateException("XInclude must have an href and no xpointer");
+        }
+
+        if (null != parse && !"xml".equals(parse))
+        {
+            throw new IllegalStateException("XInclude parse not supported: " + parse);
+        }
+
+        skipElement(reader);
+
+        final URI uri = (null == baseUri ? new File(href).toURI() : baseUri.resolve(href)).normalize();
+        final int cycleIndex = includeUris.indexOf(uri);
+        if (-1 != cycleIndex)
+        {
+            final StringBuilder sb = new StringBuilder("XInclude cycle: ");
+            for (int i = cycleIndex, size = includeUris.size(); i < size; i++)
+            {
+                sb.append(includeUris.get(i)).append(" -> ");
+            }
+
+            throw new IllegalStateException(sb.append(uri).toString());
+        }
+
+        includeUris.add(uri);
+        try (InputStream in = uri.toURL().openStream())
+        {
+            read(inputFactory.createXMLStreamReader(uri.toString(), in), uri);
+        }
+        finally
+        {
+            includeUris.remove(includeUris.size() - 1);
+        }
+    }
+
+    private void appendText(final boolean isBeforeElement)
+    {
+        if (text.length() > 0)
+        {
+            if (!isWhitespace(text) || !(isBeforeElement || parent.getLastChild() instanceof Element))
+            {
+                parent.appendChild(document.createTextNode(text.toString()));
+            }
+
+            text.setLength(0);
+        }
+    }
+
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            final int event = reader.next();
+            if (XMLStreamConstants.START_ELEMENT == event)
+            {
+                depth++;
+            }
+            else if (XMLStreamConstants.END_ELEMENT == event)
+            {
+                depth--;
+            }
+        }
+    }
+
+    private static boolean isXInclude(final XMLStreamReader reader)
+    {
+        return XINCLUDE_NAMESPACE.equals(reader.getNamespaceURI()) && "include".equals(reader.getLocalName());
+    }
+
+    private static boolean isWhitespace(final CharSequence text)
+    {
+        for (int i = 0, length = text.length(); i < length; i++)
+        {
+            if (!Character.isWhitespace(text.charAt(i)))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String qualifiedName(final String prefix, final String localName)
+    {
+        return null == prefix || prefix.isEmpty() ? localName : prefix + ':' + localName;
+    }
+
+    private static String emptyToNull(final String value)
+    {
+        return null == value || value.isEmpty() ? null : value;
+    }
+}
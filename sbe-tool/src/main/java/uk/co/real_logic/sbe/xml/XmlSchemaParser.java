@@ -32,6 +32,7 @@ import javax.xml.xpath.XPathFactory;
 import java.io.File;
 import java.io.InputStream;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import org.xml.sax.InputSource;
@@ -50,6 +51,14 @@ public class XmlSchemaParser
      */
     public static final String ERROR_HANDLER_KEY = "SbeErrorHandler";
 
+    /**
+     * Key for storing an index of type nodes by name as user data in XML document, when built while parsing, so
+     * references between types can be resolved without searching the document.
+     *
+     * @see #findTypeNode(Node, String, String)
+     */
+    public static final String TYPE_NODE_BY_NAME_KEY = "SbeTypeNodeByName";
+
     public static final String TYPE_XPATH_EXPR =
         "/*[local-name() = 'messageSchema']/types/" + EncodedDataType.ENCODED_DATA_TYPE;
 
@@ -178,6 +187,98 @@ public class XmlSchemaParser
      * @throws Exception on parsing error.
      */
     public static Map<String, Type> findTypes(final Document document, final XPath xPath) throws Exception
+    {
+        final Map<String, Type> typeByNameMap = primitiveTypeByNameMap();
+
+        forEach((NodeList)xPath.compile(TYPE_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
+            (node) -> addTypeWithNameCheck(typeByNameMap, new EncodedDataType(node), node));
+
+        forEach((NodeList)xPath.compile(COMPOSITE_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
+            (node) -> addTypeWithNameCheck(typeByNameMap, new CompositeType(node), node));
+
+        forEach((NodeList)xPath.compile(ENUM_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
+            (node) -> addTypeWithNameCheck(typeByNameMap, new EnumType(node), node));
+
+        forEach((NodeList)xPath.compile(SET_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
+            (node) -> addTypeWithNameCheck(typeByNameMap, new SetType(node), node));
+
+        return typeByNameMap;
+    }
+
+    /**
+     * Find the node defining a type in the types of the schema, using the index of type nodes by name when one
+     * has been stored in the document under {@link #TYPE_NODE_BY_NAME_KEY}.
+     *
+     * @param node     in the document of the schema.
+     * @param nodeName of the type node, e.g. {@link EnumType#ENUM_TYPE}, or "*" for a type node of any kind.
+     * @param typeName of the type.
+     * @return the first node defining the type or null if not found.
+     * @throws XPathExpressionException if the XPath is invalid.
+     */
+    public static Node findTypeNode(final Node node, final String nodeName, final String typeName)
+        throws XPathExpressionException
+    {
+        final Document document = node.getOwnerDocument();
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Node> typeNodeByNameMap = (Map<String, Node>)document.getUserData(TYPE_NODE_BY_NAME_KEY);
+        if (null != typeNodeByNameMap)
+        {
+            return typeNodeByNameMap.get(typeNodeKey(nodeName, typeName));
+        }
+
+        final XPath xPath = XPathFactory.newInstance().newXPath();
+
+        return (Node)xPath.compile(
+            "/*[local-name() = 'messageSchema']/types/" + nodeName + "[@name='" + typeName + "']")
+            .evaluate(document, XPathConstants.NODE);
+    }
+
+    /**
+     * Find the child element nodes of a node which match an XPath of element names separated by '|', walking the
+     * children directly rather than evaluating the XPath when an index of type nodes has been stored in the document
+     * under {@link #TYPE_NODE_BY_NAME_KEY} by a streaming parse.
+     *
+     * @param node       whose children are to be found.
+     * @param namesXPath of the child elements, e.g. "field|group|data".
+     * @return the child element nodes in document order.
+     * @throws XPathExpressionException if the XPath is invalid.
+     */
+    public static NodeList findChildNodes(final Node node, final String namesXPath) throws XPathExpressionException
+    {
+        if (null == node.getOwnerDocument().getUserData(TYPE_NODE_BY_NAME_KEY))
+        {
+            final XPath xPath = XPathFactory.newInstance().newXPath();
+
+            return (NodeList)xPath.compile(namesXPath).evaluate(node, XPathConstants.NODESET);
+        }
+
+        final String[] names = namesXPath.split("\\|");
+        final ChildNodeList childNodes = new ChildNodeList();
+        for (Node child = node.getFirstChild(); null != child; child = child.getNextSibling())
+        {
+            if (Node.ELEMENT_NODE == child.getNodeType() && null == child.getNamespaceURI())
+            {
+                for (final String name : names)
+                {
+                    if (name.equals(child.getLocalName()))
+                    {
+                        childNodes.add(child);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return childNodes;
+    }
+
+    static String typeNodeKey(final String nodeName, final String typeName)
+    {
+        return nodeName + '/' + typeName;
+    }
+
+    static Map<String, Type> primitiveTypeByNameMap()
     {
         final Map<String, Type> typeByNameMap = new HashMap<>();
 
@@ -193,18 +294,6 @@ public class XmlSchemaParser
         typeByNameMap.put("float", new EncodedDataType("float", REQUIRED, null, null, FLOAT, 1, false));
         typeByNameMap.put("double", new EncodedDataType("double", REQUIRED, null, null, DOUBLE, 1, false));
 
-        forEach((NodeList)xPath.compile(TYPE_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
-            (node) -> addTypeWithNameCheck(typeByNameMap, new EncodedDataType(node), node));
-
-        forEach((NodeList)xPath.compile(COMPOSITE_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
-            (node) -> addTypeWithNameCheck(typeByNameMap, new CompositeType(node), node));
-
-        forEach((NodeList)xPath.compile(ENUM_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
-            (node) -> addTypeWithNameCheck(typeByNameMap, new EnumType(node), node));
-
-        forEach((NodeList)xPath.compile(SET_XPATH_EXPR).evaluate(document, XPathConstants.NODESET),
-            (node) -> addTypeWithNameCheck(typeByNameMap, new SetType(node), node));
-
         return typeByNameMap;
     }
 
@@ -383,7 +472,7 @@ public class XmlSchemaParser
         }
     }
 
-    private static void addTypeWithNameCheck(final Map<String, Type> typeByNameMap, final Type type, final Node node)
+    static void addTypeWithNameCheck(final Map<String, Type> typeByNameMap, final Type type, final Node node)
     {
         if (typeByNameMap.get(type.name()) != null)
         {
@@ -395,7 +484,7 @@ public class XmlSchemaParser
         typeByNameMap.put(type.name(), type);
     }
 
-    private static void addMessageWithIdCheck(
+    static void addMessageWithIdCheck(
         final ObjectHashSet<String> distinctNames,
         final Map<Long, Message> messageByIdMap,
         final Message message,
@@ -429,6 +518,21 @@ public class XmlSchemaParser
                 ">" : (" name=\"" + getAttributeValueOrNull(node, "name") + "\"> "));
     }
 
+    static final class ChildNodeList extends ArrayList<Node> implements NodeList
+    {
+        private static final long serialVersionUID = 1L;
+
+        public Node item(final int index)
+        {
+            return index < size() ? get(index) : null;
+        }
+
+        public int getLength()
+        {
+            return size();
+        }
+    }
+
     @FunctionalInterface
     interface NodeFunction
     {
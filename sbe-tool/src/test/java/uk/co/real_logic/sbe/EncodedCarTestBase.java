@@ -18,14 +18,26 @@ package uk.co.real_logic.sbe;
 import baseline.*;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.junit.BeforeClass;
-
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+import uk.co.real_logic.sbe.xml.XmlSchemaParser;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class EncodedCarTestBase
 {
     protected static final MessageHeaderEncoder MESSAGE_HEADER = new MessageHeaderEncoder();
     protected static final CarEncoder CAR = new CarEncoder();
+    protected static final String TEST_SCHEMA_PATH = "src/test/resources/json-printer-test-schema.xml";
+
+    private static final int TEST_MESSAGE_CAPACITY = 4 * 1024;
 
     private static byte[] vehicleCode;
     private static byte[] manufacturerCode;
@@ -48,6 +60,46 @@ public class EncodedCarTestBase
         }
     }
 
+    /**
+     * Parse the schema the test message is encoded with and generate its IR.
+     *
+     * @return the IR for the test message schema.
+     * @throws Exception if the schema can not be read or parsed.
+     */
+    protected static Ir parseTestIr() throws Exception
+    {
+        return parseIr(TEST_SCHEMA_PATH);
+    }
+
+    /**
+     * Parse the schema at a path and generate its IR.
+     *
+     * @param schemaPath of the schema file.
+     * @return the IR for the schema.
+     * @throws Exception if the schema can not be read or parsed.
+     */
+    protected static Ir parseIr(final String schemaPath) throws Exception
+    {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(schemaPath))))
+        {
+            final MessageSchema schema = XmlSchemaParser.parse(in, ParserOptions.DEFAULT);
+            return new IrGenerator().generate(schema);
+        }
+    }
+
+    /**
+     * Encode the test message with its header into a new buffer.
+     *
+     * @return the buffer with its position set to the end of the message.
+     */
+    protected static ByteBuffer encodeTestMessage()
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(TEST_MESSAGE_CAPACITY);
+        encodeTestMessage(buffer);
+
+        return buffer;
+    }
+
     protected static void encodeTestMessage(final ByteBuffer buffer)
     {
         final UnsafeBuffer directBuffer = new UnsafeBuffer(buffer);
@@ -17,6 +17,7 @@ package uk.co.real_logic.sbe.generation.java;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.agrona.AsciiSequenceView;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
@@ -29,8 +30,13 @@ import uk.co.real_logic.sbe.xml.MessageSchema;
 import uk.co.real_logic.sbe.xml.ParserOptions;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
@@ -424,6 +430,142 @@ public class JavaGeneratorTest
         assertThat(result.toString(), is("Red and Blue"));
     }
 
+    @Test
+    public void shouldGenerateVariableUtf8StringSequenceView() throws Exception
+    {
+        final String expectedManufacturer = "Citro\u00EBn \u2615 \uD834\uDD1E";
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[4096]);
+        generator().generate();
+
+        final Object encoder = wrap(buffer, compileCarEncoder().getConstructor().newInstance());
+        final Object decoder = getCarDecoder(buffer, encoder);
+        final Class<?> viewClass = decoder.getClass().getClassLoader()
+            .loadClass(ir.applicableNamespace() + ".Utf8SequenceView");
+        final Object view = viewClass.getConstructor().newInstance();
+
+        setManufacturer(encoder, expectedManufacturer);
+        final CharSequence manufacturer = (CharSequence)decoder.getClass()
+            .getMethod("wrapManufacturer", viewClass)
+            .invoke(decoder, view);
+
+        assertSame(view, manufacturer);
+        assertThat(manufacturer.length(), is(expectedManufacturer.length()));
+        assertThat(manufacturer.charAt(5), is('\u00EB'));
+        assertThat(manufacturer.toString(), is(expectedManufacturer));
+        assertThat(getLimit(decoder), is(getLimit(encoder)));
+    }
+
+    @Test
+    public void shouldGenerateAsciiStringSequenceViews() throws Exception
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[4096]);
+        final AsciiSequenceView view = new AsciiSequenceView();
+        generator().generate();
+
+        final Object encoder = wrap(buffer, compileCarEncoder().getConstructor().newInstance());
+        final Object decoder = getCarDecoder(buffer, encoder);
+
+        set(encoder, "vehicleCode", String.class, "R11");
+        decoder.getClass().getMethod("wrapVehicleCode", AsciiSequenceView.class).invoke(decoder, view);
+        assertThat(view.toString(), is("R11"));
+
+        set(encoder, "vehicleCode", String.class, "R11R12");
+        decoder.getClass().getMethod("wrapVehicleCode", AsciiSequenceView.class).invoke(decoder, view);
+        assertThat(view.toString(), is("R11R12"));
+
+        set(encoder, "color", String.class, "Red and Blue");
+        decoder.getClass().getMethod("wrapColor", AsciiSequenceView.class).invoke(decoder, view);
+        assertThat(view.toString(), is("Red and Blue"));
+        assertThat(getLimit(decoder), is(getLimit(encoder)));
+    }
+
+    @Test
+    public void shouldGenerateBulkGroupEncoders() throws Exception
+    {
+        final int[] mph = { 30, 60, 100, 120 };
+        final float[] seconds = { 3.8f, 7.1f, 11.8f, 16.2f };
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[4096]);
+        new JavaGenerator(ir, BUFFER_NAME, READ_ONLY_BUFFER_NAME, false, false, false, true, false, outputManager)
+            .generate();
+
+        final Object encoder = wrap(buffer, compileCarEncoder().getConstructor().newInstance());
+        final Object decoder = getCarDecoder(buffer, encoder);
+
+        encoder.getClass().getMethod("fuelFiguresCount", int.class).invoke(encoder, 0);
+        final Object performanceFigures = encoder.getClass()
+            .getMethod("performanceFiguresCount", int.class).invoke(encoder, 1);
+        get(performanceFigures, "next");
+        final Object acceleration = performanceFigures.getClass()
+            .getMethod("accelerationCount", int.class).invoke(performanceFigures, 3);
+        acceleration.getClass()
+            .getMethod("encodeFrom", int.class, int[].class, float[].class)
+            .invoke(acceleration, 1, mph, seconds);
+
+        get(decoder, "fuelFigures");
+        final Object accelerationDecoder = get(get(get(decoder, "performanceFigures"), "next"), "acceleration");
+        assertThat(get(accelerationDecoder, "count"), is(3));
+        for (int i = 1; i <= 3; i++)
+        {
+            get(accelerationDecoder, "next");
+            assertThat(get(accelerationDecoder, "mph"), is(mph[i]));
+            assertThat(get(accelerationDecoder, "seconds"), is(seconds[i]));
+        }
+
+        assertThat(getLimit(decoder), is(getLimit(encoder)));
+    }
+
+    @Test
+    public void shouldGenerateBulkGroupEncoderCopyingPreEncodedBlocks() throws Exception
+    {
+        final int[] mph = { 30, 60, 100 };
+        final float[] seconds = { 3.8f, 7.1f, 11.8f };
+        final int blockLength = 6;
+        final UnsafeBuffer blocks = new UnsafeBuffer(new byte[2 * blockLength]);
+        for (int i = 1; i <= 2; i++)
+        {
+            blocks.putShort((i - 1) * blockLength, (short)mph[i], ByteOrder.LITTLE_ENDIAN);
+            blocks.putFloat(((i - 1) * blockLength) + 2, seconds[i], ByteOrder.LITTLE_ENDIAN);
+        }
+
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[4096]);
+        new JavaGenerator(ir, BUFFER_NAME, READ_ONLY_BUFFER_NAME, false, false, false, true, false, outputManager)
+            .generate();
+
+        final Object encoder = wrap(buffer, compileCarEncoder().getConstructor().newInstance());
+        final Object decoder = getCarDecoder(buffer, encoder);
+
+        encoder.getClass().getMethod("fuelFiguresCount", int.class).invoke(encoder, 0);
+        final Object performanceFigures = encoder.getClass()
+            .getMethod("performanceFiguresCount", int.class).invoke(encoder, 1);
+        get(performanceFigures, "next");
+        final Object acceleration = performanceFigures.getClass()
+            .getMethod("accelerationCount", int.class).invoke(performanceFigures, 3);
+        get(acceleration, "next");
+        acceleration.getClass().getMethod("mph", int.class).invoke(acceleration, mph[0]);
+        acceleration.getClass().getMethod("seconds", float.class).invoke(acceleration, seconds[0]);
+
+        final int limit = getLimit(encoder);
+        acceleration.getClass()
+            .getMethod("encodeBlocksFrom", DirectBuffer.class, int.class)
+            .invoke(acceleration, blocks, 0);
+
+        assertThat(getLimit(encoder), is(limit + (2 * blockLength)));
+        assertThat(getPrivateInt(acceleration, "index"), is(2));
+        assertThat(getPrivateInt(acceleration, "offset"), is(limit + blockLength));
+
+        get(decoder, "fuelFigures");
+        final Object accelerationDecoder = get(get(get(decoder, "performanceFigures"), "next"), "acceleration");
+        assertThat(get(accelerationDecoder, "count"), is(3));
+        for (int i = 0; i < 3; i++)
+        {
+            get(accelerationDecoder, "next");
+            assertThat(get(accelerationDecoder, "mph"), is(mph[i]));
+            assertThat(get(accelerationDecoder, "seconds"), is(seconds[i]));
+        }
+
+        assertThat(getLimit(decoder), is(getLimit(encoder)));
+    }
+
     @Test
     public void shouldGeneratePutCharSequence() throws Exception
     {
@@ -443,6 +585,120 @@ public class JavaGeneratorTest
         assertThat(get(decoder, "vehicleCode"), is("R11R12"));
     }
 
+    @Test
+    public void shouldNotGenerateMessageDispatcherByDefault() throws Exception
+    {
+        generator().generate();
+
+        assertFalse(outputManager.getSources().containsKey(ir.applicableNamespace() + ".MessageDispatcher"));
+    }
+
+    @Test
+    public void shouldDispatchMessagesByTemplateIdToHandler() throws Exception
+    {
+        dispatcherGenerator().generate();
+
+        final String packageName = ir.applicableNamespace();
+        final Class<?> dispatcherClass = compile(packageName + ".MessageDispatcher");
+        final Class<?> handlerClass = dispatcherClass.getClassLoader().loadClass(packageName + ".MessageHandler");
+        final List<String> calls = new ArrayList<>();
+        final Object handler = recordingHandler(handlerClass, calls);
+
+        final Object dispatcher = dispatcherClass.getConstructor(handlerClass).newInstance(handler);
+        final Method dispatch = dispatcherClass.getMethod("dispatch", READ_ONLY_BUFFER_CLASS, int.class);
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[64]);
+        final int offset = 8;
+
+        putHeader(buffer, offset, 1, 6, 0);
+        assertThat(dispatch.invoke(dispatcher, buffer, offset), is(true));
+
+        putHeader(buffer, offset, 99, 6, 0);
+        assertThat(dispatch.invoke(dispatcher, buffer, offset), is(false));
+
+        putHeader(buffer, offset, 1, 7, 0);
+        assertThat(dispatch.invoke(dispatcher, buffer, offset), is(false));
+
+        putHeader(buffer, offset, 1, 6, 1);
+        assertThat(dispatch.invoke(dispatcher, buffer, offset), is(false));
+
+        final Object laterVersionDispatcher = dispatcherClass
+            .getConstructor(handlerClass, int.class)
+            .newInstance(handler, 1);
+        assertThat(dispatch.invoke(laterVersionDispatcher, buffer, offset), is(true));
+
+        assertThat(calls, is(Arrays.asList(
+            "onCar:CarDecoder",
+            "onUnknownMessage:MessageHeaderDecoder",
+            "onUnknownMessage:MessageHeaderDecoder",
+            "onUnknownMessage:MessageHeaderDecoder",
+            "onCar:CarDecoder")));
+    }
+
+    @Test
+    public void shouldDispatchMessageNamedLikeTheHeaderWithWideHeaderFields() throws Exception
+    {
+        final ParserOptions options = ParserOptions.builder().stopOnError(true).build();
+        ir = new IrGenerator().generate(parse(TestUtil.getLocalResource("message-dispatcher-schema.xml"), options));
+        outputManager.clear();
+        outputManager.setPackageName(ir.applicableNamespace());
+
+        dispatcherGenerator().generate();
+
+        final String packageName = ir.applicableNamespace();
+        final Class<?> dispatcherClass = compile(packageName + ".MessageDispatcher");
+        assertNotNull(dispatcherClass);
+
+        final Class<?> handlerClass = dispatcherClass.getClassLoader().loadClass(packageName + ".MessageHandler");
+        final List<String> calls = new ArrayList<>();
+        final Object handler = recordingHandler(handlerClass, calls);
+
+        final Object dispatcher = dispatcherClass.getConstructor(handlerClass).newInstance(handler);
+        final Method dispatch = dispatcherClass.getMethod("dispatch", READ_ONLY_BUFFER_CLASS, int.class);
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[64]);
+        buffer.putShort(0, (short)4, ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(2, 1, ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(6, 7, ByteOrder.LITTLE_ENDIAN);
+        buffer.putByte(10, (byte)0);
+
+        assertThat(dispatch.invoke(dispatcher, buffer, 0), is(true));
+        assertThat(calls, is(Arrays.asList("onHeader:HeaderDecoder")));
+    }
+
+    @Test
+    public void shouldGenerateDecodedLengthForNestedGroupNamedLikeAnOuterGroup() throws Exception
+    {
+        final ParserOptions options = ParserOptions.builder().stopOnError(true).build();
+        ir = new IrGenerator().generate(
+            parse(TestUtil.getLocalResource("nested-group-name-clash-schema.xml"), options));
+        outputManager.clear();
+        outputManager.setPackageName(ir.applicableNamespace());
+
+        generator().generate();
+
+        final Class<?> decoderClass = compile(ir.applicableNamespace() + ".TreeDecoder");
+        assertNotNull(decoderClass);
+
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[64]);
+        buffer.putShort(0, (short)4, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(2, (short)1, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(8, (short)0, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(10, (short)1, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(12, (short)4, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(14, (short)2, ByteOrder.LITTLE_ENDIAN);
+
+        final Method decodedLength = decoderClass.getMethod(
+            "sbeDecodedLength", READ_ONLY_BUFFER_CLASS, int.class, int.class, int.class);
+        assertThat(decodedLength.invoke(null, buffer, 0, 0, 0), is(24));
+    }
+
+    private static int getPrivateInt(final Object object, final String fieldName) throws Exception
+    {
+        final Field field = object.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+
+        return field.getInt(object);
+    }
+
     private Class<?> getModelClass(final Object encoder) throws ClassNotFoundException
     {
         final String className = "Model";
@@ -536,11 +792,39 @@ public class JavaGeneratorTest
         return clazz;
     }
 
+    private void putHeader(
+        final UnsafeBuffer buffer, final int offset, final int templateId, final int schemaId, final int version)
+    {
+        final ByteOrder byteOrder = ir.byteOrder();
+        buffer.putShort(offset, (short)45, byteOrder);
+        buffer.putShort(offset + 2, (short)templateId, byteOrder);
+        buffer.putShort(offset + 4, (short)schemaId, byteOrder);
+        buffer.putShort(offset + 6, (short)version, byteOrder);
+    }
+
+    private static Object recordingHandler(final Class<?> handlerClass, final List<String> calls)
+    {
+        return Proxy.newProxyInstance(
+            handlerClass.getClassLoader(),
+            new Class<?>[]{ handlerClass },
+            (proxy, method, args) ->
+            {
+                calls.add(method.getName() + ":" + args[0].getClass().getSimpleName());
+                return null;
+            });
+    }
+
     private JavaGenerator generator()
     {
         return new JavaGenerator(ir, BUFFER_NAME, READ_ONLY_BUFFER_NAME, false, false, false, outputManager);
     }
 
+    private JavaGenerator dispatcherGenerator()
+    {
+        return new JavaGenerator(
+            ir, BUFFER_NAME, READ_ONLY_BUFFER_NAME, false, false, false, false, false, true, outputManager);
+    }
+
     private void generateTypeStubs() throws IOException
     {
         final JavaGenerator javaGenerator = generator();
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.generation.java;
+
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.TestUtil;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static uk.co.real_logic.sbe.xml.XmlSchemaParser.parse;
+
+public class JavaOutputManagerTest
+{
+    private static final FileTime OLD_TIME = FileTime.fromMillis(0);
+    private static final String PACKAGE_NAME = "uk.co.real_logic.test";
+
+    private File baseDir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        baseDir = Files.createTempDirectory("sbe-java-output").toFile();
+    }
+
+    @After
+    public void tearDown()
+    {
+        IoUtil.delete(baseDir, true);
+    }
+
+    @Test
+    public void shouldOnlyRewriteChangedFilesWhenIncremental() throws Exception
+    {
+        final JavaOutputManager outputManager = new JavaOutputManager(baseDir.getPath(), PACKAGE_NAME, true);
+        final Path unchanged = write(outputManager, "Unchanged", "class Unchanged {}");
+        final Path changed = write(outputManager, "Changed", "class Changed {}");
+        Files.setLastModifiedTime(unchanged, OLD_TIME);
+        Files.setLastModifiedTime(changed, OLD_TIME);
+
+        write(outputManager, "Unchanged", "class Unchanged {}");
+        write(outputManager, "Changed", "class Changed { int i; }");
+
+        assertThat(Files.getLastModifiedTime(unchanged), is(OLD_TIME));
+        assertThat(new String(Files.readAllBytes(changed), StandardCharsets.UTF_8), is("class Changed { int i; }"));
+    }
+
+    @Test
+    public void shouldGenerateSameCodecsInParallelWithoutRewritingFiles() throws Exception
+    {
+        final ParserOptions options = ParserOptions.builder().stopOnError(true).build();
+        final MessageSchema schema = parse(TestUtil.getLocalResource("code-generation-schema.xml"), options);
+        final Ir ir = new IrGenerator().generate(schema);
+
+        generator(ir, false).generate();
+        final Map<Path, byte[]> expected = readAll();
+        for (final Path path : expected.keySet())
+        {
+            Files.setLastModifiedTime(path, OLD_TIME);
+        }
+
+        generator(ir, true).generate();
+
+        final Map<Path, byte[]> actual = readAll();
+        assertThat(actual.keySet(), is(expected.keySet()));
+        for (final Path path : expected.keySet())
+        {
+            assertThat(actual.get(path), is(expected.get(path)));
+            assertThat(Files.getLastModifiedTime(path), is(OLD_TIME));
+        }
+    }
+
+    private JavaGenerator generator(final Ir ir, final boolean isParallel)
+    {
+        return new JavaGenerator(
+            ir,
+            MutableDirectBuffer.class.getName(),
+            DirectBuffer.class.getName(),
+            false,
+            false,
+            false,
+            false,
+            isParallel,
+            new JavaOutputManager(baseDir.getPath(), ir.applicableNamespace(), true));
+    }
+
+    private Map<Path, byte[]> readAll() throws Exception
+    {
+        final Map<Path, byte[]> contentByPath = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(baseDir.toPath()))
+        {
+            for (final Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList()))
+            {
+                contentByPath.put(path, Files.readAllBytes(path));
+            }
+        }
+
+        return contentByPath;
+    }
+
+    private Path write(final JavaOutputManager outputManager, final String name, final String content)
+        throws Exception
+    {
+        try (Writer out = outputManager.createOutput(name))
+        {
+            out.append(content);
+        }
+
+        return new File(new File(baseDir, PACKAGE_NAME.replace('.', File.separatorChar)), name + ".java").toPath();
+    }
+}
@@ -21,11 +21,15 @@ import uk.co.real_logic.sbe.xml.IrGenerator;
 import uk.co.real_logic.sbe.xml.MessageSchema;
 import uk.co.real_logic.sbe.xml.ParserOptions;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static uk.co.real_logic.sbe.xml.XmlSchemaParser.parse;
 
 public class EncodedIrTest
@@ -197,4 +201,86 @@ public class EncodedIrTest
             }
         }
     }
+
+    @Test
+    public void shouldLazilyDecodeSameMessagesAndTypesFromMappedFile()
+        throws Exception
+    {
+        final MessageSchema schema = parse(TestUtil.getLocalResource("FixBinary.xml"), ParserOptions.DEFAULT);
+        final Ir ir = new IrGenerator().generate(schema);
+        final File file = File.createTempFile("lazy-ir", ".sbeir");
+
+        try
+        {
+            try (IrEncoder irEncoder = new IrEncoder(file.getAbsolutePath(), ir))
+            {
+                irEncoder.encode();
+            }
+
+            try (IrDecoder irDecoder = new IrDecoder(file.getAbsolutePath()))
+            {
+                final Ir lazyIr = irDecoder.decodeLazily();
+
+                assertThat(lazyIr.id(), is(ir.id()));
+                assertThat(lazyIr.packageName(), is(ir.packageName()));
+                assertThat(lazyIr.byteOrder(), is(ir.byteOrder()));
+                assertThat(lazyIr.getMessage(Long.MAX_VALUE), nullValue());
+                assertThat(lazyIr.getType("noSuchType"), nullValue());
+
+                for (final List<Token> tokens : ir.messages())
+                {
+                    final long messageId = tokens.get(0).id();
+                    final List<Token> lazyTokens = lazyIr.getMessage(messageId);
+
+                    assertThat(lazyIr.getMessage(messageId), sameInstance(lazyTokens));
+                    assertThat(lazyTokens.size(), is(tokens.size()));
+                    for (int i = 0, size = tokens.size(); i < size; i++)
+                    {
+                        assertEqual(lazyTokens.get(i), tokens.get(i));
+                        assertThat(lazyTokens.get(i).componentTokenCount(), is(tokens.get(i).componentTokenCount()));
+                    }
+                }
+
+                assertThat(lazyIr.messages().size(), is(ir.messages().size()));
+                assertThat(lazyIr.types().size(), is(ir.types().size()));
+                for (final List<Token> tokens : ir.types())
+                {
+                    final Token t = tokens.get(0);
+                    final List<Token> lazyTokens = lazyIr.getType(
+                        t.referencedName() != null ? t.referencedName() : t.name());
+
+                    assertThat(lazyTokens.size(), is(tokens.size()));
+                    for (int i = 0, size = tokens.size(); i < size; i++)
+                    {
+                        assertEqual(lazyTokens.get(i), tokens.get(i));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void shouldDecodeOnlyAccessedMessagesLazily()
+        throws Exception
+    {
+        final MessageSchema schema = parse(TestUtil.getLocalResource(
+            "code-generation-schema.xml"), ParserOptions.DEFAULT);
+        final Ir ir = new IrGenerator().generate(schema);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(CAPACITY);
+        final IrEncoder irEncoder = new IrEncoder(buffer, ir);
+
+        irEncoder.encode();
+        buffer.flip();
+
+        final long messageId = ir.messages().iterator().next().get(0).id();
+        final Ir lazyIr = new IrDecoder(buffer).decodeLazily();
+
+        assertThat(lazyIr.getMessage(messageId).size(), is(ir.getMessage(messageId).size()));
+        assertThat(lazyIr.headerStructure().tokens().size(), is(ir.headerStructure().tokens().size()));
+        assertThat(lazyIr.messages().size(), is(ir.messages().size()));
+    }
 }
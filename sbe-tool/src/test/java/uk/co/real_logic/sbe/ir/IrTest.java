@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.ir;
+
+import org.junit.Test;
+import uk.co.real_logic.sbe.TestUtil;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static uk.co.real_logic.sbe.xml.XmlSchemaParser.parse;
+
+public class IrTest
+{
+    @Test
+    public void shouldListMessagesInIdOrderConsistentWithGetMessage() throws Exception
+    {
+        final Ir ir = generateIr("FixBinary.xml");
+        final List<Long> messageIds = new ArrayList<>();
+        for (final List<Token> messageTokens : ir.messages())
+        {
+            messageIds.add((long)messageTokens.get(0).id());
+        }
+        final List<Token> firstMessageTokens = ir.getMessage(messageIds.get(0));
+
+        ir.addMessage(Integer.MAX_VALUE, firstMessageTokens);
+        ir.addMessage(0, firstMessageTokens);
+        messageIds.add((long)Integer.MAX_VALUE);
+        messageIds.add(0L);
+        Collections.sort(messageIds);
+
+        final List<Token> replacementTokens = new ArrayList<>(firstMessageTokens);
+        ir.addMessage(0, replacementTokens);
+        assertThat(ir.getMessage(0), is(replacementTokens));
+
+        assertThat(ir.messages().size(), is(messageIds.size()));
+        int index = 0;
+        for (final List<Token> messageTokens : ir.messages())
+        {
+            assertThat(messageTokens, sameInstance(ir.getMessage(messageIds.get(index++))));
+        }
+
+        assertThat(index, is(messageIds.size()));
+        assertThat(ir.getMessage(-1), nullValue());
+    }
+
+    private static Ir generateIr(final String schemaName) throws Exception
+    {
+        final MessageSchema schema = parse(TestUtil.getLocalResource(schemaName), ParserOptions.DEFAULT);
+
+        return new IrGenerator().generate(schema);
+    }
+}
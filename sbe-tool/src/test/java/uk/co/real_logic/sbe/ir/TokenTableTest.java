@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.ir;
+
+import org.junit.Test;
+import uk.co.real_logic.sbe.TestUtil;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static uk.co.real_logic.sbe.xml.XmlSchemaParser.parse;
+
+public class TokenTableTest
+{
+    @Test
+    public void shouldHoldSameTokensAsIr() throws Exception
+    {
+        final Ir ir = generateIr("FixBinary.xml");
+        final TokenTable table = TokenTable.of(ir);
+
+        final List<Token> headerTokens = ir.headerStructure().tokens();
+        assertThat(table.headerTokenCount(), is(headerTokens.size()));
+        assertTokens(table, 0, headerTokens);
+
+        int size = headerTokens.size();
+        int ordinal = 0;
+        for (final List<Token> messageTokens : ir.messages())
+        {
+            final int messageIndex = table.messageIndex(messageTokens.get(0).id());
+
+            assertThat(table.messageOrdinal(messageTokens.get(0).id()), is(ordinal++));
+            assertThat(table.componentTokenCount(messageIndex), is(messageTokens.size()));
+            assertTokens(table, messageIndex, messageTokens);
+            assertTokens(table, messageIndex, table.messageTokens(messageTokens.get(0).id()));
+            size += messageTokens.size();
+        }
+
+        assertThat(table.size(), is(size));
+        assertThat(table.messageCount(), is(ordinal));
+        assertThat(table.schemaId(), is(ir.id()));
+        assertThat(table.version(), is(ir.version()));
+        assertThat(table.messageIndex(Long.MAX_VALUE), is(-1));
+        assertThat(table.messageOrdinal(Long.MAX_VALUE), is(-1));
+        assertThat(table.messageTokens(Long.MAX_VALUE), nullValue());
+    }
+
+    @Test
+    public void shouldInternStringsAndEncodings() throws Exception
+    {
+        final Ir ir = generateIr("FixBinary.xml");
+        final TokenTable table = TokenTable.of(ir);
+
+        assertThat(table.stringPoolSize(), lessThan(table.size()));
+        assertThat(table.encodingPoolSize(), lessThan(table.size()));
+
+        final int messageIndex = table.headerTokenCount();
+        for (int i = 0; i < table.size(); i++)
+        {
+            if (table.name(i).equals(table.name(messageIndex)))
+            {
+                assertThat(table.name(i), sameInstance(table.name(messageIndex)));
+            }
+        }
+
+        assertThat(table.token(messageIndex).name(), sameInstance(table.tokens().get(messageIndex).name()));
+        assertThat(table.token(messageIndex).encoding(), sameInstance(table.encoding(messageIndex)));
+    }
+
+    private static void assertTokens(final TokenTable table, final int fromIndex, final List<Token> tokens)
+    {
+        for (int i = 0, size = tokens.size(); i < size; i++)
+        {
+            final Token expected = tokens.get(i);
+            final int index = fromIndex + i;
+            final Token actual = table.token(index);
+
+            assertThat(table.signal(index), is(expected.signal()));
+            assertThat(table.primitiveType(index), is(expected.encoding().primitiveType()));
+            assertThat(table.byteOrder(index), is(expected.encoding().byteOrder()));
+            assertThat(table.offset(index), is(expected.offset()));
+            assertThat(table.encodedLength(index), is(expected.encodedLength()));
+            assertThat(table.componentTokenCount(index), is(expected.componentTokenCount()));
+            assertThat(table.version(index), is(expected.version()));
+            assertThat(table.id(index), is(expected.id()));
+            assertThat(table.name(index), is(expected.name()));
+
+            assertThat(actual.signal(), is(expected.signal()));
+            assertThat(actual.name(), is(expected.name()));
+            assertThat(actual.referencedName(), is(expected.referencedName()));
+            assertThat(actual.description(), is(expected.description()));
+            assertThat(actual.deprecated(), is(expected.deprecated()));
+            assertThat(actual.encoding().presence(), is(expected.encoding().presence()));
+            assertThat(actual.encoding().constValue(), is(expected.encoding().constValue()));
+            assertThat(actual.encoding().nullValue(), is(expected.encoding().nullValue()));
+            assertThat(actual.encoding().semanticType(), is(expected.encoding().semanticType()));
+        }
+    }
+
+    private static Ir generateIr(final String schemaName) throws Exception
+    {
+        final MessageSchema schema = parse(TestUtil.getLocalResource(schemaName), ParserOptions.DEFAULT);
+
+        return new IrGenerator().generate(schema);
+    }
+}
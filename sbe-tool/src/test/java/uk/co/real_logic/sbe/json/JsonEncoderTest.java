@@ -0,0 +1,233 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.json;
+
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+import uk.co.real_logic.sbe.xml.XmlSchemaParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class JsonEncoderTest extends EncodedCarTestBase
+{
+    private static final int MSG_BUFFER_CAPACITY = 4 * 1024;
+    private static final int CAR_TEMPLATE_ID = 1;
+
+    @Test
+    public void shouldEncodePrintedJsonToSameMessage() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        final int expectedLength = encodedMsgBuffer.position();
+
+        final String json = new JsonPrinter(ir).print(encodedMsgBuffer);
+        final JsonEncoder encoder = new JsonEncoder(ir);
+        final ExpandableArrayBuffer output = new ExpandableArrayBuffer(16);
+
+        for (int i = 0; i < 2; i++)
+        {
+            final int length = encoder.encode(json, CAR_TEMPLATE_ID, output, 5);
+            assertEquals(expectedLength, length);
+
+            final byte[] actual = new byte[length];
+            output.getBytes(5, actual);
+            assertArrayEquals(Arrays.copyOf(encodedMsgBuffer.array(), expectedLength), actual);
+        }
+    }
+
+    @Test
+    public void shouldEncodeFieldsInAnyOrderAndFillMissingValues() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final String json =
+            "{ \"modelYear\": 2019, \"unknown\": [ { \"a\": null } ], \"serialNumber\": 42," +
+            " \"engine\": { \"numCylinders\": 6 }, \"extras\": { \"cruiseControl\": true }," +
+            " \"fuelFigures\": [ { \"mpg\": 1.5e1, \"speed\": 70 } ], \"model\": \"Jazz\\n\\u00e9\" }";
+
+        final byte[] bytes = new byte[MSG_BUFFER_CAPACITY];
+        new JsonEncoder(ir).encode(json, CAR_TEMPLATE_ID, new UnsafeBuffer(bytes), 0);
+
+        final String result = new JsonPrinter(ir).print(ByteBuffer.wrap(bytes));
+        assertThat(result, containsString("\"serialNumber\": 42,"));
+        assertThat(result, containsString("\"modelYear\": 2019,"));
+        assertThat(result, containsString("\"available\": \"null\","));
+        assertThat(result, containsString("\"capacity\": 65535,"));
+        assertThat(result, containsString("\"numCylinders\": 6,"));
+        assertThat(result, containsString("\"cruiseControl\": true"));
+        assertThat(result, containsString("\"speed\": 70,\n        \"mpg\": 15.0"));
+        assertThat(result, containsString("\"manufacturer\": \"\","));
+        assertThat(result, containsString("\"model\": \"Jazz\\\né\","));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectVarDataOutOfSchemaOrder() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final String json = "{ \"model\": \"Civic\", \"manufacturer\": \"Honda\" }";
+
+        new JsonEncoder(ir).encode(json, CAR_TEMPLATE_ID, new ExpandableArrayBuffer(), 0);
+    }
+
+    @Test
+    public void shouldRejectValuesOutOfRangeForTheirField() throws Exception
+    {
+        final JsonEncoder encoder = new JsonEncoder(parseTestIr());
+
+        assertRejected(encoder, "{ \"modelYear\": 70000 }", "value out of range for modelYear: 70000");
+        assertRejected(encoder, "{ \"someNumbers\": [ 1, -2147483649 ] }", "value out of range for someNumbers");
+        assertRejected(encoder, "{ \"engine\": { \"numCylinders\": 1e3 } }", "value out of range for numCylinders");
+        assertRejected(
+            encoder, "{ \"performanceFigures\": [ { \"octaneRating\": 80 } ] }", "for octaneRating: 80");
+        assertRejected(encoder, "{ \"serialNumber\": 99999999999999999999 }", "integer out of range");
+    }
+
+    @Test
+    public void shouldRejectExponentsWhichOverflowOrHaveNoDigits() throws Exception
+    {
+        final JsonEncoder encoder = new JsonEncoder(parseTestIr());
+
+        assertRejected(encoder, "{ \"serialNumber\": 1e4294967297 }", "value out of range for serialNumber");
+        assertRejected(encoder, "{ \"modelYear\": 1e2147483648 }", "value out of range for modelYear");
+        assertRejected(encoder, "{ \"serialNumber\": 1e }", "expected exponent digits");
+        assertRejected(encoder, "{ \"serialNumber\": 1E+ }", "expected exponent digits");
+    }
+
+    @Test
+    public void shouldRejectFractionalValuesForIntegerFields() throws Exception
+    {
+        final JsonEncoder encoder = new JsonEncoder(parseTestIr());
+
+        assertRejected(encoder, "{ \"serialNumber\": 1234.9 }", "value not a whole number for serialNumber: 1234.9");
+        assertRejected(encoder, "{ \"modelYear\": 2.5e0 }", "value not a whole number for modelYear: 2.5");
+        assertRejected(encoder, "{ \"engine\": { \"capacity\": 0.1 } }", "value not a whole number for capacity");
+    }
+
+    @Test
+    public void shouldEncodeExponentsWhichUnderflowAsZero() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final String json =
+            "{ \"serialNumber\": 1.5e-4294967290, \"fuelFigures\": [ { \"mpg\": 2e-999999999999 } ] }";
+
+        final byte[] bytes = new byte[MSG_BUFFER_CAPACITY];
+        new JsonEncoder(ir).encode(json, CAR_TEMPLATE_ID, new UnsafeBuffer(bytes), 0);
+
+        final String result = new JsonPrinter(ir).print(ByteBuffer.wrap(bytes));
+        assertThat(result, containsString("\"serialNumber\": 0,"));
+        assertThat(result, containsString("\"mpg\": 0.0"));
+    }
+
+    @Test
+    public void shouldEncodeFullRangeOfUnsignedLongs() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final String json = "{ \"serialNumber\": 18446744073709551614 }";
+
+        final byte[] bytes = new byte[MSG_BUFFER_CAPACITY];
+        new JsonEncoder(ir).encode(json, CAR_TEMPLATE_ID, new UnsafeBuffer(bytes), 0);
+
+        final String result = new JsonPrinter(ir).print(ByteBuffer.wrap(bytes));
+        assertThat(result, containsString("\"serialNumber\": -2"));
+    }
+
+    @Test
+    public void shouldRejectLengthsOutOfRangeForTheirEncoding() throws Exception
+    {
+        final JsonEncoder encoder = new JsonEncoder(parseTestIr());
+        final StringBuilder model = new StringBuilder();
+        final StringBuilder fuelFigures = new StringBuilder();
+        for (int i = 0; i < 254; i++)
+        {
+            model.append('x');
+            fuelFigures.append(0 == i ? "" : ", ").append("{ \"speed\": ").append(i).append(" }");
+        }
+
+        final String json = "{ \"fuelFigures\": [ " + fuelFigures + " ], \"model\": \"" + model + "\" }";
+        final byte[] bytes = new byte[MSG_BUFFER_CAPACITY];
+        encoder.encode(json, CAR_TEMPLATE_ID, new UnsafeBuffer(bytes), 0);
+        assertThat(new JsonPrinter(parseTestIr()).print(ByteBuffer.wrap(bytes)), containsString(model + "\","));
+
+        assertRejected(encoder, "{ \"model\": \"" + model + "xé\" }", "length out of range for model: 257");
+        assertRejected(
+            encoder,
+            "{ \"fuelFigures\": [ " + fuelFigures + ", {}, {} ] }",
+            "numInGroup out of range for fuelFigures: 255");
+    }
+
+    @Test
+    public void shouldRejectStringLongerThanOneCharForCharField() throws Exception
+    {
+        final String schema =
+            "<sbe:messageSchema xmlns:sbe=\"http://fixprotocol.io/2016/sbe\" package=\"chars\" id=\"2\">\n" +
+            "    <types>\n" +
+            "        <composite name=\"messageHeader\">\n" +
+            "            <type name=\"blockLength\" primitiveType=\"uint16\"/>\n" +
+            "            <type name=\"templateId\" primitiveType=\"uint16\"/>\n" +
+            "            <type name=\"schemaId\" primitiveType=\"uint16\"/>\n" +
+            "            <type name=\"version\" primitiveType=\"uint16\"/>\n" +
+            "        </composite>\n" +
+            "    </types>\n" +
+            "    <sbe:message name=\"Side\" id=\"1\">\n" +
+            "        <field name=\"side\" id=\"1\" type=\"char\"/>\n" +
+            "    </sbe:message>\n" +
+            "</sbe:messageSchema>\n";
+        final MessageSchema messageSchema = XmlSchemaParser.parse(
+            new ByteArrayInputStream(schema.getBytes(StandardCharsets.UTF_8)), ParserOptions.DEFAULT);
+        final JsonEncoder encoder = new JsonEncoder(new IrGenerator().generate(messageSchema));
+        final ExpandableArrayBuffer output = new ExpandableArrayBuffer();
+
+        encoder.encode("{ \"side\": \"B\" }", 1, output, 0);
+        assertEquals('B', output.getByte(8));
+
+        try
+        {
+            encoder.encode("{ \"side\": \"BS\" }", 1, output, 0);
+            fail("expected rejection of multi character string");
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            assertThat(ex.getMessage(), containsString("string too long for side: length=2"));
+        }
+    }
+
+    private static void assertRejected(final JsonEncoder encoder, final String json, final String message)
+    {
+        try
+        {
+            encoder.encode(json, CAR_TEMPLATE_ID, new ExpandableArrayBuffer(), 0);
+            fail("expected rejection of " + json);
+        }
+        catch (final IllegalArgumentException ex)
+        {
+            assertThat(ex.getMessage(), containsString(message));
+        }
+    }
+}
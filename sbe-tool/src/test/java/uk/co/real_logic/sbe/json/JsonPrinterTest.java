@@ -15,19 +15,24 @@
  */
 package uk.co.real_logic.sbe.json;
 
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.junit.Test;
 import uk.co.real_logic.sbe.EncodedCarTestBase;
 import uk.co.real_logic.sbe.ir.Ir;
 import uk.co.real_logic.sbe.ir.IrDecoder;
 import uk.co.real_logic.sbe.ir.IrEncoder;
+import uk.co.real_logic.sbe.ir.TokenTable;
 import uk.co.real_logic.sbe.xml.IrGenerator;
 import uk.co.real_logic.sbe.xml.MessageSchema;
 import uk.co.real_logic.sbe.xml.ParserOptions;
 import uk.co.real_logic.sbe.xml.XmlSchemaParser;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -123,6 +128,76 @@ public class JsonPrinterTest extends EncodedCarTestBase
             result);
     }
 
+    @Test
+    public void shouldPrintSameJsonAsUtf8BytesToReusedSinks() throws Exception
+    {
+        final ByteBuffer encodedSchemaBuffer = ByteBuffer.allocate(SCHEMA_BUFFER_CAPACITY);
+        encodeSchema(encodedSchemaBuffer);
+
+        final ByteBuffer encodedMsgBuffer = ByteBuffer.allocate(MSG_BUFFER_CAPACITY);
+        encodeTestMessage(encodedMsgBuffer);
+
+        encodedSchemaBuffer.flip();
+        final Ir ir = decodeIr(encodedSchemaBuffer);
+
+        final JsonPrinter printer = new JsonPrinter(ir);
+        final String expected = printer.print(encodedMsgBuffer);
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+
+        final ExpandableArrayBuffer output = new ExpandableArrayBuffer(16);
+        for (int i = 0; i < 2; i++)
+        {
+            final int length = printer.print(buffer, 0, output, 3);
+            assertEquals(expected, output.getStringWithoutLengthUtf8(3, length));
+        }
+
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(MSG_BUFFER_CAPACITY);
+        printer.print(buffer, 0, byteBuffer);
+        assertEquals(expected, new String(byteBuffer.array(), 0, byteBuffer.position(), StandardCharsets.UTF_8));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        printer.print(buffer, 0, out);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldPrintSameJsonFromTokenTable() throws Exception
+    {
+        final ByteBuffer encodedSchemaBuffer = ByteBuffer.allocate(SCHEMA_BUFFER_CAPACITY);
+        encodeSchema(encodedSchemaBuffer);
+
+        final ByteBuffer encodedMsgBuffer = ByteBuffer.allocate(MSG_BUFFER_CAPACITY);
+        encodeTestMessage(encodedMsgBuffer);
+
+        encodedSchemaBuffer.flip();
+        final Ir ir = decodeIr(encodedSchemaBuffer);
+
+        final String expected = new JsonPrinter(ir).print(encodedMsgBuffer);
+        final JsonPrinter printer = new JsonPrinter(TokenTable.of(ir));
+        assertEquals(expected, printer.print(encodedMsgBuffer));
+
+        final ExpandableArrayBuffer output = new ExpandableArrayBuffer(16);
+        final int length = printer.print(new UnsafeBuffer(encodedMsgBuffer), 0, output, 0);
+        assertEquals(expected, output.getStringWithoutLengthUtf8(0, length));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMessageOfAnotherSchemaFromTokenTable() throws Exception
+    {
+        final ByteBuffer encodedSchemaBuffer = ByteBuffer.allocate(SCHEMA_BUFFER_CAPACITY);
+        encodeSchema(encodedSchemaBuffer);
+
+        final ByteBuffer encodedMsgBuffer = ByteBuffer.allocate(MSG_BUFFER_CAPACITY);
+        encodeTestMessage(encodedMsgBuffer);
+
+        encodedSchemaBuffer.flip();
+        final Ir ir = decodeIr(encodedSchemaBuffer);
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+        MESSAGE_HEADER.wrap(buffer, 0).schemaId(ir.id() + 1);
+
+        new JsonPrinter(TokenTable.of(ir)).print(new StringBuilder(), buffer, 0);
+    }
+
     private static void encodeSchema(final ByteBuffer buffer) throws Exception
     {
         final Path path = Paths.get("src/test/resources/json-printer-test-schema.xml");
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class MulticastTokenListenerTest extends EncodedCarTestBase
+{
+    private Ir ir;
+    private UnsafeBuffer buffer;
+    private OtfHeaderDecoder headerDecoder;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        buffer = new UnsafeBuffer(encodedMsgBuffer);
+        headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+    }
+
+    @Test
+    public void shouldDispatchAllCallbacksToEachListener()
+    {
+        final RecordingTokenListener expected = new RecordingTokenListener();
+        decode(expected);
+
+        final RecordingTokenListener first = new RecordingTokenListener();
+        final RecordingTokenListener second = new RecordingTokenListener();
+        decode(new MulticastTokenListener(first, second));
+
+        assertThat(first.toString(), is(expected.toString()));
+        assertThat(second.toString(), is(expected.toString()));
+    }
+
+    @Test
+    public void shouldPruneSubtreesForOneListenerOnly()
+    {
+        final RecordingTokenListener expected = new RecordingTokenListener();
+        decode(expected);
+
+        final MulticastTokenListener[] multicast = new MulticastTokenListener[1];
+        final RecordingTokenListener pruning = new RecordingTokenListener()
+        {
+            public void onBeginComposite(
+                final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+            {
+                super.onBeginComposite(fieldToken, tokens, fromIndex, toIndex);
+                multicast[0].prune();
+            }
+
+            public void onGroupHeader(final Token token, final int numInGroup)
+            {
+                super.onGroupHeader(token, numInGroup);
+                if ("performanceFigures".equals(token.name()))
+                {
+                    multicast[0].prune();
+                }
+            }
+
+            public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+            {
+                super.onBeginGroup(token, groupIndex, numInGroup);
+                if ("fuelFigures".equals(token.name()) && 1 == groupIndex)
+                {
+                    multicast[0].prune();
+                }
+            }
+        };
+        final RecordingTokenListener other = new RecordingTokenListener();
+        multicast[0] = new MulticastTokenListener(pruning, other);
+
+        decode(multicast[0]);
+
+        assertThat(other.toString(), is(expected.toString()));
+
+        final String pruned = pruning.toString();
+        assertThat(pruned, containsString("beginComposite engine"));
+        assertThat(pruned, not(containsString("capacity")));
+        assertThat(pruned, not(containsString("endComposite engine")));
+        assertThat(pruned, containsString("endGroup fuelFigures 0/3"));
+        assertThat(pruned, not(containsString("= 55")));
+        assertThat(pruned, not(containsString("endGroup fuelFigures 1/3")));
+        assertThat(pruned, containsString("endGroup fuelFigures 2/3"));
+        assertThat(pruned, containsString("groupHeader performanceFigures 2"));
+        assertThat(pruned, not(containsString("octaneRating")));
+        assertThat(pruned, not(containsString("acceleration")));
+        assertThat(pruned, containsString("varData manufacturer"));
+        assertThat(pruned, containsString("endMessage Car"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectPruneOutsideBeginningOfSubtree()
+    {
+        new MulticastTokenListener(new RecordingTokenListener()).prune();
+    }
+
+    private void decode(final TokenListener listener)
+    {
+        OtfMessageDecoder.decode(
+            buffer,
+            headerDecoder.encodedLength(),
+            headerDecoder.getSchemaVersion(buffer, 0),
+            headerDecoder.getBlockLength(buffer, 0),
+            ir.getMessage(headerDecoder.getTemplateId(buffer, 0)),
+            listener);
+    }
+}
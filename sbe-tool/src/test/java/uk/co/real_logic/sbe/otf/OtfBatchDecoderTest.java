@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import baseline.CarDecoder;
+import baseline.MessageHeaderDecoder;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfBatchDecoderTest extends EncodedCarTestBase
+{
+    private static final int MSG_BUFFER_CAPACITY = 4 * 1024;
+    private static final int MESSAGE_COUNT = 3;
+
+    private Ir ir;
+    private UnsafeBuffer buffer;
+    private int messageLength;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        messageLength = encodedMsgBuffer.position();
+
+        buffer = new UnsafeBuffer(new byte[MSG_BUFFER_CAPACITY]);
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            buffer.putBytes(i * messageLength, encodedMsgBuffer, 0, messageLength);
+        }
+    }
+
+    @Test
+    public void shouldDecodeBackToBackMessages()
+    {
+        final RecordingTokenListener expected = new RecordingTokenListener();
+        final OtfHeaderDecoder headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            final int offset = i * messageLength;
+            OtfMessageDecoder.decode(
+                buffer,
+                offset + headerDecoder.encodedLength(),
+                headerDecoder.getSchemaVersion(buffer, offset),
+                headerDecoder.getBlockLength(buffer, offset),
+                ir.getMessage(headerDecoder.getTemplateId(buffer, offset)),
+                expected);
+        }
+
+        final RecordingTokenListener actual = new RecordingTokenListener();
+        final OtfBatchDecoder decoder = new OtfBatchDecoder(ir).listener(1, actual);
+
+        final int consumed = decoder.decode(buffer, 0, MESSAGE_COUNT * messageLength);
+
+        assertThat(consumed, is(MESSAGE_COUNT * messageLength));
+        assertThat(decoder.messageCount(), is(MESSAGE_COUNT));
+        assertThat(actual.toString(), is(expected.toString()));
+    }
+
+    @Test
+    public void shouldStopBeforeTruncatedMessage()
+    {
+        final RecordingTokenListener listener = new RecordingTokenListener();
+        final OtfBatchDecoder decoder = new OtfBatchDecoder(ir).defaultListener(listener);
+
+        for (final int truncation : new int[]{ 1, 10, messageLength - 1 })
+        {
+            final int length = (MESSAGE_COUNT * messageLength) - truncation;
+            final int consumed = decoder.decode(buffer, 0, length);
+
+            assertThat(consumed, is((MESSAGE_COUNT - 1) * messageLength));
+            assertThat(decoder.messageCount(), is(MESSAGE_COUNT - 1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCorruptNumInGroupRatherThanWaitForMoreData()
+    {
+        final UnsafeBuffer batchBuffer = new UnsafeBuffer(new byte[MESSAGE_COUNT * messageLength]);
+        batchBuffer.putBytes(0, buffer, 0, batchBuffer.capacity());
+
+        final int fuelFiguresNumInGroupOffset =
+            messageLength + MessageHeaderDecoder.ENCODED_LENGTH + CarDecoder.BLOCK_LENGTH + 2;
+        batchBuffer.putByte(fuelFiguresNumInGroupOffset, (byte)0xFF);
+
+        new OtfBatchDecoder(ir).decode(batchBuffer, 0, batchBuffer.capacity());
+    }
+
+    @Test
+    public void shouldSkipMessagesWithoutListener()
+    {
+        final OtfBatchDecoder decoder = new OtfBatchDecoder(ir);
+
+        final int consumed = decoder.decode(buffer, 0, MESSAGE_COUNT * messageLength);
+
+        assertThat(consumed, is(MESSAGE_COUNT * messageLength));
+        assertThat(decoder.messageCount(), is(MESSAGE_COUNT));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.json.JsonPrinter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfByteOrderTranscoderTest extends EncodedCarTestBase
+{
+    private static final int MSG_BUFFER_CAPACITY = 4 * 1024;
+
+    private Ir ir;
+    private ByteBuffer encodedMsgBuffer;
+    private int msgLength;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        encodedMsgBuffer = encodeTestMessage();
+        msgLength = encodedMsgBuffer.position();
+    }
+
+    @Test
+    public void shouldTranscodeToOppositeByteOrderDescribedByTargetIr()
+    {
+        final OtfByteOrderTranscoder transcoder = new OtfByteOrderTranscoder(ir);
+        final Ir targetIr = transcoder.targetIr();
+        final UnsafeBuffer dstBuffer = new UnsafeBuffer(ByteBuffer.allocate(MSG_BUFFER_CAPACITY));
+
+        final int length = transcoder.transcode(new UnsafeBuffer(encodedMsgBuffer), 0, dstBuffer, 0);
+
+        assertThat(length, is(msgLength));
+        assertThat(targetIr.byteOrder(), is(ByteOrder.BIG_ENDIAN));
+        assertThat(targetIr.getMessage(1).get(1).encoding().byteOrder(), is(ByteOrder.BIG_ENDIAN));
+        assertThat(dstBuffer.getLong(8, ByteOrder.BIG_ENDIAN), is(1234L));
+        assertThat(new OtfLengthDecoder(targetIr).messageLength(dstBuffer, 0), is(msgLength));
+
+        final String expected = new JsonPrinter(ir).print(encodedMsgBuffer);
+        assertThat(new JsonPrinter(targetIr).print(dstBuffer.byteBuffer()), is(expected));
+    }
+
+    @Test
+    public void shouldRestoreOriginalEncodingWhenTranscodedBack()
+    {
+        final OtfByteOrderTranscoder transcoder = new OtfByteOrderTranscoder(ir);
+        final UnsafeBuffer srcBuffer = new UnsafeBuffer(encodedMsgBuffer);
+        final UnsafeBuffer flippedBuffer = new UnsafeBuffer(new byte[MSG_BUFFER_CAPACITY]);
+        final UnsafeBuffer restoredBuffer = new UnsafeBuffer(new byte[MSG_BUFFER_CAPACITY]);
+
+        transcoder.transcode(srcBuffer, 0, flippedBuffer, 0);
+        final int length = new OtfByteOrderTranscoder(transcoder.targetIr())
+            .transcode(flippedBuffer, 0, restoredBuffer, 0);
+
+        assertThat(length, is(msgLength));
+        for (int i = 0; i < msgLength; i++)
+        {
+            assertThat(restoredBuffer.getByte(i), is(srcBuffer.getByte(i)));
+        }
+    }
+}
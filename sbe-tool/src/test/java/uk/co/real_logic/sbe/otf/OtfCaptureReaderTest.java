@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import baseline.CarDecoder;
+import baseline.MessageHeaderDecoder;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfCaptureReaderTest extends EncodedCarTestBase
+{
+    private static final int MESSAGE_COUNT = 20;
+    private static final int MESSAGES_PER_CHUNK = 3;
+
+    @Rule
+    public final ExpectedException exceptionRule = ExpectedException.none();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private Ir ir;
+    private Path path;
+    private int messageLength;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        messageLength = encodedMsgBuffer.position();
+        final int headerLength = new OtfHeaderDecoder(ir.headerStructure()).encodedLength();
+
+        final byte[] capture = new byte[(MESSAGE_COUNT * messageLength) + 10];
+        final UnsafeBuffer buffer = new UnsafeBuffer(capture);
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            buffer.putBytes(i * messageLength, encodedMsgBuffer, 0, messageLength);
+            buffer.putLong((i * messageLength) + headerLength, i, ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.putBytes(MESSAGE_COUNT * messageLength, encodedMsgBuffer, 0, 10);
+
+        path = Files.createTempFile("sbe-capture", ".bin");
+        Files.write(path, capture);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        pool.shutdown();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void shouldIndexFileIntoChunksOfCompleteMessages() throws Exception
+    {
+        final OtfCaptureReader reader = new OtfCaptureReader(ir, (MESSAGES_PER_CHUNK * messageLength) + 7, pool);
+
+        final long[] boundaries = reader.index(path);
+
+        final int chunkCount = (MESSAGE_COUNT + MESSAGES_PER_CHUNK - 1) / MESSAGES_PER_CHUNK;
+        assertThat(boundaries.length, is(chunkCount + 1));
+        for (int i = 0; i < chunkCount; i++)
+        {
+            assertThat(boundaries[i], is((long)i * MESSAGES_PER_CHUNK * messageLength));
+        }
+        assertThat(boundaries[chunkCount], is((long)MESSAGE_COUNT * messageLength));
+    }
+
+    @Test
+    public void shouldDecodeChunksInParallelWithListenersInFileOrder() throws Exception
+    {
+        final OtfCaptureReader reader = new OtfCaptureReader(ir, (MESSAGES_PER_CHUNK * messageLength) + 7, pool);
+
+        final List<SerialNumberListener> listeners = reader.decode(path, SerialNumberListener::new);
+
+        final LongArrayList serialNumbers = new LongArrayList();
+        for (final SerialNumberListener listener : listeners)
+        {
+            serialNumbers.addAll(listener.serialNumbers);
+        }
+
+        assertThat(serialNumbers.size(), is(MESSAGE_COUNT));
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            assertThat(serialNumbers.getLong(i), is((long)i));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectChunkLengthShorterThanMessage() throws Exception
+    {
+        new OtfCaptureReader(ir, messageLength - 1, pool).index(path);
+    }
+
+    @Test
+    public void shouldRejectCorruptGroupBlockLengthRatherThanChunkLength() throws Exception
+    {
+        final int corruptMessageOffset = 4 * messageLength;
+        final byte[] capture = Files.readAllBytes(path);
+        final UnsafeBuffer buffer = new UnsafeBuffer(capture);
+        buffer.putShort(corruptMessageOffset + MessageHeaderDecoder.ENCODED_LENGTH + CarDecoder.BLOCK_LENGTH,
+            (short)0xFFFF, ByteOrder.LITTLE_ENDIAN);
+        Files.write(path, capture);
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("Corrupt message at offset " + corruptMessageOffset);
+        exceptionRule.expectCause(instanceOf(IllegalArgumentException.class));
+
+        new OtfCaptureReader(ir, (MESSAGES_PER_CHUNK * messageLength) + 7, pool).index(path);
+    }
+
+    static class SerialNumberListener extends AbstractTokenListener
+    {
+        final LongArrayList serialNumbers = new LongArrayList();
+
+        public void onEncoding(
+            final Token fieldToken,
+            final DirectBuffer buffer,
+            final int index,
+            final Token typeToken,
+            final int actingVersion)
+        {
+            if ("serialNumber".equals(fieldToken.name()))
+            {
+                serialNumbers.addLong(Types.getLong(buffer, index, typeToken.encoding()));
+            }
+        }
+    }
+}
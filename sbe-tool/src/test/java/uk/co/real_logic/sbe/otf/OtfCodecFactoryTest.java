@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import baseline.CarDecoder;
+import baseline.MessageHeaderDecoder;
+import org.agrona.AsciiSequenceView;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.sbe.MessageDecoderFlyweight;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class OtfCodecFactoryTest extends EncodedCarTestBase
+{
+    private ByteBuffer encodedMsgBuffer;
+    private UnsafeBuffer buffer;
+    private OtfCodecFactory factory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        factory = new OtfCodecFactory(parseTestIr());
+        encodedMsgBuffer = encodeTestMessage();
+        buffer = new UnsafeBuffer(encodedMsgBuffer);
+    }
+
+    @Test
+    public void shouldLoadGeneratedFlyweightClass()
+    {
+        final Class<? extends OtfMessageFlyweight> decoderClass = factory.decoderClass(CarDecoder.TEMPLATE_ID);
+        final OtfMessageFlyweight decoder = factory.newDecoder(CarDecoder.TEMPLATE_ID);
+
+        assertThat(decoder.getClass(), sameInstance(decoderClass));
+        assertThat(decoderClass.getSuperclass(), sameInstance(OtfMessageFlyweight.class));
+        assertThat(decoderClass.getClassLoader(), not(sameInstance(OtfCodecFactory.class.getClassLoader())));
+        assertTrue(MessageDecoderFlyweight.class.isAssignableFrom(decoderClass));
+    }
+
+    @Test
+    public void shouldDecodeFieldsWithGeneratedFlyweight()
+    {
+        final OtfMessageFlyweight decoder = factory.newDecoder(CarDecoder.TEMPLATE_ID);
+        decoder.wrap(
+            buffer, MessageHeaderDecoder.ENCODED_LENGTH, CarDecoder.BLOCK_LENGTH, CarDecoder.SCHEMA_VERSION);
+
+        assertThat(decoder.sbeTemplateId(), is(CarDecoder.TEMPLATE_ID));
+        assertThat(decoder.sbeBlockLength(), is(CarDecoder.BLOCK_LENGTH));
+        assertThat(decoder.getLong(decoder.fieldIndex("serialNumber")), is(1234L));
+        assertThat(decoder.getLong(decoder.fieldIndex("modelYear")), is(2013L));
+        assertThat(decoder.getLong(decoder.fieldIndex("code")), is((long)'A'));
+        assertThat(decoder.getLong(decoder.fieldIndex("someNumbers"), 4), is(4L));
+        assertThat(decoder.getString(decoder.fieldIndex("vehicleCode")), is("ab\"def"));
+        assertThat(decoder.getLong(decoder.fieldIndex("engine.capacity")), is(2000L));
+        assertThat(decoder.getLong(decoder.fieldIndex("engine.maxRpm")), is(9000L));
+        assertThat(decoder.getString(decoder.fieldIndex("engine.manufacturerCode")), is("123"));
+        assertThat(decoder.fieldIndex("unknown"), is(-1));
+        assertThat(decoder.toString(), containsString("serialNumber=1234"));
+    }
+
+    @Test
+    public void shouldDecodeGroupsAndVarDataWithGeneratedFlyweight()
+    {
+        final OtfMessageFlyweight decoder = factory.newDecoder(CarDecoder.TEMPLATE_ID);
+        decoder.wrap(
+            buffer, MessageHeaderDecoder.ENCODED_LENGTH, CarDecoder.BLOCK_LENGTH, CarDecoder.SCHEMA_VERSION);
+
+        final OtfGroupFlyweight fuelFigures = decoder.group(decoder.groupIndex("fuelFigures"));
+        final int speed = fuelFigures.fieldIndex("speed");
+        final int mpg = fuelFigures.fieldIndex("mpg");
+        assertThat(fuelFigures.count(), is(3));
+        assertThat(fuelFigures.next().getLong(speed), is(30L));
+        assertThat(fuelFigures.getDouble(mpg), is((double)35.9f));
+        assertThat(fuelFigures.next().getLong(speed), is(55L));
+        assertThat(fuelFigures.next().getLong(speed), is(75L));
+        assertThat(fuelFigures.getDouble(mpg), is(40.0));
+
+        final OtfGroupFlyweight performanceFigures = decoder.group(decoder.groupIndex("performanceFigures"));
+        final int acceleration = performanceFigures.groupIndex("acceleration");
+        long octaneRatingSum = 0;
+        double secondsSum = 0;
+        for (final OtfGroupFlyweight performanceFigure : performanceFigures)
+        {
+            octaneRatingSum += performanceFigure.getLong(performanceFigure.fieldIndex("octaneRating"));
+            for (final OtfGroupFlyweight accelerationEntry : performanceFigure.group(acceleration))
+            {
+                secondsSum += accelerationEntry.getDouble(accelerationEntry.fieldIndex("seconds"));
+            }
+        }
+        assertThat(octaneRatingSum, is(95L + 99L));
+        assertThat(secondsSum, is((double)4.0f + 7.5f + 12.2f + 3.8f + 7.1f + 11.8f));
+
+        final MutableDirectBuffer dst = new UnsafeBuffer(new byte[32]);
+        final int manufacturerLength = decoder.getVarData(decoder.varDataIndex("manufacturer"), dst, 0, 32);
+        assertThat(dst.getStringWithoutLengthAscii(0, manufacturerLength), is("Honda"));
+
+        final int model = decoder.varDataIndex("model");
+        assertThat(decoder.varDataLength(model), is("Civic VTi".length()));
+        assertThat(decoder.skipVarData(model), is("Civic VTi".length()));
+
+        final AsciiSequenceView view = new AsciiSequenceView();
+        assertThat(decoder.wrapVarData(decoder.varDataIndex("activationCode"), view).toString(), is("315\\8"));
+        assertThat(decoder.encodedLength(), is(encodedMsgBuffer.position() - MessageHeaderDecoder.ENCODED_LENGTH));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownTemplateId()
+    {
+        factory.newDecoder(CarDecoder.TEMPLATE_ID + 100);
+    }
+}
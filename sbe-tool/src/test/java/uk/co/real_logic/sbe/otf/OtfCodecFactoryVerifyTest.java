@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import uk.co.real_logic.sbe.ir.Encoding;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.xml.IrGenerator;
+import uk.co.real_logic.sbe.xml.MessageSchema;
+import uk.co.real_logic.sbe.xml.ParserOptions;
+import uk.co.real_logic.sbe.xml.XmlSchemaParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Loads the flyweight classes generated for every schema in the test resources and runs each generated method. The
+ * {@code verifyOtfCodecs} Gradle task runs this test with {@code -Xverify:all}.
+ */
+public class OtfCodecFactoryVerifyTest
+{
+    private static final int BUFFER_CAPACITY = 64 * 1024;
+
+    /*
+     * Fixtures for the error handling tests and documents which are only XIncluded, which do not parse as schemas.
+     */
+    private static final Set<String> NON_SCHEMA_FILE_NAMES = new HashSet<>(Arrays.asList(
+        "common.xml",
+        "cyclic-refs-schema.xml",
+        "error-handler-dup-message-schema.xml",
+        "error-handler-group-dimensions-schema.xml",
+        "error-handler-invalid-composite-offsets-schema.xml",
+        "error-handler-message-schema.xml",
+        "error-handler-types-dup-schema.xml",
+        "error-handler-types-schema.xml",
+        "issue567-invalid.xml"));
+
+    private final MutableDirectBuffer buffer = new UnsafeBuffer(new byte[BUFFER_CAPACITY]);
+
+    @Test
+    public void shouldLoadAndRunGeneratedClassesForAllTestSchemas() throws Exception
+    {
+        final List<Path> schemaPaths;
+        try (Stream<Path> paths = Files.walk(Paths.get("src/test/resources")))
+        {
+            schemaPaths = paths
+                .filter((path) -> path.toString().endsWith(".xml"))
+                .filter((path) -> !NON_SCHEMA_FILE_NAMES.contains(path.getFileName().toString()))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        int messageCount = 0;
+        for (final Path path : schemaPaths)
+        {
+            final ParserOptions options = ParserOptions.builder().suppressOutput(true).xIncludeAware(true).build();
+            final MessageSchema schema = XmlSchemaParser.parse(new InputSource(path.toUri().toString()), options);
+            final Ir ir = new IrGenerator().generate(schema);
+
+            final OtfCodecFactory factory = new OtfCodecFactory(ir);
+            for (final List<Token> tokens : ir.messages())
+            {
+                final OtfMessageFlyweight decoder = factory.newDecoder(tokens.get(0).id());
+                buffer.setMemory(0, BUFFER_CAPACITY, (byte)0);
+                decoder.wrap(buffer, 0, decoder.sbeBlockLength(), ir.version());
+
+                readBlock(decoder, decoder);
+                assertThat(path.toString(), decoder.encodedLength(), greaterThan(-1));
+                messageCount++;
+            }
+        }
+
+        assertThat(messageCount, greaterThan(schemaPaths.size()));
+    }
+
+    /*
+     * Read every element of every field, then each group with a single entry and each var data field as empty, so
+     * every case of the generated methods for the block and its groups is run.
+     */
+    private void readBlock(final OtfFlyweight flyweight, final OtfMessageFlyweight message)
+    {
+        final OtfFlyweight.Layout layout = flyweight.layout;
+        for (int i = 0; i < layout.fields.length; i++)
+        {
+            for (int e = 0; e < flyweight.arrayLength(i); e++)
+            {
+                flyweight.getLong(i, e);
+                flyweight.getDouble(i, e);
+            }
+        }
+
+        for (int g = 0; g < layout.groupLayouts.length; g++)
+        {
+            final OtfFlyweight.Layout groupLayout = layout.groupLayouts[g];
+            final int limit = message.limit();
+            put(limit + groupLayout.blockLengthToken.offset(), groupLayout.blockLengthToken, groupLayout.blockLength);
+            put(limit + groupLayout.numInGroupToken.offset(), groupLayout.numInGroupToken, 1);
+
+            final OtfGroupFlyweight group = flyweight.group(g);
+            if (message.actingVersion() >= groupLayout.groupToken.version())
+            {
+                assertThat(group.count(), is(1));
+            }
+
+            for (final OtfGroupFlyweight entry : group)
+            {
+                readBlock(entry, message);
+            }
+        }
+
+        for (int v = 0; v < layout.varData.length; v++)
+        {
+            assertThat(flyweight.skipVarData(v), is(0));
+        }
+    }
+
+    private void put(final int index, final Token token, final int value)
+    {
+        final Encoding encoding = token.encoding();
+        switch (encoding.primitiveType().size())
+        {
+            case 1:
+                buffer.putByte(index, (byte)value);
+                break;
+
+            case 2:
+                buffer.putShort(index, (short)value, encoding.byteOrder());
+                break;
+
+            case 4:
+                buffer.putInt(index, value, encoding.byteOrder());
+                break;
+
+            default:
+                buffer.putLong(index, value, encoding.byteOrder());
+                break;
+        }
+    }
+}
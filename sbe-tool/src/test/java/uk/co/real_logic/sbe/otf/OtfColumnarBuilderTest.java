@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.ir.TokenTable;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static uk.co.real_logic.sbe.otf.ColumnarTable.*;
+
+public class OtfColumnarBuilderTest extends EncodedCarTestBase
+{
+    private static final int MESSAGE_COUNT = 2;
+
+    private Ir ir;
+    private UnsafeBuffer buffer;
+    private OtfHeaderDecoder headerDecoder;
+    private OtfColumnarBuilder builder;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        buffer = new UnsafeBuffer(encodedMsgBuffer);
+        headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+
+        builder = new OtfColumnarBuilder(ir.getMessage(1));
+        final OtfDecodePlan plan = new OtfDecodePlan(ir.getMessage(1));
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            plan.decode(
+                buffer,
+                headerDecoder.encodedLength(),
+                headerDecoder.getSchemaVersion(buffer, 0),
+                headerDecoder.getBlockLength(buffer, 0),
+                builder);
+        }
+    }
+
+    @Test
+    public void shouldExtractRootFieldsIntoColumns()
+    {
+        final ColumnarTable table = builder.table();
+
+        assertThat(table.name(), is("Car"));
+        assertThat(table.rowCount(), is(MESSAGE_COUNT));
+        assertThat(((LongColumn)table.column("serialNumber")).get(1), is(1234L));
+        assertThat(((IntColumn)table.column("modelYear")).get(1), is(2013));
+        assertThat(((DictionaryColumn)table.column("available")).get(1), is("T"));
+        assertThat(((DictionaryColumn)table.column("code")).get(0), is("A"));
+        assertThat(((IntColumn)table.column("someNumbers[3]")).get(0), is(3));
+        assertThat(((DictionaryColumn)table.column("vehicleCode")).get(0), is("ab\"def"));
+        assertThat(((LongColumn)table.column("extras")).get(0), is(6L));
+        assertThat(((IntColumn)table.column("engine.capacity")).get(0), is(2000));
+        assertThat(((DictionaryColumn)table.column("engine.manufacturerCode")).get(0), is("123"));
+        assertThat(table.column("engine.maxRpm"), is(nullValue()));
+        assertThat(((DictionaryColumn)table.column("model")).get(1), is("Civic VTi"));
+        assertThat(((DictionaryColumn)table.column("manufacturer")).dictionary(), is(Arrays.asList("Honda")));
+    }
+
+    @Test
+    public void shouldFlattenGroupsIntoChildTablesWithParentRowIds()
+    {
+        final ColumnarTable fuelFigures = builder.table().children().get(0);
+        assertThat(fuelFigures.name(), is("Car.fuelFigures"));
+        assertThat(fuelFigures.rowCount(), is(MESSAGE_COUNT * 3));
+        assertThat(fuelFigures.parentRowIds().get(2), is(0));
+        assertThat(fuelFigures.parentRowIds().get(3), is(1));
+        assertThat(((IntColumn)fuelFigures.column("speed")).get(4), is(55));
+        assertThat(((DoubleColumn)fuelFigures.column("mpg")).get(4), is(49.0));
+
+        final ColumnarTable acceleration = builder.tables().get(3);
+        assertThat(acceleration.name(), is("Car.performanceFigures.acceleration"));
+        assertThat(acceleration.rowCount(), is(MESSAGE_COUNT * 6));
+        assertThat(acceleration.parentRowIds().get(11), is(3));
+        assertThat(((IntColumn)acceleration.column("mph")).get(11), is(100));
+    }
+
+    @Test
+    public void shouldExtractColumnsWithTokensCreatedForEachCallback()
+    {
+        final List<Token> msgTokens = TokenTable.of(ir).messageTokens(1);
+        final OtfColumnarBuilder tableBuilder = new OtfColumnarBuilder(msgTokens);
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            OtfMessageDecoder.decode(
+                buffer,
+                headerDecoder.encodedLength(),
+                headerDecoder.getSchemaVersion(buffer, 0),
+                headerDecoder.getBlockLength(buffer, 0),
+                msgTokens,
+                tableBuilder);
+        }
+
+        final List<ColumnarTable> expectedTables = builder.tables();
+        final List<ColumnarTable> tables = tableBuilder.tables();
+        assertThat(tables.size(), is(expectedTables.size()));
+        for (int i = 0; i < tables.size(); i++)
+        {
+            final ColumnarTable expected = expectedTables.get(i);
+            final ColumnarTable actual = tables.get(i);
+            assertThat(actual.name(), is(expected.name()));
+            assertThat(actual.rowCount(), is(expected.rowCount()));
+            assertThat(actual.columns().size(), is(expected.columns().size()));
+
+            for (final Column expectedColumn : expected.columns())
+            {
+                final Column column = actual.column(expectedColumn.name());
+                for (int row = 0; row < expected.rowCount(); row++)
+                {
+                    assertThat(expectedColumn.name(), value(column, row), is(value(expectedColumn, row)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldDictionaryEncodeValuesByTheirEncodedBytes()
+    {
+        final DictionaryColumn column = new DictionaryColumn("value", 0);
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[16]);
+        final int distinctValues = 100;
+
+        for (int i = 0; i < distinctValues * 2; i++)
+        {
+            final int length = buffer.putStringWithoutLengthAscii(0, "v" + (i % distinctValues));
+            column.append(buffer, 0, length, "US-ASCII");
+        }
+
+        column.append("v7");
+
+        assertThat(column.dictionary().size(), is(distinctValues));
+        assertThat(column.code(distinctValues + 42), is(column.code(42)));
+        assertThat(column.get(distinctValues + 42), is("v42"));
+        assertThat(column.code(distinctValues * 2), is(column.code(7)));
+    }
+
+    @Test
+    public void shouldWriteAndMapColumnarFile() throws Exception
+    {
+        final Path path = Files.createTempFile("sbe-columnar", ".col");
+        try
+        {
+            ColumnarFile.write(path, builder.tables());
+            final ColumnarFile file = ColumnarFile.map(path);
+            assertThat(file.tables().size(), is(4));
+
+            final ColumnarFile.TableView car = file.table("Car");
+            assertThat(car.rowCount(), is(MESSAGE_COUNT));
+            assertThat(car.parentName(), is(nullValue()));
+            assertThat(car.column("serialNumber").getLong(1), is(1234L));
+            assertThat(car.column("modelYear").getInt(0), is(2013));
+            assertThat(car.column("model").getString(1), is("Civic VTi"));
+            assertThat(car.column("serialNumber").offset() % 8, is(0));
+
+            final ColumnarFile.TableView acceleration = file.table("Car.performanceFigures.acceleration");
+            assertThat(acceleration.parentName(), is("Car.performanceFigures"));
+            assertThat(acceleration.column(PARENT_ROW_ID_COLUMN_NAME).getInt(11), is(3));
+            assertThat(acceleration.column("seconds").getDouble(5), is((double)11.8f));
+        }
+        finally
+        {
+            Files.delete(path);
+        }
+    }
+
+    private static Object value(final Column column, final int row)
+    {
+        switch (column.type())
+        {
+            case INT:
+                return ((IntColumn)column).get(row);
+
+            case LONG:
+                return ((LongColumn)column).get(row);
+
+            case DOUBLE:
+                return ((DoubleColumn)column).get(row);
+
+            default:
+                return ((DictionaryColumn)column).get(row);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfDecodePlanTest extends EncodedCarTestBase
+{
+    private static final int MSG_BUFFER_CAPACITY = 4 * 1024;
+
+    @Test
+    public void shouldProduceSameCallbacksAsMessageDecoder() throws Exception
+    {
+        final Ir ir = parseTestIr();
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+
+        final OtfHeaderDecoder headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        final int templateId = headerDecoder.getTemplateId(buffer, 0);
+        final int actingVersion = headerDecoder.getSchemaVersion(buffer, 0);
+        final int blockLength = headerDecoder.getBlockLength(buffer, 0);
+        final int offset = headerDecoder.encodedLength();
+
+        final List<Token> msgTokens = ir.getMessage(templateId);
+        final RecordingTokenListener expected = new RecordingTokenListener();
+        final int expectedLimit = OtfMessageDecoder.decode(
+            buffer, offset, actingVersion, blockLength, msgTokens, expected);
+
+        final OtfDecodePlan plan = OtfDecodePlan.compile(ir).get(templateId);
+        final RecordingTokenListener actual = new RecordingTokenListener();
+        final int actualLimit = plan.decode(buffer, offset, actingVersion, blockLength, actual);
+
+        assertThat(actual.toString(), is(expected.toString()));
+        assertThat(actualLimit, is(expectedLimit));
+        assertThat(actualLimit, is(encodedMsgBuffer.position()));
+    }
+
+    @Test
+    public void shouldProduceSameCallbacksForAllFixMessagesWhenEmpty() throws Exception
+    {
+        final Ir ir = parseIr("src/test/resources/FixBinary.xml");
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[MSG_BUFFER_CAPACITY]);
+
+        for (final List<Token> msgTokens : ir.messages())
+        {
+            final Token msgToken = msgTokens.get(0);
+            final OtfDecodePlan plan = new OtfDecodePlan(msgTokens);
+
+            for (int actingVersion = 0; actingVersion <= ir.version(); actingVersion++)
+            {
+                final RecordingTokenListener expected = new RecordingTokenListener();
+                final int expectedLimit = OtfMessageDecoder.decode(
+                    buffer, 0, actingVersion, msgToken.encodedLength(), msgTokens, expected);
+
+                final RecordingTokenListener actual = new RecordingTokenListener();
+                final int actualLimit = plan.decode(buffer, 0, actingVersion, msgToken.encodedLength(), actual);
+
+                assertThat(actual.toString(), is(expected.toString()));
+                assertThat(actualLimit, is(expectedLimit));
+            }
+        }
+    }
+
+    @Test
+    public void shouldOnlyProduceCallbacksForProjectedPaths() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final List<Token> msgTokens = ir.getMessage(1);
+
+        final OtfDecodePlan plan = new OtfDecodePlan(
+            msgTokens, "serialNumber", "performanceFigures.acceleration.seconds", "model");
+
+        assertProjection(ir, plan, "Car", "serialNumber", "performanceFigures", "acceleration", "seconds", "model");
+    }
+
+    @Test
+    public void shouldProduceAllCallbacksWithinProjectedGroupIds() throws Exception
+    {
+        final Ir ir = parseTestIr();
+        final List<Token> msgTokens = ir.getMessage(1);
+
+        final OtfDecodePlan plan = new OtfDecodePlan(msgTokens, 9, 17);
+
+        assertProjection(ir, plan, "Car", "fuelFigures", "speed", "mpg", "manufacturer");
+    }
+
+    @Test
+    public void shouldSkipEverythingWhenProjectionIsEmpty() throws Exception
+    {
+        final Ir ir = parseTestIr();
+
+        assertProjection(ir, new OtfDecodePlan(ir.getMessage(1), new int[0]), "Car");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownProjectedPath() throws Exception
+    {
+        final Ir ir = parseTestIr();
+
+        new OtfDecodePlan(ir.getMessage(1), "fuelFigures.octaneRating");
+    }
+
+    private void assertProjection(final Ir ir, final OtfDecodePlan plan, final String... names) throws Exception
+    {
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+
+        final OtfHeaderDecoder headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        final int actingVersion = headerDecoder.getSchemaVersion(buffer, 0);
+        final int blockLength = headerDecoder.getBlockLength(buffer, 0);
+        final int offset = headerDecoder.encodedLength();
+
+        final RecordingTokenListener full = new RecordingTokenListener();
+        final int expectedLimit = OtfMessageDecoder.decode(
+            buffer, offset, actingVersion, blockLength, plan.msgTokens(), full);
+        final List<String> projectedNames = Arrays.asList(names);
+        final String expected = Arrays.stream(full.toString().split("\n"))
+            .filter((line) -> projectedNames.contains(line.split(" ")[1]))
+            .collect(Collectors.joining("\n", "", "\n"));
+
+        final RecordingTokenListener actual = new RecordingTokenListener();
+        final int actualLimit = plan.decode(buffer, offset, actingVersion, blockLength, actual);
+
+        assertThat(actual.toString(), is(expected));
+        assertThat(actualLimit, is(expectedLimit));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static uk.co.real_logic.sbe.otf.OtfFilter.*;
+
+public class OtfFilterTest extends EncodedCarTestBase
+{
+    private Ir ir;
+    private UnsafeBuffer buffer;
+    private int messageLength;
+    private int offset;
+    private int actingVersion;
+    private int blockLength;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        messageLength = encodedMsgBuffer.position();
+        buffer = new UnsafeBuffer(encodedMsgBuffer);
+
+        final OtfHeaderDecoder headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        offset = headerDecoder.encodedLength();
+        actingVersion = headerDecoder.getSchemaVersion(buffer, 0);
+        blockLength = headerDecoder.getBlockLength(buffer, 0);
+    }
+
+    @Test
+    public void shouldMatchRootFields()
+    {
+        assertTrue(matches(equalTo("serialNumber", 1234)));
+        assertFalse(matches(equalTo("serialNumber", 1235)));
+        assertTrue(matches(anyOf("modelYear", 2012, 2013)));
+        assertTrue(matches(equalTo("code", 'A')));
+        assertTrue(matches(between("engine.capacity", 1000, 3000)));
+        assertFalse(matches(between("engine.numCylinders", 6, 12)));
+    }
+
+    @Test
+    public void shouldMatchWhenAnyGroupEntrySatisfiesCondition()
+    {
+        assertTrue(matches(anyOf("fuelFigures.speed", 55, 99)));
+        assertFalse(matches(equalTo("fuelFigures.speed", 56)));
+        assertTrue(matches(between("fuelFigures.mpg", 48.5, 49.5)));
+        assertTrue(matches(equalTo("performanceFigures.octaneRating", 99)));
+        assertTrue(matches(between("performanceFigures.acceleration.seconds", 11.9, 12.5)));
+        assertFalse(matches(between("performanceFigures.acceleration.seconds", 3.0, 3.5)));
+        assertFalse(matches(equalTo("performanceFigures.acceleration.mph", 45)));
+    }
+
+    @Test
+    public void shouldCombineConditions()
+    {
+        assertTrue(matches(equalTo("serialNumber", 1234).and(equalTo("performanceFigures.acceleration.mph", 100))));
+        assertFalse(matches(equalTo("serialNumber", 1234).and(equalTo("fuelFigures.speed", 56))));
+        assertTrue(matches(or(equalTo("serialNumber", 1), equalTo("fuelFigures.speed", 75))));
+        assertFalse(matches(or(equalTo("serialNumber", 1), and(equalTo("modelYear", 2013), equalTo("code", 'B')))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownPath()
+    {
+        new OtfFilter(ir.getMessage(1), equalTo("fuelFigures.octaneRating", 95));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectArrayField()
+    {
+        new OtfFilter(ir.getMessage(1), equalTo("someNumbers", 1));
+    }
+
+    @Test
+    public void shouldOnlyDispatchMatchingMessagesFromBatch()
+    {
+        final UnsafeBuffer batchBuffer = new UnsafeBuffer(new byte[3 * messageLength]);
+        for (int i = 0; i < 3; i++)
+        {
+            batchBuffer.putBytes(i * messageLength, buffer, 0, messageLength);
+        }
+        batchBuffer.putLong(messageLength + offset, 999, ByteOrder.LITTLE_ENDIAN);
+
+        final RecordingTokenListener listener = new RecordingTokenListener();
+        final OtfBatchDecoder decoder = new OtfBatchDecoder(ir)
+            .defaultListener(listener)
+            .filter(1, new OtfFilter(ir.getMessage(1), equalTo("serialNumber", 999)));
+
+        assertThat(decoder.decode(batchBuffer, 0, 3 * messageLength), is(3 * messageLength));
+        assertThat(decoder.messageCount(), is(3));
+        assertThat(listener.toString().split("beginMessage").length - 1, is(1));
+        assertTrue(listener.toString().contains("serialNumber uint64 @" + (messageLength + offset)));
+    }
+
+    @Test
+    public void shouldNotMatchCompositeMemberNotInActingVersion() throws Exception
+    {
+        final Ir versionedIr = parseIr("src/test/resources/versioned-composite-schema.xml");
+        final UnsafeBuffer versionedBuffer = new UnsafeBuffer(new byte[16]);
+        versionedBuffer.putShort(8, (short)7, ByteOrder.LITTLE_ENDIAN);
+        versionedBuffer.putShort(10, (short)9, ByteOrder.LITTLE_ENDIAN);
+
+        final OtfFilter lowerFilter = new OtfFilter(versionedIr.getMessage(1), equalTo("limits.lower", 7));
+        final OtfFilter upperFilter = new OtfFilter(versionedIr.getMessage(1), equalTo("limits.upper", 9));
+
+        assertTrue(lowerFilter.matches(versionedBuffer, 8, 0, 6));
+        assertFalse(upperFilter.matches(versionedBuffer, 8, 0, 6));
+        assertTrue(upperFilter.matches(versionedBuffer, 8, 1, 6));
+    }
+
+    private boolean matches(final OtfFilter.Condition condition)
+    {
+        return new OtfFilter(ir.getMessage(1), condition).matches(buffer, offset, actingVersion, blockLength);
+    }
+}
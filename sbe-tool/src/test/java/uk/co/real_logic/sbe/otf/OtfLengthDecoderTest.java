@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import baseline.CarDecoder;
+import baseline.MessageHeaderDecoder;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfLengthDecoderTest extends EncodedCarTestBase
+{
+    private Ir ir;
+    private ByteBuffer encodedMsgBuffer;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ir = parseTestIr();
+
+        encodedMsgBuffer = encodeTestMessage();
+    }
+
+    @Test
+    public void shouldFindMessageLengthFromIr()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+
+        final int length = new OtfLengthDecoder(ir).messageLength(buffer, 0);
+
+        assertThat(length, is(encodedMsgBuffer.position()));
+    }
+
+    @Test
+    public void shouldNotFindLengthOfTruncatedMessage()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer, 0, encodedMsgBuffer.position() - 1);
+
+        assertThat(new OtfLengthDecoder(ir).messageLength(buffer, 0), is(-1));
+    }
+
+    @Test
+    public void shouldNotFindLengthOfTruncatedMessageHeader()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer, 0, MessageHeaderDecoder.ENCODED_LENGTH - 1);
+
+        assertThat(new OtfLengthDecoder(ir).messageLength(buffer, 0), is(-1));
+    }
+
+    @Test
+    public void shouldNotFindLengthOfMessageTruncatedByLimit()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+        final int limit = encodedMsgBuffer.position() - 1;
+
+        assertThat(new OtfLengthDecoder(ir).messageLength(buffer, 0, limit), is(-1));
+        assertThat(new OtfLengthDecoder(ir).messageLength(buffer, 0, 4), is(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNumInGroupBeyondCapacityWhenFramedByLimit()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[encodedMsgBuffer.position()]);
+        buffer.putBytes(0, encodedMsgBuffer, 0, buffer.capacity());
+        buffer.putByte(MessageHeaderDecoder.ENCODED_LENGTH + CarDecoder.BLOCK_LENGTH + 2, (byte)0xFF);
+
+        new OtfLengthDecoder(ir).messageLength(buffer, 0, buffer.capacity());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectVarDataLengthBeyondIntRange() throws Exception
+    {
+        final Ir ir = parseIr("src/test/resources/issue488.xml");
+
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[64]);
+        buffer.putShort(0, (short)0, ByteOrder.BIG_ENDIAN);
+        buffer.putShort(2, (short)1, ByteOrder.BIG_ENDIAN);
+        buffer.putShort(4, (short)488, ByteOrder.BIG_ENDIAN);
+        buffer.putShort(6, (short)0, ByteOrder.BIG_ENDIAN);
+        buffer.putInt(8, 0x8000_0000, ByteOrder.BIG_ENDIAN);
+
+        new OtfLengthDecoder(ir).messageLength(buffer, 0);
+    }
+
+    @Test
+    public void shouldFindSameLengthAsGeneratedDecoder()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(encodedMsgBuffer);
+        final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder().wrap(buffer, 0);
+
+        final int length = CarDecoder.sbeDecodedLength(
+            buffer, headerDecoder.encodedLength(), headerDecoder.blockLength(), headerDecoder.version());
+
+        assertThat(headerDecoder.encodedLength() + length, is(encodedMsgBuffer.position()));
+    }
+}
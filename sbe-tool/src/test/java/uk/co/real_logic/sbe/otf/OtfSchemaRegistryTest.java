@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.IrEncoder;
+import uk.co.real_logic.sbe.ir.Token;
+import uk.co.real_logic.sbe.ir.TokenTable;
+import uk.co.real_logic.sbe.json.JsonPrinter;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class OtfSchemaRegistryTest extends EncodedCarTestBase
+{
+    private static final int MSG_BUFFER_CAPACITY = 4 * 1024;
+
+    private Ir v0Ir;
+    private Ir v1Ir;
+    private UnsafeBuffer v0Buffer;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        v0Ir = parseTestIr();
+        v1Ir = parseIr("src/test/resources/transcoder-test-schema.xml");
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        v0Buffer = new UnsafeBuffer(encodedMsgBuffer);
+    }
+
+    @Test
+    public void shouldLookupEarliestRegisteredVersionForActingVersion()
+    {
+        final OtfSchemaRegistry registry = new OtfSchemaRegistry().register(v1Ir).register(v0Ir);
+
+        assertThat(registry.lookup(1, 0).ir(), sameInstance(v0Ir));
+        assertThat(registry.lookup(1, 1).ir(), sameInstance(v1Ir));
+        assertThat(registry.lookup(1, 2), nullValue());
+        assertThat(registry.lookup(2, 0), nullValue());
+
+        assertThat(new OtfSchemaRegistry().register(v1Ir).lookup(1, 0).ir(), sameInstance(v1Ir));
+    }
+
+    @Test
+    public void shouldPrintMessagesOfSchemasAndVersionsLoadedFromFiles() throws Exception
+    {
+        final File v0File = encodeIr(v0Ir);
+        final File v1File = encodeIr(v1Ir);
+        final File basicFile = encodeIr(parseIr("src/test/resources/basic-schema.xml"));
+        try
+        {
+            final OtfSchemaRegistry registry = new OtfSchemaRegistry()
+                .load(v0File.getPath(), v1File.getPath(), basicFile.getPath());
+            final JsonPrinter printer = new JsonPrinter(registry);
+
+            final String v0Json = printer.print(v0Buffer.byteBuffer());
+            assertThat(v0Json, containsString("\"serialNumber\": 1234"));
+            assertThat(v0Json, not(containsString("discount")));
+
+            final UnsafeBuffer v1Buffer = new UnsafeBuffer(ByteBuffer.allocate(MSG_BUFFER_CAPACITY));
+            new OtfTranscoder(v0Ir, v1Ir).transcode(v0Buffer, 0, v1Buffer, 0);
+            final String v1Json = printer.print(v1Buffer.byteBuffer());
+            assertThat(v1Json, containsString("\"serialNumber\": 1234"));
+            assertThat(v1Json, containsString("\"discount\": -2147483648"));
+
+            final UnsafeBuffer basicBuffer = new UnsafeBuffer(ByteBuffer.allocate(MSG_BUFFER_CAPACITY));
+            basicBuffer.putShort(0, (short)16, ByteOrder.LITTLE_ENDIAN);
+            basicBuffer.putShort(2, (short)50001, ByteOrder.LITTLE_ENDIAN);
+            basicBuffer.putShort(4, (short)2, ByteOrder.LITTLE_ENDIAN);
+            basicBuffer.putShort(6, (short)0, ByteOrder.LITTLE_ENDIAN);
+            basicBuffer.putInt(8, 42, ByteOrder.LITTLE_ENDIAN);
+            assertThat(printer.print(basicBuffer.byteBuffer()), containsString("\"Tag40001\": 42"));
+        }
+        finally
+        {
+            Files.delete(v0File.toPath());
+            Files.delete(v1File.toPath());
+            Files.delete(basicFile.toPath());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMessageOfUnregisteredSchema()
+    {
+        v0Buffer.putShort(4, (short)7, ByteOrder.LITTLE_ENDIAN);
+
+        new OtfSchemaRegistry().register(v0Ir).decode(v0Buffer, 0, new AbstractTokenListener()
+        {
+        });
+    }
+
+    @Test
+    public void shouldDecodeFromTokenTableAsMessageDecoderAndCreateTokensOnce()
+    {
+        final OtfSchemaRegistry registry = new OtfSchemaRegistry().register(TokenTable.of(v0Ir));
+        final OtfHeaderDecoder headerDecoder = new OtfHeaderDecoder(v0Ir.headerStructure());
+        final RecordingTokenListener expected = new RecordingTokenListener();
+        OtfMessageDecoder.decode(
+            v0Buffer,
+            headerDecoder.encodedLength(),
+            headerDecoder.getSchemaVersion(v0Buffer, 0),
+            headerDecoder.getBlockLength(v0Buffer, 0),
+            v0Ir.getMessage(headerDecoder.getTemplateId(v0Buffer, 0)),
+            expected);
+
+        final List<Token> tokens = new ArrayList<>();
+        final RecordingTokenListener actual = new RecordingTokenListener()
+        {
+            public void onBeginMessage(final Token token)
+            {
+                tokens.add(token);
+                super.onBeginMessage(token);
+            }
+        };
+        registry.decode(v0Buffer, 0, actual);
+        registry.decode(v0Buffer, 0, new AbstractTokenListener()
+        {
+            public void onBeginMessage(final Token token)
+            {
+                tokens.add(token);
+            }
+        });
+
+        assertThat(actual.toString(), is(expected.toString()));
+        assertThat(tokens.size(), is(2));
+        assertThat(tokens.get(1), sameInstance(tokens.get(0)));
+    }
+
+    @Test
+    public void shouldResolveSchemaFromMessageHeader()
+    {
+        final OtfSchemaRegistry registry = new OtfSchemaRegistry().register(v0Ir);
+
+        assertThat(registry.schemaFor(v0Buffer, 0).ir().id(), is(1));
+    }
+
+    private static File encodeIr(final Ir ir) throws Exception
+    {
+        final File file = File.createTempFile("registry-" + ir.id() + "-" + ir.version(), ".sbeir");
+        try (IrEncoder irEncoder = new IrEncoder(file.getPath(), ir))
+        {
+            irEncoder.encode();
+        }
+
+        return file;
+    }
+}
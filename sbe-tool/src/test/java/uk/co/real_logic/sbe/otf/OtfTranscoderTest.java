@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.json.JsonPrinter;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfTranscoderTest extends EncodedCarTestBase
+{
+    private static final int MSG_BUFFER_CAPACITY = 4 * 1024;
+
+    private Ir v0Ir;
+    private Ir v1Ir;
+    private UnsafeBuffer v0Buffer;
+    private int v0Length;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        v0Ir = parseTestIr();
+        v1Ir = parseIr("src/test/resources/transcoder-test-schema.xml");
+
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        v0Length = encodedMsgBuffer.position();
+        v0Buffer = new UnsafeBuffer(encodedMsgBuffer);
+    }
+
+    @Test
+    public void shouldUpgradeMessageWithNullsForAddedFields()
+    {
+        final UnsafeBuffer v1Buffer = new UnsafeBuffer(ByteBuffer.allocate(MSG_BUFFER_CAPACITY));
+        final OtfTranscoder transcoder = new OtfTranscoder(v0Ir, v1Ir);
+
+        final int length = transcoder.transcode(v0Buffer, 0, v1Buffer, 0);
+
+        assertThat(length, is(v0Length + 4 + (3 * 2) + 1));
+        assertThat(new OtfLengthDecoder(v1Ir).messageLength(v1Buffer, 0), is(length));
+
+        final String json = new JsonPrinter(v1Ir).print(v1Buffer.byteBuffer());
+        assertThat(json, containsString("\"serialNumber\": 1234"));
+        assertThat(json, containsString("\"discount\": -2147483648"));
+        assertThat(json, containsString("\"speed\": 55,\n        \"mpg\": 49.0,\n        \"co2\": 65535"));
+        assertThat(json, containsString("\"seconds\": 11.8"));
+        assertThat(json, containsString("\"model\": \"Civic VTi\""));
+        assertThat(json, containsString("\"vin\": \"\""));
+    }
+
+    @Test
+    public void shouldDowngradeUpgradedMessageToOriginalEncoding()
+    {
+        final UnsafeBuffer v1Buffer = new UnsafeBuffer(new byte[MSG_BUFFER_CAPACITY]);
+        final UnsafeBuffer v0Copy = new UnsafeBuffer(new byte[MSG_BUFFER_CAPACITY]);
+
+        new OtfTranscoder(v0Ir, v1Ir).transcode(v0Buffer, 0, v1Buffer, 0);
+        final int length = new OtfTranscoder(v1Ir, v0Ir).transcode(v1Buffer, 0, v0Copy, 0);
+
+        assertThat(length, is(v0Length));
+        for (int i = 0; i < v0Length; i++)
+        {
+            assertThat(v0Copy.getByte(i), is(v0Buffer.getByte(i)));
+        }
+    }
+}
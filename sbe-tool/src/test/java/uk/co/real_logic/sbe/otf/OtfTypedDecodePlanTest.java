@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.sbe.EncodedCarTestBase;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OtfTypedDecodePlanTest extends EncodedCarTestBase
+{
+    private UnsafeBuffer buffer;
+    private int msgLength;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final ByteBuffer encodedMsgBuffer = encodeTestMessage();
+        msgLength = encodedMsgBuffer.position();
+        buffer = new UnsafeBuffer(encodedMsgBuffer);
+    }
+
+    @Test
+    public void shouldPassValuesReadByType() throws Exception
+    {
+        final RecordingTypedListener listener = new RecordingTypedListener();
+
+        final int limit = decode(parseTestIr(), listener);
+
+        assertThat(limit, is(msgLength));
+        final String output = listener.toString();
+        assertThat(output, containsString("beginMessage Car\nserialNumber=1234L\nmodelYear=2013L\n"));
+        assertThat(output, containsString("available=T(1)\ncode=A(65)\n"));
+        assertThat(output, containsString("someNumbers=0L\nsomeNumbers=1L\nsomeNumbers=2L\n"));
+        assertThat(output, containsString("vehicleCode='ab\"def'\nextras=bits(6)\n"));
+        assertThat(output, containsString(
+            "beginComposite engine\ncapacity=2000L\nnumCylinders=4L\nmaxRpm=9000L\nmanufacturerCode='123'\n" +
+            "fuel='Petrol'\nendComposite engine\n"));
+        assertThat(output, containsString("groupHeader fuelFigures 3\nbeginGroup fuelFigures 0\nspeed=30L\n"));
+        assertThat(output, containsString("mpg=49.0D\n"));
+        assertThat(output, containsString("seconds=" + (double)11.8f + "D\nendGroup acceleration 2\n"));
+        assertThat(output, containsString("manufacturer='Honda'\nmodel='Civic VTi'\n"));
+        assertThat(output, containsString("endMessage Car\n"));
+    }
+
+    @Test
+    public void shouldPassNullForFieldsNotInActingVersion() throws Exception
+    {
+        final RecordingTypedListener listener = new RecordingTypedListener();
+
+        final int limit = decode(parseIr("src/test/resources/transcoder-test-schema.xml"), listener);
+
+        assertThat(limit, is(msgLength));
+        final String output = listener.toString();
+        assertThat(output, containsString("endComposite engine\ndiscount=null\ngroupHeader fuelFigures 3\n"));
+        assertThat(output, containsString("co2=null\nendGroup fuelFigures 0\n"));
+        assertThat(output, containsString("vin=''\nendMessage Car\n"));
+    }
+
+    @Test
+    public void shouldPassNullForCompositeMembersNotInActingVersionAndEnumsHoldingNullValue() throws Exception
+    {
+        final Ir ir = parseIr("src/test/resources/versioned-composite-schema.xml");
+
+        buffer = new UnsafeBuffer(new byte[16]);
+        buffer.putShort(0, (short)6, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(2, (short)1, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(4, (short)2, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(6, (short)0, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(8, (short)7, ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort(10, (short)9, ByteOrder.LITTLE_ENDIAN);
+        buffer.putByte(12, (byte)255);
+        buffer.putByte(13, (byte)2);
+
+        final RecordingTypedListener listener = new RecordingTypedListener();
+        decode(ir, listener);
+
+        final String output = listener.toString();
+        assertThat(output, containsString("beginComposite limits\nlower=7L\nupper=null\nendComposite limits\n"));
+        assertThat(output, containsString("side=null\notherSide=?(2)\n"));
+    }
+
+    private int decode(final Ir ir, final TypedTokenListener listener)
+    {
+        final OtfHeaderDecoder headerDecoder = new OtfHeaderDecoder(ir.headerStructure());
+        final List<Token> msgTokens = ir.getMessage(headerDecoder.getTemplateId(buffer, 0));
+
+        return new OtfTypedDecodePlan(msgTokens).decode(
+            buffer,
+            headerDecoder.encodedLength(),
+            headerDecoder.getSchemaVersion(buffer, 0),
+            headerDecoder.getBlockLength(buffer, 0),
+            listener);
+    }
+
+    static class RecordingTypedListener implements TypedTokenListener
+    {
+        private final StringBuilder sb = new StringBuilder();
+
+        public String toString()
+        {
+            return sb.toString();
+        }
+
+        public void onBeginMessage(final Token token)
+        {
+            sb.append("beginMessage ").append(token.name()).append('\n');
+        }
+
+        public void onEndMessage(final Token token)
+        {
+            sb.append("endMessage ").append(token.name()).append('\n');
+        }
+
+        public void onInt64(final Token fieldToken, final Token typeToken, final long value)
+        {
+            sb.append(fieldToken.name()).append('=').append(value).append("L\n");
+        }
+
+        public void onDouble(final Token fieldToken, final Token typeToken, final double value)
+        {
+            sb.append(fieldToken.name()).append('=').append(value).append("D\n");
+        }
+
+        public void onChar(
+            final Token fieldToken,
+            final Token typeToken,
+            final DirectBuffer buffer,
+            final int offset,
+            final int length)
+        {
+            sb.append(fieldToken.name()).append("='").append(buffer.getStringWithoutLengthAscii(offset, length))
+                .append("'\n");
+        }
+
+        public void onNull(final Token fieldToken, final Token typeToken)
+        {
+            sb.append(fieldToken.name()).append("=null\n");
+        }
+
+        public void onEnum(
+            final Token fieldToken, final Token typeToken, final long value, final Token validValueToken)
+        {
+            sb.append(fieldToken.name()).append('=').append(null == validValueToken ? "?" : validValueToken.name())
+                .append('(').append(value).append(")\n");
+        }
+
+        public void onBitSet(
+            final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex, final long value)
+        {
+            sb.append(fieldToken.name()).append("=bits(").append(value).append(")\n");
+        }
+
+        public void onBeginComposite(final Token fieldToken, final Token typeToken)
+        {
+            sb.append("beginComposite ").append(fieldToken.name()).append('\n');
+        }
+
+        public void onEndComposite(final Token fieldToken, final Token typeToken)
+        {
+            sb.append("endComposite ").append(fieldToken.name()).append('\n');
+        }
+
+        public void onGroupHeader(final Token token, final int numInGroup)
+        {
+            sb.append("groupHeader ").append(token.name()).append(' ').append(numInGroup).append('\n');
+        }
+
+        public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+        {
+            sb.append("beginGroup ").append(token.name()).append(' ').append(groupIndex).append('\n');
+        }
+
+        public void onEndGroup(final Token token, final int groupIndex, final int numInGroup)
+        {
+            sb.append("endGroup ").append(token.name()).append(' ').append(groupIndex).append('\n');
+        }
+
+        public void onVarData(
+            final Token fieldToken,
+            final DirectBuffer buffer,
+            final int bufferIndex,
+            final int length,
+            final Token typeToken)
+        {
+            sb.append(fieldToken.name()).append("='").append(buffer.getStringWithoutLengthAscii(bufferIndex, length))
+                .append("'\n");
+        }
+    }
+}
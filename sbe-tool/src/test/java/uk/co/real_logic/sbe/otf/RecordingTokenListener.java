@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.otf;
+
+import org.agrona.DirectBuffer;
+import uk.co.real_logic.sbe.ir.Token;
+
+import java.util.List;
+
+/**
+ * Records every callback as a line of text so the callback sequences of different decoders can be compared.
+ */
+public class RecordingTokenListener implements TokenListener
+{
+    private final StringBuilder sb = new StringBuilder();
+
+    public String toString()
+    {
+        return sb.toString();
+    }
+
+    public void onBeginMessage(final Token token)
+    {
+        sb.append("beginMessage ").append(token.name()).append('\n');
+    }
+
+    public void onEndMessage(final Token token)
+    {
+        sb.append("endMessage ").append(token.name()).append('\n');
+    }
+
+    public void onEncoding(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final Token typeToken,
+        final int actingVersion)
+    {
+        sb.append("encoding ").append(fieldToken.name()).append(' ').append(typeToken.name())
+            .append(" @").append(bufferIndex).append(" v").append(actingVersion).append(" = ");
+        if (typeToken.arrayLength() > 0)
+        {
+            Types.appendAsString(sb, buffer, bufferIndex, typeToken.encoding());
+        }
+        sb.append('\n');
+    }
+
+    public void onEnum(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        sb.append("enum ").append(fieldToken.name()).append(" @").append(bufferIndex)
+            .append(" [").append(fromIndex).append(", ").append(toIndex).append("] v").append(actingVersion)
+            .append('\n');
+    }
+
+    public void onBitSet(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final List<Token> tokens,
+        final int fromIndex,
+        final int toIndex,
+        final int actingVersion)
+    {
+        sb.append("bitSet ").append(fieldToken.name()).append(" @").append(bufferIndex)
+            .append(" [").append(fromIndex).append(", ").append(toIndex).append("] v").append(actingVersion)
+            .append('\n');
+    }
+
+    public void onBeginComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        sb.append("beginComposite ").append(fieldToken.name())
+            .append(" [").append(fromIndex).append(", ").append(toIndex).append("]\n");
+    }
+
+    public void onEndComposite(
+        final Token fieldToken, final List<Token> tokens, final int fromIndex, final int toIndex)
+    {
+        sb.append("endComposite ").append(fieldToken.name())
+            .append(" [").append(fromIndex).append(", ").append(toIndex).append("]\n");
+    }
+
+    public void onGroupHeader(final Token token, final int numInGroup)
+    {
+        sb.append("groupHeader ").append(token.name()).append(' ').append(numInGroup).append('\n');
+    }
+
+    public void onBeginGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        sb.append("beginGroup ").append(token.name()).append(' ').append(groupIndex).append('/').append(numInGroup)
+            .append('\n');
+    }
+
+    public void onEndGroup(final Token token, final int groupIndex, final int numInGroup)
+    {
+        sb.append("endGroup ").append(token.name()).append(' ').append(groupIndex).append('/').append(numInGroup)
+            .append('\n');
+    }
+
+    public void onVarData(
+        final Token fieldToken,
+        final DirectBuffer buffer,
+        final int bufferIndex,
+        final int length,
+        final Token typeToken)
+    {
+        sb.append("varData ").append(fieldToken.name()).append(" @").append(bufferIndex)
+            .append(" = ").append(buffer.getStringWithoutLengthAscii(bufferIndex, length)).append('\n');
+    }
+}
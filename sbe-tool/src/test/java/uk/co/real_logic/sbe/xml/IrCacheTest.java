@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.xml;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.IrEncoder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IrCacheTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ParserOptions options = ParserOptions.builder().suppressOutput(true).xIncludeAware(true).build();
+    private IrCache irCache;
+    private Path schemaPath;
+    private Path includedPath;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        irCache = new IrCache(new File(temporaryFolder.getRoot(), "cache"));
+
+        final Path schemaDir = temporaryFolder.newFolder("schema").toPath();
+        Files.createDirectories(schemaDir.resolve("sub2"));
+        schemaPath = schemaDir.resolve("basic-schema.xml");
+        includedPath = schemaDir.resolve("sub2/common.xml");
+        Files.copy(Paths.get("src/test/resources/sub/basic-schema.xml"), schemaPath);
+        Files.copy(Paths.get("src/test/resources/sub/sub2/common.xml"), includedPath);
+    }
+
+    @Test
+    public void shouldStoreOnMissAndLoadSameIrOnHit() throws Exception
+    {
+        final File cacheFile = irCache.cacheFile(schemaPath.toString(), options, null);
+        assertFalse(cacheFile.exists());
+
+        final Ir parsedIr = irCache.load(schemaPath.toString(), options, null);
+        assertTrue(cacheFile.exists());
+
+        final Ir cachedIr = irCache.load(schemaPath.toString(), options, null);
+        assertThat(encode(cachedIr), is(encode(parsedIr)));
+        assertThat(cachedIr.getMessage(50001).size(), is(parsedIr.getMessage(50001).size()));
+    }
+
+    @Test
+    public void shouldMissWhenIncludedDocumentChanges() throws Exception
+    {
+        final File cacheFile = irCache.cacheFile(schemaPath.toString(), options, null);
+        irCache.load(schemaPath.toString(), options, null);
+
+        Files.write(includedPath, "<!-- changed -->\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertThat(irCache.cacheFile(schemaPath.toString(), options, null), not(cacheFile));
+    }
+
+    @Test
+    public void shouldMissWhenOptionsOrNamespaceChange() throws Exception
+    {
+        final File cacheFile = irCache.cacheFile(schemaPath.toString(), options, null);
+        final ParserOptions otherOptions = ParserOptions.builder()
+            .suppressOutput(true).xIncludeAware(true).warningsFatal(true).build();
+
+        assertThat(irCache.cacheFile(schemaPath.toString(), otherOptions, null), not(cacheFile));
+        assertThat(irCache.cacheFile(schemaPath.toString(), options, "other.ns"), not(cacheFile));
+        assertThat(irCache.cacheFile(schemaPath.toString(), options, null), is(cacheFile));
+    }
+
+    @Test
+    public void shouldHashCyclicIncludesOnce() throws Exception
+    {
+        final Path cyclicPath = schemaPath.resolveSibling("cyclic.xml");
+        Files.write(cyclicPath, (
+            "<types xmlns:xi=\"http://www.w3.org/2001/XInclude\">\n" +
+            "    <xi:include href=\"cyclic.xml\"/>\n" +
+            "</types>\n").getBytes(StandardCharsets.UTF_8));
+
+        final File cacheFile = irCache.cacheFile(cyclicPath.toString(), options, null);
+
+        assertThat(irCache.cacheFile(cyclicPath.toString(), options, null), is(cacheFile));
+    }
+
+    @Test
+    public void shouldRegenerateCorruptEntry() throws Exception
+    {
+        final File cacheFile = irCache.cacheFile(schemaPath.toString(), options, null);
+        final Ir parsedIr = irCache.load(schemaPath.toString(), options, null);
+
+        Files.write(cacheFile.toPath(), new byte[]{ 1, 2, 3 });
+
+        assertThat(encode(irCache.load(schemaPath.toString(), options, null)), is(encode(parsedIr)));
+        assertThat(Files.size(cacheFile.toPath()), not(3L));
+    }
+
+    private static ByteBuffer encode(final Ir ir)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (IrEncoder irEncoder = new IrEncoder(buffer, ir))
+        {
+            buffer.limit(irEncoder.encode());
+        }
+
+        return buffer;
+    }
+}
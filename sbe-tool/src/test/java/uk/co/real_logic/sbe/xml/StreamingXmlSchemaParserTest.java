@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013-2019 Real Logic Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.sbe.xml;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.InputSource;
+import uk.co.real_logic.sbe.SbeTool;
+import uk.co.real_logic.sbe.TestUtil;
+import uk.co.real_logic.sbe.ir.Ir;
+import uk.co.real_logic.sbe.ir.IrEncoder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StreamingXmlSchemaParserTest
+{
+    private static final String[] SCHEMAS =
+    {
+        "FixBinary.xml",
+        "code-generation-schema.xml",
+        "composite-elements-schema.xml",
+        "composite-offsets-schema.xml",
+        "constant-enum-fields.xml",
+        "example-bigendian-test-schema.xml",
+        "extension-schema.xml",
+        "group-with-data-schema.xml",
+        "json-printer-test-schema.xml",
+        "nested-group-schema.xml",
+        "since-deprecated-test-schema.xml",
+        "value-ref-schema.xml"
+    };
+
+    @Rule
+    public final ExpectedException exceptionRule = ExpectedException.none();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldGenerateSameIrAsDomParser() throws Exception
+    {
+        final ParserOptions options = ParserOptions.builder().suppressOutput(true).build();
+
+        for (final String schema : SCHEMAS)
+        {
+            final MessageSchema domSchema = XmlSchemaParser.parse(TestUtil.getLocalResource(schema), options);
+            final MessageSchema streamingSchema = StreamingXmlSchemaParser.parse(
+                TestUtil.getLocalResource(schema), options);
+
+            final ByteBuffer expected = encode(new IrGenerator().generate(domSchema));
+            final ByteBuffer actual = encode(new IrGenerator().generate(streamingSchema));
+
+            assertThat(schema, actual, is(expected));
+        }
+    }
+
+    @Test
+    public void shouldResolveRelativeXInclude() throws Exception
+    {
+        final URL testResource = getClass().getClassLoader().getResource("sub/basic-schema.xml");
+        Assert.assertNotNull(testResource);
+
+        final InputSource is = new InputSource(testResource.openStream());
+        final File file = new File(testResource.getFile());
+        is.setSystemId(file.toPath().toAbsolutePath().getParent().toUri().toString());
+        final MessageSchema messageSchema = StreamingXmlSchemaParser.parse(is, ParserOptions.DEFAULT);
+
+        Assert.assertNotNull(messageSchema.getType("Symbol"));
+        Assert.assertNotNull(messageSchema.getMessage(50001));
+    }
+
+    @Test
+    public void shouldTestForCyclicRefs() throws Exception
+    {
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("ref types cannot create circular dependencies");
+
+        final ParserOptions options = ParserOptions.builder().suppressOutput(true).warningsFatal(true).build();
+
+        StreamingXmlSchemaParser.parse(TestUtil.getLocalResource("cyclic-refs-schema.xml"), options);
+    }
+
+    @Test
+    public void shouldRejectXIncludeCycle() throws Exception
+    {
+        final Path schemaPath = writeXIncludeCycle();
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("XInclude cycle: ");
+        exceptionRule.expectMessage("types.xml -> ");
+        exceptionRule.expectMessage("common.xml -> ");
+
+        final InputSource is = new InputSource(schemaPath.toUri().toString());
+        StreamingXmlSchemaParser.parse(is, ParserOptions.builder().suppressOutput(true).xIncludeAware(true).build());
+    }
+
+    @Test
+    public void shouldBeSelectedForSbeToolBySystemProperty() throws Exception
+    {
+        final Path schemaPath = writeXIncludeCycle();
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("XInclude cycle: ");
+
+        System.setProperty(SbeTool.XML_STREAMING_PARSER, "true");
+        System.setProperty(SbeTool.XINCLUDE_AWARE, "true");
+        System.setProperty(SbeTool.VALIDATION_SUPPRESS_OUTPUT, "true");
+        try
+        {
+            SbeTool.parseSchema(schemaPath.toString());
+        }
+        finally
+        {
+            System.clearProperty(SbeTool.XML_STREAMING_PARSER);
+            System.clearProperty(SbeTool.XINCLUDE_AWARE);
+            System.clearProperty(SbeTool.VALIDATION_SUPPRESS_OUTPUT);
+        }
+    }
+
+    private Path writeXIncludeCycle() throws Exception
+    {
+        final Path schemaDir = temporaryFolder.newFolder("schema").toPath();
+        final Path schemaPath = schemaDir.resolve("schema.xml");
+        Files.write(schemaPath, (
+            "<sbe:messageSchema xmlns:sbe=\"http://fixprotocol.io/2016/sbe\"" +
+            " xmlns:xi=\"http://www.w3.org/2001/XInclude\" id=\"1\">\n" +
+            "    <xi:include href=\"types.xml\"/>\n" +
+            "</sbe:messageSchema>\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(schemaDir.resolve("types.xml"), (
+            "<types xmlns:xi=\"http://www.w3.org/2001/XInclude\">\n" +
+            "    <xi:include href=\"common.xml\"/>\n" +
+            "</types>\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(schemaDir.resolve("common.xml"), (
+            "<types xmlns:xi=\"http://www.w3.org/2001/XInclude\">\n" +
+            "    <xi:include href=\"types.xml\"/>\n" +
+            "</types>\n").getBytes(StandardCharsets.UTF_8));
+
+        return schemaPath;
+    }
+
+    private static ByteBuffer encode(final Ir ir)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        try (IrEncoder irEncoder = new IrEncoder(buffer, ir))
+        {
+            buffer.limit(irEncoder.encode());
+        }
+
+        return buffer;
+    }
+}